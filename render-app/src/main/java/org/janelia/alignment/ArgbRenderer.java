@@ -17,13 +17,18 @@
 package org.janelia.alignment;
 
 import ij.process.ColorProcessor;
+import ij.process.FloatProcessor;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
 import java.awt.image.WritableRaster;
+import java.util.concurrent.ThreadLocalRandom;
 
 import mpicbg.trakem2.transform.TransformMeshMappingWithMasks.ImageProcessorWithMasks;
 
 import org.janelia.alignment.util.ImageProcessorCache;
+import org.janelia.alignment.util.RenderTransformMeshCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -85,7 +90,26 @@ public class ArgbRenderer {
                               final BufferedImage targetImage,
                               final ImageProcessorCache imageProcessorCache)
             throws IllegalArgumentException {
-        Renderer.renderToBufferedImage(renderParameters, targetImage, imageProcessorCache, CONVERTER);
+        render(renderParameters, targetImage, imageProcessorCache, null);
+    }
+
+    /**
+     * Constructs a renderer instance and renders to the specified image.
+     *
+     * @param  renderParameters     specifies what to render.
+     * @param  targetImage          target for rendered result.
+     * @param  imageProcessorCache  cache of source tile data.
+     * @param  meshCache            cache of source tile meshes (or null if meshes should not be cached).
+     *
+     * @throws IllegalArgumentException
+     *   if rendering fails for any reason.
+     */
+    public static void render(final RenderParameters renderParameters,
+                              final BufferedImage targetImage,
+                              final ImageProcessorCache imageProcessorCache,
+                              final RenderTransformMeshCache meshCache)
+            throws IllegalArgumentException {
+        Renderer.renderToBufferedImage(renderParameters, targetImage, imageProcessorCache, meshCache, CONVERTER);
     }
 
     /**
@@ -163,11 +187,217 @@ public class ArgbRenderer {
         return image;
     }
 
+    /**
+     * Writes the processor directly into an ARGB target image's pixel array in one pass.
+     * Background color or noise fill is applied in the same pass and rendered pixels are composited
+     * over existing target pixels exactly as {@link java.awt.Graphics2D#drawImage} would composite the
+     * {@link #targetToARGBImage converted} image, but without creating any intermediate images.
+     *
+     * @param  renderedImageProcessorWithMasks  processor to write (must be a {@link FloatProcessor}).
+     * @param  binaryMask                       indicates whether a binary mask should be applied.
+     * @param  backgroundRGBColor               background color for the target (or null if none).
+     * @param  fillWithNoise                    indicates whether the target background should be filled with noise
+     *                                          (ignored if a background color is specified).
+     * @param  targetImage                      target for rendered result.
+     *
+     * @return true if the processor was written; false if the processor or target image type is not supported.
+     */
+    public static boolean writeToARGBImage(final ImageProcessorWithMasks renderedImageProcessorWithMasks,
+                                           final boolean binaryMask,
+                                           final Integer backgroundRGBColor,
+                                           final boolean fillWithNoise,
+                                           final BufferedImage targetImage) {
+
+        final int[] targetPixels = getPackedIntPixels(targetImage);
+
+        if ((targetPixels == null) || (! (renderedImageProcessorWithMasks.ip instanceof FloatProcessor))) {
+            return false;
+        }
+
+        final FloatProcessor fp = (FloatProcessor) renderedImageProcessorWithMasks.ip;
+        final float[] renderedPixels = (float[]) fp.getPixels();
+        final int renderedWidth = fp.getWidth();
+        final int renderedHeight = fp.getHeight();
+
+        final byte[] alphaPixels;
+        if (renderedImageProcessorWithMasks.mask != null) {
+            alphaPixels = (byte[]) renderedImageProcessorWithMasks.mask.getPixels();
+        } else if (renderedImageProcessorWithMasks.outside != null) {
+            alphaPixels = (byte[]) renderedImageProcessorWithMasks.outside.getPixels();
+        } else {
+            alphaPixels = null;
+        }
+
+        // same 8-bit scaling as FloatProcessor.create8BitImage (used by convertToColorProcessor)
+        final float min = (float) fp.getMin();
+        final float max = (float) fp.getMax();
+        final float scale = 255.0f / (max - min);
+
+        final ThreadLocalRandom random = fillWithNoise ? ThreadLocalRandom.current() : null;
+
+        final int targetWidth = targetImage.getWidth();
+        final int targetHeight = targetImage.getHeight();
+
+        int targetIndex = 0;
+        for (int y = 0; y < targetHeight; y++) {
+            for (int x = 0; x < targetWidth; x++) {
+
+                final int backgroundPixel;
+                if (backgroundRGBColor != null) {
+                    backgroundPixel = 0xff000000 | backgroundRGBColor;
+                } else if (random != null) {
+                    final int noise = random.nextInt(256);
+                    backgroundPixel = 0xff000000 | (noise << 16) | (noise << 8) | noise;
+                } else {
+                    backgroundPixel = targetPixels[targetIndex];
+                }
+
+                if ((x < renderedWidth) && (y < renderedHeight)) {
+
+                    final int renderedIndex = (y * renderedWidth) + x;
+
+                    float value = renderedPixels[renderedIndex] - min;
+                    if (value < 0f) {
+                        value = 0f;
+                    }
+                    int gray = (int) ((value * scale) + 0.5f);
+                    if (gray > 255) {
+                        gray = 255;
+                    }
+
+                    final int alpha;
+                    if (alphaPixels == null) {
+                        alpha = 0xff;
+                    } else if (binaryMask) {
+                        alpha = (alphaPixels[renderedIndex] == -1) ? 0xff : 0;
+                    } else {
+                        alpha = alphaPixels[renderedIndex] & 0xff;
+                    }
+
+                    targetPixels[targetIndex] = compositeGrayOver(gray, alpha, backgroundPixel);
+
+                } else {
+                    targetPixels[targetIndex] = backgroundPixel;
+                }
+
+                targetIndex++;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return pixel array for the specified image if it is an unshared, tightly packed integer ARGB image;
+     *         otherwise null.
+     */
+    private static int[] getPackedIntPixels(final BufferedImage image) {
+
+        int[] pixels = null;
+
+        if (image.getType() == BufferedImage.TYPE_INT_ARGB) {
+            final WritableRaster raster = image.getRaster();
+            if ((raster.getParent() == null) &&
+                (raster.getSampleModel() instanceof SinglePixelPackedSampleModel) &&
+                (raster.getDataBuffer() instanceof DataBufferInt)) {
+                final SinglePixelPackedSampleModel sampleModel = (SinglePixelPackedSampleModel) raster.getSampleModel();
+                final DataBufferInt dataBuffer = (DataBufferInt) raster.getDataBuffer();
+                if ((sampleModel.getScanlineStride() == image.getWidth()) &&
+                    (dataBuffer.getNumBanks() == 1) &&
+                    (dataBuffer.getOffset() == 0)) {
+                    pixels = dataBuffer.getData();
+                }
+            }
+        }
+
+        return pixels;
+    }
+
+    /**
+     * Composites a gray source pixel over a non-premultiplied ARGB destination pixel using the same
+     * 8-bit arithmetic as the Java 2D source-over blit loops.
+     */
+    static int compositeGrayOver(final int gray,
+                                 final int alpha,
+                                 final int destinationPixel) {
+
+        final int result;
+
+        if (alpha == 0) {
+
+            result = destinationPixel;
+
+        } else if (alpha == 0xff) {
+
+            result = 0xff000000 | (gray << 16) | (gray << 8) | gray;
+
+        } else {
+
+            final int destinationFactor = mul8(0xff - alpha, destinationPixel >>> 24);
+            final int resultAlpha = alpha + destinationFactor;
+            final int premultipliedGray = mul8(alpha, gray);
+
+            int red = premultipliedGray + mul8(destinationFactor, (destinationPixel >> 16) & 0xff);
+            int green = premultipliedGray + mul8(destinationFactor, (destinationPixel >> 8) & 0xff);
+            int blue = premultipliedGray + mul8(destinationFactor, destinationPixel & 0xff);
+
+            if (resultAlpha < 0xff) {
+                red = div8(red, resultAlpha);
+                green = div8(green, resultAlpha);
+                blue = div8(blue, resultAlpha);
+            }
+
+            result = (resultAlpha << 24) | (red << 16) | (green << 8) | blue;
+        }
+
+        return result;
+    }
+
+    /**
+     * @return a * b / 255 rounded the same way as the Java 2D mul8table.
+     */
+    private static int mul8(final int a,
+                            final int b) {
+        return ((a * b * 0x10101) + 0x800000) >>> 24;
+    }
+
+    /**
+     * @return v * 255 / a rounded the same way as the Java 2D div8table.
+     */
+    private static int div8(final int v,
+                            final int a) {
+        final int result;
+        if (v >= a) {
+            result = 0xff;
+        } else {
+            final long increment = (0xff000000L + (a / 2)) / a;
+            result = (int) (((v * increment) + 0x800000) >>> 24);
+        }
+        return result;
+    }
+
     private static final Logger LOG = LoggerFactory.getLogger(ArgbRenderer.class);
 
     private static final Renderer.ImageOpener OPENER = RenderParameters::openTargetImage;
 
     private static final Renderer.ProcessorWithMasksConverter CONVERTER =
-            (renderParameters, renderedImageProcessorWithMasks) -> targetToARGBImage(renderedImageProcessorWithMasks,
-                                                                                     renderParameters.binaryMask());
+            new Renderer.ProcessorWithMasksConverter() {
+
+                @Override
+                public BufferedImage convertProcessorWithMasksToImage(final RenderParameters renderParameters,
+                                                                      final ImageProcessorWithMasks renderedImageProcessorWithMasks) {
+                    return targetToARGBImage(renderedImageProcessorWithMasks, renderParameters.binaryMask());
+                }
+
+                @Override
+                public boolean writeProcessorWithMasksToImage(final RenderParameters renderParameters,
+                                                              final ImageProcessorWithMasks renderedImageProcessorWithMasks,
+                                                              final BufferedImage targetImage) {
+                    return writeToARGBImage(renderedImageProcessorWithMasks,
+                                            renderParameters.binaryMask(),
+                                            renderParameters.getBackgroundRGBColor(),
+                                            renderParameters.isFillWithNoise(),
+                                            targetImage);
+                }
+            };
 }
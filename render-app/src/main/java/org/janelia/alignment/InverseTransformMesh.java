@@ -0,0 +1,294 @@
+package org.janelia.alignment;
+
+import java.util.List;
+
+import mpicbg.models.AffineModel2D;
+import mpicbg.models.NoninvertibleModelException;
+import mpicbg.trakem2.util.Pair;
+
+/**
+ * Maps target (world) locations back to source (local) locations using the triangles of a
+ * {@link RenderTransformMesh}.
+ *
+ * <p>
+ * Instead of testing every mesh triangle for each location (like {@link mpicbg.models.TransformMesh}),
+ * target triangles are indexed by a uniform grid that spans the mesh's target bounding box
+ * with roughly one grid cell per triangle.  Each location only needs to be tested against the few
+ * triangles that overlap its grid cell, so lookups take constant time regardless of mesh size.
+ * </p>
+ *
+ * <p>
+ * Inverse affines are derived directly from each triangle's vertices (no model fitting is needed)
+ * and all data is stored in primitive arrays that are never modified after construction,
+ * so instances are compact and safe for concurrent use.
+ * </p>
+ *
+ * @author Eric Trautman
+ */
+public class InverseTransformMesh {
+
+    // per triangle: target vertices (ax, ay, bx, by, cx, cy)
+    private final double[] targetVertices;
+
+    // per triangle: inverse affine (m00, m10, m01, m11, m02, m12) that maps target to source locations
+    private final double[] inverseAffines;
+
+    private final int numberOfTriangles;
+
+    private final double minX;
+    private final double minY;
+    private final double maxX;
+    private final double maxY;
+    private final int gridColumnCount;
+    private final int gridRowCount;
+    private final double gridCellWidth;
+    private final double gridCellHeight;
+
+    // compressed index: triangles for grid cell i are cellTriangles[cellStarts[i]] to cellTriangles[cellStarts[i+1] - 1]
+    private final int[] cellStarts;
+    private final int[] cellTriangles;
+
+    /**
+     * Builds an inverse mesh from the specified mesh's triangle vertices (mesh affines do not need to be updated).
+     *
+     * @param  mesh  forward mesh to invert.
+     */
+    public InverseTransformMesh(final RenderTransformMesh mesh) {
+        this(mesh.getAV());
+    }
+
+    /**
+     * @param  av  list of mesh triangles where each triangle's vertices are stored as
+     *             {{source x values}, {source y values}, {target x values}, {target y values}}.
+     */
+    InverseTransformMesh(final List<Pair<AffineModel2D, double[][]>> av) {
+
+        final double[] vertices = new double[av.size() * 6];
+        final double[] affines = new double[av.size() * 6];
+
+        double boundsMinX = Double.MAX_VALUE;
+        double boundsMinY = Double.MAX_VALUE;
+        double boundsMaxX = -Double.MAX_VALUE;
+        double boundsMaxY = -Double.MAX_VALUE;
+
+        int count = 0;
+        for (final Pair<AffineModel2D, double[][]> apq : av) {
+            // skip degenerate (folded to a line or point) triangles since they cannot be inverted
+            if (setInverseAffine(apq.b, affines, count * 6)) {
+                final int offset = count * 6;
+                for (int vertex = 0; vertex < 3; vertex++) {
+                    final double x = apq.b[2][vertex];
+                    final double y = apq.b[3][vertex];
+                    vertices[offset + (vertex * 2)] = x;
+                    vertices[offset + (vertex * 2) + 1] = y;
+                    boundsMinX = Math.min(boundsMinX, x);
+                    boundsMinY = Math.min(boundsMinY, y);
+                    boundsMaxX = Math.max(boundsMaxX, x);
+                    boundsMaxY = Math.max(boundsMaxY, y);
+                }
+                count++;
+            }
+        }
+
+        this.numberOfTriangles = count;
+        this.targetVertices = vertices;
+        this.inverseAffines = affines;
+
+        if (count == 0) {
+            boundsMinX = 0;
+            boundsMinY = 0;
+            boundsMaxX = 0;
+            boundsMaxY = 0;
+        }
+
+        this.minX = boundsMinX;
+        this.minY = boundsMinY;
+        this.maxX = boundsMaxX;
+        this.maxY = boundsMaxY;
+
+        // size grid so that there is roughly one cell per triangle
+        final double boundsWidth = Math.max(maxX - minX, Double.MIN_NORMAL);
+        final double boundsHeight = Math.max(maxY - minY, Double.MIN_NORMAL);
+        final double cellSize = Math.sqrt((boundsWidth * boundsHeight) / Math.max(1, count));
+        this.gridColumnCount = (int) Math.max(1, Math.min(MAX_GRID_SIZE, Math.ceil(boundsWidth / cellSize)));
+        this.gridRowCount = (int) Math.max(1, Math.min(MAX_GRID_SIZE, Math.ceil(boundsHeight / cellSize)));
+        this.gridCellWidth = boundsWidth / gridColumnCount;
+        this.gridCellHeight = boundsHeight / gridRowCount;
+
+        // first pass counts the triangles that overlap each cell, second pass fills the index
+        final int numberOfCells = gridColumnCount * gridRowCount;
+        this.cellStarts = new int[numberOfCells + 1];
+        final int[] cellRange = new int[4];
+        for (int triangle = 0; triangle < count; triangle++) {
+            setCellRange(triangle, cellRange);
+            for (int row = cellRange[1]; row <= cellRange[3]; row++) {
+                for (int column = cellRange[0]; column <= cellRange[2]; column++) {
+                    cellStarts[(row * gridColumnCount) + column + 1]++;
+                }
+            }
+        }
+
+        for (int cell = 0; cell < numberOfCells; cell++) {
+            cellStarts[cell + 1] += cellStarts[cell];
+        }
+
+        this.cellTriangles = new int[cellStarts[numberOfCells]];
+        final int[] cellFillCounts = new int[numberOfCells];
+        for (int triangle = 0; triangle < count; triangle++) {
+            setCellRange(triangle, cellRange);
+            for (int row = cellRange[1]; row <= cellRange[3]; row++) {
+                for (int column = cellRange[0]; column <= cellRange[2]; column++) {
+                    final int cell = (row * gridColumnCount) + column;
+                    cellTriangles[cellStarts[cell] + cellFillCounts[cell]] = triangle;
+                    cellFillCounts[cell]++;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return number of (invertible) triangles in this mesh.
+     */
+    public int getNumberOfTriangles() {
+        return numberOfTriangles;
+    }
+
+    /**
+     * Inversely transforms the specified location.
+     *
+     * @param  location  target location to transform into a source location.
+     *
+     * @throws NoninvertibleModelException
+     *   if the location is not covered by any of this mesh's triangles.
+     */
+    public void applyInverseInPlace(final double[] location)
+            throws NoninvertibleModelException {
+        if (! tryApplyInverseInPlace(location)) {
+            throw new NoninvertibleModelException("Noninvertible location ( " + location[0] + ", " + location[1] + " )");
+        }
+    }
+
+    /**
+     * Inversely transforms a batch of locations.
+     *
+     * @param  locations  target locations to transform (will not be modified).
+     *
+     * @return array of source locations in the same order as the specified locations.
+     *         Locations that are not covered by any of this mesh's triangles are returned as null.
+     */
+    public double[][] applyInverse(final double[][] locations) {
+        final double[][] sourceLocations = new double[locations.length][];
+        for (int i = 0; i < locations.length; i++) {
+            final double[] location = new double[] { locations[i][0], locations[i][1] };
+            if (tryApplyInverseInPlace(location)) {
+                sourceLocations[i] = location;
+            }
+        }
+        return sourceLocations;
+    }
+
+    @Override
+    public String toString() {
+        return "{numberOfTriangles: " + numberOfTriangles +
+               ", gridColumnCount: " + gridColumnCount +
+               ", gridRowCount: " + gridRowCount +
+               '}';
+    }
+
+    /**
+     * @return true if the location was inversely transformed; false if it is not covered by any triangle.
+     */
+    private boolean tryApplyInverseInPlace(final double[] location) {
+
+        final double x = location[0];
+        final double y = location[1];
+
+        if ((x < minX) || (x > maxX) || (y < minY) || (y > maxY)) {
+            return false;
+        }
+
+        final int cell = (getGridRow(y) * gridColumnCount) + getGridColumn(x);
+        for (int i = cellStarts[cell]; i < cellStarts[cell + 1]; i++) {
+            final int triangle = cellTriangles[i];
+            final int v = triangle * 6;
+            if (RenderTransformMesh.isInTriangle(targetVertices[v], targetVertices[v + 1],
+                                                 targetVertices[v + 2], targetVertices[v + 3],
+                                                 targetVertices[v + 4], targetVertices[v + 5],
+                                                 x, y)) {
+                final int a = triangle * 6;
+                location[0] = (x * inverseAffines[a]) + (y * inverseAffines[a + 2]) + inverseAffines[a + 4];
+                location[1] = (x * inverseAffines[a + 1]) + (y * inverseAffines[a + 3]) + inverseAffines[a + 5];
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private int getGridColumn(final double x) {
+        return Math.min((int) ((x - minX) / gridCellWidth), gridColumnCount - 1);
+    }
+
+    private int getGridRow(final double y) {
+        return Math.min((int) ((y - minY) / gridCellHeight), gridRowCount - 1);
+    }
+
+    /**
+     * Sets the range (minColumn, minRow, maxColumn, maxRow) of grid cells overlapped by the specified triangle.
+     */
+    private void setCellRange(final int triangle,
+                              final int[] cellRange) {
+        final int v = triangle * 6;
+        final double triangleMinX = Math.min(targetVertices[v], Math.min(targetVertices[v + 2], targetVertices[v + 4]));
+        final double triangleMinY = Math.min(targetVertices[v + 1], Math.min(targetVertices[v + 3], targetVertices[v + 5]));
+        final double triangleMaxX = Math.max(targetVertices[v], Math.max(targetVertices[v + 2], targetVertices[v + 4]));
+        final double triangleMaxY = Math.max(targetVertices[v + 1], Math.max(targetVertices[v + 3], targetVertices[v + 5]));
+        cellRange[0] = getGridColumn(triangleMinX);
+        cellRange[1] = getGridRow(triangleMinY);
+        cellRange[2] = getGridColumn(triangleMaxX);
+        cellRange[3] = getGridRow(triangleMaxY);
+    }
+
+    /**
+     * Derives the affine that maps the specified triangle's target vertices to its source vertices.
+     *
+     * @return false if the triangle's target vertices are degenerate (so that no inverse exists); otherwise true.
+     */
+    private static boolean setInverseAffine(final double[][] pq,
+                                            final double[] affines,
+                                            final int offset) {
+
+        final double t1x = pq[2][1] - pq[2][0];
+        final double t1y = pq[3][1] - pq[3][0];
+        final double t2x = pq[2][2] - pq[2][0];
+        final double t2y = pq[3][2] - pq[3][0];
+
+        final double det = (t1x * t2y) - (t2x * t1y);
+        if (det == 0) {
+            return false;
+        }
+
+        final double s1x = pq[0][1] - pq[0][0];
+        final double s1y = pq[1][1] - pq[1][0];
+        final double s2x = pq[0][2] - pq[0][0];
+        final double s2y = pq[1][2] - pq[1][0];
+
+        final double m00 = ((s1x * t2y) - (s2x * t1y)) / det;
+        final double m01 = ((s2x * t1x) - (s1x * t2x)) / det;
+        final double m10 = ((s1y * t2y) - (s2y * t1y)) / det;
+        final double m11 = ((s2y * t1x) - (s1y * t2x)) / det;
+
+        affines[offset] = m00;
+        affines[offset + 1] = m10;
+        affines[offset + 2] = m01;
+        affines[offset + 3] = m11;
+        affines[offset + 4] = pq[0][0] - (m00 * pq[2][0]) - (m01 * pq[3][0]);
+        affines[offset + 5] = pq[1][0] - (m10 * pq[2][0]) - (m11 * pq[3][0]);
+
+        return true;
+    }
+
+    /** Upper bound for grid dimensions (protects against extremely elongated meshes). */
+    private static final int MAX_GRID_SIZE = 4096;
+
+}
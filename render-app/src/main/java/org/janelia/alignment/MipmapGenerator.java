@@ -26,6 +26,7 @@ import javax.imageio.stream.MemoryCacheImageOutputStream;
 
 import mpicbg.trakem2.util.Downsampler;
 
+import org.janelia.alignment.loader.RawImageFormat;
 import org.janelia.alignment.spec.ChannelSpec;
 import org.janelia.alignment.spec.TileSpec;
 import org.janelia.alignment.util.ImageProcessorCache;
@@ -397,10 +398,15 @@ public class MipmapGenerator {
         final ImageProcessor downSampledProcessor =
                 Downsampler.downsampleImageProcessor(sourceImagePlus.getProcessor(),
                                                      mipmapLevelDelta);
-        final BufferedImage downSampledImage = downSampledProcessor.getBufferedImage();
-        final ImageOutputStream imageOutputStream = new MemoryCacheImageOutputStream(outputStream);
 
-        Utils.writeImage(downSampledImage, format, false, jpegQuality, imageOutputStream);
+        if (Utils.RAW_FORMAT.equals(format)) {
+            // raw mipmaps keep the processor's pixels as is, so skip the buffered image conversion
+            RawImageFormat.write(downSampledProcessor, null, outputStream);
+        } else {
+            final BufferedImage downSampledImage = downSampledProcessor.getBufferedImage();
+            final ImageOutputStream imageOutputStream = new MemoryCacheImageOutputStream(outputStream);
+            Utils.writeImage(downSampledImage, format, false, jpegQuality, imageOutputStream);
+        }
     }
 
     private static TileSpec deriveBoundingBox(final TileSpec tileSpec,
@@ -112,6 +112,9 @@ public class RenderParameters implements Serializable {
     @Parameter(names = "--threads", description = "Number of threads to be used")
     public int numberOfThreads;
 
+    @Parameter(names = "--tile_threads", description = "Number of tiles to load, mesh, and map concurrently (1 renders tiles sequentially)")
+    public int numberOfTileThreads;
+
     @Parameter(names = "--skip_interpolation", description = "enable sloppy but fast rendering by skipping interpolation")
     public boolean skipInterpolation;
 
@@ -200,6 +203,7 @@ public class RenderParameters implements Serializable {
         this.convertToGray = false;
         this.quality = DEFAULT_QUALITY;
         this.numberOfThreads = DEFAULT_NUMBER_OF_THREADS;
+        this.numberOfTileThreads = DEFAULT_NUMBER_OF_THREADS;
         this.skipInterpolation = false;
         this.binaryMask = false;
         this.excludeMask = false;
@@ -436,6 +440,82 @@ public class RenderParameters implements Serializable {
 
     }
 
+    /**
+     * @return the number of target rows for these parameters.
+     */
+    public int getTargetHeight() {
+        return (int) (getScale() * height);
+    }
+
+    /**
+     * Derives parameters for rendering one horizontal band of this target.
+     * Only tiles whose bounds intersect the band (padded by one target pixel) are included
+     * so that tall targets can be rendered band by band with memory proportional to the band height.
+     *
+     * @param  firstRow      first target row in the band.
+     * @param  numberOfRows  number of target rows in the band.
+     *
+     * @return parameters whose rendered target's first numberOfRows rows correspond to
+     *         rows firstRow through (firstRow + numberOfRows - 1) of this target.
+     *         The returned parameters may render a few extra rows at the bottom of the band
+     *         since the full scale height must be a whole number.
+     *
+     * @throws IllegalStateException
+     *   if the derived parameters for this target have not been initialized.
+     */
+    public RenderParameters getBandParameters(final int firstRow,
+                                              final int numberOfRows)
+            throws IllegalStateException {
+
+        if (! initialized) {
+            throw new IllegalStateException("derived parameters have not been initialized");
+        }
+
+        final double derivedScale = getScale();
+        final double bandY = y + (firstRow / derivedScale);
+        int bandHeight = (int) Math.ceil(numberOfRows / derivedScale);
+        while ((int) (derivedScale * bandHeight) < numberOfRows) {
+            bandHeight++;
+        }
+
+        final RenderParameters band = new RenderParameters(null, x, bandY, width, bandHeight, derivedScale);
+
+        band.meshCellSize = meshCellSize;
+        band.minMeshCellSize = minMeshCellSize;
+        band.areaOffset = areaOffset;
+        band.minIntensity = minIntensity;
+        band.maxIntensity = maxIntensity;
+        band.convertToGray = convertToGray;
+        band.quality = quality;
+        band.numberOfThreads = numberOfThreads;
+        band.numberOfTileThreads = numberOfTileThreads;
+        band.skipInterpolation = skipInterpolation;
+        band.binaryMask = binaryMask;
+        band.excludeMask = excludeMask;
+        band.doFilter = doFilter;
+        band.backgroundRGBColor = backgroundRGBColor;
+        band.fillWithNoise = fillWithNoise;
+        band.channels = channels;
+        band.mipmapPathBuilder = mipmapPathBuilder;
+        band.filterSpecs = filterSpecs;
+
+        final double padding = 1.0 / derivedScale;
+        final double minY = bandY - padding;
+        final double maxY = bandY + bandHeight + padding;
+        for (final TileSpec tileSpec : tileSpecs) {
+            if ((tileSpec.getMinY() == null) || (tileSpec.getMaxY() == null) ||
+                ((tileSpec.getMaxY() >= minY) && (tileSpec.getMinY() <= maxY))) {
+                band.tileSpecs.add(tileSpec);
+            }
+        }
+
+        // channels are derived from the full tile list (not the band's first tile)
+        band.channelNamesAndWeights = getChannelNamesAndWeights();
+        band.initialized = true;
+
+        return band;
+    }
+
     /**
      * Initialize derived parameter values.
      */
@@ -540,6 +620,14 @@ public class RenderParameters implements Serializable {
         this.numberOfThreads = numberOfThreads;
     }
 
+    public int getNumberOfTileThreads() {
+        return numberOfTileThreads;
+    }
+
+    public void setNumberOfTileThreads(final int numberOfTileThreads) {
+        this.numberOfTileThreads = numberOfTileThreads;
+    }
+
     public boolean skipInterpolation() {
         return skipInterpolation;
     }
@@ -568,7 +656,7 @@ public class RenderParameters implements Serializable {
         doFilter = (filter != null) && filter;
     }
 
-    Integer getBackgroundRGBColor() {
+    public Integer getBackgroundRGBColor() {
         return backgroundRGBColor;
     }
 
@@ -939,6 +1027,9 @@ public class RenderParameters implements Serializable {
             areaOffset = mergedValue(areaOffset, baseParameters.areaOffset, false);
             convertToGray = mergedValue(convertToGray, baseParameters.convertToGray, false);
             numberOfThreads = mergedValue(numberOfThreads, baseParameters.numberOfThreads, DEFAULT_NUMBER_OF_THREADS);
+            numberOfTileThreads = mergedValue(numberOfTileThreads,
+                                              baseParameters.numberOfTileThreads,
+                                              DEFAULT_NUMBER_OF_THREADS);
             skipInterpolation = mergedValue(skipInterpolation, baseParameters.skipInterpolation, false);
             binaryMask = mergedValue(binaryMask, baseParameters.binaryMask, false);
             excludeMask = mergedValue(excludeMask, baseParameters.excludeMask, false);
@@ -256,6 +256,114 @@ public class RenderTransformMesh implements InvertibleCoordinateTransform
 		this( t, numX, numY( numX, width, height ), width, height );
 	}
 
+    /**
+     * Creates a copy of the specified mesh with all target coordinates (and triangle affines)
+     * translated by the specified offsets.  Source coordinates are shared with the specified mesh.
+     *
+     * @param  mesh  mesh to copy (must have updated affines).
+     * @param  dx    target x offset.
+     * @param  dy    target y offset.
+     */
+    protected RenderTransformMesh(final RenderTransformMesh mesh,
+                                  final double dx,
+                                  final double dy) {
+
+        this.width = mesh.width;
+        this.height = mesh.height;
+        this.min = new double[]{mesh.min[0] + dx, mesh.min[1] + dy};
+        this.max = new double[]{mesh.max[0] + dx, mesh.max[1] + dy};
+
+        final double[] m = new double[6];
+
+        av.ensureCapacity(mesh.av.size());
+        for (final Pair<AffineModel2D, double[][]> apq : mesh.av) {
+
+            final double[][] pq = apq.b;
+            final double[][] translatedPq = new double[][]{
+                    pq[0],
+                    pq[1],
+                    {pq[2][0] + dx, pq[2][1] + dx, pq[2][2] + dx},
+                    {pq[3][0] + dy, pq[3][1] + dy, pq[3][2] + dy}
+            };
+
+            apq.a.toArray(m);
+            final AffineModel2D translatedAffine = new AffineModel2D();
+            translatedAffine.set(m[0], m[1], m[2], m[3], m[4] + dx, m[5] + dy);
+
+            av.add(new Pair<AffineModel2D, double[][]>(translatedAffine, translatedPq));
+        }
+    }
+
+    /**
+     * Creates a two triangle mesh that maps the source rectangle with a single affine.
+     *
+     * @param  affine  affine for the source.
+     * @param  width   source width.
+     * @param  height  source height.
+     */
+    private RenderTransformMesh(final AffineModel2D affine,
+                                final double width,
+                                final double height) {
+
+        this.width = width;
+        this.height = height;
+
+        final double[][] pq = new double[4][4];
+        final double[] pTemp = new double[2];
+
+        addPointMatch(0, pq, pTemp, affine, 0, 0);
+        addPointMatch(1, pq, pTemp, affine, width - 1, 0);
+        addPointMatch(2, pq, pTemp, affine, width - 1, height - 1);
+        addPointMatch(3, pq, pTemp, affine, 0, height - 1);
+
+        addTriangle(av, pq, 0, 1, 2);
+        addTriangle(av, pq, 0, 2, 3);
+
+        for (final Pair<AffineModel2D, double[][]> apq : av) {
+            apq.a.set(affine);
+        }
+
+        min = new double[]{pq[2][0], pq[3][0]};
+        max = new double[]{pq[2][0], pq[3][0]};
+
+        for (int j = 1; j < 4; ++j) {
+            min[0] = Math.min(min[0], pq[2][j]);
+            min[1] = Math.min(min[1], pq[3][j]);
+            max[0] = Math.max(max[0], pq[2][j]);
+            max[1] = Math.max(max[1], pq[3][j]);
+        }
+    }
+
+    /**
+     * Creates a mesh for a purely affine transform that covers the source with just two triangles
+     * (instead of hundreds) since every triangle of a full mesh would have the same affine anyway.
+     * The triangle affines are set directly, so there is no need to call {@link #updateAffines()}.
+     *
+     * @param  affine  affine for the source.
+     * @param  width   source width.
+     * @param  height  source height.
+     *
+     * @return mesh for the affine.
+     */
+    public static RenderTransformMesh createAffineMesh(final AffineModel2D affine,
+                                                       final double width,
+                                                       final double height) {
+        return new RenderTransformMesh(affine, width, height);
+    }
+
+    /**
+     * @param  dx  target x offset.
+     * @param  dy  target y offset.
+     *
+     * @return a copy of this mesh with all target coordinates translated by the specified offsets.
+     *         Translating is much cheaper than rebuilding a mesh since no transforms are applied
+     *         and no affines are fit.  This mesh must have updated affines.
+     */
+    public RenderTransformMesh getTranslatedCopy(final double dx,
+                                                 final double dy) {
+        return new RenderTransformMesh(this, dx, dy);
+    }
+
 	/**
 	 * Update all affine transformations.
 	 */
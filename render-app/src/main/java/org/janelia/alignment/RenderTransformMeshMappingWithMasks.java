@@ -18,7 +18,6 @@ package org.janelia.alignment;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
 
 import mpicbg.models.AffineModel2D;
 import mpicbg.trakem2.util.Pair;
@@ -40,59 +39,93 @@ public class RenderTransformMeshMappingWithMasks {
         this.transform = transform;
     }
 
-    public final void map(final PixelMapper pixelMapper) {
-        map(pixelMapper, Runtime.getRuntime().availableProcessors());
+    public final int map(final PixelMapper pixelMapper) {
+        return map(pixelMapper, Runtime.getRuntime().availableProcessors());
     }
 
-    public final void map(final PixelMapper pixelMapper,
-                          final int numThreads) {
-
-        final ArrayList<Pair<AffineModel2D, double[][]>> av = transform.getAV();
-        if (numThreads > 1) {
-            final AtomicInteger i = new AtomicInteger(0);
-            final ArrayList<Thread> threads = new ArrayList<>(numThreads);
-            for (int k = 0; k < numThreads; ++k) {
-                final Thread mtt = new MapTriangleThread(i, av, pixelMapper);
-                threads.add(mtt);
-                mtt.start();
-            }
-            for (final Thread mtt : threads) {
-                try {
-                    mtt.join();
-                } catch (final InterruptedException e) {
-                    LOG.warn("ignoring exception", e);
-                }
-            }
-        } else {
-            for (final Pair<AffineModel2D, double[][]> triangle : av) {
-                mapTriangle(triangle, pixelMapper);
-            }
-        }
+    /**
+     * Maps all mesh triangles using the {@link TriangleMappingPool#getSharedInstance() shared mapping pool}.
+     *
+     * @param  pixelMapper  mapper for source and target pixels.
+     * @param  numThreads   number of threads requested for mapping (1 maps all triangles on the calling thread).
+     *
+     * @return number of triangles that intersect the target (all other triangles are skipped).
+     */
+    public final int map(final PixelMapper pixelMapper,
+                         final int numThreads) {
+        return map(pixelMapper, numThreads, TriangleMappingPool.getSharedInstance());
     }
 
-    private static final class MapTriangleThread extends Thread {
-        private final AtomicInteger i;
-        private final List<Pair<AffineModel2D, double[][]>> triangles;
-        private final PixelMapper pixelMapper;
-
-        MapTriangleThread(final AtomicInteger i,
-                          final List<Pair<AffineModel2D, double[][]>> triangles,
-                          final PixelMapper pixelMapper) {
-            this.i = i;
-            this.triangles = triangles;
-            this.pixelMapper = pixelMapper;
-        }
+    /**
+     * Maps all mesh triangles using the specified pool.
+     *
+     * @param  pixelMapper  mapper for source and target pixels.
+     * @param  numThreads   number of threads requested for mapping (1 maps all triangles on the calling thread).
+     * @param  mappingPool  pool for parallel mapping.
+     *
+     * @return number of triangles that intersect the target (all other triangles are skipped).
+     */
+    public final int map(final PixelMapper pixelMapper,
+                         final int numThreads,
+                         final TriangleMappingPool mappingPool) {
+
+        final List<Pair<AffineModel2D, double[][]>> trianglesInTarget =
+                getTrianglesInTarget(transform.getAV(),
+                                     pixelMapper.getTargetWidth(),
+                                     pixelMapper.getTargetHeight());
+
+        mappingPool.map(trianglesInTarget, triangle -> mapTriangle(triangle, pixelMapper), numThreads);
+
+        return trianglesInTarget.size();
+    }
 
-        @Override
-        final public void run() {
-            int k = i.getAndIncrement();
-            while (!isInterrupted() && k < triangles.size()) {
-                mapTriangle(triangles.get(k), pixelMapper);
-                k = i.getAndIncrement();
+    /**
+     * @param  av            mesh triangles.
+     * @param  targetWidth   width of the target.
+     * @param  targetHeight  height of the target.
+     *
+     * @return list of triangles whose (rounded) target bounding box intersects the target.
+     *         Triangles outside the target cannot map any pixels, so there is no need to distribute them
+     *         to mapping threads.  If all triangles intersect the target, the original list is returned.
+     */
+    static List<Pair<AffineModel2D, double[][]>> getTrianglesInTarget(final List<Pair<AffineModel2D, double[][]>> av,
+                                                                       final int targetWidth,
+                                                                       final int targetHeight) {
+
+        final int w = targetWidth - 1;
+        final int h = targetHeight - 1;
+        final double[] min = new double[2];
+        final double[] max = new double[2];
+
+        List<Pair<AffineModel2D, double[][]>> trianglesInTarget = null;
+
+        for (int i = 0; i < av.size(); i++) {
+
+            final Pair<AffineModel2D, double[][]> triangle = av.get(i);
+            RenderTransformMesh.calculateTargetBoundingBox(triangle.b, min, max);
+
+            // same rounding as mapTriangle
+            final boolean isInTarget = (Util.roundPos(max[0]) >= 0) && (Util.roundPos(min[0]) <= w) &&
+                                       (Util.roundPos(max[1]) >= 0) && (Util.roundPos(min[1]) <= h);
+
+            if (trianglesInTarget != null) {
+                if (isInTarget) {
+                    trianglesInTarget.add(triangle);
+                }
+            } else if (! isInTarget) {
+                // first culled triangle, so copy all prior triangles
+                trianglesInTarget = new ArrayList<>(av.subList(0, i));
             }
         }
+
+        return trianglesInTarget == null ? av : trianglesInTarget;
     }
 
+    /**
+     * Maps all target pixels within a triangle by rasterizing the triangle one row (span) at a time.
+     * Source coordinates are derived once at the start of each span and then stepped incrementally
+     * with the triangle's inverse affine, so no per-pixel containment test or inverse transform is needed.
+     */
     private static void mapTriangle(final Pair<AffineModel2D, double[][]> ai,
                                     final PixelMapper pixelMapper) {
 
@@ -110,54 +143,139 @@ public class RenderTransformMeshMappingWithMasks {
         final int maxX = Math.min(w, Util.roundPos(max[0]));
         final int maxY = Math.min(h, Util.roundPos(max[1]));
 
-        final double[] source = new double[2];
+        // derive inverse the same way AffineModel2D does so that span start coordinates match applyInverseInPlace
+        final double[] m = new double[6];
+        ai.a.toArray(m);
+        final double det = m[0] * m[3] - m[2] * m[1];
+        if (det == 0) {
+            LOG.warn("skipping triangle with non-invertible affine {}", ai.a);
+            return;
+        }
+        final double i00 = m[3] / det;
+        final double i01 = -m[2] / det;
+        final double i02 = (m[2] * m[5] - m[4] * m[3]) / det;
+        final double i10 = -m[1] / det;
+        final double i11 = m[0] / det;
+        final double i12 = (m[4] * m[1] - m[0] * m[5]) / det;
 
-        if (pixelMapper.isMappingInterpolated()) {
+        final boolean isMappingInterpolated = pixelMapper.isMappingInterpolated();
+        final int[] span = new int[2];
 
-            for (int targetY = minY; targetY <= maxY; ++targetY) {
-                for (int targetX = minX; targetX <= maxX; ++targetX) {
+        for (int targetY = minY; targetY <= maxY; ++targetY) {
 
-                    if (RenderTransformMesh.isInTargetTriangle(pq, targetX, targetY)) {
+            // pixels are inside when all edge tests agree, so there are (at most) two disjoint spans per row:
+            // one where every edge test is negative and one where every edge test is non-negative
+            for (final boolean negative : EDGE_SIGNS) {
 
-                        source[0] = targetX;
-                        source[1] = targetY;
+                if (findTargetSpan(pq, targetY, minX, maxX, negative, span)) {
 
-                        try {
-                            ai.a.applyInverseInPlace(source);
-                        } catch (final Exception e) {
-                            LOG.warn("ignoring exception", e);
-                            continue;
-                        }
+                    final double sourceX = span[0] * i00 + targetY * i01 + i02;
+                    final double sourceY = span[0] * i10 + targetY * i11 + i12;
 
-                        pixelMapper.mapInterpolated(source[0], source[1], targetX, targetY);
+                    if (isMappingInterpolated) {
+                        pixelMapper.mapInterpolatedSpan(sourceX, sourceY, i00, i10, span[0], span[1], targetY);
+                    } else {
+                        pixelMapper.mapSpan(sourceX, sourceY, i00, i10, span[0], span[1], targetY);
                     }
                 }
             }
+        }
+    }
 
-        } else {
+    /**
+     * Finds the span of target pixels in a row for which all three target triangle edge tests
+     * have the specified sign.  The tests are evaluated exactly as in
+     * {@link RenderTransformMesh#isInTargetTriangle(double[][], double, double)}, so the union of
+     * the negative and non-negative spans contains exactly the same pixels.
+     *
+     * @param  pq        triangle vertices.
+     * @param  targetY   row to rasterize.
+     * @param  minX      minimum x for span.
+     * @param  maxX      maximum x for span.
+     * @param  negative  desired edge test sign.
+     * @param  span      (output) inclusive minimum and maximum x for the span.
+     *
+     * @return true if the span contains at least one pixel; otherwise false.
+     */
+    static boolean findTargetSpan(final double[][] pq,
+                                  final int targetY,
+                                  final int minX,
+                                  final int maxX,
+                                  final boolean negative,
+                                  final int[] span) {
+
+        final double ax = pq[2][0];
+        final double ay = pq[3][0];
+        final double bx = pq[2][1];
+        final double by = pq[3][1];
+        final double cx = pq[2][2];
+        final double cy = pq[3][2];
+
+        span[0] = minX;
+        span[1] = maxX;
+
+        return (minX <= maxX) &&
+               clipSpanToEdge(bx - ax, by - ay, ax, ay, targetY, negative, span) &&
+               clipSpanToEdge(cx - bx, cy - by, bx, by, targetY, negative, span) &&
+               clipSpanToEdge(ax - cx, ay - cy, cx, cy, targetY, negative, span);
+    }
 
-            for (int targetY = minY; targetY <= maxY; ++targetY) {
-                for (int targetX = minX; targetX <= maxX; ++targetX) {
+    /**
+     * Clips a span to the pixels for which the specified edge test has the specified sign.
+     * Edge tests are monotonic in x, so the clipped span is always contiguous.
+     */
+    private static boolean clipSpanToEdge(final double x1,
+                                          final double y1,
+                                          final double startX,
+                                          final double startY,
+                                          final int targetY,
+                                          final boolean negative,
+                                          final int[] span) {
+
+        final int lo = span[0];
+        final int hi = span[1];
+
+        if (y1 == 0) {
+            // edge test is constant along the row
+            return isNegativeEdgeTest(x1, y1, startX, startY, lo, targetY) == negative;
+        }
 
-                    if (RenderTransformMesh.isInTargetTriangle(pq, targetX, targetY)) {
+        // edge test sign for x approaching negative infinity
+        final boolean leftSign = y1 < 0;
 
-                        source[0] = targetX;
-                        source[1] = targetY;
+        // estimate where the edge crosses the row and then correct for rounding by evaluating the actual test
+        final double crossingX = Math.ceil(startX + x1 * (targetY - startY) / y1);
+        int firstChange = Double.isNaN(crossingX) ? lo : (int) Math.min(hi + 1, Math.max(lo, crossingX));
+        while ((firstChange > lo) &&
+               (isNegativeEdgeTest(x1, y1, startX, startY, firstChange - 1, targetY) != leftSign)) {
+            firstChange--;
+        }
+        while ((firstChange <= hi) &&
+               (isNegativeEdgeTest(x1, y1, startX, startY, firstChange, targetY) == leftSign)) {
+            firstChange++;
+        }
 
-                        try {
-                            ai.a.applyInverseInPlace(source);
-                        } catch (final Exception e) {
-                            LOG.warn("ignoring exception", e);
-                            continue;
-                        }
+        if (negative == leftSign) {
+            span[1] = firstChange - 1;
+        } else {
+            span[0] = firstChange;
+        }
 
-                        pixelMapper.map(source[0], source[1], targetX, targetY);
-                    }
-                }
-            }
+        return span[0] <= span[1];
+    }
 
-        }
+    private static boolean isNegativeEdgeTest(final double x1,
+                                              final double y1,
+                                              final double startX,
+                                              final double startY,
+                                              final double tx,
+                                              final double ty) {
+        final double x2 = tx - startX;
+        final double y2 = ty - startY;
+        return x1 * y2 - y1 * x2 < 0;
     }
 
+    private static final boolean[] EDGE_SIGNS = { true, false };
+
     private static final Logger LOG = LoggerFactory.getLogger(RenderTransformMeshMappingWithMasks.class);
 }
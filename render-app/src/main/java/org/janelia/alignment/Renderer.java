@@ -29,6 +29,7 @@ import org.janelia.alignment.mipmap.AveragedChannelMipmapSource;
 import org.janelia.alignment.mipmap.MipmapSource;
 import org.janelia.alignment.mipmap.RenderedCanvasMipmapSource;
 import org.janelia.alignment.util.ImageProcessorCache;
+import org.janelia.alignment.util.RenderTransformMeshCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -55,21 +56,41 @@ public class Renderer {
          */
         BufferedImage convertProcessorWithMasksToImage(final RenderParameters renderParameters,
                                                        final ImageProcessorWithMasks renderedImageProcessorWithMasks);
+
+        /**
+         * Writes the rendered result (and any background or noise fill) directly into the target image's
+         * raster in one pass, avoiding intermediate image copies.
+         *
+         * @param  renderedImageProcessorWithMasks  the rendered result.
+         * @param  targetImage                      target for rendered result.
+         *
+         * @return true if the result was written; false if the target image is not supported
+         *         (in which case the {@link #convertProcessorWithMasksToImage converted} image is drawn instead).
+         */
+        default boolean writeProcessorWithMasksToImage(final RenderParameters renderParameters,
+                                                       final ImageProcessorWithMasks renderedImageProcessorWithMasks,
+                                                       final BufferedImage targetImage) {
+            return false;
+        }
     }
 
     private final RenderParameters renderParameters;
     private final ImageProcessorCache imageProcessorCache;
+    private final RenderTransformMeshCache meshCache;
 
     /**
      * Creates a renderer instance.
      *
      * @param  renderParameters     specifies what to render.
      * @param  imageProcessorCache  cache of source tile data.
+     * @param  meshCache            cache of source tile meshes (or null if meshes should not be cached).
      */
     private Renderer(final RenderParameters renderParameters,
-                     final ImageProcessorCache imageProcessorCache) {
+                     final ImageProcessorCache imageProcessorCache,
+                     final RenderTransformMeshCache meshCache) {
         this.renderParameters = renderParameters;
         this.imageProcessorCache = imageProcessorCache;
+        this.meshCache = meshCache;
     }
 
     /**
@@ -129,7 +150,7 @@ public class Renderer {
 
         if (renderParameters.numberOfTileSpecs() > 0) {
             final RenderedCanvasMipmapSource renderedCanvasMipmapSource =
-                    new RenderedCanvasMipmapSource(renderParameters, imageProcessorCache);
+                    new RenderedCanvasMipmapSource(renderParameters, imageProcessorCache, meshCache);
             canvasChannels = renderedCanvasMipmapSource.getChannels(0);
         } else {
             canvasChannels = new ChannelMap();
@@ -152,7 +173,7 @@ public class Renderer {
 
         if (renderParameters.numberOfTileSpecs() > 0) {
             final RenderedCanvasMipmapSource renderedCanvasMipmapSource =
-                    new RenderedCanvasMipmapSource(renderParameters, imageProcessorCache);
+                    new RenderedCanvasMipmapSource(renderParameters, imageProcessorCache, meshCache);
 
             final MipmapSource canvas;
             final Set<String> channelNames = renderParameters.getChannelNames();
@@ -198,38 +219,46 @@ public class Renderer {
 
         final long drawImageStart = System.currentTimeMillis();
 
+        boolean isWrittenDirectly = false;
+
         if (worldTarget != null) {
 
-            final Graphics2D targetGraphics = targetImage.createGraphics();
+            isWrittenDirectly = converter.writeProcessorWithMasksToImage(renderParameters, worldTarget, targetImage);
 
-            // TODO: see if there is a more efficient way to do the background fill and avoid redraw of image below
-            final Integer backgroundRGBColor = renderParameters.getBackgroundRGBColor();
-            if (backgroundRGBColor != null) {
+            if (! isWrittenDirectly) {
 
-                targetGraphics.setBackground(new Color(backgroundRGBColor));
-                targetGraphics.clearRect(0, 0, targetImage.getWidth(), targetImage.getHeight());
+                final Graphics2D targetGraphics = targetImage.createGraphics();
 
-            } else if (renderParameters.isFillWithNoise()) {
+                final Integer backgroundRGBColor = renderParameters.getBackgroundRGBColor();
+                if (backgroundRGBColor != null) {
 
-                final ByteProcessor ip = new ByteProcessor(targetImage.getWidth(), targetImage.getHeight());
-                mpicbg.ij.util.Util.fillWithNoise(ip);
-                targetGraphics.drawImage(ip.createImage(), 0, 0, null);
+                    targetGraphics.setBackground(new Color(backgroundRGBColor));
+                    targetGraphics.clearRect(0, 0, targetImage.getWidth(), targetImage.getHeight());
 
-            }
+                } else if (renderParameters.isFillWithNoise()) {
 
-            final BufferedImage image = converter.convertProcessorWithMasksToImage(renderParameters, worldTarget);
-            targetGraphics.drawImage(image, 0, 0, null);
+                    final ByteProcessor ip = new ByteProcessor(targetImage.getWidth(), targetImage.getHeight());
+                    mpicbg.ij.util.Util.fillWithNoise(ip);
+                    targetGraphics.drawImage(ip.createImage(), 0, 0, null);
 
-            targetGraphics.dispose();
+                }
+
+                final BufferedImage image = converter.convertProcessorWithMasksToImage(renderParameters, worldTarget);
+                targetGraphics.drawImage(image, 0, 0, null);
+
+                targetGraphics.dispose();
+            }
 
         }
 
         final long drawImageStop = System.currentTimeMillis();
 
-        LOG.debug("renderToBufferedImage: exit, {} tiles processed in {} milliseconds, draw image:{}",
+        LOG.debug("renderToBufferedImage: exit, {} tiles processed in {} milliseconds, draw image:{}, wrote directly to raster:{}, mapping pool stats:{}",
                   numberOfTileSpecs,
                   System.currentTimeMillis() - tileLoopStart,
-                  drawImageStop - drawImageStart);
+                  drawImageStop - drawImageStart,
+                  isWrittenDirectly,
+                  TriangleMappingPool.getSharedInstance().getStats());
     }
 
     /**
@@ -238,6 +267,7 @@ public class Renderer {
      * @param  renderParameters     specifies what to render.
      * @param  targetImage          target for rendered result.
      * @param  imageProcessorCache  cache of source tile data.
+     * @param  meshCache            cache of source tile meshes (or null if meshes should not be cached).
      * @param  converter            converts to the desired output type.
      *
      * @throws IllegalArgumentException
@@ -246,9 +276,10 @@ public class Renderer {
     static void renderToBufferedImage(final RenderParameters renderParameters,
                                       final BufferedImage targetImage,
                                       final ImageProcessorCache imageProcessorCache,
+                                      final RenderTransformMeshCache meshCache,
                                       final ProcessorWithMasksConverter converter)
             throws IllegalArgumentException {
-        final Renderer renderer = new Renderer(renderParameters, imageProcessorCache);
+        final Renderer renderer = new Renderer(renderParameters, imageProcessorCache, meshCache);
         renderer.renderToBufferedImage(converter, targetImage);
     }
 
@@ -270,7 +301,7 @@ public class Renderer {
         if (renderParameters.displayHelp()) {
             renderParameters.showUsage();
         } else {
-            final Renderer renderer = new Renderer(renderParameters, new ImageProcessorCache());
+            final Renderer renderer = new Renderer(renderParameters, new ImageProcessorCache(), null);
             renderer.validateRenderAndSaveImage(imageOpener, converter);
         }
     }
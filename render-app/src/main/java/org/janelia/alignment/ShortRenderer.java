@@ -16,14 +16,18 @@
  */
 package org.janelia.alignment;
 
+import ij.process.FloatProcessor;
 import ij.process.ShortProcessor;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferUShort;
 import java.awt.image.WritableRaster;
 
 import mpicbg.trakem2.transform.TransformMeshMappingWithMasks.ImageProcessorWithMasks;
 
 import org.janelia.alignment.util.ImageProcessorCache;
+import org.janelia.alignment.util.RenderTransformMeshCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -48,7 +52,26 @@ public class ShortRenderer {
                               final BufferedImage targetImage,
                               final ImageProcessorCache imageProcessorCache)
             throws IllegalArgumentException {
-        Renderer.renderToBufferedImage(renderParameters, targetImage, imageProcessorCache, CONVERTER);
+        render(renderParameters, targetImage, imageProcessorCache, null);
+    }
+
+    /**
+     * Constructs a renderer instance and renders to the specified image.
+     *
+     * @param  renderParameters     specifies what to render.
+     * @param  targetImage          target for rendered result.
+     * @param  imageProcessorCache  cache of source tile data.
+     * @param  meshCache            cache of source tile meshes (or null if meshes should not be cached).
+     *
+     * @throws IllegalArgumentException
+     *   if rendering fails for any reason.
+     */
+    public static void render(final RenderParameters renderParameters,
+                              final BufferedImage targetImage,
+                              final ImageProcessorCache imageProcessorCache,
+                              final RenderTransformMeshCache meshCache)
+            throws IllegalArgumentException {
+        Renderer.renderToBufferedImage(renderParameters, targetImage, imageProcessorCache, meshCache, CONVERTER);
     }
 
     /**
@@ -92,6 +115,87 @@ public class ShortRenderer {
         return image;
     }
 
+    /**
+     * Writes the processor directly into a 16-bit gray-scale target image's pixel array in one pass,
+     * producing the same result as drawing the {@link #targetToShortImage converted} image
+     * without creating any intermediate images.
+     * Since 16-bit gray-scale images are opaque, background and noise fills are always fully
+     * covered by the rendered result (as they are when the converted image is drawn) and are skipped.
+     *
+     * @param  renderedImageProcessorWithMasks  processor to write (must be a {@link FloatProcessor}).
+     * @param  targetImage                      target for rendered result.
+     *
+     * @return true if the processor was written; false if the processor or target image type is not supported.
+     */
+    public static boolean writeToShortImage(final ImageProcessorWithMasks renderedImageProcessorWithMasks,
+                                            final BufferedImage targetImage) {
+
+        final short[] targetPixels = getPackedShortPixels(targetImage);
+
+        if ((targetPixels == null) || (! (renderedImageProcessorWithMasks.ip instanceof FloatProcessor))) {
+            return false;
+        }
+
+        final FloatProcessor fp = (FloatProcessor) renderedImageProcessorWithMasks.ip;
+        final float[] renderedPixels = (float[]) fp.getPixels();
+        final int renderedWidth = fp.getWidth();
+
+        // same scaling as FloatProcessor.convertToShortProcessor
+        final double min = fp.getMin();
+        final double max = fp.getMax();
+        final double scale = ((max - min) == 0) ? 1.0 : 65535.0 / (max - min);
+
+        final int width = Math.min(renderedWidth, targetImage.getWidth());
+        final int height = Math.min(fp.getHeight(), targetImage.getHeight());
+        final int targetWidth = targetImage.getWidth();
+
+        for (int y = 0; y < height; y++) {
+            int renderedIndex = y * renderedWidth;
+            int targetIndex = y * targetWidth;
+            for (int x = 0; x < width; x++) {
+                double value = (renderedPixels[renderedIndex] - min) * scale;
+                if (value < 0) {
+                    value = 0;
+                }
+                if (value > 65535.0) {
+                    value = 65535.0;
+                }
+                targetPixels[targetIndex] = (short) ((int) (value + 0.5));
+                renderedIndex++;
+                targetIndex++;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return pixel array for the specified image if it is an unshared, tightly packed 16-bit gray-scale image;
+     *         otherwise null.
+     */
+    private static short[] getPackedShortPixels(final BufferedImage image) {
+
+        short[] pixels = null;
+
+        if (image.getType() == BufferedImage.TYPE_USHORT_GRAY) {
+            final WritableRaster raster = image.getRaster();
+            if ((raster.getParent() == null) &&
+                (raster.getSampleModel() instanceof ComponentSampleModel) &&
+                (raster.getDataBuffer() instanceof DataBufferUShort)) {
+                final ComponentSampleModel sampleModel = (ComponentSampleModel) raster.getSampleModel();
+                final DataBufferUShort dataBuffer = (DataBufferUShort) raster.getDataBuffer();
+                if ((sampleModel.getPixelStride() == 1) &&
+                    (sampleModel.getScanlineStride() == image.getWidth()) &&
+                    (dataBuffer.getNumBanks() == 1) &&
+                    (dataBuffer.getOffset() == 0)) {
+                    pixels = dataBuffer.getData();
+                }
+            }
+        }
+
+        return pixels;
+    }
+
     private static final Logger LOG = LoggerFactory.getLogger(ShortRenderer.class);
 
     private static final Renderer.ImageOpener OPENER = (renderParameters) -> {
@@ -102,5 +206,19 @@ public class ShortRenderer {
     };
 
     private static final Renderer.ProcessorWithMasksConverter CONVERTER =
-            (renderParameters, renderedImageProcessorWithMasks) -> targetToShortImage(renderedImageProcessorWithMasks);
+            new Renderer.ProcessorWithMasksConverter() {
+
+                @Override
+                public BufferedImage convertProcessorWithMasksToImage(final RenderParameters renderParameters,
+                                                                      final ImageProcessorWithMasks renderedImageProcessorWithMasks) {
+                    return targetToShortImage(renderedImageProcessorWithMasks);
+                }
+
+                @Override
+                public boolean writeProcessorWithMasksToImage(final RenderParameters renderParameters,
+                                                              final ImageProcessorWithMasks renderedImageProcessorWithMasks,
+                                                              final BufferedImage targetImage) {
+                    return writeToShortImage(renderedImageProcessorWithMasks, targetImage);
+                }
+            };
 }
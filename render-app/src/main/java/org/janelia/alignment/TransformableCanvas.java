@@ -4,6 +4,7 @@ import mpicbg.models.CoordinateTransform;
 import mpicbg.models.CoordinateTransformList;
 
 import org.janelia.alignment.mipmap.MipmapSource;
+import org.janelia.alignment.util.TransformKey;
 
 /**
  * Couples a {@link MipmapSource} with a {@link CoordinateTransformList list of transforms} for rendering.
@@ -14,11 +15,25 @@ public class TransformableCanvas {
 
     private final MipmapSource source;
     private final CoordinateTransformList<CoordinateTransform> transformList;
+    private final TransformKey transformKey;
 
     public TransformableCanvas(final MipmapSource source,
                                final CoordinateTransformList<CoordinateTransform> transformList) {
+        this(source, transformList, null);
+    }
+
+    /**
+     * @param  source         source to render.
+     * @param  transformList  full scale transforms for the source.
+     * @param  transformKey   identifies the transforms so that render meshes can be cached and shared
+     *                        (or null if meshes for this canvas should not be cached).
+     */
+    public TransformableCanvas(final MipmapSource source,
+                               final CoordinateTransformList<CoordinateTransform> transformList,
+                               final TransformKey transformKey) {
         this.source = source;
         this.transformList = transformList;
+        this.transformKey = transformKey;
     }
 
     public MipmapSource getSource() {
@@ -29,4 +44,8 @@ public class TransformableCanvas {
         return transformList;
     }
 
+    public TransformKey getTransformKey() {
+        return transformKey;
+    }
+
 }
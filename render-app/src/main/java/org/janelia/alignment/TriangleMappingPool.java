@@ -0,0 +1,312 @@
+package org.janelia.alignment;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Process-wide work-stealing pool for mapping mesh triangles.
+ *
+ * Triangles are split into contiguous batches that are forked as {@link RecursiveAction} tasks,
+ * so idle threads steal whole batches rather than competing for one triangle at a time.
+ * Sharing a single pool avoids creating and joining new threads for every mapped tile.
+ *
+ * The shared pool size defaults to the number of available processors but can be changed with the
+ * {@value #PARALLELISM_PROPERTY} system property or by calling {@link #setSharedParallelism}
+ * before the pool is first used.
+ *
+ * @author Eric Trautman
+ */
+public class TriangleMappingPool {
+
+    /** System property used to configure the shared pool size. */
+    public static final String PARALLELISM_PROPERTY = "render.triangleMappingThreads";
+
+    /** Smallest number of triangles mapped by one task. */
+    public static final int MIN_BATCH_SIZE = 8;
+
+    /** Number of batches to create for each requested thread so that work can be balanced by stealing. */
+    private static final int BATCHES_PER_THREAD = 4;
+
+    /**
+     * Mapping operation applied to each triangle in a batch.
+     *
+     * @param  <T>  triangle type.
+     */
+    public interface TriangleMapper<T> {
+        void mapTriangle(final T triangle);
+    }
+
+    private static int sharedParallelism = Integer.getInteger(PARALLELISM_PROPERTY,
+                                                              Runtime.getRuntime().availableProcessors());
+    private static TriangleMappingPool sharedInstance;
+
+    /**
+     * Sets the size of the shared pool.
+     *
+     * @param  parallelism  number of threads for the shared pool.
+     *
+     * @throws IllegalArgumentException
+     *   if the parallelism is not positive.
+     *
+     * @throws IllegalStateException
+     *   if the shared pool has already been created with a different size.
+     */
+    public static synchronized void setSharedParallelism(final int parallelism)
+            throws IllegalArgumentException, IllegalStateException {
+
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+
+        if ((sharedInstance != null) && (sharedInstance.getParallelism() != parallelism)) {
+            throw new IllegalStateException("shared pool already created with parallelism " +
+                                            sharedInstance.getParallelism());
+        }
+
+        sharedParallelism = parallelism;
+    }
+
+    /**
+     * @return the shared pool instance (created on first call).
+     */
+    public static synchronized TriangleMappingPool getSharedInstance() {
+        if (sharedInstance == null) {
+            sharedInstance = new TriangleMappingPool(sharedParallelism);
+            LOG.info("getSharedInstance: created pool with parallelism {}", sharedParallelism);
+        }
+        return sharedInstance;
+    }
+
+    private final ForkJoinPool pool;
+
+    private final AtomicLong mapCallCount;
+    private final AtomicLong parallelMapCallCount;
+    private final AtomicLong batchCount;
+    private final AtomicLong triangleCount;
+    private final AtomicLong busyNanoseconds;
+
+    /**
+     * Constructs a pool with the specified number of daemon worker threads.
+     *
+     * @param  parallelism  number of threads for the pool.
+     */
+    public TriangleMappingPool(final int parallelism) {
+
+        final AtomicInteger threadCount = new AtomicInteger(0);
+        final ForkJoinPool.ForkJoinWorkerThreadFactory threadFactory = p -> {
+            final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            thread.setName("triangle-mapping-" + threadCount.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+
+        this.pool = new ForkJoinPool(parallelism, threadFactory, null, false);
+
+        this.mapCallCount = new AtomicLong(0);
+        this.parallelMapCallCount = new AtomicLong(0);
+        this.batchCount = new AtomicLong(0);
+        this.triangleCount = new AtomicLong(0);
+        this.busyNanoseconds = new AtomicLong(0);
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * Maps the specified triangles.
+     * When the requested number of threads is greater than one, triangles are split into batches
+     * and mapped by this pool.  Otherwise, all triangles are mapped on the calling thread.
+     *
+     * @param  triangles   triangles to map.
+     * @param  mapper      mapping operation for each triangle.
+     * @param  numThreads  number of threads requested for mapping (used to size batches).
+     *
+     * @param  <T>  triangle type.
+     */
+    public <T> void map(final List<T> triangles,
+                        final TriangleMapper<T> mapper,
+                        final int numThreads) {
+
+        final int size = triangles.size();
+        final int batchSize = getBatchSize(size, numThreads);
+
+        mapCallCount.incrementAndGet();
+
+        if ((numThreads > 1) && (size > batchSize)) {
+
+            parallelMapCallCount.incrementAndGet();
+
+            final MapTrianglesAction<T> action = new MapTrianglesAction<>(triangles, mapper, 0, size, batchSize);
+            if (ForkJoinTask.inForkJoinPool() && (ForkJoinTask.getPool() == pool)) {
+                action.invoke(); // nested call from one of this pool's workers
+            } else {
+                pool.invoke(action);
+            }
+
+        } else {
+            mapBatch(triangles, mapper, 0, size);
+        }
+    }
+
+    /**
+     * @return current pool utilization metrics.
+     */
+    public Stats getStats() {
+        return new Stats(this);
+    }
+
+    @Override
+    public String toString() {
+        return "{parallelism: " + getParallelism() + ", stats: " + getStats() + '}';
+    }
+
+    private <T> void mapBatch(final List<T> triangles,
+                              final TriangleMapper<T> mapper,
+                              final int fromIndex,
+                              final int toIndex) {
+
+        final long start = System.nanoTime();
+
+        for (int i = fromIndex; i < toIndex; i++) {
+            mapper.mapTriangle(triangles.get(i));
+        }
+
+        busyNanoseconds.addAndGet(System.nanoTime() - start);
+        batchCount.incrementAndGet();
+        triangleCount.addAndGet(toIndex - fromIndex);
+    }
+
+    static int getBatchSize(final int numberOfTriangles,
+                            final int numThreads) {
+        final int numberOfBatches = Math.max(1, numThreads) * BATCHES_PER_THREAD;
+        return Math.max(MIN_BATCH_SIZE, (numberOfTriangles + numberOfBatches - 1) / numberOfBatches);
+    }
+
+    /**
+     * Recursively splits a range of triangles in half until the range fits within one batch.
+     */
+    private class MapTrianglesAction<T> extends RecursiveAction {
+
+        private final List<T> triangles;
+        private final TriangleMapper<T> mapper;
+        private final int fromIndex;
+        private final int toIndex;
+        private final int batchSize;
+
+        MapTrianglesAction(final List<T> triangles,
+                           final TriangleMapper<T> mapper,
+                           final int fromIndex,
+                           final int toIndex,
+                           final int batchSize) {
+            this.triangles = triangles;
+            this.mapper = mapper;
+            this.fromIndex = fromIndex;
+            this.toIndex = toIndex;
+            this.batchSize = batchSize;
+        }
+
+        @Override
+        protected void compute() {
+            if ((toIndex - fromIndex) <= batchSize) {
+                mapBatch(triangles, mapper, fromIndex, toIndex);
+            } else {
+                final int middleIndex = (fromIndex + toIndex) >>> 1;
+                invokeAll(new MapTrianglesAction<>(triangles, mapper, fromIndex, middleIndex, batchSize),
+                          new MapTrianglesAction<>(triangles, mapper, middleIndex, toIndex, batchSize));
+            }
+        }
+    }
+
+    /**
+     * Snapshot of pool utilization metrics.
+     */
+    public static class Stats {
+
+        private final int poolSize;
+        private final int activeThreadCount;
+        private final long queuedTaskCount;
+        private final long stealCount;
+        private final long mapCallCount;
+        private final long parallelMapCallCount;
+        private final long batchCount;
+        private final long triangleCount;
+        private final long busyMilliseconds;
+
+        private Stats(final TriangleMappingPool mappingPool) {
+            final ForkJoinPool pool = mappingPool.pool;
+            this.poolSize = pool.getPoolSize();
+            this.activeThreadCount = pool.getActiveThreadCount();
+            this.queuedTaskCount = pool.getQueuedTaskCount();
+            this.stealCount = pool.getStealCount();
+            this.mapCallCount = mappingPool.mapCallCount.get();
+            this.parallelMapCallCount = mappingPool.parallelMapCallCount.get();
+            this.batchCount = mappingPool.batchCount.get();
+            this.triangleCount = mappingPool.triangleCount.get();
+            this.busyMilliseconds = mappingPool.busyNanoseconds.get() / 1000000;
+        }
+
+        public int getPoolSize() {
+            return poolSize;
+        }
+
+        public int getActiveThreadCount() {
+            return activeThreadCount;
+        }
+
+        public long getQueuedTaskCount() {
+            return queuedTaskCount;
+        }
+
+        public long getStealCount() {
+            return stealCount;
+        }
+
+        public long getMapCallCount() {
+            return mapCallCount;
+        }
+
+        public long getParallelMapCallCount() {
+            return parallelMapCallCount;
+        }
+
+        public long getBatchCount() {
+            return batchCount;
+        }
+
+        public long getTriangleCount() {
+            return triangleCount;
+        }
+
+        /**
+         * @return total time (across all threads) spent mapping triangle batches.
+         */
+        public long getBusyMilliseconds() {
+            return busyMilliseconds;
+        }
+
+        @Override
+        public String toString() {
+            return "{poolSize: " + poolSize +
+                   ", activeThreadCount: " + activeThreadCount +
+                   ", queuedTaskCount: " + queuedTaskCount +
+                   ", stealCount: " + stealCount +
+                   ", mapCallCount: " + mapCallCount +
+                   ", parallelMapCallCount: " + parallelMapCallCount +
+                   ", batchCount: " + batchCount +
+                   ", triangleCount: " + triangleCount +
+                   ", busyMilliseconds: " + busyMilliseconds +
+                   '}';
+        }
+    }
+
+    private static final Logger LOG = LoggerFactory.getLogger(TriangleMappingPool.class);
+}
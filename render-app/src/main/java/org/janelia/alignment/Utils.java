@@ -34,6 +34,7 @@ import javax.imageio.ImageWriter;
 import javax.imageio.stream.FileImageOutputStream;
 import javax.imageio.stream.ImageOutputStream;
 
+import org.janelia.alignment.loader.RawImageFormat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -62,6 +63,7 @@ public class Utils {
     public static final String PNG_FORMAT = "png";
     public static final String TIFF_FORMAT = "tiff";
     public static final String TIF_FORMAT = "tif";
+    public static final String RAW_FORMAT = RawImageFormat.EXTENSION;
 
     private static final Logger LOG = LoggerFactory.getLogger(Utils.class);
 
@@ -92,7 +94,7 @@ public class Utils {
 
                 // TODO: make gray scale default if there is no need for RGB jpegs
                 BufferedImage convertedImage = image;
-                if (convertToGray) {
+                if (convertToGray && (image.getType() != BufferedImage.TYPE_BYTE_GRAY)) {
                     convertedImage = new BufferedImage(image.getWidth(),
                                                        image.getHeight(),
                                                        BufferedImage.TYPE_BYTE_GRAY);
@@ -106,7 +108,7 @@ public class Utils {
                     param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
                     param.setCompressionQuality(quality);
 
-                    if (! convertToGray) {
+                    if ((! convertToGray) && (image.getType() != BufferedImage.TYPE_INT_RGB)) {
                         // Fixed JPG saving through converting INT_ARGB to INT_RGB.
                         // Previously, JPGs ended up being saved as four channel CMYKs.
                         // Now, conversion goes through drawing the INT_ARGB image
@@ -181,6 +183,12 @@ public class Utils {
                 writeTiffImage(image, outputStream);
             }
 
+        } else if (RAW_FORMAT.equals(format)) {
+
+            try (final FileOutputStream outputStream = new FileOutputStream(file)) {
+                RawImageFormat.write(new ImagePlus("", image).getProcessor(), null, outputStream);
+            }
+
         } else {
 
             try (final FileImageOutputStream outputStream = new FileImageOutputStream(file)) {
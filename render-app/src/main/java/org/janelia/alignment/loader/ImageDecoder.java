@@ -0,0 +1,87 @@
+package org.janelia.alignment.loader;
+
+import ij.process.ImageProcessor;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Set;
+
+import org.janelia.alignment.protocol.s3.SharedS3Client;
+
+/**
+ * Decodes encoded images directly into {@link ImageProcessor} pixel arrays
+ * (without intermediate AWT images or {@link ij.ImagePlus} instances).
+ *
+ * Decoders only need to handle the pixel types that are common for render sources
+ * (e.g. 8-bit and 16-bit gray-scale).  They should return null for anything else
+ * so that callers can fall back to a general purpose loader.
+ *
+ * Implementations must be thread safe since a single instance is shared by all loading threads.
+ *
+ * @author Eric Trautman
+ */
+public interface ImageDecoder {
+
+    /**
+     * @return lower case file name extensions (without dots) for the formats this decoder reads.
+     */
+    Set<String> getExtensions();
+
+    /**
+     * Decodes the image at the specified url.
+     * By default, the url's stream is opened (with the {@link SharedS3Client shared client} for s3:// urls)
+     * and passed to {@link #decode(InputStream)}.
+     * Decoders can override this method to use more efficient access methods for specific protocols.
+     *
+     * @param  url  url for the image.
+     *
+     * @return processor containing the decoded pixels or null if the image's pixel type is not supported.
+     *
+     * @throws IOException
+     *   if the image cannot be read.
+     */
+    default ImageProcessor decode(final String url)
+            throws IOException {
+        try (final InputStream inputStream = SharedS3Client.getUrl(url).openStream()) {
+            return decode(inputStream);
+        }
+    }
+
+    /**
+     * Decodes an image that has already been read into memory.
+     * By default, the bytes are wrapped in a stream and passed to {@link #decode(InputStream)}.
+     * Decoders that buffer encoded images themselves should override this method to use the bytes directly.
+     *
+     * @param  encodedBytes  the encoded image.
+     *
+     * @return processor containing the decoded pixels or null if the image's pixel type is not supported.
+     *
+     * @throws IOException
+     *   if the image cannot be decoded.
+     */
+    default ImageProcessor decode(final byte[] encodedBytes)
+            throws IOException {
+        return decode(new ByteArrayInputStream(encodedBytes));
+    }
+
+    /**
+     * @return true if this decoder never returns null (so callers never need to fall back to another loader).
+     */
+    default boolean supportsAllPixelTypes() {
+        return false;
+    }
+
+    /**
+     * @param  inputStream  stream positioned at the start of the encoded image.
+     *                      Callers are responsible for closing the stream.
+     *
+     * @return processor containing the decoded pixels or null if the image's pixel type is not supported.
+     *
+     * @throws IOException
+     *   if the image cannot be read.
+     */
+    ImageProcessor decode(final InputStream inputStream)
+            throws IOException;
+
+}
@@ -0,0 +1,211 @@
+package org.janelia.alignment.loader;
+
+import ij.process.ImageProcessor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.janelia.alignment.protocol.s3.SharedS3Client;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Maps image file name extensions to the {@link ImageDecoder} instances that read them.
+ *
+ * The {@link #DEFAULT_INSTANCE default registry} decodes gray-scale PNG, JPEG, and TIFF images
+ * as well as {@link RawImageFormat raw} images.
+ * It can be disabled (so that all images are loaded by the general purpose ImageJ opener)
+ * by setting the {@value #DISABLE_PROPERTY} system property to true.
+ *
+ * @author Eric Trautman
+ */
+public class ImageDecoderRegistry {
+
+    /** Name of system property that disables the default registry when set to true. */
+    public static final String DISABLE_PROPERTY = "render.disableImageDecoders";
+
+    /** Shared registry with decoders for gray-scale PNG, JPEG, and TIFF images and for raw images. */
+    public static final ImageDecoderRegistry DEFAULT_INSTANCE = buildDefaultInstance();
+
+    private final List<ImageDecoder> decoders;
+
+    public ImageDecoderRegistry() {
+        this.decoders = new ArrayList<>();
+    }
+
+    /**
+     * Registers the specified decoder.
+     * Decoders registered later take precedence over earlier ones for the same extension.
+     */
+    public synchronized void register(final ImageDecoder decoder) {
+        decoders.add(0, decoder);
+    }
+
+    /**
+     * @return the decoder for the specified url's file name extension or null if none has been registered.
+     */
+    public synchronized ImageDecoder getDecoder(final String url) {
+        ImageDecoder decoder = null;
+        final String extension = getExtension(url);
+        if (extension != null) {
+            for (final ImageDecoder registeredDecoder : decoders) {
+                if (registeredDecoder.getExtensions().contains(extension)) {
+                    decoder = registeredDecoder;
+                    break;
+                }
+            }
+        }
+        return decoder;
+    }
+
+    /**
+     * Decodes the image at the specified url if possible.
+     *
+     * The image is NOT decoded (and null is returned) if no decoder has been registered for the url's extension
+     * or if the registered decoder does not support the image's pixel type.
+     * Callers that fall back to another loader in the last case should use
+     * {@link #decode(String, FallbackLoader)} so that the image is only read once.
+     *
+     * @param  url  url for the image.
+     *
+     * @return processor containing the decoded pixels or null if the image was not decoded.
+     *
+     * @throws IOException
+     *   if the image cannot be read.
+     */
+    public ImageProcessor decode(final String url)
+            throws IOException {
+
+        ImageProcessor imageProcessor = null;
+
+        final ImageDecoder decoder = getDecoder(url);
+        if (decoder != null) {
+            imageProcessor = decoder.decode(url);
+            if ((imageProcessor == null) && LOG.isDebugEnabled()) {
+                LOG.debug("decode: {} does not support pixel type of {}", decoder.getClass().getSimpleName(), url);
+            }
+        }
+
+        return imageProcessor;
+    }
+
+    /**
+     * Decodes the image at the specified url if possible and otherwise loads it with the specified fallback loader.
+     *
+     * When the registered decoder might not support the image's pixel type, remote (non file:) images are
+     * read into memory once and the same bytes are passed to the fallback loader if the decoder rejects them.
+     * This avoids a second (e.g. S3 GET) request for unsupported images.
+     * Local files are simply re-read by the fallback loader since that is cheap.
+     *
+     * @param  url             url for the image.
+     * @param  fallbackLoader  loads images that are not decoded.
+     *
+     * @return processor for the image.
+     *
+     * @throws IOException
+     *   if the image cannot be read.
+     */
+    public ImageProcessor decode(final String url,
+                                 final FallbackLoader fallbackLoader)
+            throws IOException {
+
+        ImageProcessor imageProcessor = null;
+        byte[] encodedBytes = null;
+
+        final ImageDecoder decoder = getDecoder(url);
+        if (decoder != null) {
+            if (decoder.supportsAllPixelTypes() || url.startsWith("file:")) {
+                imageProcessor = decoder.decode(url);
+            } else {
+                try (final InputStream inputStream = SharedS3Client.getUrl(url).openStream()) {
+                    encodedBytes = readAllBytes(inputStream);
+                }
+                imageProcessor = decoder.decode(encodedBytes);
+            }
+            if ((imageProcessor == null) && LOG.isDebugEnabled()) {
+                LOG.debug("decode: {} does not support pixel type of {}", decoder.getClass().getSimpleName(), url);
+            }
+        }
+
+        if (imageProcessor == null) {
+            imageProcessor = fallbackLoader.load(url, encodedBytes);
+        }
+
+        return imageProcessor;
+    }
+
+    /**
+     * @return the lower case file name extension for the specified url (ignoring any query or fragment)
+     *         or null if the url's file name does not have an extension.
+     */
+    public static String getExtension(final String url) {
+        int end = url.length();
+        final int queryStart = url.indexOf('?');
+        if (queryStart > -1) {
+            end = queryStart;
+        }
+        final int fragmentStart = url.indexOf('#');
+        if ((fragmentStart > -1) && (fragmentStart < end)) {
+            end = fragmentStart;
+        }
+        final int dot = url.lastIndexOf('.', end - 1);
+        final int slash = url.lastIndexOf('/', end - 1);
+        String extension = null;
+        if ((dot > slash) && (dot < end - 1)) {
+            extension = url.substring(dot + 1, end).toLowerCase(Locale.US);
+        }
+        return extension;
+    }
+
+    /**
+     * @return all remaining bytes from the specified stream.
+     */
+    static byte[] readAllBytes(final InputStream inputStream)
+            throws IOException {
+        // available is a good size estimate for local files and simply a lower bound for other streams
+        final int initialSize = Math.max(inputStream.available() + 1, 64 * 1024);
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(initialSize);
+        final byte[] buffer = new byte[64 * 1024];
+        for (int count = inputStream.read(buffer); count != -1; count = inputStream.read(buffer)) {
+            outputStream.write(buffer, 0, count);
+        }
+        return outputStream.toByteArray();
+    }
+
+    private static ImageDecoderRegistry buildDefaultInstance() {
+        final ImageDecoderRegistry registry = new ImageDecoderRegistry();
+        if (! Boolean.getBoolean(DISABLE_PROPERTY)) {
+            registry.register(new TiffImageDecoder());
+            registry.register(new JpegImageDecoder());
+            registry.register(new PngImageDecoder());
+            registry.register(new RawImageDecoder());
+        }
+        return registry;
+    }
+
+    /**
+     * Loads images that are not decoded by a registered decoder.
+     */
+    public interface FallbackLoader {
+
+        /**
+         * @param  url           url for the image.
+         * @param  encodedBytes  the encoded image if it has already been read or null if it has not been read.
+         *
+         * @return processor for the image.
+         *
+         * @throws IOException
+         *   if the image cannot be read.
+         */
+        ImageProcessor load(final String url,
+                            final byte[] encodedBytes)
+                throws IOException;
+    }
+
+    private static final Logger LOG = LoggerFactory.getLogger(ImageDecoderRegistry.class);
+
+}
@@ -0,0 +1,109 @@
+package org.janelia.alignment.loader;
+
+import ij.process.ByteProcessor;
+import ij.process.ImageProcessor;
+
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.Raster;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * Decodes 8-bit gray-scale JPEG images by reading their raw raster with ImageIO.
+ * The raster's data buffer becomes the processor's pixel array, so no pixels are copied
+ * (unlike the AWT Toolkit approach used by ImageJ which decodes into an RGB image first).
+ *
+ * @author Eric Trautman
+ */
+public class JpegImageDecoder
+        implements ImageDecoder {
+
+    private static final Set<String> EXTENSIONS = new HashSet<>(Arrays.asList("jpg", "jpeg"));
+
+    @Override
+    public Set<String> getExtensions() {
+        return EXTENSIONS;
+    }
+
+    @Override
+    public ImageProcessor decode(final InputStream inputStream)
+            throws IOException {
+
+        ImageProcessor imageProcessor = null;
+
+        final ImageReader reader = getReader();
+        try (final ImageInputStream imageInputStream = ImageIO.createImageInputStream(inputStream)) {
+
+            reader.setInput(imageInputStream, true, true);
+
+            final ImageTypeSpecifier rawImageType = reader.getRawImageType(0);
+            if ((rawImageType != null) &&
+                (rawImageType.getNumBands() == 1) &&
+                (rawImageType.getSampleModel().getSampleSize(0) == 8)) {
+
+                final Raster raster = reader.readRaster(0, null);
+                imageProcessor = new ByteProcessor(raster.getWidth(), raster.getHeight(), getPixels(raster), null);
+            }
+
+        } finally {
+            reader.dispose();
+        }
+
+        return imageProcessor;
+    }
+
+    private static ImageReader getReader()
+            throws IOException {
+        final Iterator<ImageReader> readers = ImageIO.getImageReadersByFormatName("jpeg");
+        while (readers.hasNext()) {
+            final ImageReader reader = readers.next();
+            if (reader.canReadRaster()) {
+                return reader;
+            }
+            reader.dispose();
+        }
+        throw new IOException("no raster capable ImageIO JPEG reader is available");
+    }
+
+    /**
+     * @return the raster's backing array if it has the same layout as a processor pixel array,
+     *         otherwise a packed copy of the raster's samples.
+     */
+    private static byte[] getPixels(final Raster raster) {
+
+        final int width = raster.getWidth();
+        final int height = raster.getHeight();
+
+        if ((raster.getDataBuffer() instanceof DataBufferByte) &&
+            (raster.getSampleModel() instanceof ComponentSampleModel) &&
+            (raster.getParent() == null)) {
+
+            final DataBufferByte dataBuffer = (DataBufferByte) raster.getDataBuffer();
+            final ComponentSampleModel sampleModel = (ComponentSampleModel) raster.getSampleModel();
+            final byte[] data = dataBuffer.getData();
+
+            if ((dataBuffer.getNumBanks() == 1) &&
+                (dataBuffer.getOffset() == 0) &&
+                (sampleModel.getPixelStride() == 1) &&
+                (sampleModel.getScanlineStride() == width) &&
+                (data.length == width * height)) {
+                return data;
+            }
+        }
+
+        final byte[] pixels = new byte[width * height];
+        raster.getDataElements(raster.getMinX(), raster.getMinY(), width, height, pixels);
+        return pixels;
+    }
+
+}
@@ -0,0 +1,80 @@
+package org.janelia.alignment.loader;
+
+import ij.process.ByteProcessor;
+import ij.process.ImageProcessor;
+import ij.process.ShortProcessor;
+
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Set;
+
+import ar.com.hjg.pngj.ImageInfo;
+import ar.com.hjg.pngj.ImageLineByte;
+import ar.com.hjg.pngj.PngReaderByte;
+
+/**
+ * Decodes 8-bit and 16-bit gray-scale PNG images row by row with the PNGJ library,
+ * copying each row directly into the processor's pixel array.
+ *
+ * @author Eric Trautman
+ */
+public class PngImageDecoder
+        implements ImageDecoder {
+
+    @Override
+    public Set<String> getExtensions() {
+        return Collections.singleton("png");
+    }
+
+    @Override
+    public ImageProcessor decode(final InputStream inputStream) {
+
+        final PngReaderByte reader = new PngReaderByte(inputStream);
+        reader.setShouldCloseStream(false);
+
+        try {
+
+            final ImageInfo info = reader.imgInfo;
+            if ((! info.greyscale) || info.alpha || info.indexed || (info.channels != 1) ||
+                ((info.bitDepth != 8) && (info.bitDepth != 16))) {
+                return null;
+            }
+
+            final int width = info.cols;
+            final int height = info.rows;
+            final ImageProcessor imageProcessor;
+
+            if (info.bitDepth == 8) {
+
+                final byte[] pixels = new byte[width * height];
+                for (int row = 0; row < height; row++) {
+                    final ImageLineByte line = reader.readRowByte();
+                    System.arraycopy(line.getScanlineByte(), 0, pixels, row * width, width);
+                }
+                imageProcessor = new ByteProcessor(width, height, pixels, null);
+
+            } else {
+
+                // PNGJ keeps the high and low bytes of 16-bit samples in separate arrays
+                final short[] pixels = new short[width * height];
+                for (int row = 0; row < height; row++) {
+                    final ImageLineByte line = reader.readRowByte();
+                    final byte[] highBytes = line.getScanlineByte();
+                    final byte[] lowBytes = line.getScanlineByte2();
+                    for (int x = 0, i = row * width; x < width; x++, i++) {
+                        pixels[i] = (short) (((highBytes[x] & 0xff) << 8) | (lowBytes[x] & 0xff));
+                    }
+                }
+                imageProcessor = new ShortProcessor(width, height, pixels, null);
+            }
+
+            reader.end();
+
+            return imageProcessor;
+
+        } finally {
+            reader.close();
+        }
+    }
+
+}
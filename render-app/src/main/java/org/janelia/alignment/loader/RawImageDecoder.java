@@ -0,0 +1,69 @@
+package org.janelia.alignment.loader;
+
+import ij.process.ImageProcessor;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Set;
+
+import org.janelia.alignment.Utils;
+
+/**
+ * Reads the image plane of {@link RawImageFormat raw} images.
+ *
+ * Local files are memory-mapped, so loading them costs page faults (or page cache copies)
+ * instead of decoding work.  Images from other sources are read from their streams.
+ *
+ * @author Eric Trautman
+ */
+public class RawImageDecoder
+        implements ImageDecoder {
+
+    @Override
+    public Set<String> getExtensions() {
+        return Collections.singleton(RawImageFormat.EXTENSION);
+    }
+
+    @Override
+    public boolean supportsAllPixelTypes() {
+        return true;
+    }
+
+    @Override
+    public ImageProcessor decode(final String url)
+            throws IOException {
+
+        final ImageProcessor imageProcessor;
+        if (url.startsWith("file:")) {
+            final URI uri = Utils.convertPathOrUriStringToUri(url);
+            imageProcessor = RawImageFormat.readImage(RawImageFormat.map(new File(uri.getPath())));
+        } else {
+            imageProcessor = ImageDecoder.super.decode(url);
+        }
+        return imageProcessor;
+    }
+
+    @Override
+    public ImageProcessor decode(final InputStream inputStream)
+            throws IOException {
+
+        final DataInputStream dataInputStream = new DataInputStream(inputStream);
+
+        final byte[] headerBytes = new byte[RawImageFormat.HEADER_LENGTH];
+        dataInputStream.readFully(headerBytes);
+        final RawImageFormat.Header header = RawImageFormat.readHeader(ByteBuffer.wrap(headerBytes));
+
+        // mask planes are not needed here, so only read through the end of the image plane
+        final byte[] bytes = new byte[(int) header.getMaskPlaneOffset()];
+        System.arraycopy(headerBytes, 0, bytes, 0, headerBytes.length);
+        dataInputStream.readFully(bytes, headerBytes.length, bytes.length - headerBytes.length);
+
+        return RawImageFormat.readImage(ByteBuffer.wrap(bytes));
+    }
+
+}
@@ -0,0 +1,366 @@
+package org.janelia.alignment.loader;
+
+import ij.process.ByteProcessor;
+import ij.process.ColorProcessor;
+import ij.process.FloatProcessor;
+import ij.process.ImageProcessor;
+import ij.process.ShortProcessor;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Simple uncompressed container for tile (mipmap) pixels that can be memory-mapped and copied
+ * straight into processor pixel arrays without any codec work.
+ *
+ * <p>
+ *     Raw images consist of a fixed {@value #HEADER_LENGTH} byte header followed by the image plane
+ *     (row-major pixels) and an optional 8-bit mask plane with the same dimensions.
+ *     All values are little-endian.  The header contains:
+ * </p>
+ *
+ * <pre>
+ *     offset  size  value
+ *     ------  ----  -----------------------------------------------
+ *          0     4  magic number (ASCII "RWTL")
+ *          4     4  format version (currently 1)
+ *          8     4  width
+ *         12     4  height
+ *         16     4  bit depth (8 gray, 16 gray, 24 RGB, or 32 float)
+ *         20     4  1 if a mask plane follows the image plane, otherwise 0
+ *         24     8  reserved (zero)
+ * </pre>
+ *
+ * @author Eric Trautman
+ */
+public class RawImageFormat {
+
+    /** File name extension (and format name) for raw images. */
+    public static final String EXTENSION = "raw";
+
+    /** Length (in bytes) of the header that precedes the pixel planes. */
+    public static final int HEADER_LENGTH = 32;
+
+    private static final int MAGIC_NUMBER = 0x4c545752; // "RWTL" when written little-endian
+    private static final int VERSION = 1;
+
+    /** Maximum number of pixel bytes buffered at once when writing. */
+    private static final int WRITE_BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * Parsed header information for a raw image.
+     */
+    public static class Header {
+
+        private final int width;
+        private final int height;
+        private final int bitDepth;
+        private final boolean hasMask;
+
+        public Header(final int width,
+                      final int height,
+                      final int bitDepth,
+                      final boolean hasMask)
+                throws IllegalArgumentException {
+
+            if ((width < 0) || (height < 0)) {
+                throw new IllegalArgumentException("invalid raw image dimensions " + width + "x" + height);
+            }
+            getBytesPerPixel(bitDepth);
+
+            this.width = width;
+            this.height = height;
+            this.bitDepth = bitDepth;
+            this.hasMask = hasMask;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        public int getBitDepth() {
+            return bitDepth;
+        }
+
+        public boolean hasMask() {
+            return hasMask;
+        }
+
+        public long getImagePlaneLength() {
+            return (long) width * height * getBytesPerPixel(bitDepth);
+        }
+
+        public long getMaskPlaneOffset() {
+            return HEADER_LENGTH + getImagePlaneLength();
+        }
+
+        public long getTotalLength() {
+            long length = getMaskPlaneOffset();
+            if (hasMask) {
+                length += (long) width * height;
+            }
+            return length;
+        }
+
+        private void write(final ByteBuffer buffer) {
+            buffer.putInt(MAGIC_NUMBER);
+            buffer.putInt(VERSION);
+            buffer.putInt(width);
+            buffer.putInt(height);
+            buffer.putInt(bitDepth);
+            buffer.putInt(hasMask ? 1 : 0);
+            buffer.putLong(0);
+        }
+
+        @Override
+        public String toString() {
+            return "{width: " + width + ", height: " + height + ", bitDepth: " + bitDepth + ", hasMask: " + hasMask + '}';
+        }
+    }
+
+    /**
+     * Writes the specified image (and optional mask) to the specified stream in raw format.
+     *
+     * @param  image         image to write.
+     * @param  mask          mask to write (or null if there is no mask).
+     * @param  outputStream  target stream (will not be closed).
+     *
+     * @throws IllegalArgumentException
+     *   if the image type is not supported or the mask dimensions differ from the image dimensions.
+     *
+     * @throws IOException
+     *   if the image cannot be written.
+     */
+    public static void write(final ImageProcessor image,
+                             final ImageProcessor mask,
+                             final OutputStream outputStream)
+            throws IllegalArgumentException, IOException {
+
+        final Header header = new Header(image.getWidth(), image.getHeight(), image.getBitDepth(), mask != null);
+
+        byte[] maskPixels = null;
+        if (mask != null) {
+            if ((mask.getWidth() != image.getWidth()) || (mask.getHeight() != image.getHeight())) {
+                throw new IllegalArgumentException(
+                        "mask dimensions (" + mask.getWidth() + "x" + mask.getHeight() +
+                        ") differ from image dimensions (" + image.getWidth() + "x" + image.getHeight() + ")");
+            }
+            maskPixels = (byte[]) mask.convertToByteProcessor(false).getPixels();
+        }
+
+        final WritableByteChannel channel = Channels.newChannel(outputStream);
+        final int bytesPerPixel = getBytesPerPixel(header.bitDepth);
+        final int pixelCount = header.width * header.height;
+        final int pixelsPerWrite = Math.max(1, Math.min(pixelCount, WRITE_BUFFER_SIZE / bytesPerPixel));
+        final ByteBuffer buffer = ByteBuffer.allocate(Math.max(HEADER_LENGTH, pixelsPerWrite * bytesPerPixel));
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        header.write(buffer);
+        writeBuffer(buffer, channel);
+
+        final Object pixels = image.getPixels();
+        for (int offset = 0; offset < pixelCount; offset += pixelsPerWrite) {
+            final int length = Math.min(pixelsPerWrite, pixelCount - offset);
+            switch (header.bitDepth) {
+                case 8:  buffer.put((byte[]) pixels, offset, length); break;
+                case 16: buffer.asShortBuffer().put((short[]) pixels, offset, length); break;
+                case 24: buffer.asIntBuffer().put((int[]) pixels, offset, length); break;
+                default: buffer.asFloatBuffer().put((float[]) pixels, offset, length); break;
+            }
+            // views share content but not position with the buffer, so set the position explicitly
+            buffer.position(length * bytesPerPixel);
+            writeBuffer(buffer, channel);
+        }
+
+        if (maskPixels != null) {
+            for (int offset = 0; offset < pixelCount; offset += buffer.capacity()) {
+                buffer.put(maskPixels, offset, Math.min(buffer.capacity(), pixelCount - offset));
+                writeBuffer(buffer, channel);
+            }
+        }
+
+        outputStream.flush();
+    }
+
+    /**
+     * Maps the specified raw image file into memory.
+     * The mapping remains valid after this method returns (until the buffer is garbage collected).
+     *
+     * @return little-endian buffer for the entire file.
+     *
+     * @throws IOException
+     *   if the file cannot be mapped.
+     */
+    public static ByteBuffer map(final File file)
+            throws IOException {
+        final MappedByteBuffer buffer;
+        try (final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+
+    /**
+     * @param  buffer  buffer containing at least {@link #HEADER_LENGTH} bytes starting at position zero.
+     *
+     * @return the header parsed from the buffer.
+     *
+     * @throws IOException
+     *   if the buffer does not contain a valid raw image header.
+     */
+    public static Header readHeader(final ByteBuffer buffer)
+            throws IOException {
+
+        if (buffer.limit() < HEADER_LENGTH) {
+            throw new IOException("raw image header is truncated");
+        }
+
+        final ByteBuffer littleEndianBuffer = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+
+        if (littleEndianBuffer.getInt(0) != MAGIC_NUMBER) {
+            throw new IOException("raw image header does not start with the expected magic number");
+        }
+
+        final int version = littleEndianBuffer.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("raw image format version " + version + " is not supported");
+        }
+
+        final Header header;
+        try {
+            header = new Header(littleEndianBuffer.getInt(8),
+                                littleEndianBuffer.getInt(12),
+                                littleEndianBuffer.getInt(16),
+                                littleEndianBuffer.getInt(20) != 0);
+        } catch (final IllegalArgumentException e) {
+            throw new IOException("invalid raw image header", e);
+        }
+
+        return header;
+    }
+
+    /**
+     * @param  buffer  buffer containing a raw image starting at position zero
+     *                 (the mask plane may be omitted).
+     *
+     * @return processor with a copy of the buffer's image plane.
+     *
+     * @throws IOException
+     *   if the buffer does not contain a valid raw image.
+     */
+    public static ImageProcessor readImage(final ByteBuffer buffer)
+            throws IOException {
+
+        final Header header = readHeader(buffer);
+        final ByteBuffer imagePlane = getPlane(buffer, header, HEADER_LENGTH, header.getImagePlaneLength());
+
+        final int width = header.width;
+        final int height = header.height;
+        final int pixelCount = width * height;
+        final ImageProcessor imageProcessor;
+
+        switch (header.bitDepth) {
+            case 8:
+                final byte[] bytePixels = new byte[pixelCount];
+                imagePlane.get(bytePixels);
+                imageProcessor = new ByteProcessor(width, height, bytePixels, null);
+                break;
+            case 16:
+                final short[] shortPixels = new short[pixelCount];
+                imagePlane.asShortBuffer().get(shortPixels);
+                imageProcessor = new ShortProcessor(width, height, shortPixels, null);
+                break;
+            case 24:
+                final int[] rgbPixels = new int[pixelCount];
+                imagePlane.asIntBuffer().get(rgbPixels);
+                imageProcessor = new ColorProcessor(width, height, rgbPixels);
+                break;
+            default:
+                final float[] floatPixels = new float[pixelCount];
+                imagePlane.asFloatBuffer().get(floatPixels);
+                imageProcessor = new FloatProcessor(width, height, floatPixels, null);
+                break;
+        }
+
+        return imageProcessor;
+    }
+
+    /**
+     * @param  buffer  buffer containing an entire raw image starting at position zero.
+     *
+     * @return processor with a copy of the buffer's mask plane or null if the image does not have a mask.
+     *
+     * @throws IOException
+     *   if the buffer does not contain a valid raw image.
+     */
+    public static ByteProcessor readMask(final ByteBuffer buffer)
+            throws IOException {
+
+        final Header header = readHeader(buffer);
+
+        ByteProcessor maskProcessor = null;
+        if (header.hasMask) {
+            final long maskLength = (long) header.width * header.height;
+            final ByteBuffer maskPlane = getPlane(buffer, header, header.getMaskPlaneOffset(), maskLength);
+            final byte[] pixels = new byte[(int) maskLength];
+            maskPlane.get(pixels);
+            maskProcessor = new ByteProcessor(header.width, header.height, pixels, null);
+        }
+
+        return maskProcessor;
+    }
+
+    private static ByteBuffer getPlane(final ByteBuffer buffer,
+                                       final Header header,
+                                       final long offset,
+                                       final long length)
+            throws IOException {
+
+        if (buffer.limit() < (offset + length)) {
+            throw new IOException("raw image with header " + header + " is truncated, expected at least " +
+                                  (offset + length) + " bytes but found " + buffer.limit());
+        }
+
+        final ByteBuffer plane = buffer.duplicate();
+        plane.position((int) offset);
+        plane.limit((int) (offset + length));
+        return plane.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static int getBytesPerPixel(final int bitDepth)
+            throws IllegalArgumentException {
+        final int bytesPerPixel;
+        switch (bitDepth) {
+            case 8:  bytesPerPixel = 1; break;
+            case 16: bytesPerPixel = 2; break;
+            case 24: bytesPerPixel = 4; break;
+            case 32: bytesPerPixel = 4; break;
+            default: throw new IllegalArgumentException("raw images with bit depth " + bitDepth + " are not supported");
+        }
+        return bytesPerPixel;
+    }
+
+    private static void writeBuffer(final ByteBuffer buffer,
+                                    final WritableByteChannel channel)
+            throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+}
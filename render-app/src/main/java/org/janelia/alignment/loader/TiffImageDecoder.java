@@ -0,0 +1,91 @@
+package org.janelia.alignment.loader;
+
+import ij.io.FileInfo;
+import ij.io.ImageReader;
+import ij.io.TiffDecoder;
+import ij.process.ByteProcessor;
+import ij.process.FloatProcessor;
+import ij.process.ImageProcessor;
+import ij.process.ShortProcessor;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Decodes single image 8-bit, 16-bit (unsigned), and 32-bit (float) gray-scale TIFF images
+ * with ImageJ's low level TIFF classes, reading pixels straight into the processor's pixel array
+ * without building an {@link ij.ImagePlus}.
+ *
+ * TIFF directories can be anywhere in a file, so the encoded image is buffered in memory before it is decoded
+ * (ImageJ does the same thing when it opens TIFF streams).
+ *
+ * @author Eric Trautman
+ */
+public class TiffImageDecoder
+        implements ImageDecoder {
+
+    private static final Set<String> EXTENSIONS = new HashSet<>(Arrays.asList("tif", "tiff"));
+
+    @Override
+    public Set<String> getExtensions() {
+        return EXTENSIONS;
+    }
+
+    @Override
+    public ImageProcessor decode(final InputStream inputStream)
+            throws IOException {
+        return decode(ImageDecoderRegistry.readAllBytes(inputStream));
+    }
+
+    @Override
+    public ImageProcessor decode(final byte[] encodedBytes)
+            throws IOException {
+
+        final FileInfo[] infoList = new TiffDecoder(new ByteArrayInputStream(encodedBytes), "").getTiffInfo();
+        if ((infoList == null) || (infoList.length != 1)) {
+            return null;
+        }
+
+        final FileInfo info = infoList[0];
+        if ((info.nImages > 1) || info.whiteIsZero || (info.lutSize > 0)) {
+            return null;
+        }
+
+        final ImageProcessor imageProcessor;
+        final ImageReader reader = new ImageReader(info);
+        switch (info.fileType) {
+            case FileInfo.GRAY8:
+                imageProcessor = new ByteProcessor(info.width, info.height,
+                                                   (byte[]) readPixels(reader, encodedBytes), null);
+                break;
+            case FileInfo.GRAY16_UNSIGNED:
+                imageProcessor = new ShortProcessor(info.width, info.height,
+                                                    (short[]) readPixels(reader, encodedBytes), null);
+                break;
+            case FileInfo.GRAY32_FLOAT:
+                imageProcessor = new FloatProcessor(info.width, info.height,
+                                                    (float[]) readPixels(reader, encodedBytes), null);
+                break;
+            default:
+                imageProcessor = null;
+        }
+
+        return imageProcessor;
+    }
+
+    private static Object readPixels(final ImageReader reader,
+                                     final byte[] encodedBytes)
+            throws IOException {
+        // the reader skips to the pixel data offset itself
+        final Object pixels = reader.readPixels(new ByteArrayInputStream(encodedBytes));
+        if (pixels == null) {
+            throw new IOException("failed to read TIFF pixels");
+        }
+        return pixels;
+    }
+
+}
@@ -0,0 +1,132 @@
+package org.janelia.alignment.mapper;
+
+import org.janelia.alignment.ChannelMap;
+
+import static mpicbg.trakem2.transform.TransformMeshMappingWithMasks.ImageProcessorWithMasks;
+
+/**
+ * {@link MultiChannelMapper} specialized for float targets that works directly on
+ * pixel arrays and does not create any objects while mapping.
+ *
+ * @author Eric Trautman
+ */
+public class FloatMultiChannelMapper
+        extends MultiChannelMapper {
+
+    protected final int numberOfChannels;
+    protected final float[][] sourcePixels;
+    protected final int[] sourceWidths;
+    protected final int[] sourceHeights;
+    protected final float[][] targetPixels;
+
+    public FloatMultiChannelMapper(final ChannelMap sourceChannels,
+                                   final ChannelMap targetChannels,
+                                   final boolean isMappingInterpolated) {
+
+        super(sourceChannels, targetChannels, isMappingInterpolated);
+
+        this.numberOfChannels = normalizedSourceList.size();
+        this.sourcePixels = new float[numberOfChannels][];
+        this.sourceWidths = new int[numberOfChannels];
+        this.sourceHeights = new int[numberOfChannels];
+        this.targetPixels = new float[numberOfChannels][];
+
+        ImageProcessorWithMasks normalizedSource;
+        for (int i = 0; i < numberOfChannels; i++) {
+            normalizedSource = normalizedSourceList.get(i);
+            sourcePixels[i] = (float[]) normalizedSource.ip.getPixels();
+            sourceWidths[i] = normalizedSource.ip.getWidth();
+            sourceHeights[i] = normalizedSource.ip.getHeight();
+            targetPixels[i] = (float[]) targetList.get(i).ip.getPixels();
+        }
+    }
+
+    /**
+     * @return true if this mapper can be used for all of the specified target channels.
+     */
+    public static boolean isSupported(final ChannelMap targetChannels) {
+        for (final ImageProcessorWithMasks targetChannel : targetChannels.values()) {
+            if (! PrimitivePixels.isFloat(targetChannel.ip)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void map(final double sourceX,
+                    final double sourceY,
+                    final int targetX,
+                    final int targetY) {
+        final int targetIndex = (targetY * targetWidth) + targetX;
+        for (int i = 0; i < numberOfChannels; i++) {
+            targetPixels[i][targetIndex] =
+                    sourcePixels[i][PrimitivePixels.getRoundedIndex(sourceX, sourceY, sourceWidths[i])];
+        }
+    }
+
+    @Override
+    public void mapInterpolated(final double sourceX,
+                                final double sourceY,
+                                final int targetX,
+                                final int targetY) {
+        final int targetIndex = (targetY * targetWidth) + targetX;
+        for (int i = 0; i < numberOfChannels; i++) {
+            targetPixels[i][targetIndex] = (float) PrimitivePixels.interpolate(sourcePixels[i],
+                                                                               sourceWidths[i],
+                                                                               sourceHeights[i],
+                                                                               sourceX,
+                                                                               sourceY);
+        }
+    }
+
+    @Override
+    public void mapSpan(final double sourceX,
+                        final double sourceY,
+                        final double sourceDeltaX,
+                        final double sourceDeltaY,
+                        final int targetMinX,
+                        final int targetMaxX,
+                        final int targetY) {
+        final int rowOffset = targetY * targetWidth;
+        for (int i = 0; i < numberOfChannels; i++) {
+            final float[] channelSourcePixels = sourcePixels[i];
+            final float[] channelTargetPixels = targetPixels[i];
+            final int sourceWidth = sourceWidths[i];
+            double x = sourceX;
+            double y = sourceY;
+            for (int targetIndex = rowOffset + targetMinX; targetIndex <= rowOffset + targetMaxX; targetIndex++) {
+                channelTargetPixels[targetIndex] =
+                        channelSourcePixels[PrimitivePixels.getRoundedIndex(x, y, sourceWidth)];
+                x += sourceDeltaX;
+                y += sourceDeltaY;
+            }
+        }
+    }
+
+    @Override
+    public void mapInterpolatedSpan(final double sourceX,
+                                    final double sourceY,
+                                    final double sourceDeltaX,
+                                    final double sourceDeltaY,
+                                    final int targetMinX,
+                                    final int targetMaxX,
+                                    final int targetY) {
+        final int rowOffset = targetY * targetWidth;
+        for (int i = 0; i < numberOfChannels; i++) {
+            final float[] channelSourcePixels = sourcePixels[i];
+            final float[] channelTargetPixels = targetPixels[i];
+            final int sourceWidth = sourceWidths[i];
+            final int sourceHeight = sourceHeights[i];
+            double x = sourceX;
+            double y = sourceY;
+            for (int targetIndex = rowOffset + targetMinX; targetIndex <= rowOffset + targetMaxX; targetIndex++) {
+                channelTargetPixels[targetIndex] =
+                        (float) PrimitivePixels.interpolate(channelSourcePixels, sourceWidth, sourceHeight, x, y);
+                x += sourceDeltaX;
+                y += sourceDeltaY;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,185 @@
+package org.janelia.alignment.mapper;
+
+import org.janelia.alignment.ChannelMap;
+
+import static mpicbg.trakem2.transform.TransformMeshMappingWithMasks.ImageProcessorWithMasks;
+
+/**
+ * {@link MultiChannelWithAlphaMapper} specialized for float targets with 8-bit masks
+ * that works directly on pixel arrays and does not create any objects while mapping.
+ *
+ * @author Eric Trautman
+ */
+public class FloatMultiChannelWithAlphaMapper
+        extends MultiChannelWithAlphaMapper {
+
+    protected final int numberOfChannels;
+    protected final float[][] sourcePixels;
+    protected final byte[][] sourceMaskBytes;
+    protected final short[][] sourceMaskShorts;
+    protected final int[] sourceWidths;
+    protected final int[] sourceHeights;
+    protected final double[] sourceMaxMaskIntensities;
+    protected final float[][] targetPixels;
+    protected final byte[][] targetMaskPixels;
+    protected final double[] targetMaxMaskIntensities;
+
+    public FloatMultiChannelWithAlphaMapper(final ChannelMap sourceChannels,
+                                            final ChannelMap targetChannels,
+                                            final boolean isMappingInterpolated) {
+
+        super(sourceChannels, targetChannels, isMappingInterpolated);
+
+        this.numberOfChannels = normalizedSourceList.size();
+        this.sourcePixels = new float[numberOfChannels][];
+        this.sourceMaskBytes = new byte[numberOfChannels][];
+        this.sourceMaskShorts = new short[numberOfChannels][];
+        this.sourceWidths = new int[numberOfChannels];
+        this.sourceHeights = new int[numberOfChannels];
+        this.sourceMaxMaskIntensities = new double[numberOfChannels];
+        this.targetPixels = new float[numberOfChannels][];
+        this.targetMaskPixels = new byte[numberOfChannels][];
+        this.targetMaxMaskIntensities = new double[numberOfChannels];
+
+        ImageProcessorWithMasks normalizedSource;
+        ImageProcessorWithMasks target;
+        for (int i = 0; i < numberOfChannels; i++) {
+            normalizedSource = normalizedSourceList.get(i);
+            target = targetList.get(i);
+            sourcePixels[i] = (float[]) normalizedSource.ip.getPixels();
+            sourceMaskBytes[i] = PrimitivePixels.getBytes(normalizedSource.mask);
+            sourceMaskShorts[i] = PrimitivePixels.getShorts(normalizedSource.mask);
+            sourceWidths[i] = normalizedSource.ip.getWidth();
+            sourceHeights[i] = normalizedSource.ip.getHeight();
+            sourceMaxMaskIntensities[i] = sourceMaxMaskIntensityList.get(i);
+            targetPixels[i] = (float[]) target.ip.getPixels();
+            targetMaskPixels[i] = (byte[]) target.mask.getPixels();
+            targetMaxMaskIntensities[i] = targetMaxMaskIntensityList.get(i);
+        }
+    }
+
+    /**
+     * @return true if this mapper can be used for all of the specified source and target channels.
+     */
+    public static boolean isSupported(final ChannelMap sourceChannels,
+                                      final ChannelMap targetChannels) {
+        for (final String channelName : sourceChannels.names()) {
+            final ImageProcessorWithMasks targetChannel = targetChannels.get(channelName);
+            if ((targetChannel != null) &&
+                (! FloatSingleChannelWithAlphaMapper.isSupported(sourceChannels.get(channelName), targetChannel))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void map(final double sourceX,
+                    final double sourceY,
+                    final int targetX,
+                    final int targetY) {
+        final int targetIndex = (targetY * targetWidth) + targetX;
+        int sourceIndex;
+        for (int i = 0; i < numberOfChannels; i++) {
+            sourceIndex = PrimitivePixels.getRoundedIndex(sourceX, sourceY, sourceWidths[i]);
+            blend(i,
+                  targetIndex,
+                  sourcePixels[i][sourceIndex],
+                  PrimitivePixels.getMaskValue(sourceMaskBytes[i], sourceMaskShorts[i], sourceIndex));
+        }
+    }
+
+    @Override
+    public void mapInterpolated(final double sourceX,
+                                final double sourceY,
+                                final int targetX,
+                                final int targetY) {
+        final int targetIndex = (targetY * targetWidth) + targetX;
+        for (int i = 0; i < numberOfChannels; i++) {
+            blend(i,
+                  targetIndex,
+                  PrimitivePixels.interpolate(sourcePixels[i], sourceWidths[i], sourceHeights[i], sourceX, sourceY),
+                  PrimitivePixels.interpolateMask(sourceMaskBytes[i], sourceMaskShorts[i],
+                                                  sourceWidths[i], sourceHeights[i], sourceX, sourceY));
+        }
+    }
+
+    @Override
+    public void mapSpan(final double sourceX,
+                        final double sourceY,
+                        final double sourceDeltaX,
+                        final double sourceDeltaY,
+                        final int targetMinX,
+                        final int targetMaxX,
+                        final int targetY) {
+        final int rowOffset = targetY * targetWidth;
+        int sourceIndex;
+        for (int i = 0; i < numberOfChannels; i++) {
+            double x = sourceX;
+            double y = sourceY;
+            for (int targetIndex = rowOffset + targetMinX; targetIndex <= rowOffset + targetMaxX; targetIndex++) {
+                sourceIndex = PrimitivePixels.getRoundedIndex(x, y, sourceWidths[i]);
+                blend(i,
+                      targetIndex,
+                      sourcePixels[i][sourceIndex],
+                      PrimitivePixels.getMaskValue(sourceMaskBytes[i], sourceMaskShorts[i], sourceIndex));
+                x += sourceDeltaX;
+                y += sourceDeltaY;
+            }
+        }
+    }
+
+    @Override
+    public void mapInterpolatedSpan(final double sourceX,
+                                    final double sourceY,
+                                    final double sourceDeltaX,
+                                    final double sourceDeltaY,
+                                    final int targetMinX,
+                                    final int targetMaxX,
+                                    final int targetY) {
+        final int rowOffset = targetY * targetWidth;
+        for (int i = 0; i < numberOfChannels; i++) {
+            double x = sourceX;
+            double y = sourceY;
+            for (int targetIndex = rowOffset + targetMinX; targetIndex <= rowOffset + targetMaxX; targetIndex++) {
+                blend(i,
+                      targetIndex,
+                      PrimitivePixels.interpolate(sourcePixels[i], sourceWidths[i], sourceHeights[i], x, y),
+                      PrimitivePixels.interpolateMask(sourceMaskBytes[i], sourceMaskShorts[i],
+                                                      sourceWidths[i], sourceHeights[i], x, y));
+                x += sourceDeltaX;
+                y += sourceDeltaY;
+            }
+        }
+    }
+
+    /**
+     * Blends the source intensity into the specified channel's target pixel at the specified index.
+     */
+    protected void blend(final int channelIndex,
+                         final int targetIndex,
+                         final double sourceIntensity,
+                         final double sourceMaskIntensity) {
+
+        final float[] channelTargetPixels = targetPixels[channelIndex];
+        final byte[] channelTargetMaskPixels = targetMaskPixels[channelIndex];
+        final double targetMaxMaskIntensity = targetMaxMaskIntensities[channelIndex];
+
+        final double sourceAlpha = sourceMaskIntensity / sourceMaxMaskIntensities[channelIndex];
+        final double targetIntensity = channelTargetPixels[targetIndex];
+        final double targetAlpha = (channelTargetMaskPixels[targetIndex] & 0xff) / targetMaxMaskIntensity;
+
+        final double blendedAlpha =
+                SingleChannelWithAlphaMapper.getBlendedAlpha(sourceAlpha, targetIntensity, targetAlpha);
+
+        channelTargetPixels[targetIndex] =
+                (float) SingleChannelWithAlphaMapper.getBlendedIntensity(sourceIntensity,
+                                                                         sourceAlpha,
+                                                                         targetIntensity,
+                                                                         targetAlpha,
+                                                                         blendedAlpha);
+        channelTargetMaskPixels[targetIndex] =
+                PrimitivePixels.toByte((float) (blendedAlpha * targetMaxMaskIntensity));
+    }
+
+}
@@ -0,0 +1,39 @@
+package org.janelia.alignment.mapper;
+
+import org.janelia.alignment.ChannelMap;
+
+/**
+ * {@link MultiChannelWithBinaryMaskMapper} specialized for float targets with 8-bit masks
+ * that works directly on pixel arrays and does not create any objects while mapping.
+ *
+ * @author Eric Trautman
+ */
+public class FloatMultiChannelWithBinaryMaskMapper
+        extends FloatMultiChannelWithAlphaMapper {
+
+    private final byte[] targetMaxMaskBytes;
+
+    public FloatMultiChannelWithBinaryMaskMapper(final ChannelMap sourceChannels,
+                                                 final ChannelMap targetChannels,
+                                                 final boolean isMappingInterpolated) {
+
+        super(sourceChannels, targetChannels, isMappingInterpolated);
+
+        this.targetMaxMaskBytes = new byte[numberOfChannels];
+        for (int i = 0; i < numberOfChannels; i++) {
+            targetMaxMaskBytes[i] = PrimitivePixels.toByte((float) targetMaxMaskIntensities[i]);
+        }
+    }
+
+    @Override
+    protected void blend(final int channelIndex,
+                         final int targetIndex,
+                         final double sourceIntensity,
+                         final double sourceMaskIntensity) {
+        if (sourceMaskIntensity > 0.0) {
+            targetPixels[channelIndex][targetIndex] = (float) sourceIntensity;
+            targetMaskPixels[channelIndex][targetIndex] = targetMaxMaskBytes[channelIndex];
+        }
+    }
+
+}
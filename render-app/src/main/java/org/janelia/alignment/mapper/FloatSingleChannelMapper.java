@@ -0,0 +1,95 @@
+package org.janelia.alignment.mapper;
+
+import static mpicbg.trakem2.transform.TransformMeshMappingWithMasks.ImageProcessorWithMasks;
+
+/**
+ * {@link SingleChannelMapper} specialized for float targets that works directly on
+ * pixel arrays and does not create any objects while mapping.
+ *
+ * @author Eric Trautman
+ */
+public class FloatSingleChannelMapper
+        extends SingleChannelMapper {
+
+    protected final float[] sourcePixels;
+    protected final int sourceWidth;
+    protected final int sourceHeight;
+    protected final float[] targetPixels;
+    protected final int targetWidth;
+
+    public FloatSingleChannelMapper(final ImageProcessorWithMasks source,
+                                    final ImageProcessorWithMasks target,
+                                    final boolean isMappingInterpolated) {
+
+        super(source, target, isMappingInterpolated);
+
+        this.sourcePixels = (float[]) normalizedSource.ip.getPixels();
+        this.sourceWidth = normalizedSource.ip.getWidth();
+        this.sourceHeight = normalizedSource.ip.getHeight();
+        this.targetPixels = (float[]) target.ip.getPixels();
+        this.targetWidth = target.ip.getWidth();
+    }
+
+    /**
+     * @return true if this mapper can be used for the specified target.
+     */
+    public static boolean isSupported(final ImageProcessorWithMasks target) {
+        return PrimitivePixels.isFloat(target.ip);
+    }
+
+    @Override
+    public void map(final double sourceX,
+                    final double sourceY,
+                    final int targetX,
+                    final int targetY) {
+        targetPixels[(targetY * targetWidth) + targetX] =
+                sourcePixels[PrimitivePixels.getRoundedIndex(sourceX, sourceY, sourceWidth)];
+    }
+
+    @Override
+    public void mapInterpolated(final double sourceX,
+                                final double sourceY,
+                                final int targetX,
+                                final int targetY) {
+        targetPixels[(targetY * targetWidth) + targetX] =
+                (float) PrimitivePixels.interpolate(sourcePixels, sourceWidth, sourceHeight, sourceX, sourceY);
+    }
+
+    @Override
+    public void mapSpan(final double sourceX,
+                        final double sourceY,
+                        final double sourceDeltaX,
+                        final double sourceDeltaY,
+                        final int targetMinX,
+                        final int targetMaxX,
+                        final int targetY) {
+        double x = sourceX;
+        double y = sourceY;
+        final int rowOffset = targetY * targetWidth;
+        for (int targetIndex = rowOffset + targetMinX; targetIndex <= rowOffset + targetMaxX; targetIndex++) {
+            targetPixels[targetIndex] = sourcePixels[PrimitivePixels.getRoundedIndex(x, y, sourceWidth)];
+            x += sourceDeltaX;
+            y += sourceDeltaY;
+        }
+    }
+
+    @Override
+    public void mapInterpolatedSpan(final double sourceX,
+                                    final double sourceY,
+                                    final double sourceDeltaX,
+                                    final double sourceDeltaY,
+                                    final int targetMinX,
+                                    final int targetMaxX,
+                                    final int targetY) {
+        double x = sourceX;
+        double y = sourceY;
+        final int rowOffset = targetY * targetWidth;
+        for (int targetIndex = rowOffset + targetMinX; targetIndex <= rowOffset + targetMaxX; targetIndex++) {
+            targetPixels[targetIndex] =
+                    (float) PrimitivePixels.interpolate(sourcePixels, sourceWidth, sourceHeight, x, y);
+            x += sourceDeltaX;
+            y += sourceDeltaY;
+        }
+    }
+
+}
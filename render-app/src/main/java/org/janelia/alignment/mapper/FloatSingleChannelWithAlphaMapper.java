@@ -0,0 +1,143 @@
+package org.janelia.alignment.mapper;
+
+import static mpicbg.trakem2.transform.TransformMeshMappingWithMasks.ImageProcessorWithMasks;
+
+/**
+ * {@link SingleChannelWithAlphaMapper} specialized for float targets with 8-bit masks
+ * that works directly on pixel arrays and does not create any objects while mapping.
+ *
+ * @author Eric Trautman
+ */
+public class FloatSingleChannelWithAlphaMapper
+        extends SingleChannelWithAlphaMapper {
+
+    protected final float[] sourcePixels;
+    protected final byte[] sourceMaskBytes;
+    protected final short[] sourceMaskShorts;
+    protected final int sourceWidth;
+    protected final int sourceHeight;
+    protected final float[] targetPixels;
+    protected final byte[] targetMaskPixels;
+    protected final int targetWidth;
+
+    public FloatSingleChannelWithAlphaMapper(final ImageProcessorWithMasks source,
+                                             final ImageProcessorWithMasks target,
+                                             final boolean isMappingInterpolated) {
+
+        super(source, target, isMappingInterpolated);
+
+        this.sourcePixels = (float[]) normalizedSource.ip.getPixels();
+        this.sourceMaskBytes = PrimitivePixels.getBytes(normalizedSource.mask);
+        this.sourceMaskShorts = PrimitivePixels.getShorts(normalizedSource.mask);
+        this.sourceWidth = normalizedSource.ip.getWidth();
+        this.sourceHeight = normalizedSource.ip.getHeight();
+        this.targetPixels = (float[]) target.ip.getPixels();
+        this.targetMaskPixels = (byte[]) target.mask.getPixels();
+        this.targetWidth = target.ip.getWidth();
+    }
+
+    /**
+     * @return true if this mapper can be used for the specified source and target.
+     */
+    public static boolean isSupported(final ImageProcessorWithMasks source,
+                                      final ImageProcessorWithMasks target) {
+        return PrimitivePixels.isFloat(target.ip) &&
+               (PrimitivePixels.getBytes(target.mask) != null) &&
+               PrimitivePixels.isSupportedMask(source.mask);
+    }
+
+    @Override
+    public void map(final double sourceX,
+                    final double sourceY,
+                    final int targetX,
+                    final int targetY) {
+        final int sourceIndex = PrimitivePixels.getRoundedIndex(sourceX, sourceY, sourceWidth);
+        blend((targetY * targetWidth) + targetX,
+              sourcePixels[sourceIndex],
+              PrimitivePixels.getMaskValue(sourceMaskBytes, sourceMaskShorts, sourceIndex));
+    }
+
+    @Override
+    public void mapInterpolated(final double sourceX,
+                                final double sourceY,
+                                final int targetX,
+                                final int targetY) {
+        blend((targetY * targetWidth) + targetX,
+              PrimitivePixels.interpolate(sourcePixels, sourceWidth, sourceHeight, sourceX, sourceY),
+              PrimitivePixels.interpolateMask(sourceMaskBytes, sourceMaskShorts,
+                                              sourceWidth, sourceHeight, sourceX, sourceY));
+    }
+
+    @Override
+    public void mapSpan(final double sourceX,
+                        final double sourceY,
+                        final double sourceDeltaX,
+                        final double sourceDeltaY,
+                        final int targetMinX,
+                        final int targetMaxX,
+                        final int targetY) {
+        double x = sourceX;
+        double y = sourceY;
+        final int rowOffset = targetY * targetWidth;
+        int sourceIndex;
+        for (int targetIndex = rowOffset + targetMinX; targetIndex <= rowOffset + targetMaxX; targetIndex++) {
+            sourceIndex = PrimitivePixels.getRoundedIndex(x, y, sourceWidth);
+            blend(targetIndex,
+                  sourcePixels[sourceIndex],
+                  PrimitivePixels.getMaskValue(sourceMaskBytes, sourceMaskShorts, sourceIndex));
+            x += sourceDeltaX;
+            y += sourceDeltaY;
+        }
+    }
+
+    @Override
+    public void mapInterpolatedSpan(final double sourceX,
+                                    final double sourceY,
+                                    final double sourceDeltaX,
+                                    final double sourceDeltaY,
+                                    final int targetMinX,
+                                    final int targetMaxX,
+                                    final int targetY) {
+        double x = sourceX;
+        double y = sourceY;
+        final int rowOffset = targetY * targetWidth;
+        for (int targetIndex = rowOffset + targetMinX; targetIndex <= rowOffset + targetMaxX; targetIndex++) {
+            blend(targetIndex,
+                  PrimitivePixels.interpolate(sourcePixels, sourceWidth, sourceHeight, x, y),
+                  PrimitivePixels.interpolateMask(sourceMaskBytes, sourceMaskShorts,
+                                                  sourceWidth, sourceHeight, x, y));
+            x += sourceDeltaX;
+            y += sourceDeltaY;
+        }
+    }
+
+    @Override
+    public void setBlendedIntensity(final int targetX,
+                                    final int targetY,
+                                    final double sourceIntensity,
+                                    final double sourceMaskIntensity) {
+        blend((targetY * targetWidth) + targetX, sourceIntensity, sourceMaskIntensity);
+    }
+
+    /**
+     * Blends the source intensity into the target pixel at the specified index.
+     */
+    protected void blend(final int targetIndex,
+                         final double sourceIntensity,
+                         final double sourceMaskIntensity) {
+
+        final double sourceAlpha = sourceMaskIntensity / sourceMaxMaskIntensity;
+        final double targetIntensity = targetPixels[targetIndex];
+        final double targetAlpha = (targetMaskPixels[targetIndex] & 0xff) / targetMaxMaskIntensity;
+
+        final double blendedAlpha = getBlendedAlpha(sourceAlpha, targetIntensity, targetAlpha);
+
+        targetPixels[targetIndex] = (float) getBlendedIntensity(sourceIntensity,
+                                                                sourceAlpha,
+                                                                targetIntensity,
+                                                                targetAlpha,
+                                                                blendedAlpha);
+        targetMaskPixels[targetIndex] = PrimitivePixels.toByte((float) (blendedAlpha * targetMaxMaskIntensity));
+    }
+
+}
@@ -0,0 +1,35 @@
+package org.janelia.alignment.mapper;
+
+import static mpicbg.trakem2.transform.TransformMeshMappingWithMasks.ImageProcessorWithMasks;
+
+/**
+ * {@link SingleChannelWithBinaryMaskMapper} specialized for float targets with 8-bit masks
+ * that works directly on pixel arrays and does not create any objects while mapping.
+ *
+ * @author Eric Trautman
+ */
+public class FloatSingleChannelWithBinaryMaskMapper
+        extends FloatSingleChannelWithAlphaMapper {
+
+    private final byte targetMaxMaskByte;
+
+    public FloatSingleChannelWithBinaryMaskMapper(final ImageProcessorWithMasks source,
+                                                  final ImageProcessorWithMasks target,
+                                                  final boolean isMappingInterpolated) {
+
+        super(source, target, isMappingInterpolated);
+
+        this.targetMaxMaskByte = PrimitivePixels.toByte((float) targetMaxMaskIntensity);
+    }
+
+    @Override
+    protected void blend(final int targetIndex,
+                         final double sourceIntensity,
+                         final double sourceMaskIntensity) {
+        if (sourceMaskIntensity > 0.0) {
+            targetPixels[targetIndex] = (float) sourceIntensity;
+            targetMaskPixels[targetIndex] = targetMaxMaskByte;
+        }
+    }
+
+}
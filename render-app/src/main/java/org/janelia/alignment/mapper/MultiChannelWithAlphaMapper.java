@@ -98,14 +98,15 @@ public class MultiChannelWithAlphaMapper
         final double targetIntensity = target.ip.getf(targetX, targetY);
         final double targetAlpha = target.mask.getf(targetX, targetY) / targetMaxMaskIntensity;
 
-        final double[] blendedIntensityAndAlpha =
-                SingleChannelWithAlphaMapper.getBlendedIntensityAndAlpha(sourceIntensity,
-                                                                         sourceAlpha,
-                                                                         targetIntensity,
-                                                                         targetAlpha);
-
-        target.ip.setf(targetX, targetY, (float) blendedIntensityAndAlpha[0]);
-        target.mask.setf(targetX, targetY, (float) (blendedIntensityAndAlpha[1] * targetMaxMaskIntensity));
+        final double blendedAlpha =
+                SingleChannelWithAlphaMapper.getBlendedAlpha(sourceAlpha, targetIntensity, targetAlpha);
+
+        target.ip.setf(targetX, targetY, (float) SingleChannelWithAlphaMapper.getBlendedIntensity(sourceIntensity,
+                                                                                                  sourceAlpha,
+                                                                                                  targetIntensity,
+                                                                                                  targetAlpha,
+                                                                                                  blendedAlpha));
+        target.mask.setf(targetX, targetY, (float) (blendedAlpha * targetMaxMaskIntensity));
     }
 
 
@@ -50,4 +50,60 @@ public interface PixelMapper {
                          final int targetX,
                          final int targetY);
 
+    /**
+     * Maps values for a horizontal span of target pixels using {@link #map}.
+     * Source coordinates for each subsequent target pixel are derived by adding the specified deltas.
+     *
+     * @param  sourceX       source x coordinate for the first target pixel.
+     * @param  sourceY       source y coordinate for the first target pixel.
+     * @param  sourceDeltaX  change in source x coordinate for each target pixel.
+     * @param  sourceDeltaY  change in source y coordinate for each target pixel.
+     * @param  targetMinX    local target x coordinate of the first pixel in the span.
+     * @param  targetMaxX    local target x coordinate of the last pixel in the span (inclusive).
+     * @param  targetY       local target y coordinate.
+     */
+    default void mapSpan(final double sourceX,
+                         final double sourceY,
+                         final double sourceDeltaX,
+                         final double sourceDeltaY,
+                         final int targetMinX,
+                         final int targetMaxX,
+                         final int targetY) {
+        double x = sourceX;
+        double y = sourceY;
+        for (int targetX = targetMinX; targetX <= targetMaxX; targetX++) {
+            map(x, y, targetX, targetY);
+            x += sourceDeltaX;
+            y += sourceDeltaY;
+        }
+    }
+
+    /**
+     * Maps values for a horizontal span of target pixels using {@link #mapInterpolated}.
+     * Source coordinates for each subsequent target pixel are derived by adding the specified deltas.
+     *
+     * @param  sourceX       source x coordinate for the first target pixel.
+     * @param  sourceY       source y coordinate for the first target pixel.
+     * @param  sourceDeltaX  change in source x coordinate for each target pixel.
+     * @param  sourceDeltaY  change in source y coordinate for each target pixel.
+     * @param  targetMinX    local target x coordinate of the first pixel in the span.
+     * @param  targetMaxX    local target x coordinate of the last pixel in the span (inclusive).
+     * @param  targetY       local target y coordinate.
+     */
+    default void mapInterpolatedSpan(final double sourceX,
+                                     final double sourceY,
+                                     final double sourceDeltaX,
+                                     final double sourceDeltaY,
+                                     final int targetMinX,
+                                     final int targetMaxX,
+                                     final int targetY) {
+        double x = sourceX;
+        double y = sourceY;
+        for (int targetX = targetMinX; targetX <= targetMaxX; targetX++) {
+            mapInterpolated(x, y, targetX, targetY);
+            x += sourceDeltaX;
+            y += sourceDeltaY;
+        }
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,207 @@
+package org.janelia.alignment.mapper;
+
+import ij.process.ByteProcessor;
+import ij.process.FloatProcessor;
+import ij.process.ImageProcessor;
+import ij.process.ShortProcessor;
+
+/**
+ * Static pixel access utilities that work directly on primitive pixel arrays.
+ * Results are identical to the corresponding {@link ImageProcessor} getf, setf, and (bilinear)
+ * getInterpolatedPixel methods but avoid virtual calls and interpolation method checks for each pixel.
+ *
+ * @author Eric Trautman
+ */
+class PrimitivePixels {
+
+    /**
+     * @return true if the specified processor is a {@link FloatProcessor}.
+     */
+    static boolean isFloat(final ImageProcessor ip) {
+        return ip instanceof FloatProcessor;
+    }
+
+    /**
+     * @return true if the specified mask is an 8-bit or 16-bit processor.
+     */
+    static boolean isSupportedMask(final ImageProcessor mask) {
+        return (mask instanceof ByteProcessor) || (mask instanceof ShortProcessor);
+    }
+
+    /**
+     * @return byte pixels for the specified mask or null if the mask is not a {@link ByteProcessor}.
+     */
+    static byte[] getBytes(final ImageProcessor mask) {
+        return (mask instanceof ByteProcessor) ? (byte[]) mask.getPixels() : null;
+    }
+
+    /**
+     * @return short pixels for the specified mask or null if the mask is not a {@link ShortProcessor}.
+     */
+    static short[] getShorts(final ImageProcessor mask) {
+        return (mask instanceof ShortProcessor) ? (short[]) mask.getPixels() : null;
+    }
+
+    /**
+     * @return nearest neighbor index for the specified source coordinates
+     *         (matches rounding used by the generic mappers).
+     */
+    static int getRoundedIndex(final double x,
+                               final double y,
+                               final int width) {
+        return ((int) Math.round(y) * width) + (int) Math.round(x);
+    }
+
+    /**
+     * @return byte mask value (same as {@link ByteProcessor#setf}).
+     */
+    static byte toByte(final float value) {
+        return (byte) ((int) (value + 0.5f));
+    }
+
+    /**
+     * @return bilinear interpolated value (same as {@link FloatProcessor#getInterpolatedPixel}).
+     */
+    static double interpolate(final float[] pixels,
+                              final int width,
+                              final int height,
+                              final double sourceX,
+                              final double sourceY) {
+
+        final double x = clamp(sourceX, width);
+        final double y = clamp(sourceY, height);
+
+        final int xBase = (int) x;
+        final int yBase = (int) y;
+        final double xFraction = x - xBase;
+        final double yFraction = y - yBase;
+        final int offset = (yBase * width) + xBase;
+
+        final double lowerLeft = pixels[offset];
+        final double lowerRight = pixels[offset + 1];
+        final double upperRight = pixels[offset + width + 1];
+        final double upperLeft = pixels[offset + width];
+
+        final double upperAverage;
+        if (Double.isNaN(upperLeft) && (xFraction >= 0.5)) {
+            upperAverage = upperRight;
+        } else if (Double.isNaN(upperRight) && (xFraction < 0.5)) {
+            upperAverage = upperLeft;
+        } else {
+            upperAverage = upperLeft + xFraction * (upperRight - upperLeft);
+        }
+
+        final double lowerAverage;
+        if (Double.isNaN(lowerLeft) && (xFraction >= 0.5)) {
+            lowerAverage = lowerRight;
+        } else if (Double.isNaN(lowerRight) && (xFraction < 0.5)) {
+            lowerAverage = lowerLeft;
+        } else {
+            lowerAverage = lowerLeft + xFraction * (lowerRight - lowerLeft);
+        }
+
+        if (Double.isNaN(lowerAverage) && (yFraction >= 0.5)) {
+            return upperAverage;
+        } else if (Double.isNaN(upperAverage) && (yFraction < 0.5)) {
+            return lowerAverage;
+        }
+
+        return lowerAverage + yFraction * (upperAverage - lowerAverage);
+    }
+
+    /**
+     * @return bilinear interpolated value (same as {@link ByteProcessor#getInterpolatedPixel}).
+     */
+    static double interpolate(final byte[] pixels,
+                              final int width,
+                              final int height,
+                              final double sourceX,
+                              final double sourceY) {
+
+        final double x = clamp(sourceX, width);
+        final double y = clamp(sourceY, height);
+
+        final int xBase = (int) x;
+        final int yBase = (int) y;
+        final double xFraction = x - xBase;
+        final double yFraction = y - yBase;
+        final int offset = (yBase * width) + xBase;
+
+        final int lowerLeft = pixels[offset] & 0xff;
+        final int lowerRight = pixels[offset + 1] & 0xff;
+        final int upperRight = pixels[offset + width + 1] & 0xff;
+        final int upperLeft = pixels[offset + width] & 0xff;
+
+        final double upperAverage = upperLeft + xFraction * (upperRight - upperLeft);
+        final double lowerAverage = lowerLeft + xFraction * (lowerRight - lowerLeft);
+
+        return lowerAverage + yFraction * (upperAverage - lowerAverage);
+    }
+
+    /**
+     * @return bilinear interpolated value (same as {@link ShortProcessor#getInterpolatedPixel}).
+     */
+    static double interpolate(final short[] pixels,
+                              final int width,
+                              final int height,
+                              final double sourceX,
+                              final double sourceY) {
+
+        final double x = clamp(sourceX, width);
+        final double y = clamp(sourceY, height);
+
+        final int xBase = (int) x;
+        final int yBase = (int) y;
+        final double xFraction = x - xBase;
+        final double yFraction = y - yBase;
+        final int offset = (yBase * width) + xBase;
+
+        final int lowerLeft = pixels[offset] & 0xffff;
+        final int lowerRight = pixels[offset + 1] & 0xffff;
+        final int upperRight = pixels[offset + width + 1] & 0xffff;
+        final int upperLeft = pixels[offset + width] & 0xffff;
+
+        final double upperAverage = upperLeft + xFraction * (upperRight - upperLeft);
+        final double lowerAverage = lowerLeft + xFraction * (lowerRight - lowerLeft);
+
+        return lowerAverage + yFraction * (upperAverage - lowerAverage);
+    }
+
+    /**
+     * @return mask value at the specified index from whichever mask array is defined.
+     */
+    static double getMaskValue(final byte[] maskBytes,
+                               final short[] maskShorts,
+                               final int index) {
+        return (maskBytes != null) ? (maskBytes[index] & 0xff) : (maskShorts[index] & 0xffff);
+    }
+
+    /**
+     * @return bilinear interpolated mask value from whichever mask array is defined.
+     */
+    static double interpolateMask(final byte[] maskBytes,
+                                  final short[] maskShorts,
+                                  final int width,
+                                  final int height,
+                                  final double x,
+                                  final double y) {
+        return (maskBytes != null) ? interpolate(maskBytes, width, height, x, y) :
+               interpolate(maskShorts, width, height, x, y);
+    }
+
+    /**
+     * Clamps a coordinate the same way ImageJ does for bilinear interpolation.
+     */
+    private static double clamp(final double x,
+                                 final int size) {
+        double clamped = x;
+        if (clamped < 0.0) {
+            clamped = 0.0;
+        }
+        if (clamped >= size - 1.0) {
+            clamped = size - 1.001;
+        }
+        return clamped;
+    }
+
+}
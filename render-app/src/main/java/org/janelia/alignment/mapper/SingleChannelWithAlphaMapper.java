@@ -65,11 +65,14 @@ public class SingleChannelWithAlphaMapper
         final double targetIntensity = target.ip.getf(targetX, targetY);
         final double targetAlpha = target.mask.getf(targetX, targetY) / targetMaxMaskIntensity;
 
-        final double[] blendedIntensityAndAlpha =
-                getBlendedIntensityAndAlpha(sourceIntensity, sourceAlpha, targetIntensity, targetAlpha);
-
-        target.ip.setf(targetX, targetY, (float) blendedIntensityAndAlpha[0]);
-        target.mask.setf(targetX, targetY, (float) (blendedIntensityAndAlpha[1] * targetMaxMaskIntensity));
+        final double blendedAlpha = getBlendedAlpha(sourceAlpha, targetIntensity, targetAlpha);
+
+        target.ip.setf(targetX, targetY, (float) getBlendedIntensity(sourceIntensity,
+                                                                     sourceAlpha,
+                                                                     targetIntensity,
+                                                                     targetAlpha,
+                                                                     blendedAlpha));
+        target.mask.setf(targetX, targetY, (float) (blendedAlpha * targetMaxMaskIntensity));
     }
 
     public static double[] getBlendedIntensityAndAlpha(final double sourceIntensity,
@@ -77,28 +80,59 @@ public class SingleChannelWithAlphaMapper
                                                        final double targetIntensity,
                                                        final double targetAlpha) {
 
-        final double blendedIntensity;
+        final double blendedAlpha = getBlendedAlpha(sourceAlpha, targetIntensity, targetAlpha);
+        final double blendedIntensity = getBlendedIntensity(sourceIntensity,
+                                                            sourceAlpha,
+                                                            targetIntensity,
+                                                            targetAlpha,
+                                                            blendedAlpha);
+
+        return new double[] { blendedIntensity, blendedAlpha };
+    }
+
+    /**
+     * @return alpha for a source pixel blended over a target pixel.
+     */
+    public static double getBlendedAlpha(final double sourceAlpha,
+                                         final double targetIntensity,
+                                         final double targetAlpha) {
         final double blendedAlpha;
+        if (targetIntensity == 0) {
+            blendedAlpha = sourceAlpha;
+        } else {
+            blendedAlpha = sourceAlpha + (targetAlpha * (1 - sourceAlpha));
+        }
+        return blendedAlpha;
+    }
+
+    /**
+     * @return intensity for a source pixel blended over a target pixel.
+     *         Split from {@link #getBlendedAlpha} so that blending does not require an array for each pixel.
+     */
+    public static double getBlendedIntensity(final double sourceIntensity,
+                                             final double sourceAlpha,
+                                             final double targetIntensity,
+                                             final double targetAlpha,
+                                             final double blendedAlpha) {
+
+        final double blendedIntensity;
 
         if (targetIntensity == 0) {
 
             blendedIntensity = sourceIntensity * sourceAlpha;
-            blendedAlpha = sourceAlpha;
 
-        } else {
+        } else if (blendedAlpha == 0) {
 
-            blendedAlpha = sourceAlpha + (targetAlpha * (1 - sourceAlpha));
+            blendedIntensity = 0;
 
-            if (blendedAlpha == 0) {
-                blendedIntensity = 0;
-            } else {
-                blendedIntensity =
-                        ((sourceIntensity * sourceAlpha) + (targetIntensity * targetAlpha * (1 - sourceAlpha))) /
-                        blendedAlpha;
-            }
+        } else {
+
+            blendedIntensity =
+                    ((sourceIntensity * sourceAlpha) + (targetIntensity * targetAlpha * (1 - sourceAlpha))) /
+                    blendedAlpha;
         }
 
-        return new double[] { blendedIntensity, blendedAlpha };
+        return blendedIntensity;
     }
 
 }
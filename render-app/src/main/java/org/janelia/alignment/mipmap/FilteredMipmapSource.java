@@ -45,6 +45,11 @@ public class FilteredMipmapSource
         return source.getFullScaleHeight();
     }
 
+    @Override
+    public void prefetchChannels(final int mipmapLevel) {
+        source.prefetchChannels(mipmapLevel);
+    }
+
     @Override
     public ChannelMap getChannels(final int mipmapLevel)
             throws IllegalArgumentException {
@@ -37,4 +37,14 @@ public interface MipmapSource extends Serializable {
     ChannelMap getChannels(final int mipmapLevel)
             throws IllegalArgumentException;
 
+    /**
+     * Asynchronously starts loading the pixel data for the specified mipmap level
+     * so that a subsequent {@link #getChannels} call for the same level is faster.
+     * Sources that do not support prefetching simply ignore this call.
+     *
+     * @param  mipmapLevel  level in a power of 2 scale pyramid.
+     */
+    default void prefetchChannels(final int mipmapLevel) {
+    }
+
 }
@@ -3,14 +3,30 @@ package org.janelia.alignment.mipmap;
 import ij.process.ByteProcessor;
 import ij.process.FloatProcessor;
 
+import java.awt.BasicStroke;
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.geom.Area;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import mpicbg.models.AffineModel2D;
 import mpicbg.models.CoordinateTransform;
 import mpicbg.models.CoordinateTransformList;
 import mpicbg.trakem2.transform.TransformMeshMappingWithMasks.ImageProcessorWithMasks;
+import mpicbg.util.Util;
 
 import org.janelia.alignment.ChannelMap;
 import org.janelia.alignment.RenderParameters;
@@ -18,6 +34,12 @@ import org.janelia.alignment.RenderTransformMesh;
 import org.janelia.alignment.RenderTransformMeshMappingWithMasks;
 import org.janelia.alignment.TransformableCanvas;
 import org.janelia.alignment.Utils;
+import org.janelia.alignment.mapper.FloatMultiChannelMapper;
+import org.janelia.alignment.mapper.FloatMultiChannelWithAlphaMapper;
+import org.janelia.alignment.mapper.FloatMultiChannelWithBinaryMaskMapper;
+import org.janelia.alignment.mapper.FloatSingleChannelMapper;
+import org.janelia.alignment.mapper.FloatSingleChannelWithAlphaMapper;
+import org.janelia.alignment.mapper.FloatSingleChannelWithBinaryMaskMapper;
 import org.janelia.alignment.mapper.MultiChannelMapper;
 import org.janelia.alignment.mapper.MultiChannelWithAlphaMapper;
 import org.janelia.alignment.mapper.MultiChannelWithBinaryMaskMapper;
@@ -25,8 +47,15 @@ import org.janelia.alignment.mapper.PixelMapper;
 import org.janelia.alignment.mapper.SingleChannelMapper;
 import org.janelia.alignment.mapper.SingleChannelWithAlphaMapper;
 import org.janelia.alignment.mapper.SingleChannelWithBinaryMaskMapper;
+import org.janelia.alignment.spec.TileBounds;
+import org.janelia.alignment.spec.TileBoundsRTree;
 import org.janelia.alignment.spec.TileSpec;
+import org.janelia.alignment.transform.AffineConcatenation;
+import org.janelia.alignment.transform.GridApproximatedTransform;
 import org.janelia.alignment.util.ImageProcessorCache;
+import org.janelia.alignment.util.RenderPhaseTimes;
+import org.janelia.alignment.util.RenderTransformMeshCache;
+import org.janelia.alignment.util.TransformKey;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -34,12 +63,85 @@ import org.slf4j.LoggerFactory;
  * A {@link MipmapSource} implementation that renders a canvas composed from
  * a list of other {@link TransformableCanvas transformed sources}.
  *
+ * Canvases rendered with more than one tile thread share a process-wide pool of
+ * {@link #getTileRenderParallelism} daemon threads, so concurrent requests cannot create more threads
+ * than the pool holds.  The pool size defaults to the number of available processors but can be changed
+ * with the {@value #TILE_RENDER_THREADS_PROPERTY} system property or by calling
+ * {@link #setTileRenderParallelism} before the pool is first used.
+ *
  * @author Stephan Saalfeld
  * @author Eric Trautman
  */
 public class RenderedCanvasMipmapSource
         implements MipmapSource {
 
+    /** System property used to configure the number of threads in the shared tile render pool. */
+    public static final String TILE_RENDER_THREADS_PROPERTY = "render.tileRenderThreads";
+
+    private static int tileRenderParallelism = Integer.getInteger(TILE_RENDER_THREADS_PROPERTY,
+                                                                  Runtime.getRuntime().availableProcessors());
+    private static ExecutorService tileRenderExecutor;
+
+    /** Identifies shared pool threads so that nested canvases are not rendered with (and blocked by) the pool. */
+    private static final ThreadLocal<Boolean> IS_TILE_RENDER_THREAD = ThreadLocal.withInitial(() -> false);
+
+    /**
+     * Sets the size of the shared tile render pool.
+     *
+     * @param  parallelism  number of threads for the shared pool.
+     *
+     * @throws IllegalArgumentException
+     *   if the parallelism is not positive.
+     *
+     * @throws IllegalStateException
+     *   if the shared pool has already been created with a different size.
+     */
+    public static synchronized void setTileRenderParallelism(final int parallelism)
+            throws IllegalArgumentException, IllegalStateException {
+
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+
+        if ((tileRenderExecutor != null) && (tileRenderParallelism != parallelism)) {
+            throw new IllegalStateException("shared tile render pool already created with parallelism " +
+                                            tileRenderParallelism);
+        }
+
+        tileRenderParallelism = parallelism;
+    }
+
+    /**
+     * @return the number of threads in the process-wide pool used to render tiles for all canvases.
+     */
+    public static synchronized int getTileRenderParallelism() {
+        return tileRenderParallelism;
+    }
+
+    /**
+     * @return the process-wide pool used to render tiles for all canvases (created on first call).
+     */
+    private static synchronized ExecutorService getTileRenderExecutor() {
+        if (tileRenderExecutor == null) {
+            final AtomicInteger threadCount = new AtomicInteger(0);
+            tileRenderExecutor = Executors.newFixedThreadPool(tileRenderParallelism, runnable -> {
+                final Runnable markedRunnable = () -> {
+                    IS_TILE_RENDER_THREAD.set(true);
+                    runnable.run();
+                };
+                final Thread thread = new Thread(markedRunnable, "tile-render-" + threadCount.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            });
+            LOG.info("getTileRenderExecutor: created pool with {} threads", tileRenderParallelism);
+        }
+        return tileRenderExecutor;
+    }
+
+    /** Number of target pixels added around each canvas footprint before culling checks. */
+    private static final float FOOTPRINT_DILATION = 2.0f;
+    private static final BasicStroke FOOTPRINT_DILATION_STROKE = new BasicStroke(FOOTPRINT_DILATION * 2);
+
     private final String canvasName;
     private final Set<String> channelNames;
     private final List<TransformableCanvas> canvasList;
@@ -50,9 +152,11 @@ public class RenderedCanvasMipmapSource
     private final double meshCellSize;
     private final double levelZeroScale;
     private final int numberOfMappingThreads;
+    private final int numberOfTileThreads;
     private final boolean skipInterpolation;
     private final boolean hasMasks;
     private final boolean binaryMask;
+    private final RenderTransformMeshCache meshCache;
 
     /**
      * Constructs a canvas based upon {@link RenderParameters} that is dynamically
@@ -63,10 +167,24 @@ public class RenderedCanvasMipmapSource
      */
     public RenderedCanvasMipmapSource(final RenderParameters renderParameters,
                                       final ImageProcessorCache imageProcessorCache) {
+        this(renderParameters, imageProcessorCache, null);
+    }
+
+    /**
+     * Constructs a canvas based upon {@link RenderParameters} that is dynamically
+     * rendered when {@link #getChannels} is called.
+     *
+     * @param  renderParameters     parameters specifying tiles, transformations, and render context.
+     * @param  imageProcessorCache  cache of previously loaded pixel data (or null if caching is not desired).
+     * @param  meshCache            cache of previously built tile meshes (or null if caching is not desired).
+     */
+    public RenderedCanvasMipmapSource(final RenderParameters renderParameters,
+                                      final ImageProcessorCache imageProcessorCache,
+                                      final RenderTransformMeshCache meshCache) {
 
         this("canvas",
              renderParameters.getChannelNames(),
-             buildCanvasList(renderParameters, imageProcessorCache),
+             buildCanvasList(renderParameters, imageProcessorCache, (meshCache != null)),
              renderParameters.getX(),
              renderParameters.getY(),
              renderParameters.getWidth(),
@@ -74,9 +192,11 @@ public class RenderedCanvasMipmapSource
              renderParameters.getRes(renderParameters.getScale()),
              renderParameters.getScale(),
              renderParameters.getNumberOfThreads(),
+             renderParameters.getNumberOfTileThreads(),
              renderParameters.skipInterpolation(),
              renderParameters.hasMasks(),
-             renderParameters.binaryMask());
+             renderParameters.binaryMask(),
+             meshCache);
     }
 
     /**
@@ -110,6 +230,115 @@ public class RenderedCanvasMipmapSource
                                       final boolean skipInterpolation,
                                       final boolean hasMasks,
                                       final boolean binaryMask) {
+        this(canvasName,
+             channelNames,
+             canvasList,
+             x,
+             y,
+             fullScaleWidth,
+             fullScaleHeight,
+             meshCellSize,
+             levelZeroScale,
+             numberOfMappingThreads,
+             1,
+             skipInterpolation,
+             hasMasks,
+             binaryMask);
+    }
+
+    /**
+     * Constructs a canvas composed of {@link TransformableCanvas transformed sources}
+     * that is dynamically rendered when {@link #getChannels} is called.
+     *
+     * When more than one tile thread is requested, sources are loaded, meshed, and mapped concurrently.
+     * Sources with overlapping target regions are still mapped in list order so that the
+     * rendered result is identical to a sequential render.
+     *
+     * @param  canvasName              name of this canvas.
+     * @param  channelNames            names of channels to include in this canvas.
+     * @param  canvasList              list of transformed components to render.
+     * @param  x                       left coordinate for this canvas.
+     * @param  y                       top coordinate for this canvas.
+     * @param  fullScaleWidth          canvas width at mipmap level 0.
+     * @param  fullScaleHeight         canvas height at mipmap level 0.
+     * @param  meshCellSize            desired size of a mesh cell (triangle) in pixels.
+     * @param  levelZeroScale          scale factor for transformed components at mipmap level 0 of this canvas.
+     * @param  numberOfMappingThreads  number of threads to use for pixel mapping (ignored for tile parallel renders).
+     * @param  numberOfTileThreads     number of sources to load, mesh, and map concurrently.
+     * @param  skipInterpolation       enable sloppy but fast rendering by skipping interpolation.
+     * @param  hasMasks                true if this canvas contains at least one source with a mask.
+     * @param  binaryMask              render only 100% opaque pixels.
+     */
+    public RenderedCanvasMipmapSource(final String canvasName,
+                                      final Set<String> channelNames,
+                                      final List<TransformableCanvas> canvasList,
+                                      final double x,
+                                      final double y,
+                                      final int fullScaleWidth,
+                                      final int fullScaleHeight,
+                                      final double meshCellSize,
+                                      final double levelZeroScale,
+                                      final int numberOfMappingThreads,
+                                      final int numberOfTileThreads,
+                                      final boolean skipInterpolation,
+                                      final boolean hasMasks,
+                                      final boolean binaryMask) {
+        this(canvasName,
+             channelNames,
+             canvasList,
+             x,
+             y,
+             fullScaleWidth,
+             fullScaleHeight,
+             meshCellSize,
+             levelZeroScale,
+             numberOfMappingThreads,
+             numberOfTileThreads,
+             skipInterpolation,
+             hasMasks,
+             binaryMask,
+             null);
+    }
+
+    /**
+     * Constructs a canvas composed of {@link TransformableCanvas transformed sources}
+     * that is dynamically rendered when {@link #getChannels} is called.
+     *
+     * When a mesh cache is specified, meshes for canvases with a {@link TransformableCanvas#getTransformKey()}
+     * are built without the render offset, cached, and then translated to this canvas' offset
+     * (so that neighboring canvases rendered at the same scale can reuse them).
+     *
+     * @param  canvasName              name of this canvas.
+     * @param  channelNames            names of channels to include in this canvas.
+     * @param  canvasList              list of transformed components to render.
+     * @param  x                       left coordinate for this canvas.
+     * @param  y                       top coordinate for this canvas.
+     * @param  fullScaleWidth          canvas width at mipmap level 0.
+     * @param  fullScaleHeight         canvas height at mipmap level 0.
+     * @param  meshCellSize            desired size of a mesh cell (triangle) in pixels.
+     * @param  levelZeroScale          scale factor for transformed components at mipmap level 0 of this canvas.
+     * @param  numberOfMappingThreads  number of threads to use for pixel mapping (ignored for tile parallel renders).
+     * @param  numberOfTileThreads     number of sources to load, mesh, and map concurrently.
+     * @param  skipInterpolation       enable sloppy but fast rendering by skipping interpolation.
+     * @param  hasMasks                true if this canvas contains at least one source with a mask.
+     * @param  binaryMask              render only 100% opaque pixels.
+     * @param  meshCache               cache of previously built meshes (or null if caching is not desired).
+     */
+    public RenderedCanvasMipmapSource(final String canvasName,
+                                      final Set<String> channelNames,
+                                      final List<TransformableCanvas> canvasList,
+                                      final double x,
+                                      final double y,
+                                      final int fullScaleWidth,
+                                      final int fullScaleHeight,
+                                      final double meshCellSize,
+                                      final double levelZeroScale,
+                                      final int numberOfMappingThreads,
+                                      final int numberOfTileThreads,
+                                      final boolean skipInterpolation,
+                                      final boolean hasMasks,
+                                      final boolean binaryMask,
+                                      final RenderTransformMeshCache meshCache) {
         this.canvasName = canvasName;
         this.channelNames = channelNames;
         this.canvasList = canvasList;
@@ -120,9 +349,11 @@ public class RenderedCanvasMipmapSource
         this.meshCellSize = meshCellSize;
         this.levelZeroScale = levelZeroScale;
         this.numberOfMappingThreads = numberOfMappingThreads;
+        this.numberOfTileThreads = numberOfTileThreads;
         this.skipInterpolation = skipInterpolation;
         this.hasMasks = hasMasks;
         this.binaryMask = binaryMask;
+        this.meshCache = meshCache;
     }
 
     @Override
@@ -158,42 +389,466 @@ public class RenderedCanvasMipmapSource
                                        null));
         }
 
-        long totalScaleDerivationTime = 0;
+        final List<CanvasPlan> canvasPlans = planCanvases(levelScale, levelWidth, levelHeight);
+
+        // capture the caller's phase times here since canvases may be mapped by other threads
+        final RenderPhaseTimes phaseTimes = RenderPhaseTimes.forCurrentThread();
 
+        if ((numberOfTileThreads > 1) && (canvasPlans.size() > 1) && (! IS_TILE_RENDER_THREAD.get())) {
+            mapCanvasesConcurrently(canvasPlans, targetChannels, phaseTimes);
+        } else {
+            mapCanvasesSequentially(canvasPlans, targetChannels, phaseTimes);
+        }
+
+        return targetChannels;
+    }
+
+    /**
+     * Plans the render of each canvas and then culls canvases that cannot contribute any pixels to the target.
+     * Culling happens before any pixels are loaded and removes:
+     * <ul>
+     *     <li>canvases whose transformed footprint does not intersect the target, and</li>
+     *     <li>canvases (for mask-free renders) whose footprint within the target is completely covered by
+     *         the footprints of canvases later in the list (that will be drawn on top of them).</li>
+     * </ul>
+     * Footprints are dilated by {@value #FOOTPRINT_DILATION} target pixels before they are checked so that
+     * mesh and mipmap rounding differences cannot cause visible pixels to be culled.
+     *
+     * @return plans for canvases that need to be rendered (in original list order).
+     */
+    private List<CanvasPlan> planCanvases(final double levelScale,
+                                          final int levelWidth,
+                                          final int levelHeight) {
+
+        final long planStart = System.currentTimeMillis();
+
+        final int numberOfCanvases = canvasList.size();
+        final Rectangle2D targetBounds = new Rectangle2D.Double(0, 0, levelWidth, levelHeight);
+
+        final List<CanvasPlan> plansInTarget = new ArrayList<>(numberOfCanvases);
         for (final TransformableCanvas canvas : canvasList) {
+            final CanvasPlan canvasPlan = planCanvas(canvas, levelScale);
+            if (canvasPlan.getDilatedFootprintBounds().intersects(targetBounds)) {
+                plansInTarget.add(canvasPlan);
+            }
+        }
+
+        final List<CanvasPlan> visiblePlans;
+        if (hasMasks || (plansInTarget.size() < 2)) {
+            visiblePlans = plansInTarget;
+        } else {
+            visiblePlans = removeCompletelyObscuredPlans(plansInTarget, targetBounds);
+        }
+
+        final int numberOfOutsideCanvases = numberOfCanvases - plansInTarget.size();
+        final int numberOfObscuredCanvases = plansInTarget.size() - visiblePlans.size();
+
+        LOG.debug("planCanvases: culled {} canvases outside target and {} completely obscured canvases, {} of {} canvases remain, planning took {} milliseconds",
+                  numberOfOutsideCanvases,
+                  numberOfObscuredCanvases,
+                  visiblePlans.size(),
+                  numberOfCanvases,
+                  System.currentTimeMillis() - planStart);
+
+        return visiblePlans;
+    }
+
+    /**
+     * @return list of plans that are not completely obscured by plans later in the specified list.
+     *         A {@link TileBoundsRTree} of footprint bounds (with ids that sort in list order) is used to
+     *         find potentially obscuring plans and then exact footprint areas are compared.
+     */
+    private static List<CanvasPlan> removeCompletelyObscuredPlans(final List<CanvasPlan> plans,
+                                                                  final Rectangle2D targetBounds) {
+
+        final int numberOfPlans = plans.size();
+        final String idFormat = "%0" + String.valueOf(numberOfPlans).length() + "d";
+
+        final List<TileBounds> footprintBoundsList = new ArrayList<>(numberOfPlans);
+        for (int i = 0; i < numberOfPlans; i++) {
+            final Rectangle2D bounds = plans.get(i).getDilatedFootprintBounds();
+            footprintBoundsList.add(new TileBounds(String.format(idFormat, i), null, null,
+                                                   bounds.getMinX(), bounds.getMinY(),
+                                                   bounds.getMaxX(), bounds.getMaxY()));
+        }
+
+        final TileBoundsRTree footprintTree = new TileBoundsRTree(null, footprintBoundsList);
+
+        final List<CanvasPlan> visiblePlans = new ArrayList<>(numberOfPlans);
+
+        for (int i = 0; i < numberOfPlans; i++) {
+
+            final CanvasPlan plan = plans.get(i);
+            final TileBounds planBounds = footprintBoundsList.get(i);
+            final String planId = planBounds.getTileId();
+
+            final Area visibleArea = plan.getDilatedFootprint();
+            visibleArea.intersect(new Area(targetBounds));
+
+            for (final TileBounds laterBounds : footprintTree.findTilesInBox(planBounds.getMinX(),
+                                                                             planBounds.getMinY(),
+                                                                             planBounds.getMaxX(),
+                                                                             planBounds.getMaxY())) {
+                if (planId.compareTo(laterBounds.getTileId()) < 0) {
+                    final CanvasPlan laterPlan = plans.get(Integer.parseInt(laterBounds.getTileId()));
+                    visibleArea.subtract(new Area(laterPlan.getFootprint()));
+                    if (visibleArea.isEmpty()) {
+                        break;
+                    }
+                }
+            }
+
+            if (! visibleArea.isEmpty()) {
+                visiblePlans.add(plan);
+            }
+        }
+
+        return visiblePlans;
+    }
+
+    /**
+     * Maps each canvas in list order on the current thread
+     * (using {@link #numberOfMappingThreads} for the pixel mapping of each canvas).
+     *
+     * When there are multiple canvases, source pixels for a bounded window of upcoming canvases
+     * are prefetched in parallel so that mapping of each canvas overlaps with loading of the ones after it.
+     * The window is limited to avoid evicting already loaded (but not yet mapped) sources from small caches.
+     */
+    private void mapCanvasesSequentially(final List<CanvasPlan> canvasPlans,
+                                         final ChannelMap targetChannels,
+                                         final RenderPhaseTimes phaseTimes) {
+
+        final int prefetchWindow = canvasPlans.size() > 1 ? 2 * ImageProcessorCache.getPrefetchParallelism() : 0;
+        for (int i = 0; i < Math.min(prefetchWindow, canvasPlans.size()); i++) {
+            canvasPlans.get(i).prefetch();
+        }
+
+        for (int i = 0; i < canvasPlans.size(); i++) {
+            if ((prefetchWindow > 0) && (i + prefetchWindow < canvasPlans.size())) {
+                canvasPlans.get(i + prefetchWindow).prefetch();
+            }
+            final CanvasPlan canvasPlan = canvasPlans.get(i);
+            final SourceMapping sourceMapping = canvasPlan.buildMapping(targetChannels, phaseTimes);
+            if (sourceMapping != null) {
+                sourceMapping.map(numberOfMappingThreads);
+                sourceMapping.applySourceIntensityRanges();
+            }
+        }
+
+        if (meshCache != null) {
+            LOG.debug("getChannels: mapped {} canvases, mesh cache stats are {}",
+                      canvasPlans.size(),
+                      meshCache.getStats());
+        }
+    }
+
+    /**
+     * Loads, meshes, and maps canvases concurrently with up to {@link #numberOfTileThreads} threads
+     * from the shared tile render pool.
+     *
+     * The alpha and binary mask pixel mappers blend each source with whatever has already been mapped to
+     * the target, so the mapping order of overlapping canvases matters.  To produce the same result as
+     * {@link #mapCanvasesSequentially}, each canvas is only mapped after all earlier canvases with
+     * intersecting target bounds have been mapped.  Canvases with disjoint target bounds are mapped in parallel.
+     *
+     * To keep memory usage bounded, at most two canvases per thread are loaded but not yet mapped at any time.
+     * Once any canvas fails, no more canvases are loaded and all remaining loads and mappings are cancelled.
+     */
+    private void mapCanvasesConcurrently(final List<CanvasPlan> canvasPlans,
+                                         final ChannelMap targetChannels,
+                                         final RenderPhaseTimes phaseTimes) {
+
+        final long mapStart = System.currentTimeMillis();
+
+        final int numberOfCanvases = canvasPlans.size();
+        final int numberOfThreads = Math.min(Math.min(numberOfTileThreads, numberOfCanvases),
+                                             getTileRenderParallelism());
+
+        // NOTE: arrays (rather than lists) are used here so that elements written by this thread before
+        //       a dependent future is created are safely visible to the pool threads that complete it
+        @SuppressWarnings("unchecked")
+        final CompletableFuture<SourceMapping>[] preparedMappings = new CompletableFuture[numberOfCanvases];
+        @SuppressWarnings("unchecked")
+        final CompletableFuture<Void>[] completedMappings = new CompletableFuture[numberOfCanvases];
 
-            final long scaleDerivationStart = System.currentTimeMillis();
+        final Semaphore unmappedCanvasPermits = new Semaphore(numberOfThreads * 2);
+        final ExecutorService executorService = getTileRenderExecutor();
+
+        // completed exceptionally with the first load or mapping failure
+        final CompletableFuture<Void> firstFailure = new CompletableFuture<>();
+
+        try {
+
+            CompletableFuture<Void> allPreviousPrepared = CompletableFuture.completedFuture(null);
+            int numberOfQueuedCanvases = 0;
+
+            for (int i = 0; i < numberOfCanvases; i++) {
+
+                unmappedCanvasPermits.acquire();
+
+                if (firstFailure.isDone()) {
+                    break; // stop loading sources once anything fails
+                }
+
+                final CanvasPlan canvasPlan = canvasPlans.get(i);
+                final CompletableFuture<SourceMapping> prepared =
+                        CompletableFuture.supplyAsync(() -> canvasPlan.buildMapping(targetChannels, phaseTimes),
+                                                      executorService);
+                preparedMappings[i] = prepared;
+
+                // target bounds of all earlier canvases are needed before dependencies can be identified
+                final CompletableFuture<Void> allPrepared =
+                        allPreviousPrepared.thenCombine(prepared, (previous, current) -> null);
+
+                final int canvasIndex = i;
+                final CompletableFuture<Void> mapped = allPrepared.thenCompose(ignored -> {
+
+                    final SourceMapping sourceMapping = prepared.join();
+                    if (sourceMapping == null) {
+                        return CompletableFuture.completedFuture(null);
+                    }
+
+                    final List<CompletableFuture<Void>> overlappingMappings = new ArrayList<>();
+                    for (int j = 0; j < canvasIndex; j++) {
+                        final SourceMapping earlierMapping = preparedMappings[j].join();
+                        if ((earlierMapping != null) && earlierMapping.overlaps(sourceMapping)) {
+                            overlappingMappings.add(completedMappings[j]);
+                        }
+                    }
+
+                    return CompletableFuture
+                            .allOf(overlappingMappings.toArray(new CompletableFuture[overlappingMappings.size()]))
+                            .thenRunAsync(() -> sourceMapping.map(1), executorService);
+                });
+
+                completedMappings[i] = mapped;
+                mapped.whenComplete((result, throwable) -> {
+                    // record failures before releasing permits so that the loop sees them
+                    if (throwable != null) {
+                        firstFailure.completeExceptionally(throwable);
+                    }
+                    unmappedCanvasPermits.release();
+                });
+
+                allPreviousPrepared = allPrepared;
+                numberOfQueuedCanvases++;
+            }
+
+            // wait for all queued canvases to be mapped or for the first failure (whichever comes first)
+            final CompletableFuture<Void> allMapped =
+                    CompletableFuture.allOf(Arrays.copyOf(completedMappings, numberOfQueuedCanvases));
+            CompletableFuture.anyOf(allMapped, firstFailure).join();
+
+        } catch (final InterruptedException e) {
+            cancelAll(preparedMappings);
+            cancelAll(completedMappings);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while mapping canvases for " + canvasName, e);
+        } catch (final CompletionException e) {
+            cancelAll(preparedMappings);
+            cancelAll(completedMappings);
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalArgumentException("failed to map canvases for " + canvasName, cause);
+        }
+
+        // apply source intensity ranges in list order so the final target ranges match a sequential render
+        for (final CompletableFuture<SourceMapping> prepared : preparedMappings) {
+            final SourceMapping sourceMapping = prepared.join();
+            if (sourceMapping != null) {
+                sourceMapping.applySourceIntensityRanges();
+            }
+        }
+
+        LOG.debug("getChannels: mapping {} canvases with {} tile threads took {} milliseconds",
+                  numberOfCanvases,
+                  numberOfThreads,
+                  System.currentTimeMillis() - mapStart);
+    }
+
+    /**
+     * Cancels the specified futures (null elements are skipped).  Cancelled tasks that have not started are
+     * never run, but tasks that are already running finish normally.
+     */
+    private static void cancelAll(final CompletableFuture<?>[] futures) {
+        for (final CompletableFuture<?> future : futures) {
+            if (future != null) {
+                future.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Adds render scale and offset to the canvas transforms and derives the most appropriate source
+     * mipmap level for the canvas.  No source pixels are loaded.
+     *
+     * @return plan for rendering the canvas.
+     */
+    private CanvasPlan planCanvas(final TransformableCanvas canvas,
+                                  final double levelScale) {
+
+        final MipmapSource source = canvas.getSource();
+        final TransformKey transformKey = canvas.getTransformKey();
+
+        final int componentMipmapLevel;
+        final MeshFactory meshFactory;
+        final CoordinateTransform targetTransform;
+        final double targetOffsetX;
+        final double targetOffsetY;
+
+        final CoordinateTransformList<CoordinateTransform> canvasTransformList = canvas.getTransformList();
+
+        if ((meshCache != null) && (transformKey != null)) {
+
+            // build offset free transforms for cached meshes and then translate them to this canvas' offset
+            final CoordinateTransformList<CoordinateTransform> offsetFreeTransformList =
+                    new CoordinateTransformList<>();
+            offsetFreeTransformList.add(canvasTransformList);
+            addRenderScaleAndOffset(offsetFreeTransformList, levelZeroScale, levelScale, 0, 0);
+
+            componentMipmapLevel = deriveComponentMipmapLevel(source, offsetFreeTransformList);
+            targetTransform = offsetFreeTransformList;
+            targetOffsetX = -(x * levelScale);
+            targetOffsetY = -(y * levelScale);
+
+            meshFactory = (mipmapWidth, mipmapHeight) -> {
+                final RenderTransformMeshCache.MeshKey key =
+                        new RenderTransformMeshCache.MeshKey(transformKey,
+                                                             componentMipmapLevel,
+                                                             levelZeroScale,
+                                                             levelScale,
+                                                             meshCellSize,
+                                                             source.getFullScaleWidth(),
+                                                             mipmapWidth,
+                                                             mipmapHeight);
+                return meshCache.getTranslatedMesh(key,
+                                                   () -> createRenderMesh(componentMipmapLevel,
+                                                                          buildMeshTransformList(transformKey,
+                                                                                                 canvasTransformList,
+                                                                                                 source,
+                                                                                                 levelScale),
+                                                                          source.getFullScaleWidth(),
+                                                                          meshCellSize,
+                                                                          mipmapWidth,
+                                                                          mipmapHeight),
+                                                   targetOffsetX,
+                                                   targetOffsetY);
+            };
+
+        } else {
 
             final CoordinateTransformList<CoordinateTransform> renderTransformList =
-                    addRenderScaleAndOffset(canvas.getTransformList(), levelZeroScale, levelScale, x, y);
+                    addRenderScaleAndOffset(canvasTransformList, levelZeroScale, levelScale, x, y);
+
+            componentMipmapLevel = deriveComponentMipmapLevel(source, renderTransformList);
+            targetTransform = renderTransformList;
+            targetOffsetX = 0;
+            targetOffsetY = 0;
+
+            meshFactory = (mipmapWidth, mipmapHeight) -> createRenderMesh(componentMipmapLevel,
+                                                                          renderTransformList,
+                                                                          source.getFullScaleWidth(),
+                                                                          meshCellSize,
+                                                                          mipmapWidth,
+                                                                          mipmapHeight);
+        }
 
-            final MipmapSource source = canvas.getSource();
+        return new CanvasPlan(source,
+                              componentMipmapLevel,
+                              meshFactory,
+                              buildTargetFootprint(source, targetTransform, targetOffsetX, targetOffsetY));
+    }
 
-            final double averageScale = Utils.sampleAverageScale(renderTransformList,
-                                                                 source.getFullScaleWidth(),
-                                                                 source.getFullScaleHeight(),
-                                                                 meshCellSize);
+    /**
+     * Builds offset free render transforms for a (cache missing) mesh.
+     * Expensive non-linear transforms are (optionally) replaced with a grid approximation here since the
+     * approximation grid is cached per transform key and shared by meshes at every render scale.
+     * Deriving the mipmap level and target footprint only requires a few exact evaluations,
+     * so those always use the exact transforms.
+     *
+     * @return offset free transforms for building the mesh.
+     */
+    private CoordinateTransformList<CoordinateTransform> buildMeshTransformList(
+            final TransformKey transformKey,
+            final CoordinateTransformList<CoordinateTransform> canvasTransformList,
+            final MipmapSource source,
+            final double levelScale) {
+        final CoordinateTransformList<CoordinateTransform> meshTransformList = new CoordinateTransformList<>();
+        meshTransformList.add(GridApproximatedTransform.approximateIfEnabled(transformKey,
+                                                                             canvasTransformList,
+                                                                             source.getFullScaleWidth(),
+                                                                             source.getFullScaleHeight()));
+        return addRenderScaleAndOffset(meshTransformList, levelZeroScale, levelScale, 0, 0);
+    }
+
+    /**
+     * @return polygon outlining the target pixels covered by the specified source,
+     *         sampled every {@link #meshCellSize} full scale source pixels along the source's border.
+     */
+    private Path2D buildTargetFootprint(final MipmapSource source,
+                                        final CoordinateTransform targetTransform,
+                                        final double targetOffsetX,
+                                        final double targetOffsetY) {
+
+        final double maxX = source.getFullScaleWidth() - 1;
+        final double maxY = source.getFullScaleHeight() - 1;
+        final int numberOfXSteps = Math.max(1, (int) Math.ceil(maxX / meshCellSize));
+        final int numberOfYSteps = Math.max(1, (int) Math.ceil(maxY / meshCellSize));
+        final double stepX = maxX / numberOfXSteps;
+        final double stepY = maxY / numberOfYSteps;
+
+        final Path2D.Double footprint = new Path2D.Double();
+        final double[] point = new double[2];
+
+        // walk clockwise around the source border: top, right, bottom, and then left edge
+        for (int i = 0; i < numberOfXSteps; i++) {
+            addFootprintPoint(footprint, point, i * stepX, 0, targetTransform, targetOffsetX, targetOffsetY);
+        }
+        for (int i = 0; i < numberOfYSteps; i++) {
+            addFootprintPoint(footprint, point, maxX, i * stepY, targetTransform, targetOffsetX, targetOffsetY);
+        }
+        for (int i = numberOfXSteps; i > 0; i--) {
+            addFootprintPoint(footprint, point, i * stepX, maxY, targetTransform, targetOffsetX, targetOffsetY);
+        }
+        for (int i = numberOfYSteps; i > 0; i--) {
+            addFootprintPoint(footprint, point, 0, i * stepY, targetTransform, targetOffsetX, targetOffsetY);
+        }
 
-            final int componentMipmapLevel = Utils.bestMipmapLevel(averageScale);
+        footprint.closePath();
 
-            totalScaleDerivationTime += (System.currentTimeMillis() - scaleDerivationStart);
+        return footprint;
+    }
 
-            mapPixels(source,
-                      componentMipmapLevel,
-                      renderTransformList,
-                      meshCellSize,
-                      hasMasks,
-                      binaryMask,
-                      numberOfMappingThreads,
-                      skipInterpolation,
-                      targetChannels);
+    private static void addFootprintPoint(final Path2D.Double footprint,
+                                          final double[] point,
+                                          final double sourceX,
+                                          final double sourceY,
+                                          final CoordinateTransform targetTransform,
+                                          final double targetOffsetX,
+                                          final double targetOffsetY) {
+        point[0] = sourceX;
+        point[1] = sourceY;
+        targetTransform.applyInPlace(point);
+        final double targetX = point[0] + targetOffsetX;
+        final double targetY = point[1] + targetOffsetY;
+        if (footprint.getCurrentPoint() == null) {
+            footprint.moveTo(targetX, targetY);
+        } else {
+            footprint.lineTo(targetX, targetY);
         }
+    }
 
-        LOG.debug("getChannels: deriving average scale for {} canvases took {} milliseconds",
-                  canvasList.size(),
-                  totalScaleDerivationTime);
+    private int deriveComponentMipmapLevel(final MipmapSource source,
+                                           final CoordinateTransformList<CoordinateTransform> renderTransformList) {
 
-        return targetChannels;
+        final double averageScale = Utils.sampleAverageScale(renderTransformList,
+                                                             source.getFullScaleWidth(),
+                                                             source.getFullScaleHeight(),
+                                                             meshCellSize);
+
+        return Utils.bestMipmapLevel(averageScale);
     }
 
     /**
@@ -201,6 +856,20 @@ public class RenderedCanvasMipmapSource
      */
     public static List<TransformableCanvas> buildCanvasList(final RenderParameters renderParameters,
                                                             final ImageProcessorCache imageProcessorCache) {
+        return buildCanvasList(renderParameters, imageProcessorCache, false);
+    }
+
+    /**
+     * @param  renderParameters     parameters specifying tiles, transformations, and render context.
+     * @param  imageProcessorCache  cache of previously loaded pixel data.
+     * @param  identifyTransforms   indicates whether each canvas should be assigned a transform key
+     *                              (derived from its tile's transform specs) so that its meshes can be cached.
+     *
+     * @return a list of {@link TransformableCanvas} objects for the specified parameters.
+     */
+    public static List<TransformableCanvas> buildCanvasList(final RenderParameters renderParameters,
+                                                            final ImageProcessorCache imageProcessorCache,
+                                                            final boolean identifyTransforms) {
 
         final Set<String> channelNames = renderParameters.getChannelNames();
 
@@ -216,15 +885,21 @@ public class RenderedCanvasMipmapSource
                                          renderParameters.getMinIntensity(),
                                          renderParameters.getMaxIntensity(),
                                          renderParameters.excludeMask(),
-                                         imageProcessorCache);
+                                         imageProcessorCache,
+                                         ! renderParameters.hasFilters());
 
+            // filters change pixels in place, so filtered sources need their own copy of cached pixels
             if (renderParameters.hasFilters()) {
                 source = new FilteredMipmapSource("filtered " + source.getSourceName(),
                                                   source,
                                                   renderParameters.getFilters());
             }
 
-            canvasList.add(new TransformableCanvas(source, tileSpec.getTransforms().getNewInstanceAsList()));
+            final TransformKey transformKey = identifyTransforms ? tileSpec.getTransformKey() : null;
+
+            canvasList.add(new TransformableCanvas(source,
+                                                   tileSpec.getSharedTransformList(),
+                                                   transformKey));
         }
 
         return canvasList;
@@ -267,6 +942,8 @@ public class RenderedCanvasMipmapSource
     /**
      * Creates a mesh that incorporates a scale transform based upon the mipmap level
      * along with the transforms for the render context.
+     * If all of the transforms are affine, they are concatenated and a two triangle
+     * {@link RenderTransformMesh#createAffineMesh affine mesh} is returned.
      *
      * @param  mipmapLevel          source mipmap level.
      * @param  renderTransformList  list of transforms for the render context.
@@ -289,14 +966,24 @@ public class RenderedCanvasMipmapSource
         mipmapLevelTransformList.add(Utils.createScaleLevelTransform(mipmapLevel));
         mipmapLevelTransformList.add(renderTransformList);
 
-        // create mesh
-        final RenderTransformMesh mesh = new RenderTransformMesh(
-                mipmapLevelTransformList,
-                (int) (fullScaleWidth / meshCellSize + 0.5),
-                mipmapWidth,
-                mipmapHeight);
+        final RenderTransformMesh mesh;
+
+        final AffineModel2D affine = AffineConcatenation.concatenate(mipmapLevelTransformList);
+        if (affine != null) {
+
+            // purely affine transforms can be mapped with one affine, so skip building the full mesh
+            mesh = RenderTransformMesh.createAffineMesh(affine, mipmapWidth, mipmapHeight);
+
+        } else {
+
+            mesh = new RenderTransformMesh(
+                    mipmapLevelTransformList,
+                    (int) (fullScaleWidth / meshCellSize + 0.5),
+                    mipmapWidth,
+                    mipmapHeight);
 
-        mesh.updateAffines();
+            mesh.updateAffines();
+        }
 
         return mesh;
     }
@@ -325,76 +1012,24 @@ public class RenderedCanvasMipmapSource
                                  final boolean skipInterpolation,
                                  final ChannelMap targetChannels) {
 
-        final ChannelMap sourceChannels = source.getChannels(mipmapLevel);
-
-        if (sourceChannels.size() > 0) {
-
-            final long mapStart = System.currentTimeMillis();
-
-            // all channels should have same size, so we only need to look at the first channel
-            final ImageProcessorWithMasks firstChannel = sourceChannels.getFirstChannel();
-            final int mipmapWidth = firstChannel.ip.getWidth();
-            final int mipmapHeight = firstChannel.ip.getHeight();
-
-            if (canvasHasMasks) {
-                // add target mask for each channel if it does not already exist
-                for (final ImageProcessorWithMasks targetChannel : targetChannels.values()) {
-                    if (targetChannel.mask == null) {
-                        targetChannel.mask = new ByteProcessor(targetChannel.ip.getWidth(),
-                                                               targetChannel.ip.getHeight());
-                    }
-                }
-
-                // add empty (inverted) source mask for each channel if it does not already exist
-                for (final ImageProcessorWithMasks sourceChannel : sourceChannels.values()) {
-                    if (sourceChannel.mask == null) {
-                        sourceChannel.mask = new ByteProcessor(sourceChannel.ip.getWidth(),
-                                                               sourceChannel.ip.getHeight());
-                        sourceChannel.mask.invert();
-                    }
-                }
-            }
-
-            final PixelMapper tilePixelMapper = getPixelMapper(sourceChannels,
-                                                               canvasHasMasks,
-                                                               binaryMask,
-                                                               skipInterpolation,
-                                                               targetChannels);
-            if (tilePixelMapper != null) {
-
-                final RenderTransformMesh mesh = createRenderMesh(mipmapLevel,
-                                                                  renderTransformList,
-                                                                  source.getFullScaleWidth(),
-                                                                  meshCellSize,
-                                                                  mipmapWidth,
-                                                                  mipmapHeight);
-
-                final long meshCreationStop = System.currentTimeMillis();
-
-                final RenderTransformMeshMappingWithMasks mapping = new RenderTransformMeshMappingWithMasks(mesh);
-
-                final String mapType = skipInterpolation ? "" : " interpolated";
-                mapping.map(tilePixelMapper, numberOfMappingThreads);
-
-                // apply source channel intensity ranges to corresponding target channels
-                for (final String channelName : targetChannels.names()) {
-                    final ImageProcessorWithMasks sourceChannel = sourceChannels.get(channelName);
-                    final ImageProcessorWithMasks targetChannel = targetChannels.get(channelName);
-                    targetChannel.ip.setMinAndMax(sourceChannel.ip.getMin(), sourceChannel.ip.getMax());
-                }
-
-                final long mapStop = System.currentTimeMillis();
-
-                LOG.debug("mapPixels: mapping of {} took {} milliseconds to process (mesh:{}, map{}:{})",
-                          source.getSourceName(),
-                          mapStop - mapStart,
-                          meshCreationStop - mapStart,
-                          mapType,
-                          mapStop - meshCreationStop);
-            }
-
-        } else {
-            LOG.warn("mapPixels: {} does not have any channels to map", source.getSourceName());
+        final MeshFactory meshFactory = (mipmapWidth, mipmapHeight) -> createRenderMesh(mipmapLevel,
+                                                                                        renderTransformList,
+                                                                                        source.getFullScaleWidth(),
+                                                                                        meshCellSize,
+                                                                                        mipmapWidth,
+                                                                                        mipmapHeight);
+
+        final SourceMapping sourceMapping = SourceMapping.build(source,
+                                                                mipmapLevel,
+                                                                meshFactory,
+                                                                canvasHasMasks,
+                                                                binaryMask,
+                                                                skipInterpolation,
+                                                                targetChannels,
+                                                                RenderPhaseTimes.forCurrentThread());
+        if (sourceMapping != null) {
+            sourceMapping.map(numberOfMappingThreads);
+            sourceMapping.applySourceIntensityRanges();
         }
 
     }
@@ -414,15 +1049,33 @@ public class RenderedCanvasMipmapSource
         if (sourceChannels.size() > 1) {
 
             if (hasMask) {
+                final boolean isFloatSupported = FloatMultiChannelWithAlphaMapper.isSupported(sourceChannels,
+                                                                                              targetChannels);
                 if (binaryMask) {
-                    tilePixelMapper = new MultiChannelWithBinaryMaskMapper(sourceChannels,
-                                                                           targetChannels,
-                                                                           (! skipInterpolation));
+                    if (isFloatSupported) {
+                        tilePixelMapper = new FloatMultiChannelWithBinaryMaskMapper(sourceChannels,
+                                                                                    targetChannels,
+                                                                                    (! skipInterpolation));
+                    } else {
+                        tilePixelMapper = new MultiChannelWithBinaryMaskMapper(sourceChannels,
+                                                                               targetChannels,
+                                                                               (! skipInterpolation));
+                    }
                 } else {
-                    tilePixelMapper = new MultiChannelWithAlphaMapper(sourceChannels,
-                                                                      targetChannels,
-                                                                      (! skipInterpolation));
+                    if (isFloatSupported) {
+                        tilePixelMapper = new FloatMultiChannelWithAlphaMapper(sourceChannels,
+                                                                               targetChannels,
+                                                                               (! skipInterpolation));
+                    } else {
+                        tilePixelMapper = new MultiChannelWithAlphaMapper(sourceChannels,
+                                                                          targetChannels,
+                                                                          (! skipInterpolation));
+                    }
                 }
+            } else if (FloatMultiChannelMapper.isSupported(targetChannels)) {
+                tilePixelMapper = new FloatMultiChannelMapper(sourceChannels,
+                                                              targetChannels,
+                                                              (! skipInterpolation));
             } else {
                 tilePixelMapper = new MultiChannelMapper(sourceChannels,
                                                          targetChannels,
@@ -439,15 +1092,33 @@ public class RenderedCanvasMipmapSource
             if (targetChannel != null) {
 
                 if (hasMask) {
+                    final boolean isFloatSupported = FloatSingleChannelWithAlphaMapper.isSupported(sourceChannel,
+                                                                                                   targetChannel);
                     if (binaryMask) {
-                        tilePixelMapper = new SingleChannelWithBinaryMaskMapper(sourceChannel,
-                                                                                targetChannel,
-                                                                                (! skipInterpolation));
+                        if (isFloatSupported) {
+                            tilePixelMapper = new FloatSingleChannelWithBinaryMaskMapper(sourceChannel,
+                                                                                         targetChannel,
+                                                                                         (! skipInterpolation));
+                        } else {
+                            tilePixelMapper = new SingleChannelWithBinaryMaskMapper(sourceChannel,
+                                                                                    targetChannel,
+                                                                                    (! skipInterpolation));
+                        }
                     } else {
-                        tilePixelMapper = new SingleChannelWithAlphaMapper(sourceChannel,
-                                                                           targetChannel,
-                                                                           (! skipInterpolation));
+                        if (isFloatSupported) {
+                            tilePixelMapper = new FloatSingleChannelWithAlphaMapper(sourceChannel,
+                                                                                    targetChannel,
+                                                                                    (! skipInterpolation));
+                        } else {
+                            tilePixelMapper = new SingleChannelWithAlphaMapper(sourceChannel,
+                                                                               targetChannel,
+                                                                               (! skipInterpolation));
+                        }
                     }
+                } else if (FloatSingleChannelMapper.isSupported(targetChannel)) {
+                    tilePixelMapper = new FloatSingleChannelMapper(sourceChannel,
+                                                                   targetChannel,
+                                                                   (! skipInterpolation));
                 } else {
                     tilePixelMapper = new SingleChannelMapper(sourceChannel,
                                                               targetChannel,
@@ -466,6 +1137,286 @@ public class RenderedCanvasMipmapSource
         return tilePixelMapper;
     }
 
+    /**
+     * Source, mipmap level, mesh factory, and target footprint for one canvas that has been planned
+     * (but not yet loaded).
+     */
+    private class CanvasPlan {
+
+        private final MipmapSource source;
+        private final int componentMipmapLevel;
+        private final MeshFactory meshFactory;
+        private final Path2D footprint;
+        private final Shape dilatedFootprint;
+
+        CanvasPlan(final MipmapSource source,
+                   final int componentMipmapLevel,
+                   final MeshFactory meshFactory,
+                   final Path2D footprint) {
+            this.source = source;
+            this.componentMipmapLevel = componentMipmapLevel;
+            this.meshFactory = meshFactory;
+            this.footprint = footprint;
+            this.dilatedFootprint = FOOTPRINT_DILATION_STROKE.createStrokedShape(footprint);
+        }
+
+        Path2D getFootprint() {
+            return footprint;
+        }
+
+        /**
+         * @return new area that includes the footprint and a border around it.
+         */
+        Area getDilatedFootprint() {
+            final Area area = new Area(footprint);
+            area.add(new Area(dilatedFootprint));
+            return area;
+        }
+
+        Rectangle2D getDilatedFootprintBounds() {
+            return dilatedFootprint.getBounds2D();
+        }
+
+        /**
+         * Starts loading the canvas source pixels in the background.
+         */
+        void prefetch() {
+            source.prefetchChannels(componentMipmapLevel);
+        }
+
+        /**
+         * Loads the canvas source pixels and builds (or retrieves from the mesh cache) the canvas mesh.
+         *
+         * @return mapping ready to be applied or null if the canvas source has no pixels to map.
+         */
+        SourceMapping buildMapping(final ChannelMap targetChannels,
+                                   final RenderPhaseTimes phaseTimes) {
+            return SourceMapping.build(source,
+                                       componentMipmapLevel,
+                                       meshFactory,
+                                       hasMasks,
+                                       binaryMask,
+                                       skipInterpolation,
+                                       targetChannels,
+                                       phaseTimes);
+        }
+    }
+
+    /**
+     * Creates the mesh for a source once the dimensions of its mipmap are known.
+     */
+    private interface MeshFactory {
+        RenderTransformMesh create(final int mipmapWidth,
+                                   final int mipmapHeight);
+    }
+
+    /**
+     * Source pixels, pixel mapper, and mesh for one source that is ready to be mapped to target channels.
+     * Heavy source data is released once mapping completes so that only the target bounds and
+     * source intensity ranges are retained.
+     */
+    private static class SourceMapping {
+
+        private final String sourceName;
+        private final ChannelMap targetChannels;
+        private final Map<String, double[]> sourceIntensityRanges;
+        private final Rectangle targetBounds;
+        private final boolean skipInterpolation;
+        private final long mapStart;
+        private final long meshCreationStop;
+        private final RenderPhaseTimes phaseTimes;
+
+        private PixelMapper pixelMapper;
+        private RenderTransformMesh mesh;
+
+        private SourceMapping(final String sourceName,
+                              final ChannelMap sourceChannels,
+                              final ChannelMap targetChannels,
+                              final PixelMapper pixelMapper,
+                              final RenderTransformMesh mesh,
+                              final boolean skipInterpolation,
+                              final long mapStart,
+                              final long meshCreationStop,
+                              final RenderPhaseTimes phaseTimes) {
+
+            this.sourceName = sourceName;
+            this.targetChannels = targetChannels;
+            this.pixelMapper = pixelMapper;
+            this.mesh = mesh;
+            this.skipInterpolation = skipInterpolation;
+            this.mapStart = mapStart;
+            this.meshCreationStop = meshCreationStop;
+            this.phaseTimes = phaseTimes;
+
+            this.sourceIntensityRanges = new LinkedHashMap<>();
+            for (final String channelName : targetChannels.names()) {
+                final ImageProcessorWithMasks sourceChannel = sourceChannels.get(channelName);
+                sourceIntensityRanges.put(channelName,
+                                          new double[] { sourceChannel.ip.getMin(), sourceChannel.ip.getMax() });
+            }
+
+            // use the same rounding and clipping as the triangle mapping so that bounds are exact
+            final double[] min = new double[2];
+            final double[] max = new double[2];
+            mesh.bounds(min, max);
+            final int minX = Math.max(0, Util.roundPos(min[0]));
+            final int minY = Math.max(0, Util.roundPos(min[1]));
+            final int maxX = Math.min(pixelMapper.getTargetWidth() - 1, Util.roundPos(max[0]));
+            final int maxY = Math.min(pixelMapper.getTargetHeight() - 1, Util.roundPos(max[1]));
+            this.targetBounds = new Rectangle(minX, minY, maxX - minX + 1, maxY - minY + 1);
+        }
+
+        /**
+         * @return true if this source's target bounds intersect the other source's target bounds.
+         */
+        boolean overlaps(final SourceMapping that) {
+            return this.targetBounds.intersects(that.targetBounds);
+        }
+
+        void map(final int numberOfMappingThreads) {
+
+            final RenderTransformMeshMappingWithMasks mapping = new RenderTransformMeshMappingWithMasks(mesh);
+
+            final String mapType = skipInterpolation ? "" : " interpolated";
+            final long mapPixelsStart = System.currentTimeMillis();
+            final long mapPixelsStartNanos = System.nanoTime();
+            final int numberOfTrianglesInTarget = mapping.map(pixelMapper, numberOfMappingThreads);
+
+            final long mapStop = System.currentTimeMillis();
+
+            if (phaseTimes != null) {
+                phaseTimes.addMapNanos(System.nanoTime() - mapPixelsStartNanos);
+            }
+
+            final int numberOfTriangles = mesh.getAV().size();
+
+            // release source pixels and mesh as soon as they are no longer needed
+            pixelMapper = null;
+            mesh = null;
+
+            LOG.debug("mapPixels: mapping of {} took {} milliseconds to process (mesh:{}, map{}:{}), culled {} of {} triangles outside target",
+                      sourceName,
+                      (meshCreationStop - mapStart) + (mapStop - mapPixelsStart),
+                      meshCreationStop - mapStart,
+                      mapType,
+                      mapStop - mapPixelsStart,
+                      numberOfTriangles - numberOfTrianglesInTarget,
+                      numberOfTriangles);
+        }
+
+        /**
+         * Applies source channel intensity ranges to corresponding target channels.
+         */
+        void applySourceIntensityRanges() {
+            for (final String channelName : sourceIntensityRanges.keySet()) {
+                final double[] minAndMax = sourceIntensityRanges.get(channelName);
+                targetChannels.get(channelName).ip.setMinAndMax(minAndMax[0], minAndMax[1]);
+            }
+        }
+
+        /**
+         * Loads the source pixels and prepares them for mapping.
+         *
+         * @return mapping ready to be applied or null if the source has no pixels to map.
+         */
+        static SourceMapping build(final MipmapSource source,
+                                   final int mipmapLevel,
+                                   final MeshFactory meshFactory,
+                                   final boolean canvasHasMasks,
+                                   final boolean binaryMask,
+                                   final boolean skipInterpolation,
+                                   final ChannelMap targetChannels,
+                                   final RenderPhaseTimes phaseTimes) {
+
+            SourceMapping sourceMapping = null;
+
+            // bind phase times to worker threads so that source cache hits are counted for the request
+            final RenderPhaseTimes threadPhaseTimes = RenderPhaseTimes.forCurrentThread();
+            final boolean bindPhaseTimes = (phaseTimes != null) && (phaseTimes != threadPhaseTimes);
+            if (bindPhaseTimes) {
+                phaseTimes.bindToCurrentThread();
+            }
+
+            final long loadStart = System.nanoTime();
+            final ChannelMap sourceChannels;
+            try {
+                sourceChannels = source.getChannels(mipmapLevel);
+            } finally {
+                if (bindPhaseTimes) {
+                    if (threadPhaseTimes == null) {
+                        RenderPhaseTimes.unbindFromCurrentThread();
+                    } else {
+                        threadPhaseTimes.bindToCurrentThread();
+                    }
+                }
+            }
+            if (phaseTimes != null) {
+                phaseTimes.addLoadNanos(System.nanoTime() - loadStart);
+            }
+
+            if (sourceChannels.size() > 0) {
+
+                final long mapStart = System.currentTimeMillis();
+
+                // all channels should have same size, so we only need to look at the first channel
+                final ImageProcessorWithMasks firstChannel = sourceChannels.getFirstChannel();
+                final int mipmapWidth = firstChannel.ip.getWidth();
+                final int mipmapHeight = firstChannel.ip.getHeight();
+
+                if (canvasHasMasks) {
+                    // add target mask for each channel if it does not already exist
+                    // (target channels are shared when sources are mapped concurrently)
+                    synchronized (targetChannels) {
+                        for (final ImageProcessorWithMasks targetChannel : targetChannels.values()) {
+                            if (targetChannel.mask == null) {
+                                targetChannel.mask = new ByteProcessor(targetChannel.ip.getWidth(),
+                                                                       targetChannel.ip.getHeight());
+                            }
+                        }
+                    }
+
+                    // add empty (inverted) source mask for each channel if it does not already exist
+                    for (final ImageProcessorWithMasks sourceChannel : sourceChannels.values()) {
+                        if (sourceChannel.mask == null) {
+                            sourceChannel.mask = new ByteProcessor(sourceChannel.ip.getWidth(),
+                                                                   sourceChannel.ip.getHeight());
+                            sourceChannel.mask.invert();
+                        }
+                    }
+                }
+
+                final PixelMapper tilePixelMapper = getPixelMapper(sourceChannels,
+                                                                   canvasHasMasks,
+                                                                   binaryMask,
+                                                                   skipInterpolation,
+                                                                   targetChannels);
+                if (tilePixelMapper != null) {
+
+                    final long meshStart = System.nanoTime();
+                    final RenderTransformMesh mesh = meshFactory.create(mipmapWidth, mipmapHeight);
+                    if (phaseTimes != null) {
+                        phaseTimes.addMeshNanos(System.nanoTime() - meshStart);
+                    }
+
+                    sourceMapping = new SourceMapping(source.getSourceName(),
+                                                      sourceChannels,
+                                                      targetChannels,
+                                                      tilePixelMapper,
+                                                      mesh,
+                                                      skipInterpolation,
+                                                      mapStart,
+                                                      System.currentTimeMillis(),
+                                                      phaseTimes);
+                }
+
+            } else {
+                LOG.warn("mapPixels: {} does not have any channels to map", source.getSourceName());
+            }
+
+            return sourceMapping;
+        }
+    }
+
     private static final Logger LOG = LoggerFactory.getLogger(RenderedCanvasMipmapSource.class);
 
 }
@@ -2,6 +2,7 @@ package org.janelia.alignment.mipmap;
 
 import ij.process.ImageProcessor;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -31,6 +32,7 @@ public class UrlMipmapSource
     private final Double renderMaxIntensity;
     private final boolean excludeMask;
     private final ImageProcessorCache imageProcessorCache;
+    private final boolean shareCachedPixels;
 
     /**
      * Constructs a source that will load data when {@link #getChannels} is called.
@@ -52,6 +54,41 @@ public class UrlMipmapSource
                            final Double renderMaxIntensity,
                            final boolean excludeMask,
                            final ImageProcessorCache imageProcessorCache) {
+        this(sourceName,
+             fullScaleWidth,
+             fullScaleHeight,
+             channelSpecList,
+             renderMinIntensity,
+             renderMaxIntensity,
+             excludeMask,
+             imageProcessorCache,
+             false);
+    }
+
+    /**
+     * Constructs a source that will load data when {@link #getChannels} is called.
+     *
+     * @param  sourceName           name of this source.
+     * @param  fullScaleWidth       full scale (level 0) width of this source (specify as -1 if unknown).
+     * @param  fullScaleHeight      full scale (level 0) height of this source (specify as -1 if unknown).
+     * @param  channelSpecList      list of channel specifications for this source.
+     * @param  renderMinIntensity   minimum intensity value for all channel specs (or null to use spec intensity values).
+     * @param  renderMaxIntensity   maximum intensity value for all channel specs (or null to use spec intensity values).
+     * @param  excludeMask          flag indicating whether mask data should be excluded.
+     * @param  imageProcessorCache  cache of previously loaded pixel data (or null if caching is not desired).
+     * @param  shareCachedPixels    if true, returned channels share pixel arrays with cached instances
+     *                              (see {@link ImageProcessorCache#getReadOnlyView}) and must not be modified;
+     *                              if false, returned channels contain copies that callers may modify.
+     */
+    public UrlMipmapSource(final String sourceName,
+                           final int fullScaleWidth,
+                           final int fullScaleHeight,
+                           final List<ChannelSpec> channelSpecList,
+                           final Double renderMinIntensity,
+                           final Double renderMaxIntensity,
+                           final boolean excludeMask,
+                           final ImageProcessorCache imageProcessorCache,
+                           final boolean shareCachedPixels) {
         this.sourceName = sourceName;
         this.fullScaleWidth = fullScaleWidth;
         this.fullScaleHeight = fullScaleHeight;
@@ -64,6 +101,7 @@ public class UrlMipmapSource
         } else {
             this.imageProcessorCache = imageProcessorCache;
         }
+        this.shareCachedPixels = shareCachedPixels;
     }
 
     @Override
@@ -114,10 +152,10 @@ public class UrlMipmapSource
                         " mipmap is needed.  Upscaling is not currently supported.");
             }
 
-            final ImageProcessor imageProcessor = imageProcessorCache.get(imageAndMask.getImageUrl(),
-                                                                          downSampleLevels,
-                                                                          false,
-                                                                          firstChannelSpec.is16Bit());
+            final ImageProcessor imageProcessor = getProcessor(imageAndMask.getImageUrl(),
+                                                               downSampleLevels,
+                                                               false,
+                                                               firstChannelSpec.is16Bit());
             final long loadMipStop = System.currentTimeMillis();
 
             if (imageProcessor.getWidth() == 0 || imageProcessor.getHeight() == 0) {
@@ -131,7 +169,7 @@ public class UrlMipmapSource
                 final ImageProcessor maskProcessor;
                 final String maskUrl = imageAndMask.getMaskUrl();
                 if ((maskUrl != null) && (!excludeMask)) {
-                    maskProcessor = imageProcessorCache.get(maskUrl, downSampleLevels, true, false);
+                    maskProcessor = getProcessor(maskUrl, downSampleLevels, true, false);
                 } else {
                     maskProcessor = null;
                 }
@@ -177,6 +215,41 @@ public class UrlMipmapSource
         return channels;
     }
 
+    /**
+     * Queues the image and mask for each channel at the specified level for loading by this source's cache.
+     * Levels that cannot be loaded (because they would require upscaling) are ignored here
+     * so that the error is reported by {@link #getChannels}.
+     */
+    @Override
+    public void prefetchChannels(final int mipmapLevel) {
+
+        if ((channelSpecList != null) && (channelSpecList.size() > 0)) {
+
+            final List<ImageProcessorCache.CacheKey> keys = new ArrayList<>();
+
+            for (final ChannelSpec channelSpec : channelSpecList) {
+
+                final Map.Entry<Integer, ImageAndMask> mipmapEntry = channelSpec.getFloorMipmapEntry(mipmapLevel);
+                final ImageAndMask imageAndMask = mipmapEntry.getValue();
+                final int currentMipmapLevel = mipmapEntry.getKey();
+
+                if (currentMipmapLevel <= mipmapLevel) {
+                    final int downSampleLevels = mipmapLevel - currentMipmapLevel;
+                    keys.add(new ImageProcessorCache.CacheKey(imageAndMask.getImageUrl(),
+                                                              downSampleLevels,
+                                                              false,
+                                                              channelSpec.is16Bit()));
+                    final String maskUrl = imageAndMask.getMaskUrl();
+                    if ((maskUrl != null) && (! excludeMask)) {
+                        keys.add(new ImageProcessorCache.CacheKey(maskUrl, downSampleLevels, true, false));
+                    }
+                }
+            }
+
+            imageProcessorCache.prefetch(keys);
+        }
+    }
+
     /**
      * Loads remaining channel data for multi-channel images.
      *
@@ -203,10 +276,10 @@ public class UrlMipmapSource
                 downSampleLevels = mipmapLevel - currentMipmapLevel;
             }
 
-            final ImageProcessor imageProcessor = imageProcessorCache.get(imageAndMask.getImageUrl(),
-                                                                          downSampleLevels,
-                                                                          false,
-                                                                          channelSpec.is16Bit());
+            final ImageProcessor imageProcessor = getProcessor(imageAndMask.getImageUrl(),
+                                                               downSampleLevels,
+                                                               false,
+                                                               channelSpec.is16Bit());
 
             if (imageProcessor.getWidth() == firstChannelWidth && imageProcessor.getWidth() == firstChannelHeight) {
 
@@ -214,7 +287,7 @@ public class UrlMipmapSource
                 final ImageProcessor maskProcessor;
                 final String maskUrl = imageAndMask.getMaskUrl();
                 if ((maskUrl != null) && (! excludeMask)) {
-                    maskProcessor = imageProcessorCache.get(maskUrl, downSampleLevels, true, false);
+                    maskProcessor = getProcessor(maskUrl, downSampleLevels, true, false);
                 } else {
                     maskProcessor = null;
                 }
@@ -250,14 +323,28 @@ public class UrlMipmapSource
         final ChannelSpec firstChannelSpec = channelSpecList.get(0);
         final Map.Entry<Integer, ImageAndMask> mipmapEntry = firstChannelSpec.getFloorMipmapEntry(0);
         final ImageAndMask imageAndMask = mipmapEntry.getValue();
-        final ImageProcessor imageProcessor = imageProcessorCache.get(imageAndMask.getImageUrl(),
-                                                                      0,
-                                                                      false,
-                                                                      firstChannelSpec.is16Bit());
+        // only dimensions are needed here, so never copy pixels
+        final ImageProcessor imageProcessor = imageProcessorCache.getReadOnlyView(imageAndMask.getImageUrl(),
+                                                                                  0,
+                                                                                  false,
+                                                                                  firstChannelSpec.is16Bit());
         fullScaleWidth = imageProcessor.getWidth();
         fullScaleHeight = imageProcessor.getHeight();
     }
 
+    private ImageProcessor getProcessor(final String url,
+                                        final int downSampleLevels,
+                                        final boolean isMask,
+                                        final boolean convertTo16Bit) {
+        final ImageProcessor imageProcessor;
+        if (shareCachedPixels) {
+            imageProcessor = imageProcessorCache.getReadOnlyView(url, downSampleLevels, isMask, convertTo16Bit);
+        } else {
+            imageProcessor = imageProcessorCache.get(url, downSampleLevels, isMask, convertTo16Bit);
+        }
+        return imageProcessor;
+    }
+
     private void setMinAndMaxIntensity(final ImageProcessor imageProcessor,
                                        final ChannelSpec channelSpec) {
         final double minChannelIntensity = (renderMinIntensity == null) ? channelSpec.getMinIntensity() : renderMinIntensity;
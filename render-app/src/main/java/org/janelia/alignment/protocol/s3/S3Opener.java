@@ -1,20 +1,15 @@
 package org.janelia.alignment.protocol.s3;
 
-import com.amazonaws.AmazonClientException;
-import com.amazonaws.AmazonServiceException;
-import com.amazonaws.auth.AWSCredentialsProvider;
-import com.amazonaws.auth.DefaultAWSCredentialsProviderChain;
-import com.amazonaws.services.s3.AmazonS3;
-import com.amazonaws.services.s3.AmazonS3ClientBuilder;
 import com.google.common.net.MediaType;
 
 import ij.ImagePlus;
 
 import java.awt.Image;
 import java.awt.Toolkit;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.URL;
 import java.net.URLConnection;
 import java.util.Locale;
 
@@ -27,14 +22,13 @@ import org.slf4j.LoggerFactory;
  * Wrapper to the ij.io.Opener for render.
  *
  * This is a kludge as -Djava.protocol.handler.pkgs=org.janelia.alignment.protocol does not seem to work with Jetty.
+ *
+ * All s3:// loads share one pooled client (see {@link SharedS3Client}) and read each object with a single request.
  */
 public class S3Opener extends ij.io.Opener {
 
-    private S3Handler handler;
-
     public S3Opener() {
         super();
-        this.handler = null;
     }
 
     @Override
@@ -44,41 +38,15 @@ public class S3Opener extends ij.io.Opener {
 
         if (url.startsWith("s3://")) {
 
-            String name = "";
-            final int index = url.lastIndexOf('/');
-            if (index > 0) {
-                name = url.substring(index + 1);
-            }
-
             try {
 
-                if (handler == null) {
-                    buildS3Handler();
-                }
+                // the connection issues one GET request, so use its stream rather than re-opening the url
+                final URLConnection uc = SharedS3Client.getUrl(url).openConnection();
+                final String contentTypeString = uc.getContentType();
+                final MediaType contentType = contentTypeString == null ? null : MediaType.parse(contentTypeString);
 
-                final URL u = new URL(null, url, handler);
-                final URLConnection uc = u.openConnection();
-
-                // assumes content type is always available, should be ok
-                final MediaType contentType = MediaType.parse(uc.getContentType());
-
-                final String lowerCaseUrl = url.toLowerCase(Locale.US);
-
-                // honor content type over resource naming conventions, check for most common source image types first
-                if (contentType.equals(MediaType.TIFF)) {
-                    imagePlus = super.openTiff(u.openStream(), name);
-                } else if (contentType.equals(MediaType.PNG)) {
-                    imagePlus = openPngUsingURL(name, u);
-                } else if (contentType.equals(MediaType.JPEG) || contentType.equals(MediaType.GIF)) {
-                    imagePlus = openJpegOrGifUsingURL(name, u);
-                } else if (lowerCaseUrl.endsWith(".tif") || lowerCaseUrl.endsWith(".tiff")) {
-                    imagePlus = super.openTiff(u.openStream(), name);
-                } else if (lowerCaseUrl.endsWith(".png")) {
-                    imagePlus = openPngUsingURL(name, u);
-                } else if (lowerCaseUrl.endsWith(".jpg") || lowerCaseUrl.endsWith(".gif")) {
-                    imagePlus = openJpegOrGifUsingURL(name, u);
-                } else {
-                    throw new IOException("unsupported content type " + contentType + " for " + url);
+                try (final InputStream in = uc.getInputStream()) {
+                    imagePlus = open(url, contentType, in);
                 }
 
             } catch (final Throwable t) {
@@ -93,34 +61,99 @@ public class S3Opener extends ij.io.Opener {
         return imagePlus;
     }
 
+    /**
+     * Opens an image that has already been read into memory (e.g. by a decoder that does not support
+     * the image's pixel type) so that it does not need to be requested again.
+     * The image format is derived from the url's file name extension.
+     * Images with extensions that cannot be opened from memory are re-read with {@link #openURL}.
+     *
+     * @param  url           url for the image (used to identify its format).
+     * @param  encodedBytes  encoded image bytes.
+     *
+     * @return the opened image or null if it could not be opened.
+     */
+    public ImagePlus openBytes(final String url,
+                               final byte[] encodedBytes) {
+
+        ImagePlus imagePlus = null;
+
+        if (isSupportedExtension(url.toLowerCase(Locale.US))) {
+            try (final InputStream in = new ByteArrayInputStream(encodedBytes)) {
+                imagePlus = open(url, null, in);
+            } catch (final Throwable t) {
+                // null imagePlus will be returned and handled upstream, no need to raise exception here
+                LOG.error("failed to load " + url, t);
+            }
+        } else {
+            imagePlus = openURL(url);
+        }
+
+        return imagePlus;
+    }
+
+    private ImagePlus open(final String url,
+                           final MediaType contentType,
+                           final InputStream in)
+            throws IOException {
+
+        String name = "";
+        final int index = url.lastIndexOf('/');
+        if (index > 0) {
+            name = url.substring(index + 1);
+        }
+
+        final String lowerCaseUrl = url.toLowerCase(Locale.US);
+
+        final ImagePlus imagePlus;
+
+        // honor content type over resource naming conventions, check for most common source image types first
+        if (MediaType.TIFF.equals(contentType)) {
+            imagePlus = super.openTiff(in, name);
+        } else if (MediaType.PNG.equals(contentType)) {
+            imagePlus = openPng(name, in);
+        } else if (MediaType.JPEG.equals(contentType) || MediaType.GIF.equals(contentType)) {
+            imagePlus = openJpegOrGif(name, in);
+        } else if (lowerCaseUrl.endsWith(".tif") || lowerCaseUrl.endsWith(".tiff")) {
+            imagePlus = super.openTiff(in, name);
+        } else if (lowerCaseUrl.endsWith(".png")) {
+            imagePlus = openPng(name, in);
+        } else if (lowerCaseUrl.endsWith(".jpg") || lowerCaseUrl.endsWith(".jpeg") || lowerCaseUrl.endsWith(".gif")) {
+            imagePlus = openJpegOrGif(name, in);
+        } else {
+            throw new IOException("unsupported content type " + contentType + " for " + url);
+        }
+
+        return imagePlus;
+    }
+
+    private static boolean isSupportedExtension(final String lowerCaseUrl) {
+        return lowerCaseUrl.endsWith(".tif") || lowerCaseUrl.endsWith(".tiff") || lowerCaseUrl.endsWith(".png") ||
+               lowerCaseUrl.endsWith(".jpg") || lowerCaseUrl.endsWith(".jpeg") || lowerCaseUrl.endsWith(".gif");
+    }
+
     /* The following are based on protected methods from ij.io.Opener. */
-    private ImagePlus openJpegOrGifUsingURL(final String title,
-                                            final URL url) {
-        final Image img = Toolkit.getDefaultToolkit().createImage(url);
+    private ImagePlus openJpegOrGif(final String title,
+                                    final InputStream in)
+            throws IOException {
+        final Image img = Toolkit.getDefaultToolkit().createImage(readAllBytes(in));
         return new ImagePlus(title, img);
     }
 
-    private ImagePlus openPngUsingURL(final String title,
-                                      final URL url)
+    private ImagePlus openPng(final String title,
+                              final InputStream in)
             throws IOException {
-        final Image img;
-        final InputStream in = url.openStream();
-        img = ImageIO.read(in);
+        final Image img = ImageIO.read(in);
         return new ImagePlus(title, img);
     }
 
-    private synchronized void buildS3Handler() throws IOException {
-        if (handler == null) {
-            try {
-                final AWSCredentialsProvider credentialsProvider = new DefaultAWSCredentialsProviderChain();
-                final AmazonS3 s3Client = AmazonS3ClientBuilder.standard().withCredentials(credentialsProvider).build();
-                handler = new S3Handler(s3Client);
-            } catch (final AmazonServiceException ase) {
-                throw new IOException("Amazon S3 service failure for error type " + ase.getErrorType(), ase);
-            } catch (final AmazonClientException ace) {
-                throw new IOException("Amazon S3 client failure", ace);
-            }
+    private static byte[] readAllBytes(final InputStream in)
+            throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+        final byte[] buffer = new byte[64 * 1024];
+        for (int count = in.read(buffer); count != -1; count = in.read(buffer)) {
+            out.write(buffer, 0, count);
         }
+        return out.toByteArray();
     }
 
     private static final Logger LOG = LoggerFactory.getLogger(S3Opener.class);
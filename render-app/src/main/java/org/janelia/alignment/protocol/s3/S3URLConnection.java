@@ -5,6 +5,7 @@ import com.amazonaws.AmazonServiceException;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3URI;
 import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.S3Object;
 
 import java.io.IOException;
@@ -22,6 +23,9 @@ import org.slf4j.LoggerFactory;
  * When registered, ImageJ's Opener will be able to retrieve "s3://" URLs.
  * ProfileCredentialsProvider is used if no alternate is provided.  This should handle most uses.
  *
+ * Each connection issues a single GET request for its object (or object range),
+ * so metadata (e.g. content type) and content are both retrieved from the same response.
+ *
  * Based on AWS S3 SDK sample code: http://docs.aws.amazon.com/AmazonS3/latest/dev/RetrievingObjectUsingJava.html
  */
 public class S3URLConnection extends URLConnection {
@@ -29,12 +33,43 @@ public class S3URLConnection extends URLConnection {
     private S3Object s3object = null;
     private final AmazonS3URI s3uri;
     private final AmazonS3 s3Client;
+    private long[] range;
 
     public S3URLConnection(final URL url,
                            final AmazonS3 s3Client) {
         super(url);
         this.s3uri = new AmazonS3URI(url.toString());
         this.s3Client = s3Client;
+        this.range = null;
+    }
+
+    /**
+     * Limits the content retrieved by this connection to the specified (inclusive) byte range.
+     * Must be called before the connection is made.
+     *
+     * This is provided for clients that only need part of an object (e.g. an image header).
+     * Render's own image loading always reads whole objects since the registered decoders need
+     * every pixel of an image.
+     *
+     * @param  start  index of first byte to retrieve.
+     * @param  end    index of last byte to retrieve.
+     *
+     * @throws IllegalArgumentException
+     *   if the start is negative or the end is before the start.
+     *
+     * @throws IllegalStateException
+     *   if this connection has already been made.
+     */
+    public void setRange(final long start,
+                         final long end)
+            throws IllegalArgumentException, IllegalStateException {
+        if (connected) {
+            throw new IllegalStateException("range must be set before connecting to " + getURL());
+        }
+        if ((start < 0) || (end < start)) {
+            throw new IllegalArgumentException("invalid range " + start + "-" + end);
+        }
+        this.range = new long[] { start, end };
     }
 
     public void connect() throws IOException {
@@ -54,6 +89,33 @@ public class S3URLConnection extends URLConnection {
         return contentType;
     }
 
+    @Override
+    public long getContentLengthLong() {
+        long contentLength = -1;
+        try {
+            connect();
+            contentLength = s3object.getObjectMetadata().getContentLength();
+        } catch (final Throwable t) {
+            LOG.warn("failed to retrieve content length for " + getURL(), t);
+        }
+        return contentLength;
+    }
+
+    @Override
+    public long getLastModified() {
+        long lastModified = 0;
+        try {
+            connect();
+            final ObjectMetadata metadata = s3object.getObjectMetadata();
+            if (metadata.getLastModified() != null) {
+                lastModified = metadata.getLastModified().getTime();
+            }
+        } catch (final Throwable t) {
+            LOG.warn("failed to retrieve last modified time for " + getURL(), t);
+        }
+        return lastModified;
+    }
+
     public InputStream getInputStream() throws IOException {
         connect();
         return s3object.getObjectContent();
@@ -70,7 +132,11 @@ public class S3URLConnection extends URLConnection {
                     // TODO: Better error handling with badly encoded URLs?
                     s3key = s3uri.getKey();
                 }
-                s3object = s3Client.getObject(new GetObjectRequest(s3uri.getBucket(), s3key));
+                final GetObjectRequest request = new GetObjectRequest(s3uri.getBucket(), s3key);
+                if (range != null) {
+                    request.setRange(range[0], range[1]);
+                }
+                s3object = s3Client.getObject(request);
                 connected = true;
             } catch (final AmazonServiceException ase) {
                 throw new IOException("Amazon S3 service failure for error type " + ase.getErrorType(), ase);
@@ -0,0 +1,124 @@
+package org.janelia.alignment.protocol.s3;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.auth.AWSCredentialsProvider;
+import com.amazonaws.auth.DefaultAWSCredentialsProviderChain;
+import com.amazonaws.client.builder.AwsClientBuilder;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.AmazonS3ClientBuilder;
+
+import java.io.IOException;
+import java.net.URL;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class maintains the single AmazonS3 client (and {@link S3Handler}) that is shared for all s3:// loads.
+ *
+ * AmazonS3 clients are thread safe and maintain an internal pool of HTTP connections,
+ * so sharing one client lets every load reuse pooled (kept alive) connections
+ * instead of paying for new clients and TCP/TLS handshakes.
+ *
+ * The client can be tuned with the following system properties:
+ * <ul>
+ *   <li>{@value #MAX_CONNECTIONS_PROPERTY}: maximum number of pooled connections (default {@value #DEFAULT_MAX_CONNECTIONS})</li>
+ *   <li>{@value #ENDPOINT_PROPERTY}: alternate service endpoint (e.g. http://localhost:9000 for a local S3 stand-in),
+ *       path style access is used for alternate endpoints</li>
+ *   <li>{@value #REGION_PROPERTY}: signing region for alternate endpoints (default {@value #DEFAULT_REGION})</li>
+ * </ul>
+ *
+ * @author Eric Trautman
+ */
+public class SharedS3Client {
+
+    public static final String MAX_CONNECTIONS_PROPERTY = "render.s3.maxConnections";
+    public static final String ENDPOINT_PROPERTY = "render.s3.endpoint";
+    public static final String REGION_PROPERTY = "render.s3.region";
+
+    public static final int DEFAULT_MAX_CONNECTIONS = 100;
+    public static final String DEFAULT_REGION = "us-east-1";
+
+    private static S3Handler sharedHandler;
+
+    /**
+     * @return the shared handler for s3:// URLs (building it if necessary).
+     *
+     * @throws IOException
+     *   if the shared client cannot be built.
+     */
+    public static synchronized S3Handler getHandler()
+            throws IOException {
+        if (sharedHandler == null) {
+            try {
+                sharedHandler = new S3Handler(buildClient(Integer.getInteger(MAX_CONNECTIONS_PROPERTY,
+                                                                             DEFAULT_MAX_CONNECTIONS),
+                                                          System.getProperty(ENDPOINT_PROPERTY),
+                                                          System.getProperty(REGION_PROPERTY, DEFAULT_REGION),
+                                                          new DefaultAWSCredentialsProviderChain()));
+            } catch (final AmazonServiceException ase) {
+                throw new IOException("Amazon S3 service failure for error type " + ase.getErrorType(), ase);
+            } catch (final AmazonClientException ace) {
+                throw new IOException("Amazon S3 client failure", ace);
+            }
+        }
+        return sharedHandler;
+    }
+
+    /**
+     * Replaces the shared client (e.g. to use a custom configuration or a test stand-in).
+     *
+     * @param  client  client for all subsequent s3:// loads (or null to rebuild the default client when next needed).
+     */
+    public static synchronized void setClient(final AmazonS3 client) {
+        sharedHandler = (client == null) ? null : new S3Handler(client);
+    }
+
+    /**
+     * @return a URL for the specified string that uses the shared handler for s3:// URLs.
+     *
+     * @throws IOException
+     *   if the URL is malformed or the shared client cannot be built.
+     */
+    public static URL getUrl(final String url)
+            throws IOException {
+        final URL u;
+        if (url.startsWith("s3://")) {
+            u = new URL(null, url, getHandler());
+        } else {
+            u = new URL(url);
+        }
+        return u;
+    }
+
+    /**
+     * @return a new client with the specified connection pool and endpoint settings.
+     */
+    public static AmazonS3 buildClient(final int maxConnections,
+                                       final String endpoint,
+                                       final String region,
+                                       final AWSCredentialsProvider credentialsProvider) {
+
+        final ClientConfiguration clientConfiguration = new ClientConfiguration()
+                .withMaxConnections(maxConnections)
+                .withTcpKeepAlive(true);
+
+        final AmazonS3ClientBuilder builder = AmazonS3ClientBuilder.standard()
+                .withClientConfiguration(clientConfiguration)
+                .withCredentials(credentialsProvider);
+
+        if (endpoint != null) {
+            builder.withEndpointConfiguration(new AwsClientBuilder.EndpointConfiguration(endpoint, region))
+                    .withPathStyleAccessEnabled(true);
+        }
+
+        LOG.info("buildClient: maxConnections={}, endpoint={}", maxConnections, endpoint);
+
+        return builder.build();
+    }
+
+    private static final Logger LOG = LoggerFactory.getLogger(SharedS3Client.class);
+
+}
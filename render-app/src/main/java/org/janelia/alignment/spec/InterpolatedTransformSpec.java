@@ -1,5 +1,6 @@
 package org.janelia.alignment.spec;
 
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -73,10 +74,18 @@ public class InterpolatedTransformSpec
     }
 
     @Override
-    protected CoordinateTransform buildInstance()
+    public void addKeyStrings(final List<String> keyStrings) throws IllegalArgumentException {
+        keyStrings.add(TYPE);
+        keyStrings.add(String.valueOf(lambda));
+        a.addKeyStrings(keyStrings);
+        b.addKeyStrings(keyStrings);
+    }
+
+    @Override
+    protected CoordinateTransform buildInstance(final boolean useCache)
             throws IllegalArgumentException {
-        return new InterpolatedCoordinateTransform<>(a.buildInstance(),
-                                                     b.buildInstance(),
+        return new InterpolatedCoordinateTransform<>(a.buildInstance(useCache),
+                                                     b.buildInstance(useCache),
                                                      lambda);
     }
 
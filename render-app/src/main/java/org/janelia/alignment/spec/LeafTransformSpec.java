@@ -16,11 +16,14 @@
  */
 package org.janelia.alignment.spec;
 
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import mpicbg.models.CoordinateTransform;
 
+import org.janelia.alignment.util.CoordinateTransformCache;
+
 /**
  * Specifies a {@link mpicbg.trakem2.transform.CoordinateTransform} implementation
  * along with it's initialization properties.
@@ -102,7 +105,26 @@ public class LeafTransformSpec extends TransformSpec {
         flattenedList.addSpec(this);
     }
 
-    protected CoordinateTransform buildInstance()
+    @Override
+    public void addKeyStrings(final List<String> keyStrings) {
+        keyStrings.add(className);
+        keyStrings.add(dataString);
+    }
+
+    protected CoordinateTransform buildInstance(final boolean useCache)
+            throws IllegalArgumentException {
+        final CoordinateTransform instance;
+        if (useCache) {
+            instance = CoordinateTransformCache.getSharedInstance().get(className,
+                                                                        dataString,
+                                                                        this::buildNewInstance);
+        } else {
+            instance = buildNewInstance();
+        }
+        return instance;
+    }
+
+    private CoordinateTransform buildNewInstance()
             throws IllegalArgumentException {
 
         final mpicbg.trakem2.transform.CoordinateTransform ct = newInstance();
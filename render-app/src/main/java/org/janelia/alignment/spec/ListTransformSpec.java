@@ -156,6 +156,15 @@ public class ListTransformSpec extends TransformSpec {
 
     }
 
+    @Override
+    public void addKeyStrings(final List<String> keyStrings) throws IllegalArgumentException {
+        keyStrings.add("[");
+        for (final TransformSpec spec : specList) {
+            spec.addKeyStrings(keyStrings);
+        }
+        keyStrings.add("]");
+    }
+
     /**
      * Flattens this list of transform specs, filters it based upon the specified labels,
      * and returns the resulting list.
@@ -227,12 +236,22 @@ public class ListTransformSpec extends TransformSpec {
         return (CoordinateTransformList<CoordinateTransform>) super.getNewInstance();
     }
 
+    /**
+     * @return a new list whose leaf transforms may be shared with other callers (see {@link #getSharedInstance}).
+     */
+    @SuppressWarnings("unchecked")
+    @JsonIgnore
+    public CoordinateTransformList<CoordinateTransform> getSharedInstanceAsList()
+            throws IllegalArgumentException {
+        return (CoordinateTransformList<CoordinateTransform>) super.getSharedInstance();
+    }
+
     @Override
-    protected CoordinateTransform buildInstance()
+    protected CoordinateTransform buildInstance(final boolean useCache)
             throws IllegalArgumentException {
         final CoordinateTransformList<CoordinateTransform> ctList = new CoordinateTransformList<>();
         for (final TransformSpec spec : specList) {
-            ctList.add(spec.buildInstance());
+            ctList.add(spec.buildInstance(useCache));
         }
         return ctList;
     }
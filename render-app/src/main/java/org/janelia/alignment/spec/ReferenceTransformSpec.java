@@ -2,6 +2,7 @@ package org.janelia.alignment.spec;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -104,12 +105,20 @@ public class ReferenceTransformSpec extends TransformSpec {
     }
 
     @Override
-    protected CoordinateTransform buildInstance()
+    public void addKeyStrings(final List<String> keyStrings) throws IllegalArgumentException {
+        if (resolvedInstance == null) {
+            throw new IllegalArgumentException("spec reference to id '" + refId + "' has not been resolved");
+        }
+        resolvedInstance.addKeyStrings(keyStrings);
+    }
+
+    @Override
+    protected CoordinateTransform buildInstance(final boolean useCache)
             throws IllegalArgumentException {
         if (resolvedInstance == null) {
             throw new IllegalArgumentException("spec reference to id '" + refId + "' has not been resolved");
         }
-        return resolvedInstance.buildInstance();
+        return resolvedInstance.buildInstance(useCache);
     }
 
 }
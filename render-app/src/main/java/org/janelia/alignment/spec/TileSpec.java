@@ -30,9 +30,15 @@ import java.util.Set;
 import java.util.TreeMap;
 
 import org.janelia.alignment.ImageAndMask;
+import org.janelia.alignment.InverseTransformMesh;
 import org.janelia.alignment.RenderParameters;
+import org.janelia.alignment.RenderTransformMesh;
 import org.janelia.alignment.json.JsonUtils;
 import org.janelia.alignment.spec.stack.MipmapPathBuilder;
+import org.janelia.alignment.transform.AffineConcatenation;
+import org.janelia.alignment.transform.GridApproximatedTransform;
+import org.janelia.alignment.util.InverseTransformMeshCache;
+import org.janelia.alignment.util.TransformKey;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
@@ -161,7 +167,8 @@ public class TileSpec implements Serializable {
     }
 
     /**
-     * @return a transform mesh built from this spec's list of transforms.
+     * @return a transform mesh built from this spec's list of transforms
+     *         (approximated with a cached grid if {@link GridApproximatedTransform} approximation is enabled).
      *
      * @throws IllegalStateException
      *   if width or height have not been defined for this tile.
@@ -173,7 +180,11 @@ public class TileSpec implements Serializable {
             throw new IllegalStateException("width and height must be set to create transform mesh");
         }
 
-        final CoordinateTransformList<CoordinateTransform> ctList = getTransformList();
+        final CoordinateTransformList<CoordinateTransform> ctList =
+                GridApproximatedTransform.approximateIfEnabled(getTransformKey(),
+                                                               getSharedTransformList(),
+                                                               width,
+                                                               height);
         return new TransformMesh(ctList,
                                  getNumberOfTrianglesCoveringWidth(meshCellSize),
                                  width,
@@ -181,7 +192,8 @@ public class TileSpec implements Serializable {
     }
 
     /**
-     * @return a coordinate transform mesh built from this spec's list of transforms.
+     * @return a coordinate transform mesh built from this spec's list of transforms
+     *         (approximated with a cached grid if {@link GridApproximatedTransform} approximation is enabled).
      *
      * @throws IllegalStateException
      *   if width or height have not been defined for this tile.
@@ -193,7 +205,11 @@ public class TileSpec implements Serializable {
             throw new IllegalStateException("width and height must be set to create transform mesh");
         }
 
-        final CoordinateTransformList<CoordinateTransform> ctList = getTransformList();
+        final CoordinateTransformList<CoordinateTransform> ctList =
+                GridApproximatedTransform.approximateIfEnabled(getTransformKey(),
+                                                               getSharedTransformList(),
+                                                               width,
+                                                               height);
         return new CoordinateTransformMesh(ctList,
                                            getNumberOfTrianglesCoveringWidth(meshCellSize),
                                            width,
@@ -219,7 +235,7 @@ public class TileSpec implements Serializable {
                     throw new IllegalStateException("width and height must be set to create a bounding box");
                 }
 
-                final CoordinateTransformList<CoordinateTransform> ctList = getTransformList();
+                final CoordinateTransformList<CoordinateTransform> ctList = getSharedTransformList();
                 final ArrayList<double[]> borderSamples = new ArrayList<>();
 
                 /* top and bottom */
@@ -334,7 +350,7 @@ public class TileSpec implements Serializable {
         final double[] w = new double[] {x, y};
 
         if (hasTransforms()) {
-            final CoordinateTransformList<CoordinateTransform> ctl = getTransformList();
+            final CoordinateTransformList<CoordinateTransform> ctl = getSharedTransformList();
             ctl.applyInPlace(w);
         }
 
@@ -362,22 +378,98 @@ public class TileSpec implements Serializable {
     public double[] getLocalCoordinates(final double x, final double y, final double meshCellSize)
             throws IllegalStateException, NoninvertibleModelException {
 
-        final double[] localCoordinates;
         final double[] l = new double[] {x, y};
         if (hasTransforms()) {
-            final CoordinateTransformMesh mesh = getCoordinateTransformMesh(meshCellSize);
+            final InverseTransformMesh mesh = getInverseTransformMesh(meshCellSize);
             mesh.applyInverseInPlace(l);
         }
 
-        if (z == null) {
-            localCoordinates = l;
+        return addZ(l);
+    }
+
+    /**
+     * Inversely transforms a batch of world coordinates using one (cached) inverse mesh for this tile.
+     *
+     * @param  worldCoordinates  world (x, y) coordinates to inversely transform into local coordinates.
+     *
+     * @return local coordinates (x, y, z) in the same order as the specified world coordinates.
+     *         Coordinates that cannot be inverted by this tile's transforms are returned as null.
+     *
+     * @throws IllegalStateException
+     *   if width or height have not been defined for this tile.
+     */
+    public double[][] getLocalCoordinates(final double[][] worldCoordinates, final double meshCellSize)
+            throws IllegalStateException {
+
+        final double[][] l;
+        if (hasTransforms()) {
+            final InverseTransformMesh mesh = getInverseTransformMesh(meshCellSize);
+            l = mesh.applyInverse(worldCoordinates);
         } else {
-            localCoordinates = new double[]{l[0], l[1], z};
+            l = new double[worldCoordinates.length][];
+            for (int i = 0; i < worldCoordinates.length; i++) {
+                l[i] = new double[] { worldCoordinates[i][0], worldCoordinates[i][1] };
+            }
+        }
+
+        final double[][] localCoordinates = new double[l.length][];
+        for (int i = 0; i < l.length; i++) {
+            if (l[i] != null) {
+                localCoordinates[i] = addZ(l[i]);
+            }
         }
 
         return localCoordinates;
     }
 
+    /**
+     * @return an inverse mesh built from this spec's list of transforms
+     *         (approximated with a cached grid if {@link GridApproximatedTransform} approximation is enabled).
+     *         Meshes are cached (see {@link InverseTransformMeshCache}), so tiles with identical transforms and
+     *         dimensions share the same mesh.
+     *
+     * @throws IllegalStateException
+     *   if width or height have not been defined for this tile.
+     *
+     * @throws IllegalArgumentException
+     *   if the mesh cannot be built (e.g. because transform references have not been resolved).
+     */
+    public InverseTransformMesh getInverseTransformMesh(final double meshCellSize)
+            throws IllegalStateException, IllegalArgumentException {
+
+        if (! hasWidthAndHeightDefined()) {
+            throw new IllegalStateException("width and height must be set to create transform mesh");
+        }
+
+        final TransformKey transformKey = getTransformKey();
+        final InverseTransformMeshCache.MeshKey key =
+                new InverseTransformMeshCache.MeshKey(transformKey, width, height, meshCellSize);
+
+        return InverseTransformMeshCache.getSharedInstance().get(
+                key, () -> buildInverseTransformMesh(transformKey, meshCellSize));
+    }
+
+    private InverseTransformMesh buildInverseTransformMesh(final TransformKey transformKey,
+                                                           final double meshCellSize) {
+        final CoordinateTransformList<CoordinateTransform> ctList =
+                GridApproximatedTransform.approximateIfEnabled(transformKey, getSharedTransformList(), width, height);
+        final RenderTransformMesh mesh = new RenderTransformMesh(ctList,
+                                                                 getNumberOfTrianglesCoveringWidth(meshCellSize),
+                                                                 width,
+                                                                 height);
+        return new InverseTransformMesh(mesh);
+    }
+
+    private double[] addZ(final double[] xy) {
+        final double[] coordinates;
+        if (z == null) {
+            coordinates = xy;
+        } else {
+            coordinates = new double[]{xy[0], xy[1], z};
+        }
+        return coordinates;
+    }
+
     public boolean hasWidthAndHeightDefined() {
         return ((width != null) && (height != null));
     }
@@ -631,6 +723,53 @@ public class TileSpec implements Serializable {
         return ctl;
     }
 
+    /**
+     * Get this {@link TileSpec}'s transforms as a {@link CoordinateTransformList} for read-only use (e.g. rendering).
+     * If this {@link TileSpec} does not have any transforms, an empty list is returned.
+     *
+     * The returned list itself is new, so transforms can be added to it (e.g. for render scale and offset).
+     * Leaf transforms within the list are retrieved from the shared
+     * {@link org.janelia.alignment.util.CoordinateTransformCache} and may be shared with other tiles,
+     * so they must not be modified (use {@link #getTransformList} for modifiable instances).
+     * Nested lists are flattened and consecutive affine transforms are concatenated
+     * (see {@link AffineConcatenation#concatenateAdjacent}).
+     *
+     * @return transform list with shared leaf transforms for this tile spec.
+     *
+     * @throws IllegalArgumentException
+     *   if the list cannot be generated.
+     */
+    @JsonIgnore
+    public CoordinateTransformList<CoordinateTransform> getSharedTransformList()
+            throws IllegalArgumentException {
+
+        final CoordinateTransformList<CoordinateTransform> ctl;
+        if (transforms == null) {
+            ctl = new CoordinateTransformList<>();
+        } else {
+            ctl = AffineConcatenation.concatenateAdjacent(transforms.getSharedInstanceAsList());
+        }
+
+        return ctl;
+    }
+
+    /**
+     * @return key that identifies this tile's transforms for caching derived data (like meshes).
+     *         The key references (rather than copies) this tile's transform data strings.
+     *
+     * @throws IllegalArgumentException
+     *   if any transform references have not been resolved.
+     */
+    @JsonIgnore
+    public TransformKey getTransformKey()
+            throws IllegalArgumentException {
+        final List<String> keyStrings = new ArrayList<>();
+        if (transforms != null) {
+            transforms.addKeyStrings(keyStrings);
+        }
+        return new TransformKey(keyStrings);
+    }
+
     @Override
     public String toString() {
         return tileId;
@@ -19,6 +19,7 @@ import mpicbg.models.CoordinateTransformList;
 import mpicbg.models.InterpolatedCoordinateTransform;
 
 import org.janelia.alignment.json.JsonUtils;
+import org.janelia.alignment.util.CoordinateTransformCache;
 
 /**
  * Abstract base for all transformation specifications.
@@ -105,7 +106,7 @@ public abstract class TransformSpec implements Serializable {
             throw new IllegalArgumentException("spec '" + id +
                                                "' has the following unresolved references: " + unresolvedIdList);
         }
-        buildInstance(); // building instance will force everything to be validated
+        buildInstance(false); // building instance will force everything to be validated
     }
 
     /**
@@ -117,7 +118,22 @@ public abstract class TransformSpec implements Serializable {
     @JsonIgnore
     public CoordinateTransform getNewInstance()
             throws IllegalArgumentException {
-        return buildInstance();
+        return buildInstance(false);
+    }
+
+    /**
+     * @return a {@link CoordinateTransform} instance built from this specification that may share leaf transform
+     *         instances with other callers (see {@link CoordinateTransformCache}).
+     *         Composite (list and interpolated) transforms are always new,
+     *         but shared leaf transforms within them must not be modified.
+     *
+     * @throws IllegalArgumentException
+     *   if the instance cannot be created.
+     */
+    @JsonIgnore
+    public CoordinateTransform getSharedInstance()
+            throws IllegalArgumentException {
+        return buildInstance(true);
     }
 
     /**
@@ -163,6 +179,18 @@ public abstract class TransformSpec implements Serializable {
      */
     public abstract void flatten(ListTransformSpec flattenedList) throws IllegalStateException;
 
+    /**
+     * Adds strings that together identify the transform built from this spec to the specified list.
+     * Specs that add equal string lists build equivalent transforms, so the list can be used as a cache key.
+     * Leaf data strings are added by reference (not copied) to keep key construction cheap.
+     *
+     * @param  keyStrings  list to which identifying strings should be appended.
+     *
+     * @throws IllegalArgumentException
+     *   if any references have not been resolved.
+     */
+    public abstract void addKeyStrings(List<String> keyStrings) throws IllegalArgumentException;
+
 
     public String toJson() {
         return JSON_HELPER.toJson(this);
@@ -199,12 +227,15 @@ public abstract class TransformSpec implements Serializable {
     }
 
     /**
+     * @param  useCache  indicates whether leaf transform instances should be retrieved from
+     *                   (and added to) the shared {@link CoordinateTransformCache}.
+     *
      * @return the coordinate transform instance built from this spec.
      *
      * @throws IllegalArgumentException
      *   if the instance cannot be created.
      */
-    protected abstract CoordinateTransform buildInstance()
+    protected abstract CoordinateTransform buildInstance(final boolean useCache)
             throws IllegalArgumentException;
 
 //    private static final TypeReference<List<TransformSpec>> LIST_TYPE = new TypeReference<List<TransformSpec>>(){};
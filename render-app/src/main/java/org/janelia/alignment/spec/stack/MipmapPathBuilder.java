@@ -99,7 +99,7 @@ public class MipmapPathBuilder
 
     @ApiModelProperty(
             value = "file extension (without dot) for all mipmaps",
-            allowableValues = "tif, jpg, png")
+            allowableValues = "tif, jpg, png, raw")
     public String getExtension() {
         return extension;
     }
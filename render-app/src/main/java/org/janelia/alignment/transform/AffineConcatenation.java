@@ -0,0 +1,145 @@
+package org.janelia.alignment.transform;
+
+import java.awt.geom.AffineTransform;
+import java.util.ArrayList;
+import java.util.List;
+
+import mpicbg.models.AbstractAffineModel2D;
+import mpicbg.models.AffineModel2D;
+import mpicbg.models.CoordinateTransform;
+import mpicbg.models.CoordinateTransformList;
+
+/**
+ * Utility for reducing purely affine transforms
+ * (e.g. {@link AffineModel2D}, {@link mpicbg.models.TranslationModel2D}, {@link mpicbg.models.RigidModel2D},
+ * and {@link mpicbg.models.SimilarityModel2D} instances or lists of them) to a single affine model.
+ *
+ * @author Eric Trautman
+ */
+public class AffineConcatenation {
+
+    /**
+     * @param  transform  transform to reduce (may be a nested {@link CoordinateTransformList}).
+     *
+     * @return a single affine model that is equivalent to the specified transform
+     *         or null if the transform contains any non-affine components.
+     */
+    public static AffineModel2D concatenate(final CoordinateTransform transform) {
+
+        AffineModel2D concatenatedModel = null;
+
+        final AffineTransform concatenatedAffine = new AffineTransform();
+        if (concatenate(transform, concatenatedAffine)) {
+            concatenatedModel = new AffineModel2D();
+            concatenatedModel.set(concatenatedAffine);
+        }
+
+        return concatenatedModel;
+    }
+
+    /**
+     * Optimizes a transform list by replacing each run of consecutive affine transforms
+     * (e.g. montage, rough, and fine alignment affines that follow a lens correction)
+     * with a single equivalent {@link AffineModel2D}.
+     * Nested lists are flattened and non-affine transforms are left in place.
+     *
+     * @param  transformList  list to optimize (may contain nested {@link CoordinateTransformList} instances).
+     *
+     * @return a new (flattened) list that is equivalent to the specified list.
+     *         Non-affine transforms and affine transforms that are not adjacent to other affine transforms
+     *         are shared with the specified list.
+     */
+    public static CoordinateTransformList<CoordinateTransform> concatenateAdjacent(
+            final CoordinateTransformList<CoordinateTransform> transformList) {
+
+        final List<CoordinateTransform> flattenedList = new ArrayList<>();
+        flatten(transformList, flattenedList);
+
+        final CoordinateTransformList<CoordinateTransform> optimizedList = new CoordinateTransformList<>();
+
+        final AffineTransform runAffine = new AffineTransform();
+        CoordinateTransform firstRunTransform = null;
+        int runLength = 0;
+
+        for (final CoordinateTransform transform : flattenedList) {
+            if (transform instanceof AbstractAffineModel2D) {
+                if (runLength == 0) {
+                    firstRunTransform = transform;
+                    runAffine.setToIdentity();
+                }
+                runAffine.preConcatenate(((AbstractAffineModel2D<?>) transform).createAffine());
+                runLength++;
+            } else {
+                addRun(optimizedList, firstRunTransform, runAffine, runLength);
+                runLength = 0;
+                optimizedList.add(transform);
+            }
+        }
+
+        addRun(optimizedList, firstRunTransform, runAffine, runLength);
+
+        return optimizedList;
+    }
+
+    private static void flatten(final CoordinateTransform transform,
+                                final List<CoordinateTransform> flattenedList) {
+        if (transform instanceof CoordinateTransformList) {
+            @SuppressWarnings("unchecked")
+            final CoordinateTransformList<CoordinateTransform> transformList =
+                    (CoordinateTransformList<CoordinateTransform>) transform;
+            for (final CoordinateTransform listTransform : transformList.getList(null)) {
+                flatten(listTransform, flattenedList);
+            }
+        } else {
+            flattenedList.add(transform);
+        }
+    }
+
+    private static void addRun(final CoordinateTransformList<CoordinateTransform> optimizedList,
+                               final CoordinateTransform firstRunTransform,
+                               final AffineTransform runAffine,
+                               final int runLength) {
+        if (runLength == 1) {
+            optimizedList.add(firstRunTransform);
+        } else if (runLength > 1) {
+            final AffineModel2D concatenatedModel = new AffineModel2D();
+            concatenatedModel.set(runAffine);
+            optimizedList.add(concatenatedModel);
+        }
+    }
+
+    /**
+     * Pre-concatenates the specified transform to the specified affine.
+     *
+     * @return true if the transform is purely affine; otherwise false (and the affine is in an undefined state).
+     */
+    private static boolean concatenate(final CoordinateTransform transform,
+                                       final AffineTransform concatenatedAffine) {
+
+        boolean isAffine = true;
+
+        if (transform instanceof AbstractAffineModel2D) {
+
+            concatenatedAffine.preConcatenate(((AbstractAffineModel2D<?>) transform).createAffine());
+
+        } else if (transform instanceof CoordinateTransformList) {
+
+            @SuppressWarnings("unchecked")
+            final CoordinateTransformList<CoordinateTransform> transformList =
+                    (CoordinateTransformList<CoordinateTransform>) transform;
+
+            for (final CoordinateTransform listTransform : transformList.getList(null)) {
+                if (! concatenate(listTransform, concatenatedAffine)) {
+                    isAffine = false;
+                    break;
+                }
+            }
+
+        } else {
+            isAffine = false;
+        }
+
+        return isAffine;
+    }
+
+}
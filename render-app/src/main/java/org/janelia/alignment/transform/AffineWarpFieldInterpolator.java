@@ -0,0 +1,286 @@
+package org.janelia.alignment.transform;
+
+import net.imglib2.RandomAccessible;
+import net.imglib2.RealRandomAccess;
+import net.imglib2.interpolation.InterpolatorFactory;
+import net.imglib2.interpolation.randomaccess.FloorInterpolatorFactory;
+import net.imglib2.interpolation.randomaccess.NLinearInterpolatorFactory;
+import net.imglib2.interpolation.randomaccess.NearestNeighborInterpolatorFactory;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.view.composite.RealComposite;
+
+/**
+ * Applies the (interpolated) affine for a location within an {@link AffineWarpField}.
+ *
+ * <p>
+ * The common interpolation modes (n-linear, nearest neighbor, and floor) are implemented directly on
+ * the field's values array.  They produce the same results as the corresponding ImgLib2 interpolators
+ * (including border extension), but do not create any objects per call and are safe for concurrent use.
+ * Other interpolator factories fall back to a synchronized ImgLib2 accessor.
+ * </p>
+ *
+ * @author Eric Trautman
+ */
+public abstract class AffineWarpFieldInterpolator {
+
+    /**
+     * @param  affineWarpField  field to interpolate.
+     *
+     * @return an interpolator for the specified field that is appropriate for the field's interpolator factory.
+     *
+     * @throws IllegalArgumentException
+     *   if the field's interpolator factory is not supported.
+     */
+    public static AffineWarpFieldInterpolator build(final AffineWarpField affineWarpField)
+            throws IllegalArgumentException {
+
+        final InterpolatorFactory<RealComposite<DoubleType>, RandomAccessible<RealComposite<DoubleType>>> factory =
+                affineWarpField.getInterpolatorFactory();
+
+        final AffineWarpFieldInterpolator interpolator;
+        if (factory instanceof NLinearInterpolatorFactory) {
+            interpolator = new NLinear(affineWarpField);
+        } else if (factory instanceof NearestNeighborInterpolatorFactory) {
+            interpolator = new NearestNeighbor(affineWarpField);
+        } else if (factory instanceof FloorInterpolatorFactory) {
+            interpolator = new Floor(affineWarpField);
+        } else {
+            final RealRandomAccess<RealComposite<DoubleType>> accessor;
+            try {
+                accessor = affineWarpField.getAccessor();
+            } catch (final Exception e) {
+                final String factoryClassName = factory.getClass().getCanonicalName();
+                throw new IllegalArgumentException("interpolator factory class '" + factoryClassName +
+                                                   "' does not implement required interface", e);
+            }
+            interpolator = new Accessor(accessor);
+        }
+
+        return interpolator;
+    }
+
+    /**
+     * Applies the interpolated affine for the specified location to the location.
+     *
+     * @param  location  location (relative to the field's origin) to transform.
+     */
+    public abstract void applyInPlace(final double[] location);
+
+    /**
+     * Applies the specified affine coefficients to the specified location.
+     */
+    protected static void applyAffine(final double[] location,
+                                      final double m00,
+                                      final double m10,
+                                      final double m01,
+                                      final double m11,
+                                      final double m02,
+                                      final double m12) {
+        // stolen from AffineModel2D.applyInPlace
+        final double l0 = location[0];
+        location[0] = l0 * m00 + location[1] * m01 + m02;
+        location[1] = l0 * m10 + location[1] * m11 + m12;
+    }
+
+    /**
+     * Base for interpolators that work directly with the field's values array.
+     */
+    private abstract static class Primitive
+            extends AffineWarpFieldInterpolator {
+
+        final double[] values;
+        final int rowCount;
+        final int columnCount;
+        final int affineCount;
+
+        // scale and offset that map pixel locations to grid cell locations
+        // (derived the same way as the inverse of the ImgLib2 ScaleAndTranslation used by AffineWarpField.getAccessor)
+        private final double inverseXScale;
+        private final double inverseYScale;
+        private final double xTranslation;
+        private final double yTranslation;
+
+        Primitive(final AffineWarpField affineWarpField) {
+            this.values = affineWarpField.getValues();
+            this.rowCount = affineWarpField.getRowCount();
+            this.columnCount = affineWarpField.getColumnCount();
+            this.affineCount = rowCount * columnCount;
+
+            final double xScale = affineWarpField.getXScale();
+            final double yScale = affineWarpField.getYScale();
+            this.inverseXScale = 1.0 / xScale;
+            this.inverseYScale = 1.0 / yScale;
+            this.xTranslation = -(0.5 * xScale) * inverseXScale;
+            this.yTranslation = -(0.5 * yScale) * inverseYScale;
+        }
+
+        double getGridX(final double x) {
+            return x * inverseXScale + xTranslation;
+        }
+
+        double getGridY(final double y) {
+            return y * inverseYScale + yTranslation;
+        }
+
+        /**
+         * @return index of the first (m00) value for the specified cell, clamping cells outside of the field
+         *         to the field's border.
+         */
+        int getCellIndex(final long column,
+                         final long row) {
+            final long clampedColumn = column < 0 ? 0 : (column >= columnCount ? columnCount - 1 : column);
+            final long clampedRow = row < 0 ? 0 : (row >= rowCount ? rowCount - 1 : row);
+            return (int) ((clampedRow * columnCount) + clampedColumn);
+        }
+
+        void applyCell(final double[] location,
+                       final int cellIndex) {
+            applyAffine(location,
+                        values[cellIndex],
+                        values[cellIndex + affineCount],
+                        values[cellIndex + (2 * affineCount)],
+                        values[cellIndex + (3 * affineCount)],
+                        values[cellIndex + (4 * affineCount)],
+                        values[cellIndex + (5 * affineCount)]);
+        }
+
+        static long floor(final double value) {
+            return value < 0 ? (long) value - 1 : (long) value;
+        }
+    }
+
+    /**
+     * Bilinear interpolation matching {@link net.imglib2.interpolation.randomaccess.NLinearInterpolator2D}.
+     */
+    private static class NLinear
+            extends Primitive {
+
+        NLinear(final AffineWarpField affineWarpField) {
+            super(affineWarpField);
+        }
+
+        @Override
+        public void applyInPlace(final double[] location) {
+
+            final double gridX = getGridX(location[0]);
+            final double gridY = getGridY(location[1]);
+            final long column = floor(gridX);
+            final long row = floor(gridY);
+
+            final double t0 = gridX - column;
+            final double t0Complement = 1.0 - t0;
+            final double t1 = gridY - row;
+            final double t1Complement = 1.0 - t1;
+
+            final double w00 = t0Complement * t1Complement;
+            final double w10 = t0 * t1Complement;
+            final double w01 = t0Complement * t1;
+            final double w11 = t0 * t1;
+
+            final int i00 = getCellIndex(column, row);
+            final int i10 = getCellIndex(column + 1, row);
+            final int i01 = getCellIndex(column, row + 1);
+            final int i11 = getCellIndex(column + 1, row + 1);
+
+            applyAffine(location,
+                        interpolate(0, i00, i10, i01, i11, w00, w10, w01, w11),
+                        interpolate(1, i00, i10, i01, i11, w00, w10, w01, w11),
+                        interpolate(2, i00, i10, i01, i11, w00, w10, w01, w11),
+                        interpolate(3, i00, i10, i01, i11, w00, w10, w01, w11),
+                        interpolate(4, i00, i10, i01, i11, w00, w10, w01, w11),
+                        interpolate(5, i00, i10, i01, i11, w00, w10, w01, w11));
+        }
+
+        private double interpolate(final int coefficient,
+                                   final int i00,
+                                   final int i10,
+                                   final int i01,
+                                   final int i11,
+                                   final double w00,
+                                   final double w10,
+                                   final double w01,
+                                   final double w11) {
+            final int offset = coefficient * affineCount;
+            // accumulate in the same (gray code) order as the ImgLib2 interpolator so that results are identical
+            double result = values[offset + i00] * w00;
+            result += values[offset + i10] * w10;
+            result += values[offset + i11] * w11;
+            result += values[offset + i01] * w01;
+            return result;
+        }
+    }
+
+    /**
+     * Nearest neighbor interpolation matching {@link net.imglib2.interpolation.randomaccess.NearestNeighborInterpolator}.
+     */
+    private static class NearestNeighbor
+            extends Primitive {
+
+        NearestNeighbor(final AffineWarpField affineWarpField) {
+            super(affineWarpField);
+        }
+
+        @Override
+        public void applyInPlace(final double[] location) {
+            applyCell(location, getCellIndex(round(getGridX(location[0])), round(getGridY(location[1]))));
+        }
+
+        private static long round(final double value) {
+            return value < 0 ? (long) (value - 0.5) : (long) (value + 0.5);
+        }
+    }
+
+    /**
+     * Floor interpolation matching {@link net.imglib2.interpolation.randomaccess.FloorInterpolator}.
+     */
+    private static class Floor
+            extends Primitive {
+
+        Floor(final AffineWarpField affineWarpField) {
+            super(affineWarpField);
+        }
+
+        @Override
+        public void applyInPlace(final double[] location) {
+            applyCell(location, getCellIndex(floor(getGridX(location[0])), floor(getGridY(location[1]))));
+        }
+    }
+
+    /**
+     * Fallback for other interpolator factories that serializes access to a single ImgLib2 accessor.
+     */
+    private static class Accessor
+            extends AffineWarpFieldInterpolator {
+
+        private final RealRandomAccess<RealComposite<DoubleType>> warpFieldAccessor;
+
+        Accessor(final RealRandomAccess<RealComposite<DoubleType>> warpFieldAccessor) {
+            this.warpFieldAccessor = warpFieldAccessor;
+        }
+
+        @Override
+        public void applyInPlace(final double[] location) {
+
+            final double m00;
+            final double m10;
+            final double m01;
+            final double m11;
+            final double m02;
+            final double m12;
+
+            synchronized (warpFieldAccessor) {
+                warpFieldAccessor.setPosition(location);
+                final RealComposite<DoubleType> coefficients = warpFieldAccessor.get();
+                m00 = coefficients.get(0).getRealDouble();
+                m10 = coefficients.get(1).getRealDouble();
+                m01 = coefficients.get(2).getRealDouble();
+                m11 = coefficients.get(3).getRealDouble();
+                m02 = coefficients.get(4).getRealDouble();
+                m12 = coefficients.get(5).getRealDouble();
+            }
+
+            applyAffine(location, m00, m10, m01, m11, m02, m12);
+        }
+    }
+
+}
@@ -3,7 +3,6 @@ package org.janelia.alignment.transform;
 import mpicbg.trakem2.transform.CoordinateTransform;
 
 import net.imglib2.RandomAccessible;
-import net.imglib2.RealRandomAccess;
 import net.imglib2.interpolation.InterpolatorFactory;
 import net.imglib2.type.numeric.real.DoubleType;
 import net.imglib2.view.composite.RealComposite;
@@ -11,6 +10,9 @@ import net.imglib2.view.composite.RealComposite;
 /**
  * Transform that utilizes an {@link AffineWarpField}.
  *
+ * Once initialized, instances are safe for concurrent use since warp field coefficients are
+ * looked up with an {@link AffineWarpFieldInterpolator}.
+ *
  * @author Eric Trautman
  */
 public class AffineWarpFieldTransform
@@ -21,8 +23,8 @@ public class AffineWarpFieldTransform
     private double[] locationOffsets;
     private AffineWarpField affineWarpField;
 
-    // ImgLib2 accessor for warp field
-    private RealRandomAccess<RealComposite<DoubleType>> warpFieldAccessor;
+    // interpolator for warp field coefficients
+    private AffineWarpFieldInterpolator warpFieldInterpolator;
 
     /**
      * This constructor applies identity transform to entire space with no offset.
@@ -49,7 +51,7 @@ public class AffineWarpFieldTransform
 
         this.locationOffsets = locationOffsets;
         this.affineWarpField = affineWarpField;
-        setWarpFieldAccessor();
+        setWarpFieldInterpolator();
     }
 
     @Override
@@ -66,20 +68,7 @@ public class AffineWarpFieldTransform
         location[0] = location[0] - locationOffsets[0];
         location[1] = location[1] - locationOffsets[1];
 
-        warpFieldAccessor.setPosition(location);
-        final RealComposite<DoubleType> coefficients = warpFieldAccessor.get();
-
-        final double m00 = coefficients.get(0).getRealDouble();
-        final double m10 = coefficients.get(1).getRealDouble();
-        final double m01 = coefficients.get(2).getRealDouble();
-        final double m11 = coefficients.get(3).getRealDouble();
-        final double m02 = coefficients.get(4).getRealDouble();
-        final double m12 = coefficients.get(5).getRealDouble();
-
-        // stolen from AffineModel2D.applyInPlace
-        final double l0 = location[0];
-        location[0] = l0 * m00 + location[1] * m01 + m02;
-        location[1] = l0 * m10 + location[1] * m11 + m12;
+        warpFieldInterpolator.applyInPlace(location);
 
         // restore (add) offsets back once warp field has been applied
         location[0] = location[0] + locationOffsets[0];
@@ -89,8 +78,8 @@ public class AffineWarpFieldTransform
     /**
      * Initializes this transform by de-serializing a warp field instance from the specified data string.
      *
-     * Note that before using instance, interpolator factory must be validated by
-     * calling {@link AffineWarpField#getAccessor}.
+     * Note that the field's interpolator factory is validated when the field's
+     * {@link AffineWarpFieldInterpolator} is built.
      *
      * @param  data  string serialization of a warp field.
      *
@@ -155,7 +144,7 @@ public class AffineWarpFieldTransform
             throw new IllegalArgumentException("warp field data must contain at least " + valuesStartIndex + " fields");
         }
 
-        setWarpFieldAccessor();
+        setWarpFieldInterpolator();
     }
 
     @Override
@@ -181,14 +170,9 @@ public class AffineWarpFieldTransform
                                             affineWarpField.getCopy());
     }
 
-    private void setWarpFieldAccessor() throws IllegalArgumentException {
-        // set accessor and validate interpolator factory instance
-        try {
-            warpFieldAccessor = affineWarpField.getAccessor();
-        } catch (final Exception e) {
-            final String factoryClassName = affineWarpField.getInterpolatorFactory().getClass().getCanonicalName();
-            throw new IllegalArgumentException("interpolator factory class '" + factoryClassName + "' does not implement required interface", e);
-        }
+    private void setWarpFieldInterpolator() throws IllegalArgumentException {
+        // set interpolator and validate interpolator factory instance
+        warpFieldInterpolator = AffineWarpFieldInterpolator.build(affineWarpField);
     }
 
     /**
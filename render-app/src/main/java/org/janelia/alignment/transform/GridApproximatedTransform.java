@@ -0,0 +1,506 @@
+package org.janelia.alignment.transform;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+import mpicbg.models.CoordinateTransform;
+import mpicbg.models.CoordinateTransformList;
+
+import org.janelia.alignment.util.TransformKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Approximates an expensive (non-linear) transform of a rectangular source area
+ * (e.g. a tile's {@link mpicbg.trakem2.transform.ThinPlateSplineTransform} with thousands of control points)
+ * by evaluating the exact transform once on a regular grid and then bilinearly interpolating
+ * the transformed grid nodes.
+ *
+ * <p>
+ * Once built, applying the approximation costs the same for every transform, so mesh construction
+ * scales with the size of the source area instead of the complexity of the transform.
+ * Locations outside of the source area are transformed with the exact transform.
+ * </p>
+ *
+ * <p>
+ * The approximation error is measured at the center of every grid cell (where bilinear interpolation
+ * error is typically largest).  Use {@link #approximate} to get an approximation only when the measured
+ * error is within a specified bound and the exact transform otherwise.
+ * </p>
+ *
+ * <p>
+ * Building a grid evaluates the exact transform at every grid node and cell center, so an approximation
+ * only pays off when it is reused.  Grids for keyed transforms are therefore kept in a process-wide cache
+ * (see {@link #setMaxCachedNodes}) and shared by all meshes built for the same tile transforms
+ * (at any render scale).  Grid data is immutable, so cached grids can be used by concurrent threads
+ * (each approximation applies its caller's own exact transform outside of the source area).
+ * </p>
+ *
+ * @author Eric Trautman
+ */
+public class GridApproximatedTransform
+        implements CoordinateTransform {
+
+    /**
+     * Name of system property that specifies the grid spacing (in full scale source pixels)
+     * for approximated tile transforms.  Approximation is disabled if the spacing is not positive.
+     * The spacing should be larger than the mesh cell size since the first mesh built for a tile
+     * pays for one exact evaluation per grid node and cell center.
+     */
+    public static final String GRID_SPACING_PROPERTY = "render.transformGridSpacing";
+
+    /** Name of system property that specifies the maximum allowed approximation error (in pixels). */
+    public static final String MAX_ERROR_PROPERTY = "render.transformGridMaxError";
+
+    /** Name of system property that specifies the maximum total number of grid nodes for the shared grid cache. */
+    public static final String MAX_CACHED_NODES_PROPERTY = "render.transformGridCacheMaxNodes";
+
+    /** Default maximum allowed approximation error is a quarter of a pixel. */
+    public static final double DEFAULT_MAX_ERROR = 0.25;
+
+    /** Default max number of cached grid nodes is 5,000,000 (roughly 80MB or 4,500 tiles with 1,000 nodes). */
+    public static final long DEFAULT_MAX_CACHED_NODES = 5_000_000L;
+
+    private static volatile double approximationGridSpacing = getDoubleProperty(GRID_SPACING_PROPERTY, 0.0);
+    private static volatile double approximationMaxError = getDoubleProperty(MAX_ERROR_PROPERTY, DEFAULT_MAX_ERROR);
+
+    private static volatile long maxCachedNodes = Long.getLong(MAX_CACHED_NODES_PROPERTY, DEFAULT_MAX_CACHED_NODES);
+    private static volatile Cache<GridKey, Grid> gridCache;
+
+    /**
+     * Sets the grid spacing and maximum allowed error used by {@link #approximateIfEnabled}
+     * (overriding the {@value #GRID_SPACING_PROPERTY} and {@value #MAX_ERROR_PROPERTY} system properties).
+     *
+     * @param  spacing          grid spacing in full scale source pixels (approximation is disabled if not positive).
+     * @param  maxAllowedError  maximum allowed approximation error in pixels.
+     */
+    public static void setApproximationParameters(final double spacing,
+                                                  final double maxAllowedError) {
+        approximationMaxError = maxAllowedError;
+        approximationGridSpacing = spacing;
+    }
+
+    /**
+     * Sets the maximum total number of grid nodes for the shared grid cache
+     * (overriding the {@value #MAX_CACHED_NODES_PROPERTY} system property).
+     *
+     * @param  maxNodes  maximum number of cached grid nodes.
+     *
+     * @throws IllegalArgumentException
+     *   if the maximum is negative.
+     *
+     * @throws IllegalStateException
+     *   if the shared grid cache has already been created with a different size.
+     */
+    public static synchronized void setMaxCachedNodes(final long maxNodes)
+            throws IllegalArgumentException, IllegalStateException {
+
+        if (maxNodes < 0) {
+            throw new IllegalArgumentException("max cached nodes must not be negative");
+        }
+
+        if ((gridCache != null) && (maxCachedNodes != maxNodes)) {
+            throw new IllegalStateException("shared grid cache already created with max nodes " + maxCachedNodes);
+        }
+
+        maxCachedNodes = maxNodes;
+    }
+
+    /**
+     * Approximates the specified transform list if approximation has been enabled
+     * (see {@link #setApproximationParameters}) and the list contains non-affine transforms.
+     *
+     * @param  transformKey   identifies the exact transforms so that the approximation grid can be cached.
+     * @param  transformList  exact transforms for the source area.
+     * @param  width          width of the source area.
+     * @param  height         height of the source area.
+     *
+     * @return a new list containing the approximated transform if approximation is enabled and
+     *         the approximation is within the {@link #setApproximationParameters configured error bound};
+     *         otherwise the specified list.
+     */
+    public static CoordinateTransformList<CoordinateTransform> approximateIfEnabled(
+            final TransformKey transformKey,
+            final CoordinateTransformList<CoordinateTransform> transformList,
+            final double width,
+            final double height) {
+
+        CoordinateTransformList<CoordinateTransform> result = transformList;
+
+        final double spacing = approximationGridSpacing;
+        if ((spacing > 0) && (AffineConcatenation.concatenate(transformList) == null)) {
+            final CoordinateTransform approximation =
+                    approximate(transformKey, transformList, width, height, spacing, approximationMaxError);
+            if (approximation != transformList) {
+                result = new CoordinateTransformList<>();
+                result.add(approximation);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * @param  exactTransform   transform to approximate.
+     * @param  width            width of the source area.
+     * @param  height           height of the source area.
+     * @param  gridSpacing      approximate distance (in source pixels) between grid nodes.
+     * @param  maxAllowedError  maximum allowed approximation error (in target pixels).
+     *
+     * @return an approximation of the specified transform if the approximation's measured error is
+     *         within the specified bound; otherwise the exact transform.
+     */
+    public static CoordinateTransform approximate(final CoordinateTransform exactTransform,
+                                                  final double width,
+                                                  final double height,
+                                                  final double gridSpacing,
+                                                  final double maxAllowedError) {
+        return approximate(null, exactTransform, width, height, gridSpacing, maxAllowedError);
+    }
+
+    /**
+     * @param  transformKey     identifies the exact transform so that the approximation grid can be cached
+     *                          (or null to build an uncached approximation).
+     * @param  exactTransform   transform to approximate.
+     * @param  width            width of the source area.
+     * @param  height           height of the source area.
+     * @param  gridSpacing      approximate distance (in source pixels) between grid nodes.
+     * @param  maxAllowedError  maximum allowed approximation error (in target pixels).
+     *
+     * @return an approximation of the specified transform if the approximation's measured error is
+     *         within the specified bound; otherwise the exact transform.
+     *
+     * @throws IllegalArgumentException
+     *   if the grid cannot be built.
+     */
+    public static CoordinateTransform approximate(final TransformKey transformKey,
+                                                  final CoordinateTransform exactTransform,
+                                                  final double width,
+                                                  final double height,
+                                                  final double gridSpacing,
+                                                  final double maxAllowedError)
+            throws IllegalArgumentException {
+
+        final Grid grid;
+        if ((transformKey == null) || (maxCachedNodes == 0)) {
+            grid = new Grid(exactTransform, width, height, gridSpacing);
+        } else {
+            grid = getCachedGrid(new GridKey(transformKey, width, height, gridSpacing),
+                                 exactTransform);
+        }
+
+        final CoordinateTransform transform;
+        if (grid.maxError <= maxAllowedError) {
+            transform = new GridApproximatedTransform(exactTransform, grid);
+        } else {
+            LOG.debug("approximate: using exact transform since approximation error {} exceeds {}",
+                      grid.maxError, maxAllowedError);
+            transform = exactTransform;
+        }
+
+        return transform;
+    }
+
+    /**
+     * @return the number of grids currently in the shared grid cache.
+     */
+    public static long getCacheSize() {
+        return getGridCache().size();
+    }
+
+    /**
+     * @return a current snapshot of the shared grid cache's cumulative statistics.
+     */
+    public static CacheStats getCacheStats() {
+        return getGridCache().stats();
+    }
+
+    /**
+     * Discards all grids in the shared grid cache.
+     */
+    public static void invalidateCache() {
+        getGridCache().invalidateAll();
+    }
+
+    private final CoordinateTransform exactTransform;
+    private final Grid grid;
+
+    /**
+     * Evaluates the exact transform for every grid node and cell center.
+     *
+     * @param  exactTransform  transform to approximate.
+     * @param  width           width of the source area.
+     * @param  height          height of the source area.
+     * @param  gridSpacing     approximate distance (in source pixels) between grid nodes.
+     *
+     * @throws IllegalArgumentException
+     *   if the area dimensions or grid spacing are not positive.
+     */
+    public GridApproximatedTransform(final CoordinateTransform exactTransform,
+                                     final double width,
+                                     final double height,
+                                     final double gridSpacing)
+            throws IllegalArgumentException {
+        this(exactTransform, new Grid(exactTransform, width, height, gridSpacing));
+    }
+
+    private GridApproximatedTransform(final CoordinateTransform exactTransform,
+                                      final Grid grid) {
+        this.exactTransform = exactTransform;
+        this.grid = grid;
+    }
+
+    /**
+     * @return the maximum distance between approximated and exact locations measured at the grid cell centers.
+     */
+    public double getMaxError() {
+        return grid.maxError;
+    }
+
+    public int getColumnCount() {
+        return grid.columnCount;
+    }
+
+    public int getRowCount() {
+        return grid.rowCount;
+    }
+
+    @Override
+    public double[] apply(final double[] location) {
+        final double[] out = location.clone();
+        applyInPlace(out);
+        return out;
+    }
+
+    @Override
+    public void applyInPlace(final double[] location) {
+        if (grid.contains(location)) {
+            grid.interpolate(location);
+        } else {
+            exactTransform.applyInPlace(location);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "{columnCount: " + grid.columnCount +
+               ", rowCount: " + grid.rowCount +
+               ", maxError: " + grid.maxError +
+               '}';
+    }
+
+    private static Grid getCachedGrid(final GridKey key,
+                                      final CoordinateTransform exactTransform)
+            throws IllegalArgumentException {
+        try {
+            return getGridCache().get(key, () -> new Grid(exactTransform, key.width, key.height, key.gridSpacing));
+        } catch (final Throwable t) {
+            final Throwable cause = t.getCause() == null ? t : t.getCause();
+            if (cause instanceof IllegalArgumentException) {
+                throw (IllegalArgumentException) cause;
+            }
+            throw new IllegalArgumentException("failed to build approximation grid for " + key, cause);
+        }
+    }
+
+    /**
+     * @return the shared grid cache (created on first call).
+     */
+    private static Cache<GridKey, Grid> getGridCache() {
+        Cache<GridKey, Grid> cache = gridCache;
+        if (cache == null) {
+            synchronized (GridApproximatedTransform.class) {
+                cache = gridCache;
+                if (cache == null) {
+                    cache = CacheBuilder.newBuilder()
+                            .maximumWeight(maxCachedNodes)
+                            .weigher((GridKey key, Grid value) -> value.getNumberOfNodes())
+                            .recordStats()
+                            .build();
+                    gridCache = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
+    private static double getDoubleProperty(final String name,
+                                            final double defaultValue) {
+        double value = defaultValue;
+        final String stringValue = System.getProperty(name);
+        if (stringValue != null) {
+            try {
+                value = Double.parseDouble(stringValue);
+            } catch (final NumberFormatException e) {
+                // LOG is not yet initialized when this is called for static fields
+                LoggerFactory.getLogger(GridApproximatedTransform.class).warn(
+                        "ignoring invalid " + name + " value '" + stringValue + "'", e);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Immutable transformed grid node locations (and measured error) for a source area.
+     */
+    private static class Grid {
+
+        private final double width;
+        private final double height;
+        private final int columnCount;
+        private final int rowCount;
+        private final double cellWidth;
+        private final double cellHeight;
+
+        // transformed grid node locations in row major order, (rowCount + 1) rows of (columnCount + 1) nodes
+        private final double[] nodeX;
+        private final double[] nodeY;
+
+        private final double maxError;
+
+        Grid(final CoordinateTransform exactTransform,
+             final double width,
+             final double height,
+             final double gridSpacing)
+                throws IllegalArgumentException {
+
+            if ((width <= 0) || (height <= 0) || (gridSpacing <= 0)) {
+                throw new IllegalArgumentException("width (" + width + "), height (" + height +
+                                                   "), and grid spacing (" + gridSpacing + ") must be positive");
+            }
+
+            this.width = width;
+            this.height = height;
+            this.columnCount = Math.max(1, (int) Math.ceil(width / gridSpacing));
+            this.rowCount = Math.max(1, (int) Math.ceil(height / gridSpacing));
+            this.cellWidth = width / columnCount;
+            this.cellHeight = height / rowCount;
+
+            final int nodeCount = (rowCount + 1) * (columnCount + 1);
+            this.nodeX = new double[nodeCount];
+            this.nodeY = new double[nodeCount];
+
+            final double[] location = new double[2];
+            int nodeIndex = 0;
+            for (int row = 0; row <= rowCount; row++) {
+                for (int column = 0; column <= columnCount; column++) {
+                    location[0] = column * cellWidth;
+                    location[1] = row * cellHeight;
+                    exactTransform.applyInPlace(location);
+                    nodeX[nodeIndex] = location[0];
+                    nodeY[nodeIndex] = location[1];
+                    nodeIndex++;
+                }
+            }
+
+            final double[] approximateLocation = new double[2];
+            double maxSquaredError = 0;
+            for (int row = 0; row < rowCount; row++) {
+                for (int column = 0; column < columnCount; column++) {
+                    location[0] = (column + 0.5) * cellWidth;
+                    location[1] = (row + 0.5) * cellHeight;
+                    approximateLocation[0] = location[0];
+                    approximateLocation[1] = location[1];
+                    exactTransform.applyInPlace(location);
+                    interpolate(approximateLocation);
+                    final double dx = approximateLocation[0] - location[0];
+                    final double dy = approximateLocation[1] - location[1];
+                    maxSquaredError = Math.max(maxSquaredError, (dx * dx) + (dy * dy));
+                }
+            }
+
+            this.maxError = Math.sqrt(maxSquaredError);
+        }
+
+        int getNumberOfNodes() {
+            return nodeX.length;
+        }
+
+        boolean contains(final double[] location) {
+            return (location[0] >= 0) && (location[0] <= width) && (location[1] >= 0) && (location[1] <= height);
+        }
+
+        void interpolate(final double[] location) {
+
+            final double gridX = location[0] / cellWidth;
+            final double gridY = location[1] / cellHeight;
+            final int column = Math.min((int) gridX, columnCount - 1);
+            final int row = Math.min((int) gridY, rowCount - 1);
+            final double tx = gridX - column;
+            final double ty = gridY - row;
+
+            final int i00 = (row * (columnCount + 1)) + column;
+            final int i10 = i00 + 1;
+            final int i01 = i00 + columnCount + 1;
+            final int i11 = i01 + 1;
+
+            final double w00 = (1.0 - tx) * (1.0 - ty);
+            final double w10 = tx * (1.0 - ty);
+            final double w01 = (1.0 - tx) * ty;
+            final double w11 = tx * ty;
+
+            location[0] = (nodeX[i00] * w00) + (nodeX[i10] * w10) + (nodeX[i01] * w01) + (nodeX[i11] * w11);
+            location[1] = (nodeY[i00] * w00) + (nodeY[i10] * w10) + (nodeY[i01] * w01) + (nodeY[i11] * w11);
+        }
+    }
+
+    /**
+     * Key that identifies a grid by its exact transforms, source area, and spacing.
+     */
+    private static class GridKey {
+
+        private final TransformKey transformKey;
+        private final double width;
+        private final double height;
+        private final double gridSpacing;
+
+        GridKey(final TransformKey transformKey,
+                final double width,
+                final double height,
+                final double gridSpacing) {
+            this.transformKey = transformKey;
+            this.width = width;
+            this.height = height;
+            this.gridSpacing = gridSpacing;
+        }
+
+        @Override
+        public String toString() {
+            return "{transformKey: " + transformKey +
+                   ", width: " + width +
+                   ", height: " + height +
+                   ", gridSpacing: " + gridSpacing +
+                   '}';
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            boolean result = true;
+            if (this != o) {
+                if (o instanceof GridKey) {
+                    final GridKey that = (GridKey) o;
+                    result = (Double.compare(this.width, that.width) == 0) &&
+                             (Double.compare(this.height, that.height) == 0) &&
+                             (Double.compare(this.gridSpacing, that.gridSpacing) == 0) &&
+                             this.transformKey.equals(that.transformKey);
+                } else {
+                    result = false;
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = transformKey.hashCode();
+            result = 31 * result + Double.hashCode(width);
+            result = 31 * result + Double.hashCode(height);
+            result = 31 * result + Double.hashCode(gridSpacing);
+            return result;
+        }
+    }
+
+    private static final Logger LOG = LoggerFactory.getLogger(GridApproximatedTransform.class);
+
+}
@@ -0,0 +1,404 @@
+package org.janelia.alignment.util;
+
+import ij.process.ByteProcessor;
+import ij.process.ImageProcessor;
+import ij.process.ShortProcessor;
+
+import java.awt.image.ColorModel;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Form in which an {@link ImageProcessor} is held by an {@link ImageProcessorCache}.
+ *
+ * Uncompressed instances simply reference the cached processor.  Compressed instances keep the processor's
+ * dimensions, color model, and display range on heap along with a compressed copy of its pixels:
+ * masks are run-length encoded (they are mostly long runs of 0 or 255) while other 8-bit and 16-bit
+ * images are compressed with a fast LZ77 style codec.  16-bit pixels are split into separate high and
+ * low byte planes before compression since the high bytes of neighboring pixels rarely differ.
+ *
+ * Float and color processors, and images that do not compress to at most
+ * {@link #MAX_COMPRESSED_FRACTION} of their raw size, are kept uncompressed because the decompression
+ * cost on each access would outweigh the memory savings.
+ *
+ * @author Eric Trautman
+ */
+public class CachedImageProcessor {
+
+    /** Compressed pixels are only kept if they are at most this fraction of the raw pixel size. */
+    public static final double MAX_COMPRESSED_FRACTION = 0.75;
+
+    private static final int UNCOMPRESSED = 0;
+    private static final int RUN_LENGTH_BYTES = 1;
+    private static final int LZ_BYTES = 2;
+    private static final int LZ_SHORT_PLANES = 3;
+
+    private final ImageProcessor imageProcessor;
+    private final int codec;
+    private final int width;
+    private final int height;
+    private final double min;
+    private final double max;
+    private final ColorModel colorModel;
+    private final byte[] compressedPixels;
+
+    /**
+     * @param  imageProcessor  processor to cache.
+     * @param  compress        indicates whether the processor's pixels should be compressed (if possible).
+     * @param  isMask          indicates whether the processor is a mask.
+     *
+     * @return a cached form of the specified processor.
+     *         Uncompressed forms reference the specified processor, so it should not be modified after this call.
+     */
+    public static CachedImageProcessor build(final ImageProcessor imageProcessor,
+                                             final boolean compress,
+                                             final boolean isMask) {
+
+        CachedImageProcessor cachedImageProcessor = null;
+
+        final int rawSize = getRawSize(imageProcessor);
+        if (compress && (rawSize > 0)) {
+
+            final int maxCompressedSize = (int) (rawSize * MAX_COMPRESSED_FRACTION);
+
+            if (imageProcessor instanceof ByteProcessor) {
+
+                final byte[] pixels = (byte[]) imageProcessor.getPixels();
+                if (isMask) {
+                    cachedImageProcessor = buildCompressed(imageProcessor,
+                                                           RUN_LENGTH_BYTES,
+                                                           runLengthCompress(pixels, maxCompressedSize));
+                }
+                if (cachedImageProcessor == null) {
+                    cachedImageProcessor = buildCompressed(imageProcessor,
+                                                           LZ_BYTES,
+                                                           lzCompress(pixels, pixels.length, maxCompressedSize));
+                }
+
+            } else if (imageProcessor instanceof ShortProcessor) {
+
+                final short[] pixels = (short[]) imageProcessor.getPixels();
+                final byte[] planes = BUFFER_POOL.take(rawSize);
+                try {
+                    for (int i = 0; i < pixels.length; i++) {
+                        planes[i] = (byte) (pixels[i] >> 8);
+                        planes[pixels.length + i] = (byte) pixels[i];
+                    }
+                    cachedImageProcessor = buildCompressed(imageProcessor,
+                                                           LZ_SHORT_PLANES,
+                                                           lzCompress(planes, rawSize, maxCompressedSize));
+                } finally {
+                    BUFFER_POOL.release(planes);
+                }
+
+            }
+        }
+
+        if (cachedImageProcessor == null) {
+            cachedImageProcessor = new CachedImageProcessor(imageProcessor, UNCOMPRESSED, null);
+        }
+
+        return cachedImageProcessor;
+    }
+
+    private static CachedImageProcessor buildCompressed(final ImageProcessor imageProcessor,
+                                                        final int codec,
+                                                        final byte[] compressedPixels) {
+        return compressedPixels == null ? null : new CachedImageProcessor(imageProcessor, codec, compressedPixels);
+    }
+
+    private CachedImageProcessor(final ImageProcessor imageProcessor,
+                                 final int codec,
+                                 final byte[] compressedPixels) {
+        this.codec = codec;
+        this.width = imageProcessor.getWidth();
+        this.height = imageProcessor.getHeight();
+        this.min = imageProcessor.getMin();
+        this.max = imageProcessor.getMax();
+        if (codec == UNCOMPRESSED) {
+            this.imageProcessor = imageProcessor;
+            this.colorModel = null;
+        } else {
+            this.imageProcessor = null;
+            this.colorModel = imageProcessor.getColorModel();
+        }
+        this.compressedPixels = compressedPixels;
+    }
+
+    /**
+     * @return true if this instance's pixels are compressed.
+     */
+    public boolean isCompressed() {
+        return codec != UNCOMPRESSED;
+    }
+
+    /**
+     * @return the number of bytes used to hold this instance's pixels.
+     */
+    public int getNumberOfBytes() {
+        return isCompressed() ? compressedPixels.length : getRawSize(imageProcessor);
+    }
+
+    /**
+     * @return the cached processor if this instance is not compressed (callers must not modify it)
+     *         or a newly decompressed processor (that callers may modify) if this instance is compressed.
+     */
+    public ImageProcessor getProcessor() {
+
+        final ImageProcessor processor;
+
+        switch (codec) {
+            case UNCOMPRESSED:
+                return imageProcessor;
+            case RUN_LENGTH_BYTES:
+                final byte[] maskPixels = new byte[width * height];
+                runLengthDecompress(compressedPixels, maskPixels);
+                processor = new ByteProcessor(width, height, maskPixels, colorModel);
+                break;
+            case LZ_BYTES:
+                final byte[] bytePixels = new byte[width * height];
+                lzDecompress(compressedPixels, bytePixels, bytePixels.length);
+                processor = new ByteProcessor(width, height, bytePixels, colorModel);
+                break;
+            default:
+                final short[] shortPixels = new short[width * height];
+                final byte[] planes = BUFFER_POOL.take(shortPixels.length * 2);
+                try {
+                    lzDecompress(compressedPixels, planes, shortPixels.length * 2);
+                    for (int i = 0; i < shortPixels.length; i++) {
+                        shortPixels[i] = (short) (((planes[i] & 0xff) << 8) | (planes[shortPixels.length + i] & 0xff));
+                    }
+                } finally {
+                    BUFFER_POOL.release(planes);
+                }
+                processor = new ShortProcessor(width, height, shortPixels, colorModel);
+                break;
+        }
+
+        processor.setMinAndMax(min, max);
+
+        return processor;
+    }
+
+    @Override
+    public String toString() {
+        return "{width: " + width +
+               ", height: " + height +
+               ", codec: " + codec +
+               ", numberOfBytes: " + getNumberOfBytes() +
+               '}';
+    }
+
+    /**
+     * @return number of bytes needed to hold the specified processor's uncompressed pixels.
+     */
+    private static int getRawSize(final ImageProcessor imageProcessor) {
+        return imageProcessor.getPixelCount() * imageProcessor.getBitDepth() / 8;
+    }
+
+    // ------------------------------------------------------------------------------------------
+    // Run length codec: each run is stored as a value byte followed by a variable length run count.
+
+    private static byte[] runLengthCompress(final byte[] source,
+                                            final int maxCompressedSize) {
+
+        final byte[] buffer = BUFFER_POOL.take(maxCompressedSize + MAX_VAR_INT_SIZE + 1);
+        try {
+            int out = 0;
+            int i = 0;
+            while (i < source.length) {
+                final byte value = source[i];
+                int j = i + 1;
+                while ((j < source.length) && (source[j] == value)) {
+                    j++;
+                }
+                if (out + 1 + MAX_VAR_INT_SIZE > maxCompressedSize) {
+                    return null;
+                }
+                buffer[out++] = value;
+                out = writeVarInt(buffer, out, j - i);
+                i = j;
+            }
+            return Arrays.copyOf(buffer, out);
+        } finally {
+            BUFFER_POOL.release(buffer);
+        }
+    }
+
+    private static void runLengthDecompress(final byte[] source,
+                                            final byte[] target) {
+        final int[] position = { 0 };
+        int out = 0;
+        while (out < target.length) {
+            final byte value = source[position[0]++];
+            final int runLength = readVarInt(source, position);
+            Arrays.fill(target, out, out + runLength, value);
+            out += runLength;
+        }
+    }
+
+    // ------------------------------------------------------------------------------------------
+    // LZ77 codec: data is stored as a sequence of (literal count, literals, match offset, match length)
+    // entries where matches copy previously decoded bytes.  The last entry only contains literals.
+
+    private static final int MIN_MATCH = 4;
+    private static final int MAX_OFFSET = 65535;
+    private static final int HASH_BITS = 14;
+
+    private static byte[] lzCompress(final byte[] source,
+                                     final int sourceLength,
+                                     final int maxCompressedSize) {
+
+        final int[] table = new int[1 << HASH_BITS];
+        Arrays.fill(table, -1);
+
+        final byte[] buffer = BUFFER_POOL.take(maxCompressedSize + (3 * MAX_VAR_INT_SIZE));
+        try {
+            int out = 0;
+            int anchor = 0;
+            int i = 0;
+            final int lastMatchStart = sourceLength - MIN_MATCH;
+
+            while (i <= lastMatchStart) {
+
+                final int sequence = readInt(source, i);
+                final int hash = (sequence * -1640531535) >>> (32 - HASH_BITS);
+                final int candidate = table[hash];
+                table[hash] = i;
+
+                if ((candidate >= 0) && ((i - candidate) <= MAX_OFFSET) && (readInt(source, candidate) == sequence)) {
+
+                    int matchLength = MIN_MATCH;
+                    while (((i + matchLength) < sourceLength) &&
+                           (source[candidate + matchLength] == source[i + matchLength])) {
+                        matchLength++;
+                    }
+
+                    final int literalLength = i - anchor;
+                    if (out + literalLength + (3 * MAX_VAR_INT_SIZE) > maxCompressedSize) {
+                        return null;
+                    }
+                    out = writeVarInt(buffer, out, literalLength);
+                    System.arraycopy(source, anchor, buffer, out, literalLength);
+                    out += literalLength;
+                    out = writeVarInt(buffer, out, i - candidate);
+                    out = writeVarInt(buffer, out, matchLength - MIN_MATCH);
+
+                    i += matchLength;
+                    anchor = i;
+
+                } else {
+                    i++;
+                }
+            }
+
+            final int literalLength = sourceLength - anchor;
+            if (out + literalLength + MAX_VAR_INT_SIZE > maxCompressedSize) {
+                return null;
+            }
+            out = writeVarInt(buffer, out, literalLength);
+            System.arraycopy(source, anchor, buffer, out, literalLength);
+            out += literalLength;
+
+            return Arrays.copyOf(buffer, out);
+
+        } finally {
+            BUFFER_POOL.release(buffer);
+        }
+    }
+
+    private static void lzDecompress(final byte[] source,
+                                     final byte[] target,
+                                     final int targetLength) {
+        final int[] position = { 0 };
+        int out = 0;
+        while (true) {
+            final int literalLength = readVarInt(source, position);
+            System.arraycopy(source, position[0], target, out, literalLength);
+            position[0] += literalLength;
+            out += literalLength;
+
+            if (out >= targetLength) {
+                break;
+            }
+
+            final int offset = readVarInt(source, position);
+            final int matchLength = readVarInt(source, position) + MIN_MATCH;
+            final int matchStart = out - offset;
+            if (offset >= matchLength) {
+                System.arraycopy(target, matchStart, target, out, matchLength);
+            } else {
+                // overlapping match (e.g. a run), so copy one byte at a time
+                for (int i = 0; i < matchLength; i++) {
+                    target[out + i] = target[matchStart + i];
+                }
+            }
+            out += matchLength;
+        }
+    }
+
+    private static int readInt(final byte[] data,
+                               final int index) {
+        return (data[index] & 0xff) |
+               ((data[index + 1] & 0xff) << 8) |
+               ((data[index + 2] & 0xff) << 16) |
+               ((data[index + 3] & 0xff) << 24);
+    }
+
+    private static final int MAX_VAR_INT_SIZE = 5;
+
+    private static int writeVarInt(final byte[] data,
+                                   final int index,
+                                   final int value) {
+        int i = index;
+        int remaining = value;
+        while ((remaining & ~0x7f) != 0) {
+            data[i++] = (byte) ((remaining & 0x7f) | 0x80);
+            remaining >>>= 7;
+        }
+        data[i++] = (byte) remaining;
+        return i;
+    }
+
+    private static int readVarInt(final byte[] data,
+                                  final int[] position) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = data[position[0]++];
+            value |= (b & 0x7f) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    /**
+     * Small bounded pool of scratch buffers so that repeated compression and 16-bit decompression
+     * calls do not each allocate (and immediately discard) image sized arrays.
+     * Only scratch buffers are pooled: decompressed pixel arrays are handed to callers, so they are always new.
+     */
+    private static class BufferPool {
+
+        private final ArrayBlockingQueue<byte[]> buffers;
+
+        BufferPool(final int maxNumberOfBuffers) {
+            this.buffers = new ArrayBlockingQueue<>(maxNumberOfBuffers);
+        }
+
+        byte[] take(final int minimumLength) {
+            byte[] buffer = buffers.poll();
+            if ((buffer == null) || (buffer.length < minimumLength)) {
+                buffer = new byte[minimumLength];
+            }
+            return buffer;
+        }
+
+        void release(final byte[] buffer) {
+            buffers.offer(buffer);
+        }
+    }
+
+    private static final BufferPool BUFFER_POOL = new BufferPool(16);
+
+}
@@ -0,0 +1,245 @@
+package org.janelia.alignment.util;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+import mpicbg.models.CoordinateTransform;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Process-wide cache of built (reflectively instantiated and initialized) leaf {@link CoordinateTransform} instances.
+ *
+ * Building a leaf transform requires class lookup, instantiation, and parsing of the transform's data string.
+ * For thin plate spline and warp field transforms, parsing (or base64 decoding) large coefficient arrays
+ * dominates the cost and is repeated for every tile that shares a referenced transform.
+ *
+ * Entries are keyed by transform class name and data string (see {@link TransformKey}).  The data string itself (rather than a spec id)
+ * identifies each entry because legacy specs do not have ids and ids can be reused for updated data.
+ * Key hash codes are computed once, so lookups only compare full data strings when hashes match.
+ *
+ * Instances of classes that are known to be safe for concurrent use (see {@link #isThreadSafe})
+ * are shared by all callers.  All other instances are cached as prototypes, and each caller receives a
+ * copy (or a freshly built instance if the class does not support copying).
+ * Shared instances must never be modified.
+ *
+ * The cache is bounded by the total length of cached data strings, which roughly correlates with memory usage.
+ *
+ * @author Eric Trautman
+ */
+public class CoordinateTransformCache {
+
+    /** Name of system property that specifies the maximum total data string length for the shared cache. */
+    public static final String MAX_DATA_LENGTH_PROPERTY = "render.transformCacheMaxDataLength";
+
+    /** Default maximum total data string length is 100,000,000 characters (a few hundred megabytes). */
+    public static final long DEFAULT_MAX_DATA_LENGTH = 100_000_000L;
+
+    private static long sharedMaximumDataLength = Long.getLong(MAX_DATA_LENGTH_PROPERTY, DEFAULT_MAX_DATA_LENGTH);
+    private static volatile CoordinateTransformCache sharedInstance;
+
+    /**
+     * Sets the size of the shared cache (overriding the {@value #MAX_DATA_LENGTH_PROPERTY} system property).
+     *
+     * @param  maximumDataLength  maximum total length of cached data strings (0 disables caching).
+     *
+     * @throws IllegalArgumentException
+     *   if the maximum is negative.
+     *
+     * @throws IllegalStateException
+     *   if the shared cache has already been created with a different size.
+     */
+    public static synchronized void setSharedMaximumDataLength(final long maximumDataLength)
+            throws IllegalArgumentException, IllegalStateException {
+
+        if (maximumDataLength < 0) {
+            throw new IllegalArgumentException("maximum data length must not be negative");
+        }
+
+        if ((sharedInstance != null) && (sharedInstance.maximumDataLength != maximumDataLength)) {
+            throw new IllegalStateException("shared cache already created with maximum data length " +
+                                            sharedInstance.maximumDataLength);
+        }
+
+        sharedMaximumDataLength = maximumDataLength;
+    }
+
+    /**
+     * @return the shared cache for this process (created on first call).
+     */
+    public static CoordinateTransformCache getSharedInstance() {
+        CoordinateTransformCache instance = sharedInstance;
+        if (instance == null) {
+            synchronized (CoordinateTransformCache.class) {
+                instance = sharedInstance;
+                if (instance == null) {
+                    instance = new CoordinateTransformCache(sharedMaximumDataLength, true);
+                    sharedInstance = instance;
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Names of transform classes whose apply methods only read instance state (or use call local work arrays),
+     * so that a single instance can safely be used by concurrent render threads.
+     */
+    private static final Set<String> THREAD_SAFE_CLASS_NAMES = new HashSet<>(Arrays.asList(
+            "mpicbg.models.AffineModel2D",
+            "mpicbg.models.RigidModel2D",
+            "mpicbg.models.SimilarityModel2D",
+            "mpicbg.models.TranslationModel2D",
+            "mpicbg.trakem2.transform.AffineModel2D",
+            "mpicbg.trakem2.transform.RigidModel2D",
+            "mpicbg.trakem2.transform.SimilarityModel2D",
+            "mpicbg.trakem2.transform.TranslationModel2D",
+            "org.janelia.alignment.transform.AffineWarpFieldTransform"
+    ));
+
+    /**
+     * @return true if instances of the specified class can be shared by concurrent threads; otherwise false.
+     */
+    public static boolean isThreadSafe(final String className) {
+        return THREAD_SAFE_CLASS_NAMES.contains(className);
+    }
+
+    private final long maximumDataLength;
+    private final Cache<TransformKey, CoordinateTransform> cache;
+
+    /**
+     * Constructs a cache instance using the specified parameters.
+     *
+     * @param  maximumDataLength  maximum total length of cached data strings (0 disables caching).
+     *
+     * @param  recordStats        if true, useful tuning stats like cache hits and loads will be maintained.
+     */
+    public CoordinateTransformCache(final long maximumDataLength,
+                                    final boolean recordStats) {
+
+        this.maximumDataLength = maximumDataLength;
+
+        final Weigher<TransformKey, CoordinateTransform> weigher = (key, value) -> key.getKeyStringLength();
+
+        if (recordStats) {
+            cache = CacheBuilder.newBuilder()
+                    .maximumWeight(maximumDataLength)
+                    .weigher(weigher)
+                    .recordStats()
+                    .build();
+        } else {
+            cache = CacheBuilder.newBuilder()
+                    .maximumWeight(maximumDataLength)
+                    .weigher(weigher)
+                    .build();
+        }
+    }
+
+    /**
+     * @param  className   name of the transform class.
+     * @param  dataString  data with which the transform is initialized.
+     * @param  builder     builds a new initialized instance of the transform (called when the transform is not cached
+     *                     and when a non-shareable cached transform cannot be copied).
+     *
+     * @return the shared cached instance for thread safe transform classes or a private copy for all other classes.
+     *
+     * @throws IllegalArgumentException
+     *   if the transform cannot be built.
+     */
+    public CoordinateTransform get(final String className,
+                                   final String dataString,
+                                   final Callable<CoordinateTransform> builder)
+            throws IllegalArgumentException {
+
+        if ((maximumDataLength == 0) || (className == null) || (dataString == null)) {
+            return build(builder);
+        }
+
+        final CoordinateTransform cachedInstance;
+        try {
+            cachedInstance = cache.get(new TransformKey(Arrays.asList(className, dataString)), builder);
+        } catch (final Throwable t) {
+            final Throwable cause = t.getCause() == null ? t : t.getCause();
+            if (cause instanceof IllegalArgumentException) {
+                throw (IllegalArgumentException) cause;
+            }
+            throw new IllegalArgumentException("failed to build " + className + " instance", cause);
+        }
+
+        final CoordinateTransform instance;
+        if (isThreadSafe(className)) {
+            instance = cachedInstance;
+        } else {
+            instance = copy(cachedInstance, builder);
+        }
+
+        return instance;
+    }
+
+    /**
+     * @return the number of entries currently in this cache.
+     */
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * Discards all entries in the cache.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * @return a current snapshot of this cache's cumulative statistics
+     *         (will be all zeros if stat recording is not enabled for this cache).
+     */
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    @Override
+    public String toString() {
+        return "{numberOfEntries: " + size() +
+               ", maximumDataLength: " + maximumDataLength +
+               '}';
+    }
+
+    private static CoordinateTransform copy(final CoordinateTransform cachedInstance,
+                                            final Callable<CoordinateTransform> builder) {
+        CoordinateTransform instance = null;
+        if (cachedInstance instanceof mpicbg.trakem2.transform.CoordinateTransform) {
+            try {
+                instance = ((mpicbg.trakem2.transform.CoordinateTransform) cachedInstance).copy();
+            } catch (final Throwable t) {
+                LOG.debug("copy: failed to copy " + cachedInstance.getClass() + " instance, building new one", t);
+            }
+        }
+        if (instance == null) {
+            instance = build(builder);
+        }
+        return instance;
+    }
+
+    private static CoordinateTransform build(final Callable<CoordinateTransform> builder)
+            throws IllegalArgumentException {
+        try {
+            return builder.call();
+        } catch (final IllegalArgumentException e) {
+            throw e;
+        } catch (final Exception e) {
+            throw new IllegalArgumentException("failed to build transform", e);
+        }
+    }
+
+    private static final Logger LOG = LoggerFactory.getLogger(CoordinateTransformCache.class);
+
+}
@@ -1,19 +1,42 @@
 package org.janelia.alignment.util;
 
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.CacheStats;
 import com.google.common.cache.LoadingCache;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalListener;
 import com.google.common.cache.Weigher;
 
 import ij.ImagePlus;
-import ij.io.Opener;
+import ij.process.ByteProcessor;
+import ij.process.FloatProcessor;
 import ij.process.ImageProcessor;
+import ij.process.ShortProcessor;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.annotation.Nullable;
 
 import mpicbg.trakem2.util.Downsampler;
 
+import org.janelia.alignment.loader.ImageDecoderRegistry;
 import org.janelia.alignment.protocol.s3.S3Opener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -22,6 +45,10 @@ import org.slf4j.LoggerFactory;
  * Cache of {@link ImageProcessor} instances for rendering.
  * Each cache is constrained by a max pixel count parameter which should roughly correlate to max memory usage.
  * Once a cache is full, least recently used instances are removed to make room.
+ * If an {@link OffHeapImageProcessorStore} second tier is configured, removed instances are spilled to it
+ * and promoted back to this (first tier) cache when they are next requested.
+ * Spills (which may decompress an instance and copy it to a mapped file) are done by a process-wide
+ * background thread so that they do not slow down the request whose load caused the eviction.
  * Cache instances are thread safe and do not depend upon garbage collection or independent threads to evict
  * stale entries, making the instances safer for use in application servers.
  *
@@ -40,11 +67,97 @@ public class ImageProcessorCache {
     /** Default max number of pixels is 1GB (or 160 full resolution 2500x2500 pixel tiles). */
     public static final long DEFAULT_MAX_CACHED_PIXELS = 1000 * 1000000; // 1GB
 
+    /** System property used to configure the number of threads in the shared prefetch pool. */
+    public static final String PREFETCH_THREADS_PROPERTY = "render.imagePrefetchThreads";
+
+    private static int prefetchParallelism = Integer.getInteger(PREFETCH_THREADS_PROPERTY, 8);
+    private static ExecutorService prefetchExecutor;
+
+    /**
+     * Sets the size of the shared prefetch pool (overriding the {@value #PREFETCH_THREADS_PROPERTY} system property).
+     *
+     * @param  parallelism  number of threads for the shared pool.
+     *
+     * @throws IllegalArgumentException
+     *   if the parallelism is not positive.
+     *
+     * @throws IllegalStateException
+     *   if the shared pool has already been created with a different size.
+     */
+    public static synchronized void setPrefetchParallelism(final int parallelism)
+            throws IllegalArgumentException, IllegalStateException {
+
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+
+        if ((prefetchExecutor != null) && (prefetchParallelism != parallelism)) {
+            throw new IllegalStateException("shared prefetch pool already created with parallelism " +
+                                            prefetchParallelism);
+        }
+
+        prefetchParallelism = parallelism;
+    }
+
+    /**
+     * @return the number of threads in the process-wide pool used to prefetch images for all caches.
+     */
+    public static synchronized int getPrefetchParallelism() {
+        return prefetchParallelism;
+    }
+
+    /**
+     * @return the process-wide pool used to prefetch images for all caches (created on first call).
+     */
+    private static synchronized ExecutorService getPrefetchExecutor() {
+        if (prefetchExecutor == null) {
+            final AtomicInteger threadCount = new AtomicInteger(0);
+            prefetchExecutor = Executors.newFixedThreadPool(prefetchParallelism, runnable -> {
+                final Thread thread = new Thread(runnable, "image-prefetch-" + threadCount.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            });
+            LOG.info("getPrefetchExecutor: created pool with {} threads", prefetchParallelism);
+        }
+        return prefetchExecutor;
+    }
+
+    /** Maximum number of evicted instances waiting to be spilled (later evictions are dropped until there is room). */
+    private static final int MAX_PENDING_SPILLS = 32;
+
+    private static ExecutorService spillExecutor;
+
+    /**
+     * @return the process-wide single thread pool used to spill evicted images to second tier stores
+     *         (created on first call).
+     */
+    private static synchronized ExecutorService getSpillExecutor() {
+        if (spillExecutor == null) {
+            spillExecutor = new ThreadPoolExecutor(1, 1,
+                                                   0L, TimeUnit.MILLISECONDS,
+                                                   new LinkedBlockingQueue<>(MAX_PENDING_SPILLS),
+                                                   runnable -> {
+                                                       final Thread thread = new Thread(runnable, "image-spill");
+                                                       thread.setDaemon(true);
+                                                       return thread;
+                                                   });
+            LOG.info("getSpillExecutor: created pool with up to {} pending spills", MAX_PENDING_SPILLS);
+        }
+        return spillExecutor;
+    }
+
     private final long maximumNumberOfCachedPixels;
     private final boolean recordStats;
     private final boolean cacheOriginalsForDownSampledImages;
+    private final boolean cacheIntermediateDownSampledImages;
+    private final OffHeapImageProcessorStore secondTier;
+    private final boolean compressCachedImages;
 
-    private final LoadingCache<CacheKey, ImageProcessor> cache;
+    private final LoadingCache<CacheKey, CachedImageProcessor> cache;
+    private final Cache<CacheKey, ImageProcessor> decompressedViewSources;
+    private final Set<CacheKey> pendingPrefetchKeys;
+    private final ConcurrentHashMap<CacheKey, CachedImageProcessor> pendingSpills;
+    private final AtomicLong numberOfCachedBytes;
 
     /**
      * Constructs an instance with default parameters.
@@ -72,47 +185,186 @@ public class ImageProcessorCache {
     public ImageProcessorCache(final long maximumNumberOfCachedPixels,
                                final boolean recordStats,
                                final boolean cacheOriginalsForDownSampledImages) {
+        this(maximumNumberOfCachedPixels, recordStats, cacheOriginalsForDownSampledImages, false);
+    }
+
+    /**
+     * Constructs a cache instance using the specified parameters.
+     *
+     * @param  maximumNumberOfCachedPixels         the maximum number of pixels to maintain in the cache.
+     *                                             This should roughly correlate to the maximum amount of
+     *                                             memory for the cache.
+     *
+     * @param  recordStats                         if true, useful tuning stats like cache hits and loads will be
+     *                                             maintained (presumably at some nominal overhead cost);
+     *                                             otherwise stats are not maintained.
+     *
+     * @param  cacheOriginalsForDownSampledImages  if true, when down sampled images are requested their source
+     *                                             images will also be cached (presumably improving the speed
+     *                                             of future down sampling to a different level);
+     *                                             otherwise only the down sampled result images are cached.
+     *
+     * @param  cacheIntermediateDownSampledImages  if true, when an image is down sampled by more than one level
+     *                                             the images for each intermediate level will also be cached
+     *                                             so that later requests for those levels (or further levels)
+     *                                             can reuse them;
+     *                                             otherwise only the requested level is cached.
+     */
+    public ImageProcessorCache(final long maximumNumberOfCachedPixels,
+                               final boolean recordStats,
+                               final boolean cacheOriginalsForDownSampledImages,
+                               final boolean cacheIntermediateDownSampledImages) {
+        this(maximumNumberOfCachedPixels,
+             recordStats,
+             cacheOriginalsForDownSampledImages,
+             cacheIntermediateDownSampledImages,
+             null);
+    }
+
+    /**
+     * Constructs a two tier cache instance using the specified parameters.
+     *
+     * @param  maximumNumberOfCachedPixels         the maximum number of pixels to maintain in the cache.
+     *                                             This should roughly correlate to the maximum amount of
+     *                                             memory for the cache.
+     *
+     * @param  recordStats                         if true, useful tuning stats like cache hits and loads will be
+     *                                             maintained (presumably at some nominal overhead cost);
+     *                                             otherwise stats are not maintained.
+     *
+     * @param  cacheOriginalsForDownSampledImages  if true, when down sampled images are requested their source
+     *                                             images will also be cached (presumably improving the speed
+     *                                             of future down sampling to a different level);
+     *                                             otherwise only the down sampled result images are cached.
+     *
+     * @param  cacheIntermediateDownSampledImages  if true, when an image is down sampled by more than one level
+     *                                             the images for each intermediate level will also be cached;
+     *                                             otherwise only the requested level is cached.
+     *
+     * @param  secondTier                          store for instances evicted from this cache
+     *                                             (or null if evicted instances should simply be dropped).
+     */
+    public ImageProcessorCache(final long maximumNumberOfCachedPixels,
+                               final boolean recordStats,
+                               final boolean cacheOriginalsForDownSampledImages,
+                               final boolean cacheIntermediateDownSampledImages,
+                               final OffHeapImageProcessorStore secondTier) {
+        this(maximumNumberOfCachedPixels,
+             recordStats,
+             cacheOriginalsForDownSampledImages,
+             cacheIntermediateDownSampledImages,
+             secondTier,
+             false);
+    }
+
+    /**
+     * Constructs a two tier cache instance using the specified parameters.
+     *
+     * @param  maximumNumberOfCachedPixels         the maximum number of pixels to maintain in the cache.
+     *                                             This should roughly correlate to the maximum amount of
+     *                                             memory for the cache.
+     *
+     * @param  recordStats                         if true, useful tuning stats like cache hits and loads will be
+     *                                             maintained (presumably at some nominal overhead cost);
+     *                                             otherwise stats are not maintained.
+     *
+     * @param  cacheOriginalsForDownSampledImages  if true, when down sampled images are requested their source
+     *                                             images will also be cached (presumably improving the speed
+     *                                             of future down sampling to a different level);
+     *                                             otherwise only the down sampled result images are cached.
+     *
+     * @param  cacheIntermediateDownSampledImages  if true, when an image is down sampled by more than one level
+     *                                             the images for each intermediate level will also be cached;
+     *                                             otherwise only the requested level is cached.
+     *
+     * @param  secondTier                          store for instances evicted from this cache
+     *                                             (or null if evicted instances should simply be dropped).
+     *
+     * @param  compressCachedImages                if true, 8-bit and 16-bit images are held in compressed form
+     *                                             (see {@link CachedImageProcessor}) and weighed by their compressed
+     *                                             size, so more images fit in the cache at the cost of
+     *                                             decompressing them on access
+     *                                             (see {@link #getReadOnlyView} for how repeated read-only
+     *                                             accesses avoid that cost);
+     *                                             otherwise images are held uncompressed.
+     */
+    public ImageProcessorCache(final long maximumNumberOfCachedPixels,
+                               final boolean recordStats,
+                               final boolean cacheOriginalsForDownSampledImages,
+                               final boolean cacheIntermediateDownSampledImages,
+                               final OffHeapImageProcessorStore secondTier,
+                               final boolean compressCachedImages) {
 
         this.maximumNumberOfCachedPixels = maximumNumberOfCachedPixels;
         this.recordStats = recordStats;
         this.cacheOriginalsForDownSampledImages = cacheOriginalsForDownSampledImages;
+        this.cacheIntermediateDownSampledImages = cacheIntermediateDownSampledImages;
+        this.secondTier = secondTier;
+        this.compressCachedImages = compressCachedImages;
+        this.pendingPrefetchKeys = ConcurrentHashMap.newKeySet();
+        this.pendingSpills = new ConcurrentHashMap<>();
+        this.numberOfCachedBytes = new AtomicLong(0);
+
+        if (compressCachedImages) {
+            // bounded to a quarter of the cache's capacity so that hot images are not held twice in full
+            this.decompressedViewSources = CacheBuilder.newBuilder()
+                    .maximumWeight(maximumNumberOfCachedPixels / 4)
+                    .weigher((CacheKey key, ImageProcessor value) ->
+                                     value.getPixelCount() * value.getBitDepth() / 8)
+                    .build();
+        } else {
+            this.decompressedViewSources = null;
+        }
 
-        final Weigher<CacheKey, ImageProcessor> weigher =
-                (key, value) -> {
-                    final int weight;
-                    if (value == null) {
-                        weight = 0;
-                    } else {
-                        weight = value.getPixelCount() * value.getBitDepth() / 8;
-                    }
-                    return weight;
-                };
+        final Weigher<CacheKey, CachedImageProcessor> weigher =
+                (key, value) -> value == null ? 0 : value.getNumberOfBytes();
 
-        final CacheLoader<CacheKey, ImageProcessor> loader =
-                new CacheLoader<CacheKey, ImageProcessor>() {
+        final CacheLoader<CacheKey, CachedImageProcessor> loader =
+                new CacheLoader<CacheKey, CachedImageProcessor>() {
 
                     @Override
-                    public ImageProcessor load(@Nullable final CacheKey key)
+                    public CachedImageProcessor load(@Nullable final CacheKey key)
                             throws Exception {
                         ImageProcessor imageProcessor = null;
                         if (key != null) {
+                            imageProcessor = removeFromSecondTier(key);
+                        }
+                        if ((key != null) && (imageProcessor == null)) {
                             imageProcessor = loadImageProcessor(key.getUri(), key.getDownSampleLevels(), key.isMask(),key.isConvertTo16Bit());
                         }
-                        return imageProcessor;
+                        return imageProcessor == null ? null : buildCachedImageProcessor(key, imageProcessor);
                     }
                 };
 
+        // only spill instances evicted for size (not explicitly invalidated or replaced instances)
+        final RemovalListener<CacheKey, CachedImageProcessor> removalListener =
+                notification -> {
+                    if (notification.getValue() != null) {
+                        numberOfCachedBytes.addAndGet(-notification.getValue().getNumberOfBytes());
+                    }
+                    if ((decompressedViewSources != null) && (notification.getKey() != null)) {
+                        decompressedViewSources.invalidate(notification.getKey());
+                    }
+                    if ((secondTier != null) &&
+                        (notification.getCause() == RemovalCause.SIZE) &&
+                        (notification.getKey() != null) &&
+                        (notification.getValue() != null)) {
+                        spillToSecondTier(notification.getKey(), notification.getValue());
+                    }
+                };
 
         if (recordStats) {
             cache = CacheBuilder.newBuilder()
                     .maximumWeight(maximumNumberOfCachedPixels)
                     .weigher(weigher)
+                    .removalListener(removalListener)
                     .recordStats()
                     .build(loader);
         } else {
             cache = CacheBuilder.newBuilder()
                     .maximumWeight(maximumNumberOfCachedPixels)
                     .weigher(weigher)
+                    .removalListener(removalListener)
                     .build(loader);
         }
 
@@ -142,14 +394,133 @@ public class ImageProcessorCache {
                               final boolean convertTo16Bit)
             throws IllegalArgumentException {
 
-        final CacheKey key = new CacheKey(url, downSampleLevels, isMask,convertTo16Bit);
+        final CacheKey key = new CacheKey(url, downSampleLevels, isMask, convertTo16Bit);
+        final CachedImageProcessor cachedImageProcessor = getCachedImageProcessor(key);
+        final ImageProcessor imageProcessor = cachedImageProcessor.getProcessor();
+
+        // decompressed processors are already private copies
+        return cachedImageProcessor.isCompressed() ? imageProcessor : imageProcessor.duplicate();
+    }
+
+    /**
+     * Read-only alternative to {@link #get} for callers that will not modify the returned pixels
+     * (e.g. render pixel mappers).  Instead of copying the cached pixels, this method returns a
+     * new processor that shares the cached pixel array, so cache hits do not allocate or copy pixel data.
+     *
+     * The returned view has its own display range, interpolation method, and color model, so those
+     * can safely be changed (e.g. with setMinAndMax) without affecting the cached instance.
+     * Color processors are the one exception: changing their display range rewrites their pixels,
+     * so a copy is always returned for them.
+     *
+     * For caches that hold compressed images, the decompressed pixels of recently viewed images are kept
+     * in a small bounded LRU (a quarter of this cache's capacity) and shared by all views,
+     * so only the first view of a compressed image (or a view after its decompressed pixels have been
+     * evicted) pays for decompression.
+     *
+     * Callers must not change the returned view's pixels.  Pixel changes would silently corrupt
+     * the cached instance for all future requests.
+     *
+     * @param  url               url string for the image.
+     * @param  downSampleLevels  number of levels to further down sample the image.
+     * @param  isMask            indicates whether this image is a mask.
+     * @param  convertTo16Bit    indicates whether the loaded image processor should be converted to 16-bit.
+     *
+     * @return a view of the cached image processor for the specified url string.
+     *         If the source processor is not already cached, it will be loaded into the cache.
+     *
+     * @throws IllegalArgumentException
+     *   if the image cannot be loaded.
+     */
+    public ImageProcessor getReadOnlyView(final String url,
+                                          final int downSampleLevels,
+                                          final boolean isMask,
+                                          final boolean convertTo16Bit)
+            throws IllegalArgumentException {
+
+        final CacheKey key = new CacheKey(url, downSampleLevels, isMask, convertTo16Bit);
+        final CachedImageProcessor cachedImageProcessor = getCachedImageProcessor(key);
+
         final ImageProcessor imageProcessor;
+        if (cachedImageProcessor.isCompressed()) {
+            try {
+                imageProcessor = decompressedViewSources.get(key, cachedImageProcessor::getProcessor);
+            } catch (final ExecutionException e) {
+                throw new IllegalArgumentException("failed to decompress " + key, e.getCause());
+            }
+        } else {
+            imageProcessor = cachedImageProcessor.getProcessor();
+        }
+
+        return createView(imageProcessor);
+    }
+
+    private CachedImageProcessor getCachedImageProcessor(final CacheKey key)
+            throws IllegalArgumentException {
+
+        // count hits for the current request (asMap lookups do not skew the cache's own stats)
+        final RenderPhaseTimes phaseTimes = RenderPhaseTimes.forCurrentThread();
+        if (phaseTimes != null) {
+            if (cache.asMap().containsKey(key)) {
+                phaseTimes.addSourceCacheHit();
+            } else {
+                phaseTimes.addSourceCacheMiss();
+            }
+        }
+
         try {
-            imageProcessor = cache.get(key);
+            return cache.get(key);
         } catch (final Throwable t) {
             throw new IllegalArgumentException("failed to retrieve " + key + " from cache", t);
         }
-        return imageProcessor.duplicate();
+    }
+
+    /**
+     * Asynchronously loads the specified images into this cache using a bounded process-wide pool of
+     * {@link #getPrefetchParallelism} threads.  Keys are submitted in collection order and this method
+     * returns immediately, so callers can start working with the first images while the rest are loading.
+     *
+     * Keys that are already cached or already queued for prefetch are skipped.
+     * Loads for the same key are never duplicated: a {@link #get} call for a key that is currently
+     * being prefetched (by this or any other request) waits for that load to finish rather than starting
+     * another one.  Prefetch failures are logged and ignored (a subsequent get call will report the failure).
+     *
+     * Nothing is prefetched for caches that are disabled (have a max size of zero) since
+     * prefetched images would be immediately discarded.
+     *
+     * @param  keys  identifies the images to load.
+     *
+     * @return futures for the queued loads that complete once each key has been loaded (or has failed to load).
+     *         Most callers can ignore these since subsequent get calls wait for pending loads.
+     */
+    public List<Future<?>> prefetch(final Collection<CacheKey> keys) {
+
+        final List<Future<?>> queuedLoads = new ArrayList<>();
+
+        if (maximumNumberOfCachedPixels > 0) {
+
+            final ExecutorService executor = getPrefetchExecutor();
+
+            for (final CacheKey key : keys) {
+                // check the map view so that skipped keys do not record cache hits or misses
+                if ((! cache.asMap().containsKey(key)) && pendingPrefetchKeys.add(key)) {
+                    queuedLoads.add(executor.submit(() -> {
+                        try {
+                            cache.get(key);
+                        } catch (final Throwable t) {
+                            LOG.warn("prefetch: failed to load " + key + ", ignoring error", t);
+                        } finally {
+                            pendingPrefetchKeys.remove(key);
+                        }
+                    }));
+                }
+            }
+
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("prefetch: queued {} of {} keys", queuedLoads.size(), keys.size());
+            }
+        }
+
+        return queuedLoads;
     }
 
     /**
@@ -160,26 +531,67 @@ public class ImageProcessorCache {
     }
 
     /**
-     * Discards all entries in the cache.
+     * @return the (approximate) number of bytes held by entries currently in this cache.
+     *         This is the total weight that is constrained by the cache's maximum size.
+     */
+    public long getNumberOfCachedBytes() {
+        return numberOfCachedBytes.get();
+    }
+
+    /**
+     * @return the maximum weight (roughly bytes) of entries held by this cache.
+     */
+    public long getMaximumNumberOfCachedPixels() {
+        return maximumNumberOfCachedPixels;
+    }
+
+    /**
+     * Discards all entries in the cache (including any second tier entries).
      */
     public void invalidateAll() {
         cache.invalidateAll();
+        pendingSpills.clear();
+        if (decompressedViewSources != null) {
+            decompressedViewSources.invalidateAll();
+        }
+        if (secondTier != null) {
+            secondTier.invalidateAll();
+        }
     }
 
     /**
-     * @return a current snapshot of this cache's cumulative statistics
+     * @return a current snapshot of this cache's (first tier) cumulative statistics
      *         (will be all zeros if stat recording is not enabled for this cache).
      */
     public CacheStats getStats() {
         return cache.stats();
     }
 
+    /**
+     * @return a current snapshot of this cache's second tier cumulative statistics
+     *         (will be all zeros if the cache does not have a second tier or stat recording is not enabled for it).
+     *         Second tier hits are instances promoted back to the first tier.
+     */
+    public CacheStats getSecondTierStats() {
+        return secondTier == null ? new CacheStats(0, 0, 0, 0, 0, 0) : secondTier.getStats();
+    }
+
+    /**
+     * @return this cache's second tier store (or null if it does not have one).
+     */
+    public OffHeapImageProcessorStore getSecondTier() {
+        return secondTier;
+    }
+
     @Override
     public String toString() {
         return "{numberOfEntries: " + size() +
                ", maximumNumberOfCachedPixels: " + maximumNumberOfCachedPixels +
                ", recordStats: " + recordStats +
                ", cacheOriginalsForDownSampledImages: " + cacheOriginalsForDownSampledImages +
+               ", cacheIntermediateDownSampledImages: " + cacheIntermediateDownSampledImages +
+               ", secondTier: " + secondTier +
+               ", compressCachedImages: " + compressCachedImages +
                '}';
     }
 
@@ -205,6 +617,9 @@ public class ImageProcessorCache {
     /**
      * The core method used to load image processor instances that is called when cache misses occur.
      *
+     * When a down sampled image is requested, the nearest already cached less down sampled level
+     * of the same image is used as the source so that only the missing levels need to be derived.
+     *
      * @param  url               url for the image.
      * @param  downSampleLevels  number of levels to further down sample the image.
      * @param  isMask            indicates whether this image is a mask.
@@ -226,28 +641,38 @@ public class ImageProcessorCache {
         }
 
         ImageProcessor imageProcessor = null;
-
-        // if we need to down sample, see if source image is already cached before trying to load it
-        if (downSampleLevels > 0) {
-            imageProcessor = cache.getIfPresent(new CacheKey(url, 0, isMask,convertTo16Bit));
+        int sourceLevel = 0;
+
+        // if we need to down sample, see if the nearest source level is already cached before trying to load it
+        // (probe the map view so that these lookups do not skew the cache's hit and miss stats)
+        for (int level = downSampleLevels - 1; level >= 0; level--) {
+            final CacheKey sourceKey = new CacheKey(url, level, isMask, convertTo16Bit);
+            final CachedImageProcessor cachedSource = cache.asMap().get(sourceKey);
+            if (cachedSource == null) {
+                imageProcessor = removeFromSecondTier(sourceKey);
+                if (imageProcessor != null) {
+                    cache.put(sourceKey, buildCachedImageProcessor(sourceKey, imageProcessor));
+                }
+            } else {
+                imageProcessor = cachedSource.getProcessor();
+            }
+            if (imageProcessor != null) {
+                sourceLevel = level;
+                break;
+            }
         }
 
         // load the image as needed
         if (imageProcessor == null) {
 
-            // TODO: use Bio Formats to load strange formats
-
-            // openers keep state about the file being opened, so we need to create a new opener for each load
-            final Opener opener = new S3Opener();
-            opener.setSilentMode(true);
-
-            final ImagePlus imagePlus = opener.openURL(url);
-            if (imagePlus == null) {
-                throw new IllegalArgumentException("failed to create imagePlus instance for '" + url + "'");
+            // common gray-scale formats are decoded directly into processor pixel arrays,
+            // anything else is opened from the same (already read) bytes by the general purpose opener
+            try {
+                imageProcessor = ImageDecoderRegistry.DEFAULT_INSTANCE.decode(url, ImageProcessorCache::openImage);
+            } catch (final IOException e) {
+                throw new IllegalArgumentException("failed to decode '" + url + "'", e);
             }
 
-            imageProcessor = imagePlus.getProcessor();
-
             // Force images to 16-bit, to allow for testing of mixed 8-bit and 16-bit mipmap levels.
             if ((! isMask) && (imageProcessor.getBitDepth() == 8) && convertTo16Bit) {
                 imageProcessor = imageProcessor.convertToShort(false);
@@ -261,26 +686,157 @@ public class ImageProcessorCache {
                     LOG.debug("loadImageProcessor: caching level 0 for {}", url);
                 }
 
-                cache.put(new CacheKey(url, 0, isMask,convertTo16Bit), imageProcessor);
+                final CacheKey originalKey = new CacheKey(url, 0, isMask, convertTo16Bit);
+                cache.put(originalKey, buildCachedImageProcessor(originalKey, imageProcessor));
             }
 
         }
 
         // down sample the image as needed
-        if (downSampleLevels > 0) {
+        if (downSampleLevels > sourceLevel) {
+
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("loadImageProcessor: deriving level {} from level {} for {}",
+                          downSampleLevels, sourceLevel, url);
+            }
+
             // NOTE: The down sample methods return a safe copy and leave the source imageProcessor unmodified,
             //       so we don't need to duplicate a cached source instance before down sampling.
-            imageProcessor = Downsampler.downsampleImageProcessor(imageProcessor,
-                                                                  downSampleLevels);
+            if (cacheIntermediateDownSampledImages) {
+                for (int level = sourceLevel + 1; level < downSampleLevels; level++) {
+                    imageProcessor = Downsampler.downsampleImageProcessor(imageProcessor, 1);
+                    final CacheKey levelKey = new CacheKey(url, level, isMask, convertTo16Bit);
+                    cache.put(levelKey, buildCachedImageProcessor(levelKey, imageProcessor));
+                }
+                imageProcessor = Downsampler.downsampleImageProcessor(imageProcessor, 1);
+            } else {
+                imageProcessor = Downsampler.downsampleImageProcessor(imageProcessor,
+                                                                      downSampleLevels - sourceLevel);
+            }
+        }
+
+        return imageProcessor;
+    }
+
+    /**
+     * Builds the form in which the specified processor should be held by this cache
+     * (compressed if this cache compresses images and the processor can be compressed)
+     * and adds its size to this cache's byte count.  Every built instance is loaded or put into the cache,
+     * so the removal listener subtracts its size again when it is evicted, replaced, or invalidated.
+     *
+     * @return the instance to be cached.
+     */
+    private CachedImageProcessor buildCachedImageProcessor(final CacheKey key,
+                                                           final ImageProcessor imageProcessor) {
+        final CachedImageProcessor cachedImageProcessor =
+                CachedImageProcessor.build(imageProcessor, compressCachedImages, key.isMask());
+        numberOfCachedBytes.addAndGet(cachedImageProcessor.getNumberOfBytes());
+        return cachedImageProcessor;
+    }
+
+    /**
+     * Queues the specified evicted instance to be copied to this cache's second tier by the background
+     * spill thread.  Until the copy is made, the instance can still be promoted by {@link #removeFromSecondTier}.
+     * If too many spills are already pending, the instance is simply dropped.
+     *
+     * The copy is made while the instance's pending entry is being removed, so a concurrent
+     * {@link #removeFromSecondTier} call for the same key waits for the copy and then finds it in the second tier
+     * instead of missing both and falling back to the source.
+     */
+    private void spillToSecondTier(final CacheKey key,
+                                   final CachedImageProcessor cachedImageProcessor) {
+        pendingSpills.put(key, cachedImageProcessor);
+        try {
+            getSpillExecutor().submit(() -> pendingSpills.computeIfPresent(key, (pendingKey, pendingSpill) -> {
+                // skip instances that were promoted (or invalidated) while waiting and
+                // instances that were reloaded before they were queued (the removal listener runs after eviction)
+                if (pendingSpill != cachedImageProcessor) {
+                    return pendingSpill;
+                }
+                if (! cache.asMap().containsKey(key)) {
+                    secondTier.put(key, cachedImageProcessor.getProcessor());
+                }
+                return null;
+            }));
+        } catch (final RejectedExecutionException e) {
+            pendingSpills.remove(key, cachedImageProcessor);
+            LOG.debug("spillToSecondTier: too many pending spills, dropping {}", key);
         }
+    }
 
+    /**
+     * @return the processor for the specified key removed from this cache's second tier
+     *         (or null if the cache does not have a second tier or the processor is not in it).
+     *         Processors that are still waiting to be spilled are promoted without being copied.
+     */
+    private ImageProcessor removeFromSecondTier(final CacheKey key) {
+        ImageProcessor imageProcessor = null;
+        if (secondTier != null) {
+            final CachedImageProcessor pendingSpill = pendingSpills.remove(key);
+            imageProcessor = pendingSpill == null ? secondTier.remove(key) : pendingSpill.getProcessor();
+            if ((imageProcessor != null) && LOG.isDebugEnabled()) {
+                LOG.debug("removeFromSecondTier: promoting {}", key);
+            }
+        }
         return imageProcessor;
     }
 
+    /**
+     * @return a new processor that shares the specified processor's pixel array
+     *         (or a copy of the processor if pixels cannot be safely shared).
+     */
+    private static ImageProcessor createView(final ImageProcessor imageProcessor) {
+
+        final int width = imageProcessor.getWidth();
+        final int height = imageProcessor.getHeight();
+        final ImageProcessor view;
+
+        if (imageProcessor instanceof ByteProcessor) {
+            view = new ByteProcessor(width,
+                                     height,
+                                     (byte[]) imageProcessor.getPixels(),
+                                     imageProcessor.getColorModel());
+        } else if (imageProcessor instanceof ShortProcessor) {
+            view = new ShortProcessor(width,
+                                      height,
+                                      (short[]) imageProcessor.getPixels(),
+                                      imageProcessor.getColorModel());
+        } else if (imageProcessor instanceof FloatProcessor) {
+            view = new FloatProcessor(width,
+                                      height,
+                                      (float[]) imageProcessor.getPixels(),
+                                      imageProcessor.getColorModel());
+        } else {
+            return imageProcessor.duplicate();
+        }
+
+        view.setMinAndMax(imageProcessor.getMin(), imageProcessor.getMax());
+
+        return view;
+    }
+
+    private static ImageProcessor openImage(final String url,
+                                            final byte[] encodedBytes)
+            throws IllegalArgumentException {
+
+        // TODO: use Bio Formats to load strange formats
+
+        // openers keep state about the file being opened, so we need to create a new opener for each load
+        final S3Opener opener = new S3Opener();
+        opener.setSilentMode(true);
+
+        final ImagePlus imagePlus = encodedBytes == null ? opener.openURL(url) : opener.openBytes(url, encodedBytes);
+        if (imagePlus == null) {
+            throw new IllegalArgumentException("failed to create imagePlus instance for '" + url + "'");
+        }
+
+        return imagePlus.getProcessor();
+    }
+
     /**
      * Key that combines an image's url with its down sample levels.
      */
-    private class CacheKey {
+    public static class CacheKey {
 
         private final String url;
         private final int downSampleLevels;
@@ -331,6 +887,7 @@ public class ImageProcessorCache {
                     final CacheKey that = (CacheKey) o;
                     result = this.url.equals(that.url) &&
                              (this.downSampleLevels == that.downSampleLevels) &&
+                             (this.isMask == that.isMask) &&
                              (this.convertTo16Bit == that.convertTo16Bit);
                 } else {
                     result = false;
@@ -343,6 +900,8 @@ public class ImageProcessorCache {
         public int hashCode() {
             int result = url.hashCode();
             result = 31 * result + downSampleLevels;
+            result = 31 * result + (isMask ? 1 : 0);
+            result = 31 * result + (convertTo16Bit ? 1 : 0);
             return result;
         }
     }
@@ -0,0 +1,258 @@
+package org.janelia.alignment.util;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
+
+import java.util.concurrent.Callable;
+
+import org.janelia.alignment.InverseTransformMesh;
+
+/**
+ * Process-wide cache of {@link InverseTransformMesh} instances for mapping world coordinates to local tile coordinates.
+ *
+ * Building an inverse mesh requires applying all of a tile's transforms to every mesh vertex,
+ * so rebuilding it for each mapped point makes world to local mapping far more expensive than the lookups themselves.
+ * Since inverse meshes are immutable, cached instances are shared by all callers.
+ *
+ * Entries are keyed by a tile's {@link TransformKey} (see
+ * {@link org.janelia.alignment.spec.TileSpec#getTransformKey}) along with the tile's dimensions and
+ * mesh cell size, so tiles with identical transforms share the same mesh.
+ *
+ * The cache is constrained by a max triangle count parameter which should roughly correlate to max memory usage
+ * (each triangle requires roughly {@value #APPROXIMATE_BYTES_PER_TRIANGLE} bytes).
+ * Once the cache is full, least recently used instances are removed to make room.
+ *
+ * @author Eric Trautman
+ */
+public class InverseTransformMeshCache {
+
+    /** Approximate memory used by one cached triangle (vertices, inverse affine, and grid index entries). */
+    public static final int APPROXIMATE_BYTES_PER_TRIANGLE = 120;
+
+    /** Name of system property that specifies the maximum number of triangles for the shared cache. */
+    public static final String MAX_TRIANGLES_PROPERTY = "render.inverseMeshCacheMaxTriangles";
+
+    /** Default max number of triangles is 1,000,000 (or roughly 120MB and 450 typical 2k x 2k tile meshes). */
+    public static final long DEFAULT_MAX_CACHED_TRIANGLES = 1000000;
+
+    private static long sharedMaximumNumberOfCachedTriangles =
+            Long.getLong(MAX_TRIANGLES_PROPERTY, DEFAULT_MAX_CACHED_TRIANGLES);
+    private static volatile InverseTransformMeshCache sharedInstance;
+
+    /**
+     * Sets the size of the shared cache (overriding the {@value #MAX_TRIANGLES_PROPERTY} system property).
+     *
+     * @param  maximumNumberOfCachedTriangles  the maximum number of mesh triangles to maintain in the shared cache
+     *                                         (0 disables caching).
+     *
+     * @throws IllegalArgumentException
+     *   if the maximum is negative.
+     *
+     * @throws IllegalStateException
+     *   if the shared cache has already been created with a different size.
+     */
+    public static synchronized void setSharedMaximumNumberOfCachedTriangles(final long maximumNumberOfCachedTriangles)
+            throws IllegalArgumentException, IllegalStateException {
+
+        if (maximumNumberOfCachedTriangles < 0) {
+            throw new IllegalArgumentException("maximum number of cached triangles must not be negative");
+        }
+
+        if ((sharedInstance != null) &&
+            (sharedInstance.maximumNumberOfCachedTriangles != maximumNumberOfCachedTriangles)) {
+            throw new IllegalStateException("shared cache already created with maximum number of triangles " +
+                                            sharedInstance.maximumNumberOfCachedTriangles);
+        }
+
+        sharedMaximumNumberOfCachedTriangles = maximumNumberOfCachedTriangles;
+    }
+
+    /**
+     * @return the shared cache for this process (created on first call).
+     */
+    public static InverseTransformMeshCache getSharedInstance() {
+        InverseTransformMeshCache instance = sharedInstance;
+        if (instance == null) {
+            synchronized (InverseTransformMeshCache.class) {
+                instance = sharedInstance;
+                if (instance == null) {
+                    instance = new InverseTransformMeshCache(sharedMaximumNumberOfCachedTriangles, true);
+                    sharedInstance = instance;
+                }
+            }
+        }
+        return instance;
+    }
+
+    private final long maximumNumberOfCachedTriangles;
+    private final Cache<MeshKey, InverseTransformMesh> cache;
+
+    /**
+     * Constructs a cache instance using the specified parameters.
+     *
+     * @param  maximumNumberOfCachedTriangles  the maximum number of mesh triangles to maintain in the cache
+     *                                         (0 disables caching).
+     *
+     * @param  recordStats                     if true, useful tuning stats like cache hits and loads will be
+     *                                         maintained.
+     */
+    public InverseTransformMeshCache(final long maximumNumberOfCachedTriangles,
+                                     final boolean recordStats) {
+
+        this.maximumNumberOfCachedTriangles = maximumNumberOfCachedTriangles;
+
+        final Weigher<MeshKey, InverseTransformMesh> weigher =
+                (key, value) -> Math.max(1, value.getNumberOfTriangles());
+
+        if (recordStats) {
+            cache = CacheBuilder.newBuilder()
+                    .maximumWeight(maximumNumberOfCachedTriangles)
+                    .weigher(weigher)
+                    .recordStats()
+                    .build();
+        } else {
+            cache = CacheBuilder.newBuilder()
+                    .maximumWeight(maximumNumberOfCachedTriangles)
+                    .weigher(weigher)
+                    .build();
+        }
+    }
+
+    /**
+     * @param  key          identifies the mesh.
+     * @param  meshBuilder  builds the mesh if it is not already cached.
+     *
+     * @return the cached (shared) mesh for the specified key.
+     *         If the mesh is not already cached, it will be built and added to the cache.
+     *
+     * @throws IllegalArgumentException
+     *   if the mesh cannot be built.
+     */
+    public InverseTransformMesh get(final MeshKey key,
+                                    final Callable<InverseTransformMesh> meshBuilder)
+            throws IllegalArgumentException {
+
+        if (maximumNumberOfCachedTriangles == 0) {
+            return build(meshBuilder);
+        }
+
+        try {
+            return cache.get(key, meshBuilder);
+        } catch (final Throwable t) {
+            final Throwable cause = t.getCause() == null ? t : t.getCause();
+            if (cause instanceof IllegalArgumentException) {
+                throw (IllegalArgumentException) cause;
+            }
+            throw new IllegalArgumentException("failed to build inverse mesh for " + key, cause);
+        }
+    }
+
+    /**
+     * @return the number of entries currently in this cache.
+     */
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * Discards all entries in the cache.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * @return a current snapshot of this cache's cumulative statistics
+     *         (will be all zeros if stat recording is not enabled for this cache).
+     */
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    @Override
+    public String toString() {
+        return "{numberOfEntries: " + size() +
+               ", maximumNumberOfCachedTriangles: " + maximumNumberOfCachedTriangles +
+               '}';
+    }
+
+    private static InverseTransformMesh build(final Callable<InverseTransformMesh> meshBuilder)
+            throws IllegalArgumentException {
+        try {
+            return meshBuilder.call();
+        } catch (final IllegalArgumentException e) {
+            throw e;
+        } catch (final Exception e) {
+            throw new IllegalArgumentException("failed to build inverse mesh", e);
+        }
+    }
+
+    /**
+     * Key that identifies an inverse mesh by its transforms, source dimensions, and mesh cell size.
+     */
+    public static class MeshKey {
+
+        private final TransformKey transformKey;
+        private final double width;
+        private final double height;
+        private final double meshCellSize;
+        private final int hashCode;
+
+        /**
+         * @param  transformKey  identifies the mesh transforms.
+         * @param  width         width of the source area.
+         * @param  height        height of the source area.
+         * @param  meshCellSize  desired size of a mesh cell (triangle) in pixels.
+         */
+        public MeshKey(final TransformKey transformKey,
+                       final double width,
+                       final double height,
+                       final double meshCellSize) {
+            this.transformKey = transformKey;
+            this.width = width;
+            this.height = height;
+            this.meshCellSize = meshCellSize;
+
+            int result = transformKey.hashCode();
+            result = 31 * result + Double.hashCode(width);
+            result = 31 * result + Double.hashCode(height);
+            result = 31 * result + Double.hashCode(meshCellSize);
+            this.hashCode = result;
+        }
+
+        @Override
+        public String toString() {
+            return "{transformKey: " + transformKey +
+                   ", width: " + width +
+                   ", height: " + height +
+                   ", meshCellSize: " + meshCellSize +
+                   '}';
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            boolean result = true;
+            if (this != o) {
+                if (o instanceof MeshKey) {
+                    final MeshKey that = (MeshKey) o;
+                    result = (this.hashCode == that.hashCode) &&
+                             (Double.compare(this.width, that.width) == 0) &&
+                             (Double.compare(this.height, that.height) == 0) &&
+                             (Double.compare(this.meshCellSize, that.meshCellSize) == 0) &&
+                             this.transformKey.equals(that.transformKey);
+                } else {
+                    result = false;
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+}
@@ -0,0 +1,334 @@
+package org.janelia.alignment.util;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.Weigher;
+
+import ij.process.ByteProcessor;
+import ij.process.ColorProcessor;
+import ij.process.FloatProcessor;
+import ij.process.ImageProcessor;
+import ij.process.ShortProcessor;
+
+import java.awt.image.ColorModel;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Second tier store for {@link ImageProcessor} instances evicted from an {@link ImageProcessorCache}.
+ *
+ * Processors are kept outside of the Java heap in raw (decode-free) form: the dimensions, type, and
+ * display range are retained on heap while pixel data is copied into either a direct (off-heap) buffer or,
+ * when a local directory is specified, a memory-mapped file in that directory.
+ * Retrieving a processor from the store therefore only requires a single copy of the pixel data
+ * instead of re-reading and decoding the original image.
+ *
+ * The store is constrained by a max byte count.  Once the store is full, least recently stored instances
+ * are removed (and their files deleted) to make room.  Note that direct and mapped buffer memory is
+ * released by the JVM when the buffers are garbage collected, so process memory may briefly exceed
+ * the store's size limit after heavy eviction.  Direct buffer usage is also limited by the JVM's
+ * -XX:MaxDirectMemorySize option (which defaults to the max heap size).
+ *
+ * @author Eric Trautman
+ */
+public class OffHeapImageProcessorStore {
+
+    private final long maximumNumberOfBytes;
+    private final File directory;
+    private final boolean recordStats;
+
+    private final Cache<Object, StoredProcessor> cache;
+    private final AtomicLong numberOfStoredBytes;
+    private final AtomicLong storeCount;
+
+    /**
+     * Constructs a store instance using the specified parameters.
+     *
+     * @param  maximumNumberOfBytes  the maximum number of pixel bytes to maintain in the store.
+     *
+     * @param  directory             local (preferably fast, e.g. SSD) directory for memory-mapped pixel files
+     *                               or null to store pixels in direct (off-heap) memory.
+     *
+     * @param  recordStats           if true, useful tuning stats like hits and evictions will be maintained;
+     *                               otherwise stats are not maintained.
+     *
+     * @throws IllegalArgumentException
+     *   if the specified directory does not exist or is not writable.
+     */
+    public OffHeapImageProcessorStore(final long maximumNumberOfBytes,
+                                      final File directory,
+                                      final boolean recordStats)
+            throws IllegalArgumentException {
+
+        if ((directory != null) && ((! directory.isDirectory()) || (! directory.canWrite()))) {
+            throw new IllegalArgumentException("second tier directory " + directory.getAbsolutePath() +
+                                               " must be an existing writable directory");
+        }
+
+        this.maximumNumberOfBytes = maximumNumberOfBytes;
+        this.directory = directory;
+        this.recordStats = recordStats;
+        this.numberOfStoredBytes = new AtomicLong(0);
+        this.storeCount = new AtomicLong(0);
+
+        final Weigher<Object, StoredProcessor> weigher = (key, value) -> value.getNumberOfBytes();
+
+        final RemovalListener<Object, StoredProcessor> removalListener =
+                notification -> {
+                    final StoredProcessor value = notification.getValue();
+                    if (value != null) {
+                        numberOfStoredBytes.addAndGet(-value.getNumberOfBytes());
+                        value.deleteFile();
+                    }
+                };
+
+        // The store is only accessed on first tier misses and evictions, so use a single segment
+        // to make the size limit and least recently used ordering apply to the whole store.
+        if (recordStats) {
+            cache = CacheBuilder.newBuilder()
+                    .concurrencyLevel(1)
+                    .maximumWeight(maximumNumberOfBytes)
+                    .weigher(weigher)
+                    .removalListener(removalListener)
+                    .recordStats()
+                    .build();
+        } else {
+            cache = CacheBuilder.newBuilder()
+                    .concurrencyLevel(1)
+                    .maximumWeight(maximumNumberOfBytes)
+                    .weigher(weigher)
+                    .removalListener(removalListener)
+                    .build();
+        }
+    }
+
+    /**
+     * Copies the specified processor's pixels into this store.
+     * Processors that are too large for the store or that have unsupported types are silently ignored.
+     *
+     * @param  key             identifies the processor.
+     * @param  imageProcessor  processor to store (will not be modified).
+     */
+    public void put(final Object key,
+                    final ImageProcessor imageProcessor) {
+
+        final int type = getType(imageProcessor);
+        if (type < 0) {
+            return;
+        }
+
+        final long numberOfBytes = (long) imageProcessor.getPixelCount() * BYTES_PER_PIXEL[type];
+        if (numberOfBytes > Math.min(maximumNumberOfBytes, Integer.MAX_VALUE)) {
+            return;
+        }
+
+        try {
+            final StoredProcessor storedProcessor = new StoredProcessor(type, imageProcessor, directory);
+            numberOfStoredBytes.addAndGet(storedProcessor.getNumberOfBytes());
+            cache.put(key, storedProcessor);
+            storeCount.incrementAndGet();
+        } catch (final Throwable t) {
+            LOG.warn("put: failed to store " + key + ", ignoring error", t);
+        }
+    }
+
+    /**
+     * Removes the processor for the specified key from this store.
+     * This is intended to be used when the processor is being promoted back to a first tier cache.
+     *
+     * @param  key  identifies the processor.
+     *
+     * @return a newly restored (heap) copy of the stored processor or null if it is not in this store.
+     */
+    public ImageProcessor remove(final Object key) {
+        ImageProcessor imageProcessor = null;
+        final StoredProcessor storedProcessor = cache.getIfPresent(key);
+        if (storedProcessor != null) {
+            imageProcessor = storedProcessor.restore();
+            cache.invalidate(key);
+        }
+        return imageProcessor;
+    }
+
+    /**
+     * @return the number of entries currently in this store.
+     */
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * @return the number of pixel bytes currently in this store.
+     */
+    public long getNumberOfStoredBytes() {
+        return numberOfStoredBytes.get();
+    }
+
+    /**
+     * @return the total number of processors that have been added to this store.
+     */
+    public long getStoreCount() {
+        return storeCount.get();
+    }
+
+    /**
+     * Discards all entries in the store.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * @return a current snapshot of this store's cumulative statistics
+     *         (will be all zeros if stat recording is not enabled for this store).
+     */
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    @Override
+    public String toString() {
+        return "{numberOfEntries: " + size() +
+               ", numberOfStoredBytes: " + getNumberOfStoredBytes() +
+               ", maximumNumberOfBytes: " + maximumNumberOfBytes +
+               ", directory: " + (directory == null ? null : "'" + directory.getAbsolutePath() + "'") +
+               ", recordStats: " + recordStats +
+               '}';
+    }
+
+    private static final int BYTE_TYPE = 0;
+    private static final int SHORT_TYPE = 1;
+    private static final int FLOAT_TYPE = 2;
+    private static final int COLOR_TYPE = 3;
+
+    private static final int[] BYTES_PER_PIXEL = { 1, 2, 4, 4 };
+
+    private static int getType(final ImageProcessor imageProcessor) {
+        final int type;
+        if (imageProcessor instanceof ByteProcessor) {
+            type = BYTE_TYPE;
+        } else if (imageProcessor instanceof ShortProcessor) {
+            type = SHORT_TYPE;
+        } else if (imageProcessor instanceof FloatProcessor) {
+            type = FLOAT_TYPE;
+        } else if (imageProcessor instanceof ColorProcessor) {
+            type = COLOR_TYPE;
+        } else {
+            type = -1;
+        }
+        return type;
+    }
+
+    /**
+     * Raw form of a stored processor.
+     */
+    private static class StoredProcessor {
+
+        private final int type;
+        private final int width;
+        private final int height;
+        private final double min;
+        private final double max;
+        private final ColorModel colorModel;
+        private final ByteBuffer pixels;
+        private final File file;
+
+        StoredProcessor(final int type,
+                        final ImageProcessor imageProcessor,
+                        final File directory)
+                throws IOException {
+
+            this.type = type;
+            this.width = imageProcessor.getWidth();
+            this.height = imageProcessor.getHeight();
+            this.min = imageProcessor.getMin();
+            this.max = imageProcessor.getMax();
+            this.colorModel = type == COLOR_TYPE ? null : imageProcessor.getColorModel(); // base (unscaled) LUT
+
+            final int numberOfBytes = width * height * BYTES_PER_PIXEL[type];
+
+            if (directory == null) {
+                this.file = null;
+                this.pixels = ByteBuffer.allocateDirect(numberOfBytes);
+            } else {
+                this.file = File.createTempFile("ip-", ".raw", directory);
+                try (final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+                    // mapping remains valid after the channel is closed
+                    this.pixels = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, numberOfBytes);
+                } catch (final IOException e) {
+                    deleteFile();
+                    throw e;
+                }
+            }
+
+            this.pixels.order(ByteOrder.nativeOrder());
+
+            final Object sourcePixels = imageProcessor.getPixels();
+            switch (type) {
+                case BYTE_TYPE:  pixels.duplicate().put((byte[]) sourcePixels); break;
+                case SHORT_TYPE: pixels.asShortBuffer().put((short[]) sourcePixels); break;
+                case FLOAT_TYPE: pixels.asFloatBuffer().put((float[]) sourcePixels); break;
+                default:         pixels.asIntBuffer().put((int[]) sourcePixels); break;
+            }
+        }
+
+        int getNumberOfBytes() {
+            return pixels.capacity();
+        }
+
+        ImageProcessor restore() {
+
+            // work with duplicate views so that concurrent restores do not share buffer positions
+            final ByteBuffer view = pixels.duplicate().order(pixels.order());
+            final int pixelCount = width * height;
+            final ImageProcessor imageProcessor;
+
+            switch (type) {
+                case BYTE_TYPE:
+                    final byte[] bytePixels = new byte[pixelCount];
+                    view.get(bytePixels);
+                    imageProcessor = new ByteProcessor(width, height, bytePixels, colorModel);
+                    imageProcessor.setMinAndMax(min, max);
+                    break;
+                case SHORT_TYPE:
+                    final short[] shortPixels = new short[pixelCount];
+                    view.asShortBuffer().get(shortPixels);
+                    imageProcessor = new ShortProcessor(width, height, shortPixels, colorModel);
+                    imageProcessor.setMinAndMax(min, max);
+                    break;
+                case FLOAT_TYPE:
+                    final float[] floatPixels = new float[pixelCount];
+                    view.asFloatBuffer().get(floatPixels);
+                    imageProcessor = new FloatProcessor(width, height, floatPixels, colorModel);
+                    imageProcessor.setMinAndMax(min, max);
+                    break;
+                default:
+                    final int[] colorPixels = new int[pixelCount];
+                    view.asIntBuffer().get(colorPixels);
+                    imageProcessor = new ColorProcessor(width, height, colorPixels);
+                    break;
+            }
+
+            return imageProcessor;
+        }
+
+        void deleteFile() {
+            if ((file != null) && file.exists() && (! file.delete())) {
+                LOG.warn("deleteFile: failed to delete {}", file.getAbsolutePath());
+            }
+        }
+    }
+
+    private static final Logger LOG = LoggerFactory.getLogger(OffHeapImageProcessorStore.class);
+
+}
@@ -0,0 +1,118 @@
+package org.janelia.alignment.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Accumulates the time spent in each phase (source loading, mesh creation, pixel mapping, and encoding)
+ * of a single render request along with the number of source image cache hits and misses for the request.
+ *
+ * Renderers find the instance for their request with {@link #forCurrentThread}, so callers that want
+ * phase times simply {@link #bindToCurrentThread bind} an instance to the rendering thread before
+ * rendering and {@link #unbindFromCurrentThread unbind} it afterwards.  Renderers pass the instance
+ * along to any worker threads they use, so times are accumulated (thread safely) across all threads
+ * working on the request.  When more than one source is processed concurrently, phase times
+ * therefore represent total work and may exceed the request's elapsed time.
+ *
+ * @author Eric Trautman
+ */
+public class RenderPhaseTimes {
+
+    private final AtomicLong loadNanos;
+    private final AtomicLong meshNanos;
+    private final AtomicLong mapNanos;
+    private final AtomicLong encodeNanos;
+    private final AtomicLong sourceCacheHits;
+    private final AtomicLong sourceCacheMisses;
+
+    public RenderPhaseTimes() {
+        this.loadNanos = new AtomicLong(0);
+        this.meshNanos = new AtomicLong(0);
+        this.mapNanos = new AtomicLong(0);
+        this.encodeNanos = new AtomicLong(0);
+        this.sourceCacheHits = new AtomicLong(0);
+        this.sourceCacheMisses = new AtomicLong(0);
+    }
+
+    public void addLoadNanos(final long nanos) {
+        loadNanos.addAndGet(nanos);
+    }
+
+    public void addMeshNanos(final long nanos) {
+        meshNanos.addAndGet(nanos);
+    }
+
+    public void addMapNanos(final long nanos) {
+        mapNanos.addAndGet(nanos);
+    }
+
+    public void addEncodeNanos(final long nanos) {
+        encodeNanos.addAndGet(nanos);
+    }
+
+    public void addSourceCacheHit() {
+        sourceCacheHits.incrementAndGet();
+    }
+
+    public void addSourceCacheMiss() {
+        sourceCacheMisses.incrementAndGet();
+    }
+
+    public long getLoadNanos() {
+        return loadNanos.get();
+    }
+
+    public long getMeshNanos() {
+        return meshNanos.get();
+    }
+
+    public long getMapNanos() {
+        return mapNanos.get();
+    }
+
+    public long getEncodeNanos() {
+        return encodeNanos.get();
+    }
+
+    public long getSourceCacheHits() {
+        return sourceCacheHits.get();
+    }
+
+    public long getSourceCacheMisses() {
+        return sourceCacheMisses.get();
+    }
+
+    /**
+     * Makes this instance the one returned by {@link #forCurrentThread} for the current thread.
+     */
+    public void bindToCurrentThread() {
+        CURRENT.set(this);
+    }
+
+    /**
+     * Removes any instance bound to the current thread.
+     */
+    public static void unbindFromCurrentThread() {
+        CURRENT.remove();
+    }
+
+    /**
+     * @return the instance bound to the current thread or null if no instance is bound.
+     */
+    public static RenderPhaseTimes forCurrentThread() {
+        return CURRENT.get();
+    }
+
+    @Override
+    public String toString() {
+        return "{loadNanos: " + getLoadNanos() +
+               ", meshNanos: " + getMeshNanos() +
+               ", mapNanos: " + getMapNanos() +
+               ", encodeNanos: " + getEncodeNanos() +
+               ", sourceCacheHits: " + getSourceCacheHits() +
+               ", sourceCacheMisses: " + getSourceCacheMisses() +
+               '}';
+    }
+
+    private static final ThreadLocal<RenderPhaseTimes> CURRENT = new ThreadLocal<>();
+
+}
@@ -0,0 +1,222 @@
+package org.janelia.alignment.util;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
+
+import java.util.concurrent.Callable;
+
+import org.janelia.alignment.RenderTransformMesh;
+
+/**
+ * Cache of prepared {@link RenderTransformMesh} instances (triangle affines and target bounds) for rendering.
+ *
+ * Meshes are cached without the render offset (the bounding box x and y) since clients commonly request
+ * neighboring boxes at the same scale for the same tiles.  The offset is applied to a cached mesh as a
+ * cheap translation that avoids re-applying tile transforms and re-fitting triangle affines.
+ *
+ * Each cache is constrained by a max triangle count parameter which should roughly correlate to max memory usage
+ * (each triangle requires roughly {@value #APPROXIMATE_BYTES_PER_TRIANGLE} bytes).
+ * Once a cache is full, least recently used instances are removed to make room.
+ *
+ * @author Eric Trautman
+ */
+public class RenderTransformMeshCache {
+
+    /** Approximate memory used by one cached triangle (affine model, vertex arrays, and pair). */
+    public static final int APPROXIMATE_BYTES_PER_TRIANGLE = 350;
+
+    /** Default max number of triangles is 1,000,000 (or roughly 350MB and 450 typical 2k x 2k tile meshes). */
+    public static final long DEFAULT_MAX_CACHED_TRIANGLES = 1000000;
+
+    private final long maximumNumberOfCachedTriangles;
+    private final boolean recordStats;
+
+    private final Cache<MeshKey, RenderTransformMesh> cache;
+
+    /**
+     * Constructs an instance with default parameters.
+     */
+    public RenderTransformMeshCache() {
+        this(DEFAULT_MAX_CACHED_TRIANGLES, true);
+    }
+
+    /**
+     * Constructs a cache instance using the specified parameters.
+     *
+     * @param  maximumNumberOfCachedTriangles  the maximum number of mesh triangles to maintain in the cache.
+     *
+     * @param  recordStats                     if true, useful tuning stats like cache hits and loads will be
+     *                                         maintained (presumably at some nominal overhead cost);
+     *                                         otherwise stats are not maintained.
+     */
+    public RenderTransformMeshCache(final long maximumNumberOfCachedTriangles,
+                                    final boolean recordStats) {
+
+        this.maximumNumberOfCachedTriangles = maximumNumberOfCachedTriangles;
+        this.recordStats = recordStats;
+
+        final Weigher<MeshKey, RenderTransformMesh> weigher = (key, value) -> value.getAV().size();
+
+        if (recordStats) {
+            cache = CacheBuilder.newBuilder()
+                    .maximumWeight(maximumNumberOfCachedTriangles)
+                    .weigher(weigher)
+                    .recordStats()
+                    .build();
+        } else {
+            cache = CacheBuilder.newBuilder()
+                    .maximumWeight(maximumNumberOfCachedTriangles)
+                    .weigher(weigher)
+                    .build();
+        }
+    }
+
+    /**
+     * @param  key          identifies the offset free mesh.
+     * @param  meshBuilder  builds the offset free mesh (with updated affines) if it is not already cached.
+     * @param  dx           render x offset to apply to the mesh.
+     * @param  dy           render y offset to apply to the mesh.
+     *
+     * @return a translated copy of the cached mesh for the specified key.
+     *         If the mesh is not already cached, it will be built and added to the cache.
+     *         A copy is returned so that the cached instance remains unaltered for future use.
+     *
+     * @throws IllegalArgumentException
+     *   if the mesh cannot be built.
+     */
+    public RenderTransformMesh getTranslatedMesh(final MeshKey key,
+                                                 final Callable<RenderTransformMesh> meshBuilder,
+                                                 final double dx,
+                                                 final double dy)
+            throws IllegalArgumentException {
+
+        final RenderTransformMesh mesh;
+        try {
+            mesh = cache.get(key, meshBuilder);
+        } catch (final Throwable t) {
+            throw new IllegalArgumentException("failed to retrieve " + key + " from cache", t);
+        }
+        return mesh.getTranslatedCopy(dx, dy);
+    }
+
+    /**
+     * @return the number of entries currently in this cache.
+     */
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * Discards all entries in the cache.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * @return a current snapshot of this cache's cumulative statistics
+     *         (will be all zeros if stat recording is not enabled for this cache).
+     */
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    @Override
+    public String toString() {
+        return "{numberOfEntries: " + size() +
+               ", maximumNumberOfCachedTriangles: " + maximumNumberOfCachedTriangles +
+               ", recordStats: " + recordStats +
+               '}';
+    }
+
+    /**
+     * Key that identifies an offset free mesh by its tile transforms and render scale context.
+     */
+    public static class MeshKey {
+
+        private final TransformKey transformKey;
+        private final int mipmapLevel;
+        private final double levelZeroScale;
+        private final double levelScale;
+        private final double meshCellSize;
+        private final int fullScaleWidth;
+        private final int mipmapWidth;
+        private final int mipmapHeight;
+
+        /**
+         * @param  transformKey    identifies the source's full scale transforms.
+         * @param  mipmapLevel     source mipmap level.
+         * @param  levelZeroScale  render scale at canvas mipmap level 0.
+         * @param  levelScale      render scale at the canvas mipmap level being rendered.
+         * @param  meshCellSize    desired size of a mesh cell (triangle) in pixels.
+         * @param  fullScaleWidth  full scale width of the source.
+         * @param  mipmapWidth     width of the source mipmap.
+         * @param  mipmapHeight    height of the source mipmap.
+         */
+        public MeshKey(final TransformKey transformKey,
+                       final int mipmapLevel,
+                       final double levelZeroScale,
+                       final double levelScale,
+                       final double meshCellSize,
+                       final int fullScaleWidth,
+                       final int mipmapWidth,
+                       final int mipmapHeight) {
+            this.transformKey = transformKey;
+            this.mipmapLevel = mipmapLevel;
+            this.levelZeroScale = levelZeroScale;
+            this.levelScale = levelScale;
+            this.meshCellSize = meshCellSize;
+            this.fullScaleWidth = fullScaleWidth;
+            this.mipmapWidth = mipmapWidth;
+            this.mipmapHeight = mipmapHeight;
+        }
+
+        @Override
+        public String toString() {
+            return "{transformKey: " + transformKey +
+                   ", mipmapLevel: " + mipmapLevel +
+                   ", levelZeroScale: " + levelZeroScale +
+                   ", levelScale: " + levelScale +
+                   ", meshCellSize: " + meshCellSize +
+                   ", fullScaleWidth: " + fullScaleWidth +
+                   ", mipmapWidth: " + mipmapWidth +
+                   ", mipmapHeight: " + mipmapHeight +
+                   '}';
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            boolean result = true;
+            if (this != o) {
+                if (o instanceof MeshKey) {
+                    final MeshKey that = (MeshKey) o;
+                    result = (this.mipmapLevel == that.mipmapLevel) &&
+                             (Double.compare(this.levelZeroScale, that.levelZeroScale) == 0) &&
+                             (Double.compare(this.levelScale, that.levelScale) == 0) &&
+                             (Double.compare(this.meshCellSize, that.meshCellSize) == 0) &&
+                             (this.fullScaleWidth == that.fullScaleWidth) &&
+                             (this.mipmapWidth == that.mipmapWidth) &&
+                             (this.mipmapHeight == that.mipmapHeight) &&
+                             this.transformKey.equals(that.transformKey);
+                } else {
+                    result = false;
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = transformKey.hashCode();
+            result = 31 * result + mipmapLevel;
+            result = 31 * result + Double.hashCode(levelZeroScale);
+            result = 31 * result + Double.hashCode(levelScale);
+            result = 31 * result + mipmapWidth;
+            result = 31 * result + mipmapHeight;
+            return result;
+        }
+    }
+
+}
@@ -0,0 +1,229 @@
+package org.janelia.alignment.util;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes an uncompressed 8-bit (gray or RGB) TIFF image to a stream one row at a time.
+ *
+ * Since strip sizes for uncompressed data are known up front, the header and image file directory
+ * (including strip offsets and byte counts) are written before any pixels.  This allows very large
+ * images to be encoded as their rows are produced without holding the whole image in memory.
+ * Like ImageJ's TiffEncoder, data is written in big-endian (Motorola) byte order.
+ *
+ * @author Eric Trautman
+ */
+public class TiffStripWriter {
+
+    private static final int HEADER_SIZE = 8;
+    private static final int NUMBER_OF_ENTRIES = 10;
+    private static final int IFD_SIZE = 2 + (NUMBER_OF_ENTRIES * 12) + 4;
+
+    private static final int SHORT = 3;
+    private static final int LONG = 4;
+
+    private static final long MAX_FILE_SIZE = 0xFFFFFFFFL;
+
+    private final DataOutputStream out;
+    private final int width;
+    private final int height;
+    private final int samplesPerPixel;
+    private final int rowsPerStrip;
+
+    private boolean isHeaderWritten;
+    private int rowsWritten;
+
+    /**
+     * @param  outputStream     target stream.
+     * @param  width            image width.
+     * @param  height           image height.
+     * @param  samplesPerPixel  1 for gray images or 3 for RGB images.
+     * @param  rowsPerStrip     number of rows in each strip (except possibly the last).
+     *
+     * @throws IllegalArgumentException
+     *   if any of the parameters are invalid or the encoded image would exceed the 4GB TIFF limit.
+     */
+    public TiffStripWriter(final OutputStream outputStream,
+                           final int width,
+                           final int height,
+                           final int samplesPerPixel,
+                           final int rowsPerStrip)
+            throws IllegalArgumentException {
+
+        if ((width < 1) || (height < 1)) {
+            throw new IllegalArgumentException("image dimensions must be positive");
+        }
+        if ((samplesPerPixel != 1) && (samplesPerPixel != 3)) {
+            throw new IllegalArgumentException("samplesPerPixel must be 1 (gray) or 3 (RGB)");
+        }
+        if (rowsPerStrip < 1) {
+            throw new IllegalArgumentException("rowsPerStrip must be positive");
+        }
+
+        this.out = new DataOutputStream(outputStream);
+        this.width = width;
+        this.height = height;
+        this.samplesPerPixel = samplesPerPixel;
+        this.rowsPerStrip = Math.min(rowsPerStrip, height);
+
+        if (getImageDataOffset() + ((long) getBytesPerRow() * height) > MAX_FILE_SIZE) {
+            throw new IllegalArgumentException("a " + width + "x" + height +
+                                               " image is too large to encode as a (non-Big) TIFF");
+        }
+
+        this.isHeaderWritten = false;
+        this.rowsWritten = 0;
+    }
+
+    public int getBytesPerRow() {
+        return width * samplesPerPixel;
+    }
+
+    /**
+     * Writes the next row of the image (writing the header first if necessary).
+     *
+     * @param  samples  8-bit samples for the row (interleaved r, g, b for RGB images).
+     * @param  offset   index of the row's first sample.
+     *
+     * @throws IOException
+     *   if the row cannot be written.
+     *
+     * @throws IllegalStateException
+     *   if all rows have already been written.
+     */
+    public void writeRow(final byte[] samples,
+                         final int offset)
+            throws IOException, IllegalStateException {
+
+        if (rowsWritten == height) {
+            throw new IllegalStateException("all " + height + " rows have already been written");
+        }
+
+        if (! isHeaderWritten) {
+            writeHeader();
+        }
+
+        out.write(samples, offset, getBytesPerRow());
+        rowsWritten++;
+    }
+
+    /**
+     * Flushes the underlying stream after validating that all rows have been written.
+     *
+     * @throws IOException
+     *   if the flush fails.
+     *
+     * @throws IllegalStateException
+     *   if not all rows have been written.
+     */
+    public void end()
+            throws IOException, IllegalStateException {
+
+        if (rowsWritten < height) {
+            throw new IllegalStateException("only " + rowsWritten + " of " + height + " rows have been written");
+        }
+
+        out.flush();
+    }
+
+    private int getNumberOfStrips() {
+        return (height + rowsPerStrip - 1) / rowsPerStrip;
+    }
+
+    private long getImageDataOffset() {
+        long offset = HEADER_SIZE + IFD_SIZE;
+        if (samplesPerPixel > 1) {
+            offset += 2 * samplesPerPixel;          // bits per sample values
+        }
+        final int numberOfStrips = getNumberOfStrips();
+        if (numberOfStrips > 1) {
+            offset += 2 * 4 * numberOfStrips;      // strip offsets and byte counts
+        }
+        return offset;
+    }
+
+    private void writeHeader()
+            throws IOException {
+
+        final int numberOfStrips = getNumberOfStrips();
+        final int bitsPerSampleOffset = HEADER_SIZE + IFD_SIZE;
+        final int stripOffsetsOffset = bitsPerSampleOffset + (samplesPerPixel > 1 ? 2 * samplesPerPixel : 0);
+        final int stripByteCountsOffset = stripOffsetsOffset + (4 * numberOfStrips);
+        final long imageDataOffset = getImageDataOffset();
+        final int bytesPerStrip = getBytesPerRow() * rowsPerStrip;
+        final int lastStripRows = height - ((numberOfStrips - 1) * rowsPerStrip);
+
+        // header
+        out.writeByte('M');
+        out.writeByte('M');
+        out.writeShort(42);
+        out.writeInt(HEADER_SIZE);
+
+        // image file directory (entries must be sorted by tag)
+        out.writeShort(NUMBER_OF_ENTRIES);
+        writeEntry(254, LONG, 1, 0);                                       // NewSubfileType
+        writeEntry(256, LONG, 1, width);                                   // ImageWidth
+        writeEntry(257, LONG, 1, height);                                  // ImageLength
+        if (samplesPerPixel > 1) {
+            writeEntry(258, SHORT, samplesPerPixel, bitsPerSampleOffset);  // BitsPerSample
+        } else {
+            writeShortEntry(258, 8);
+        }
+        writeShortEntry(259, 1);                                           // Compression: none
+        writeShortEntry(262, samplesPerPixel > 1 ? 2 : 1);                 // Photometric: RGB or BlackIsZero
+        if (numberOfStrips > 1) {
+            writeEntry(273, LONG, numberOfStrips, stripOffsetsOffset);     // StripOffsets
+        } else {
+            writeEntry(273, LONG, 1, imageDataOffset);
+        }
+        writeShortEntry(277, samplesPerPixel);                             // SamplesPerPixel
+        writeEntry(278, LONG, 1, rowsPerStrip);                            // RowsPerStrip
+        if (numberOfStrips > 1) {
+            writeEntry(279, LONG, numberOfStrips, stripByteCountsOffset);  // StripByteCounts
+        } else {
+            writeEntry(279, LONG, 1, (long) getBytesPerRow() * height);
+        }
+        out.writeInt(0);                                                   // no more directories
+
+        // out-of-line values
+        if (samplesPerPixel > 1) {
+            for (int i = 0; i < samplesPerPixel; i++) {
+                out.writeShort(8);
+            }
+        }
+        if (numberOfStrips > 1) {
+            for (int i = 0; i < numberOfStrips; i++) {
+                out.writeInt((int) (imageDataOffset + ((long) i * bytesPerStrip)));
+            }
+            for (int i = 0; i < numberOfStrips; i++) {
+                final int stripRows = (i < (numberOfStrips - 1)) ? rowsPerStrip : lastStripRows;
+                out.writeInt(getBytesPerRow() * stripRows);
+            }
+        }
+
+        isHeaderWritten = true;
+    }
+
+    private void writeShortEntry(final int tag,
+                                 final int value)
+            throws IOException {
+        out.writeShort(tag);
+        out.writeShort(SHORT);
+        out.writeInt(1);
+        out.writeShort(value); // short values are left justified in the 4 byte value field
+        out.writeShort(0);
+    }
+
+    private void writeEntry(final int tag,
+                            final int fieldType,
+                            final int count,
+                            final long valueOrOffset)
+            throws IOException {
+        out.writeShort(tag);
+        out.writeShort(fieldType);
+        out.writeInt(count);
+        out.writeInt((int) valueOrOffset);
+    }
+
+}
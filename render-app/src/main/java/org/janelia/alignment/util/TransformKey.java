@@ -0,0 +1,63 @@
+package org.janelia.alignment.util;
+
+import java.util.List;
+
+/**
+ * Identifies a list of transforms for caching derived data (e.g. meshes) across tiles and requests.
+ *
+ * A key is built from the identifying strings of a transform spec
+ * (see {@link org.janelia.alignment.spec.TransformSpec#addKeyStrings}).
+ * Those strings are referenced rather than copied or serialized, so building a key for a tile with large
+ * thin plate spline or warp field data is cheap.  The hash code is computed once when the key is created.
+ *
+ * @author Eric Trautman
+ */
+public class TransformKey {
+
+    private final List<String> keyStrings;
+    private final int hashCode;
+
+    /**
+     * @param  keyStrings  strings that identify the transforms (must not be modified after key creation).
+     */
+    public TransformKey(final List<String> keyStrings) {
+        this.keyStrings = keyStrings;
+        this.hashCode = keyStrings.hashCode();
+    }
+
+    /**
+     * @return the total length of this key's strings (roughly correlates with the memory they use).
+     */
+    public int getKeyStringLength() {
+        long length = 0;
+        for (final String keyString : keyStrings) {
+            length += keyString.length();
+        }
+        return (int) Math.min(length, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public String toString() {
+        return "{keyStringCount: " + keyStrings.size() + '}';
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        boolean result = true;
+        if (this != o) {
+            if (o instanceof TransformKey) {
+                final TransformKey that = (TransformKey) o;
+                result = (this.hashCode == that.hashCode) &&
+                         this.keyStrings.equals(that.keyStrings);
+            } else {
+                result = false;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+}
@@ -0,0 +1,159 @@
+package org.janelia.alignment;
+
+import ij.process.ByteProcessor;
+import ij.process.FloatProcessor;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import mpicbg.trakem2.transform.TransformMeshMappingWithMasks.ImageProcessorWithMasks;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests that {@link ArgbRenderer#writeToARGBImage} and {@link ShortRenderer#writeToShortImage}
+ * produce the same pixels as converting rendered processors to images and drawing them onto the target.
+ *
+ * @author Eric Trautman
+ */
+public class DirectImageWriteTest {
+
+    private static final int WIDTH = 37;
+    private static final int HEIGHT = 23;
+
+    @Test
+    public void testWriteToARGBImage() throws Exception {
+
+        final FloatProcessor fp = buildRandomFloatProcessor();
+        final ByteProcessor mask = buildRandomMask();
+
+        for (final boolean binaryMask : new boolean[] { false, true }) {
+            for (final ByteProcessor alpha : new ByteProcessor[] { null, mask }) {
+                for (final Integer backgroundRGBColor : new Integer[] { null, 0x123456 }) {
+
+                    final String context = "binaryMask=" + binaryMask + ", hasMask=" + (alpha != null) +
+                                           ", background=" + backgroundRGBColor;
+
+                    final ImageProcessorWithMasks worldTarget = new ImageProcessorWithMasks(fp, alpha, null);
+
+                    // target is one pixel larger than the rendered result to test clipping
+                    final BufferedImage expected = buildTranslucentARGBTarget();
+                    final Graphics2D targetGraphics = expected.createGraphics();
+                    if (backgroundRGBColor != null) {
+                        targetGraphics.setBackground(new Color(backgroundRGBColor));
+                        targetGraphics.clearRect(0, 0, expected.getWidth(), expected.getHeight());
+                    }
+                    targetGraphics.drawImage(ArgbRenderer.targetToARGBImage(worldTarget, binaryMask), 0, 0, null);
+                    targetGraphics.dispose();
+
+                    final BufferedImage actual = buildTranslucentARGBTarget();
+                    Assert.assertTrue("write should be supported for " + context,
+                                      ArgbRenderer.writeToARGBImage(worldTarget,
+                                                                    binaryMask,
+                                                                    backgroundRGBColor,
+                                                                    false,
+                                                                    actual));
+
+                    assertSamePixels(context, expected, actual);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testWriteToShortImage() throws Exception {
+
+        final ImageProcessorWithMasks worldTarget =
+                new ImageProcessorWithMasks(buildRandomFloatProcessor(), buildRandomMask(), null);
+
+        final BufferedImage expected = new BufferedImage(WIDTH + 1, HEIGHT + 1, BufferedImage.TYPE_USHORT_GRAY);
+        final Graphics2D targetGraphics = expected.createGraphics();
+        targetGraphics.drawImage(ShortRenderer.targetToShortImage(worldTarget), 0, 0, null);
+        targetGraphics.dispose();
+
+        final BufferedImage actual = new BufferedImage(WIDTH + 1, HEIGHT + 1, BufferedImage.TYPE_USHORT_GRAY);
+        Assert.assertTrue("write should be supported",
+                          ShortRenderer.writeToShortImage(worldTarget, actual));
+
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                Assert.assertEquals("invalid value for pixel (" + x + "," + y + ")",
+                                    expected.getRaster().getSample(x, y, 0),
+                                    actual.getRaster().getSample(x, y, 0));
+            }
+        }
+    }
+
+    @Test
+    public void testUnsupportedTargets() throws Exception {
+
+        final ImageProcessorWithMasks worldTarget =
+                new ImageProcessorWithMasks(buildRandomFloatProcessor(), null, null);
+
+        Assert.assertFalse("ARGB write should not be supported for RGB target",
+                           ArgbRenderer.writeToARGBImage(worldTarget, false, null, false,
+                                                         new BufferedImage(WIDTH, HEIGHT,
+                                                                           BufferedImage.TYPE_INT_RGB)));
+
+        Assert.assertFalse("short write should not be supported for ARGB target",
+                           ShortRenderer.writeToShortImage(worldTarget,
+                                                           new BufferedImage(WIDTH, HEIGHT,
+                                                                             BufferedImage.TYPE_INT_ARGB)));
+
+        final ImageProcessorWithMasks byteTarget =
+                new ImageProcessorWithMasks(new ByteProcessor(WIDTH, HEIGHT), null, null);
+        Assert.assertFalse("ARGB write should not be supported for byte processor",
+                           ArgbRenderer.writeToARGBImage(byteTarget, false, null, false,
+                                                         new BufferedImage(WIDTH, HEIGHT,
+                                                                           BufferedImage.TYPE_INT_ARGB)));
+    }
+
+    private static FloatProcessor buildRandomFloatProcessor() {
+        final Random random = new Random(WIDTH);
+        final float[] pixels = new float[WIDTH * HEIGHT];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = (random.nextFloat() * 300) - 20;
+        }
+        final FloatProcessor fp = new FloatProcessor(WIDTH, HEIGHT, pixels);
+        fp.setMinAndMax(0, 255);
+        return fp;
+    }
+
+    private static ByteProcessor buildRandomMask() {
+        final Random random = new Random(HEIGHT);
+        final ByteProcessor mask = new ByteProcessor(WIDTH, HEIGHT);
+        final byte[] pixels = (byte[]) mask.getPixels();
+        for (int i = 0; i < pixels.length; i++) {
+            final int choice = random.nextInt(4);
+            pixels[i] = (byte) (choice == 0 ? 0 : choice == 1 ? 255 : random.nextInt(256));
+        }
+        return mask;
+    }
+
+    private static BufferedImage buildTranslucentARGBTarget() {
+        final Random random = new Random(WIDTH * HEIGHT);
+        final BufferedImage image = new BufferedImage(WIDTH + 1, HEIGHT + 1, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+        return image;
+    }
+
+    private static void assertSamePixels(final String context,
+                                         final BufferedImage expected,
+                                         final BufferedImage actual) {
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                Assert.assertEquals("invalid ARGB value for pixel (" + x + "," + y + ") with " + context,
+                                    Integer.toHexString(expected.getRGB(x, y)),
+                                    Integer.toHexString(actual.getRGB(x, y)));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,157 @@
+package org.janelia.alignment;
+
+import java.util.List;
+import java.util.Random;
+
+import mpicbg.models.AffineModel2D;
+import mpicbg.models.CoordinateTransform;
+import mpicbg.models.NoninvertibleModelException;
+import mpicbg.trakem2.util.Pair;
+
+import org.janelia.alignment.spec.LeafTransformSpec;
+import org.janelia.alignment.spec.ListTransformSpec;
+import org.janelia.alignment.spec.TileSpec;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the {@link InverseTransformMesh} class.
+ *
+ * @author Eric Trautman
+ */
+public class InverseTransformMeshTest {
+
+    private static final double WIDTH = 2000.0;
+    private static final double HEIGHT = 1500.0;
+
+    @Test
+    public void testInverseOfMeshTriangles() throws Exception {
+
+        final RenderTransformMesh mesh = new RenderTransformMesh(new SmoothWarp(), 32, WIDTH, HEIGHT);
+        final List<Pair<AffineModel2D, double[][]>> av = mesh.getAV();
+
+        final InverseTransformMesh inverseMesh = new InverseTransformMesh(mesh);
+
+        Assert.assertEquals("invalid number of triangles", av.size(), inverseMesh.getNumberOfTriangles());
+
+        // points inside each triangle map to the same barycentric combination of source and target vertices
+        final Random random = new Random(11);
+        final double[][] targetLocations = new double[av.size()][];
+        final double[][] sourceLocations = new double[av.size()][];
+        for (int i = 0; i < av.size(); i++) {
+
+            final double[][] pq = av.get(i).b;
+            final double w1 = 0.05 + (random.nextDouble() * 0.45);
+            final double w2 = 0.05 + (random.nextDouble() * (0.9 - w1));
+            final double w0 = 1.0 - w1 - w2;
+
+            sourceLocations[i] = new double[] {
+                    (w0 * pq[0][0]) + (w1 * pq[0][1]) + (w2 * pq[0][2]),
+                    (w0 * pq[1][0]) + (w1 * pq[1][1]) + (w2 * pq[1][2])
+            };
+            targetLocations[i] = new double[] {
+                    (w0 * pq[2][0]) + (w1 * pq[2][1]) + (w2 * pq[2][2]),
+                    (w0 * pq[3][0]) + (w1 * pq[3][1]) + (w2 * pq[3][2])
+            };
+        }
+
+        final double[][] batchLocations = inverseMesh.applyInverse(targetLocations);
+
+        for (int i = 0; i < targetLocations.length; i++) {
+
+            final double[] location = targetLocations[i].clone();
+            inverseMesh.applyInverseInPlace(location);
+
+            final String context = "triangle " + i;
+            Assert.assertEquals("invalid x for " + context, sourceLocations[i][0], location[0], 0.000001);
+            Assert.assertEquals("invalid y for " + context, sourceLocations[i][1], location[1], 0.000001);
+
+            Assert.assertNotNull("missing batch location for " + context, batchLocations[i]);
+            Assert.assertEquals("invalid batch x for " + context, location[0], batchLocations[i][0], 0.0);
+            Assert.assertEquals("invalid batch y for " + context, location[1], batchLocations[i][1], 0.0);
+        }
+    }
+
+    @Test
+    public void testNoninvertibleLocations() throws Exception {
+
+        final InverseTransformMesh inverseMesh =
+                new InverseTransformMesh(new RenderTransformMesh(new SmoothWarp(), 16, WIDTH, HEIGHT));
+
+        final double[][] locations = {
+                { -500.0, 100.0 },
+                { 500.0, 500.0 },
+                { 500.0, HEIGHT * 3 }
+        };
+
+        final double[][] batchLocations = inverseMesh.applyInverse(locations);
+
+        Assert.assertNull("location outside of mesh should not be inverted", batchLocations[0]);
+        Assert.assertNotNull("location inside of mesh should be inverted", batchLocations[1]);
+        Assert.assertNull("location below mesh should not be inverted", batchLocations[2]);
+
+        try {
+            inverseMesh.applyInverseInPlace(locations[0].clone());
+            Assert.fail("location outside of mesh should cause exception");
+        } catch (final NoninvertibleModelException e) {
+            Assert.assertTrue("invalid exception message: " + e.getMessage(),
+                              e.getMessage().startsWith("Noninvertible location"));
+        }
+    }
+
+    @Test
+    public void testTileSpecMeshesAreCached() throws Exception {
+
+        final TileSpec tileSpec = buildTileSpec();
+        final TileSpec tileSpecWithSameTransforms = buildTileSpec();
+
+        final InverseTransformMesh mesh = tileSpec.getInverseTransformMesh(64.0);
+
+        Assert.assertSame("tiles with the same transforms should share mesh",
+                          mesh, tileSpecWithSameTransforms.getInverseTransformMesh(64.0));
+        Assert.assertNotSame("meshes with different cell sizes should not be shared",
+                             mesh, tileSpec.getInverseTransformMesh(128.0));
+
+        final double[][] localCoordinates = tileSpec.getLocalCoordinates(new double[][] {
+                { 200.0, 300.0 },
+                { -5000.0, -5000.0 }
+        }, 64.0);
+
+        Assert.assertEquals("invalid number of local coordinates", 2, localCoordinates.length);
+        Assert.assertEquals("z should be included in local coordinates", 3, localCoordinates[0].length);
+        Assert.assertNull("location outside of tile should not be inverted", localCoordinates[1]);
+    }
+
+    private static TileSpec buildTileSpec() {
+        final ListTransformSpec transforms = new ListTransformSpec();
+        transforms.addSpec(new LeafTransformSpec(mpicbg.trakem2.transform.AffineModel2D.class.getName(),
+                                                 new String("1 0 0 1 10 20")));
+        final TileSpec tileSpec = new TileSpec();
+        tileSpec.setZ(1.0);
+        tileSpec.setWidth(WIDTH);
+        tileSpec.setHeight(HEIGHT);
+        tileSpec.setTransforms(transforms);
+        return tileSpec;
+    }
+
+    /** Gentle non-linear warp (like a well behaved thin plate spline). */
+    private static class SmoothWarp
+            implements CoordinateTransform {
+
+        @Override
+        public double[] apply(final double[] location) {
+            final double[] out = location.clone();
+            applyInPlace(out);
+            return out;
+        }
+
+        @Override
+        public void applyInPlace(final double[] location) {
+            final double x = location[0];
+            final double y = location[1];
+            location[0] = 10.0 + (1.01 * x) + (0.02 * y) + (2.0e-6 * x * y);
+            location[1] = -5.0 + (0.99 * y) - (0.01 * x) + (1.0e-6 * x * x);
+        }
+    }
+
+}
@@ -1,10 +1,12 @@
 package org.janelia.alignment;
 
+import ij.process.ImageProcessor;
 import junit.framework.Assert;
 
 import org.janelia.alignment.spec.ChannelSpec;
 import org.janelia.alignment.spec.TileSpec;
 import org.janelia.alignment.util.FileUtil;
+import org.janelia.alignment.util.ImageProcessorCache;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -12,6 +14,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.List;
@@ -111,6 +114,29 @@ public class MipmapGeneratorTest {
 
     }
 
+    @Test
+    public void testGenerateRawMipmap() throws Exception {
+
+        final File sourceFile =
+                new File("src/test/resources/perf-test/mipmaps/tif/col0060_row0140_cam0.tif_level_2_mipmap.tif");
+        final String sourceUrl = sourceFile.toURI().toString();
+        final File rawFile = new File(baseMipmapDirectory, "level_3_mipmap." + Utils.RAW_FORMAT);
+
+        try (final FileOutputStream outputStream = new FileOutputStream(rawFile)) {
+            MipmapGenerator.generateMipmap(sourceUrl, 1, Utils.RAW_FORMAT, 0.85f, outputStream);
+        }
+
+        final ImageProcessor expected = ImageProcessorCache.getNonCachedImage(sourceUrl, 1, false, false);
+        final ImageProcessor actual = ImageProcessorCache.getNonCachedImage(rawFile.toURI().toString(), 0, false, false);
+
+        Assert.assertEquals("invalid raw mipmap class", expected.getClass(), actual.getClass());
+        Assert.assertEquals("invalid raw mipmap width", expected.getWidth(), actual.getWidth());
+        Assert.assertEquals("invalid raw mipmap height", expected.getHeight(), actual.getHeight());
+        for (int i = 0; i < expected.getPixelCount(); i++) {
+            Assert.assertEquals("invalid raw mipmap pixel " + i, expected.get(i), actual.get(i));
+        }
+    }
+
     private void validateMask(final ChannelSpec channelSpec,
                               final int specIndex,
                               final ImageAndMask consolidatedImageAndMask,
@@ -25,6 +25,7 @@ import org.janelia.alignment.spec.TransformSpec;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.awt.Rectangle;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
@@ -155,5 +156,57 @@ public class RenderParametersTest {
         }
     }
 
+    @Test
+    public void testGetBandParameters() {
+
+        final double scale = 0.3;
+        final RenderParameters parameters = new RenderParameters(null, 5.0, 10.0, 1000, 1000, scale);
+        parameters.setBackgroundRGBColor(0x123456);
+
+        final int tileHeight = 200;
+        for (int row = 0; row < 5; row++) {
+            final TileSpec tileSpec = new TileSpec();
+            tileSpec.setTileId("tile-" + row);
+            tileSpec.setBoundingBox(new Rectangle(5, 10 + (row * tileHeight), 1000, tileHeight),
+                                    parameters.meshCellSize);
+            parameters.addTileSpec(tileSpec);
+        }
+
+        parameters.initializeDerivedValues();
+
+        final int targetHeight = parameters.getTargetHeight();
+        Assert.assertEquals("invalid target height", 300, targetHeight);
+
+        final int bandHeight = 32;
+        for (int firstRow = 0; firstRow < targetHeight; firstRow += bandHeight) {
+
+            final int numberOfRows = Math.min(bandHeight, targetHeight - firstRow);
+            final RenderParameters band = parameters.getBandParameters(firstRow, numberOfRows);
+            final String context = "band starting at row " + firstRow;
+
+            Assert.assertEquals("invalid x for " + context, parameters.getX(), band.getX(), 0.0);
+            Assert.assertEquals("invalid y for " + context,
+                                parameters.getY() + (firstRow / scale), band.getY(), 0.000001);
+            Assert.assertEquals("invalid width for " + context, parameters.getWidth(), band.getWidth());
+            Assert.assertTrue("band for " + context + " has too few rows",
+                              band.getTargetHeight() >= numberOfRows);
+            Assert.assertTrue("band for " + context + " has too many rows",
+                              band.getTargetHeight() <= numberOfRows + 1);
+            Assert.assertEquals("invalid background for " + context,
+                                parameters.getBackgroundRGBColor(), band.getBackgroundRGBColor());
+
+            final double bandMinY = band.getY();
+            final double bandMaxY = bandMinY + band.getHeight();
+            for (final TileSpec tileSpec : parameters.getTileSpecs()) {
+                final boolean isInBand = (tileSpec.getMaxY() >= bandMinY) && (tileSpec.getMinY() <= bandMaxY);
+                if (isInBand) {
+                    Assert.assertTrue(tileSpec.getTileId() + " should be included in " + context,
+                                      band.getTileSpecs().contains(tileSpec));
+                }
+            }
+            Assert.assertTrue(context + " should not include all tiles",
+                              band.numberOfTileSpecs() < parameters.numberOfTileSpecs());
+        }
+    }
 
 }
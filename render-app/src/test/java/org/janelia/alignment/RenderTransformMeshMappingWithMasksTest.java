@@ -0,0 +1,205 @@
+package org.janelia.alignment;
+
+import java.util.List;
+import java.util.Random;
+
+import mpicbg.models.AffineModel2D;
+import mpicbg.trakem2.util.Pair;
+
+import org.janelia.alignment.mapper.PixelMapper;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the {@link RenderTransformMeshMappingWithMasks} class.
+ *
+ * @author Eric Trautman
+ */
+public class RenderTransformMeshMappingWithMasksTest {
+
+    @Test
+    public void testFindTargetSpanMatchesTriangleTest() throws Exception {
+
+        final Random random = new Random(42);
+
+        for (int i = 0; i < 2000; i++) {
+
+            final double[][] pq = new double[4][3];
+            for (int vertex = 0; vertex < 3; vertex++) {
+                // mix of fractional and integral vertices to exercise pixels that lie exactly on edges
+                if (i % 2 == 0) {
+                    pq[2][vertex] = random.nextDouble() * 40 - 5;
+                    pq[3][vertex] = random.nextDouble() * 40 - 5;
+                } else {
+                    pq[2][vertex] = random.nextInt(30);
+                    pq[3][vertex] = random.nextInt(30);
+                }
+            }
+
+            if (i % 100 == 0) {
+                // degenerate (collinear) triangle
+                pq[2][2] = (pq[2][0] + pq[2][1]) / 2;
+                pq[3][2] = (pq[3][0] + pq[3][1]) / 2;
+            }
+
+            validateSpans(pq, i);
+        }
+    }
+
+    @Test
+    public void testAffineMeshMatchesFullMesh() throws Exception {
+
+        final int targetWidth = 320;
+        final int targetHeight = 260;
+
+        final AffineModel2D model = new AffineModel2D();
+        model.set(0.7, 0.05, -0.04, 0.72, 10.37, 5.61);
+
+        final RenderTransformMesh fullMesh = new RenderTransformMesh(model, 8, 400, 300);
+        fullMesh.updateAffines();
+
+        final RenderTransformMesh affineMesh = RenderTransformMesh.createAffineMesh(model, 400, 300);
+
+        Assert.assertEquals("affine mesh should have two triangles", 2, affineMesh.getAV().size());
+
+        final double[][] fullSources = mapSourceLocations(fullMesh, targetWidth, targetHeight);
+        final double[][] affineSources = mapSourceLocations(affineMesh, targetWidth, targetHeight);
+
+        int numberOfMappedPixels = 0;
+        for (int i = 0; i < fullSources.length; i++) {
+            if (fullSources[i] == null) {
+                Assert.assertNull("pixel " + i + " should not be mapped", affineSources[i]);
+            } else {
+                Assert.assertNotNull("pixel " + i + " should be mapped", affineSources[i]);
+                Assert.assertEquals("invalid source x for pixel " + i,
+                                    fullSources[i][0], affineSources[i][0], 0.000001);
+                Assert.assertEquals("invalid source y for pixel " + i,
+                                    fullSources[i][1], affineSources[i][1], 0.000001);
+                numberOfMappedPixels++;
+            }
+        }
+
+        Assert.assertTrue("no pixels were mapped", numberOfMappedPixels > 0);
+    }
+
+    private static double[][] mapSourceLocations(final RenderTransformMesh mesh,
+                                                 final int targetWidth,
+                                                 final int targetHeight) {
+        final double[][] sourceLocations = new double[targetWidth * targetHeight][];
+        new RenderTransformMeshMappingWithMasks(mesh).map(new PixelMapper() {
+            @Override
+            public int getTargetWidth() {
+                return targetWidth;
+            }
+            @Override
+            public int getTargetHeight() {
+                return targetHeight;
+            }
+            @Override
+            public boolean isMappingInterpolated() {
+                return false;
+            }
+            @Override
+            public void map(final double sourceX, final double sourceY, final int targetX, final int targetY) {
+                sourceLocations[targetY * targetWidth + targetX] = new double[] { sourceX, sourceY };
+            }
+            @Override
+            public void mapInterpolated(final double sourceX, final double sourceY,
+                                        final int targetX, final int targetY) {
+                map(sourceX, sourceY, targetX, targetY);
+            }
+        }, 1);
+        return sourceLocations;
+    }
+
+    @Test
+    public void testTrianglesOutsideTargetAreSkipped() throws Exception {
+
+        final int targetWidth = 200;
+        final int targetHeight = 150;
+
+        // tile is mostly outside the target
+        final AffineModel2D model = new AffineModel2D();
+        model.set(0.99, 0.02, -0.02, 0.99, -310.3, 20.7);
+        final RenderTransformMesh mesh = new RenderTransformMesh(model, 8, 400, 300);
+        mesh.updateAffines();
+
+        final List<Pair<AffineModel2D, double[][]>> av = mesh.getAV();
+        final List<Pair<AffineModel2D, double[][]>> trianglesInTarget =
+                RenderTransformMeshMappingWithMasks.getTrianglesInTarget(av, targetWidth, targetHeight);
+
+        Assert.assertTrue("some triangles should be skipped", trianglesInTarget.size() < av.size());
+        Assert.assertTrue("some triangles should be in target", trianglesInTarget.size() > 0);
+
+        final boolean[] mapped = new boolean[targetWidth * targetHeight];
+        final PixelMapper pixelMapper = new PixelMapper() {
+            @Override
+            public int getTargetWidth() {
+                return targetWidth;
+            }
+            @Override
+            public int getTargetHeight() {
+                return targetHeight;
+            }
+            @Override
+            public boolean isMappingInterpolated() {
+                return false;
+            }
+            @Override
+            public void map(final double sourceX, final double sourceY, final int targetX, final int targetY) {
+                mapped[targetY * targetWidth + targetX] = true;
+            }
+            @Override
+            public void mapInterpolated(final double sourceX, final double sourceY,
+                                        final int targetX, final int targetY) {
+                map(sourceX, sourceY, targetX, targetY);
+            }
+        };
+
+        final int numberOfTrianglesMapped = new RenderTransformMeshMappingWithMasks(mesh).map(pixelMapper, 1);
+
+        Assert.assertEquals("invalid number of mapped triangles", trianglesInTarget.size(), numberOfTrianglesMapped);
+
+        for (int y = 0; y < targetHeight; y++) {
+            for (int x = 0; x < targetWidth; x++) {
+                boolean isInMesh = false;
+                for (final Pair<AffineModel2D, double[][]> triangle : av) {
+                    if (RenderTransformMesh.isInTargetTriangle(triangle.b, x, y)) {
+                        isInMesh = true;
+                        break;
+                    }
+                }
+                Assert.assertEquals("mapping mismatch for pixel (" + x + "," + y + ")",
+                                    isInMesh, mapped[y * targetWidth + x]);
+            }
+        }
+    }
+
+    private void validateSpans(final double[][] pq,
+                               final int triangleIndex) {
+
+        final int minX = 0;
+        final int maxX = 29;
+        final int[] span = new int[2];
+
+        for (int y = 0; y < 30; y++) {
+
+            final boolean[] inSpan = new boolean[maxX + 1];
+            for (final boolean negative : new boolean[] { true, false }) {
+                if (RenderTransformMeshMappingWithMasks.findTargetSpan(pq, y, minX, maxX, negative, span)) {
+                    for (int x = span[0]; x <= span[1]; x++) {
+                        Assert.assertFalse("pixel (" + x + "," + y + ") included in both spans for triangle " +
+                                           triangleIndex, inSpan[x]);
+                        inSpan[x] = true;
+                    }
+                }
+            }
+
+            for (int x = minX; x <= maxX; x++) {
+                Assert.assertEquals("span mismatch for pixel (" + x + "," + y + ") in triangle " + triangleIndex,
+                                    RenderTransformMesh.isInTargetTriangle(pq, x, y), inSpan[x]);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,51 @@
+package org.janelia.alignment;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the {@link TriangleMappingPool} class.
+ *
+ * @author Eric Trautman
+ */
+public class TriangleMappingPoolTest {
+
+    @Test
+    public void testMap() throws Exception {
+
+        final TriangleMappingPool mappingPool = new TriangleMappingPool(4);
+
+        final List<Integer> triangles = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            triangles.add(i);
+        }
+
+        for (final int numThreads : new int[] { 1, 2, 8 }) {
+            final AtomicIntegerArray mapCounts = new AtomicIntegerArray(triangles.size());
+            mappingPool.map(triangles, mapCounts::incrementAndGet, numThreads);
+            for (int i = 0; i < mapCounts.length(); i++) {
+                Assert.assertEquals("triangle " + i + " mapped wrong number of times for numThreads " + numThreads,
+                                    1, mapCounts.get(i));
+            }
+        }
+
+        final TriangleMappingPool.Stats stats = mappingPool.getStats();
+        Assert.assertEquals("invalid map call count", 3, stats.getMapCallCount());
+        Assert.assertEquals("invalid parallel map call count", 2, stats.getParallelMapCallCount());
+        Assert.assertEquals("invalid triangle count", 3000, stats.getTriangleCount());
+        Assert.assertTrue("batches should be created for parallel calls", stats.getBatchCount() > 3);
+    }
+
+    @Test
+    public void testGetBatchSize() throws Exception {
+        Assert.assertEquals("small mesh should use min batch size",
+                            TriangleMappingPool.MIN_BATCH_SIZE, TriangleMappingPool.getBatchSize(10, 4));
+        Assert.assertEquals("invalid batch size for large mesh",
+                            625, TriangleMappingPool.getBatchSize(10000, 4));
+    }
+
+}
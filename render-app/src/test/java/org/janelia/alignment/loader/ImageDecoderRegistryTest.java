@@ -0,0 +1,175 @@
+package org.janelia.alignment.loader;
+
+import ij.ImagePlus;
+import ij.io.FileSaver;
+import ij.process.ByteProcessor;
+import ij.process.FloatProcessor;
+import ij.process.ImageProcessor;
+import ij.process.ShortProcessor;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import ar.com.hjg.pngj.ImageInfo;
+import ar.com.hjg.pngj.ImageLineInt;
+import ar.com.hjg.pngj.PngWriter;
+
+import org.janelia.alignment.Utils;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the {@link ImageDecoderRegistry} class and the default decoders.
+ *
+ * @author Eric Trautman
+ */
+public class ImageDecoderRegistryTest {
+
+    private static final int WIDTH = 37;
+    private static final int HEIGHT = 23;
+
+    @Test
+    public void testGetExtension() throws Exception {
+        Assert.assertEquals("invalid extension for simple url",
+                            "png", ImageDecoderRegistry.getExtension("file:/tmp/a.b/test.png"));
+        Assert.assertEquals("invalid extension for upper case url",
+                            "tif", ImageDecoderRegistry.getExtension("file:/tmp/test.TIF"));
+        Assert.assertEquals("invalid extension for url with query",
+                            "jpg", ImageDecoderRegistry.getExtension("http://host/test.jpg?x=1.png#y"));
+        Assert.assertNull("extension should not be found in directory name",
+                          ImageDecoderRegistry.getExtension("file:/tmp/a.b/test"));
+        Assert.assertNull("extension should not be found for trailing dot",
+                          ImageDecoderRegistry.getExtension("file:/tmp/test."));
+    }
+
+    @Test
+    public void testDecodeMipmaps() throws Exception {
+        for (final String format : new String[] { "jpg", "png", "tif" }) {
+            final File file = new File("src/test/resources/perf-test/mipmaps/" + format +
+                                       "/col0060_row0140_cam0.tif_level_1_mipmap." + format);
+            validateDecodedImage(file, ByteProcessor.class);
+        }
+    }
+
+    @Test
+    public void testDecode16BitImages() throws Exception {
+
+        final ShortProcessor source = new ShortProcessor(WIDTH, HEIGHT);
+        final Random random = new Random(WIDTH * HEIGHT);
+        for (int i = 0; i < WIDTH * HEIGHT; i++) {
+            source.set(i, random.nextInt(65536));
+        }
+
+        final File pngFile = createTempFile(".png");
+        final ImageInfo imageInfo = new ImageInfo(WIDTH, HEIGHT, 16, false, true, false);
+        final PngWriter pngWriter = new PngWriter(pngFile, imageInfo, true);
+        for (int y = 0; y < HEIGHT; y++) {
+            final ImageLineInt line = new ImageLineInt(imageInfo);
+            for (int x = 0; x < WIDTH; x++) {
+                line.getScanline()[x] = source.get(x, y);
+            }
+            pngWriter.writeRow(line);
+        }
+        pngWriter.end();
+
+        validateDecodedPixels(pngFile, source);
+        validateDecodedImage(pngFile, ShortProcessor.class);
+
+        final File tifFile = createTempFile(".tif");
+        new FileSaver(new ImagePlus("", source)).saveAsTiff(tifFile.getAbsolutePath());
+
+        validateDecodedPixels(tifFile, source);
+        validateDecodedImage(tifFile, ShortProcessor.class);
+    }
+
+    @Test
+    public void testDecodeFloatTiff() throws Exception {
+        final FloatProcessor source = new FloatProcessor(WIDTH, HEIGHT);
+        for (int i = 0; i < WIDTH * HEIGHT; i++) {
+            source.setf(i, i * 0.25f);
+        }
+        final File tifFile = createTempFile(".tif");
+        new FileSaver(new ImagePlus("", source)).saveAsTiff(tifFile.getAbsolutePath());
+
+        validateDecodedPixels(tifFile, source);
+    }
+
+    @Test
+    public void testUnsupportedImages() throws Exception {
+
+        final File rgbPngFile = createTempFile(".png");
+        ImageIO.write(new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB), "png", rgbPngFile);
+
+        Assert.assertNull("RGB png should not be decoded",
+                          ImageDecoderRegistry.DEFAULT_INSTANCE.decode(rgbPngFile.toURI().toString()));
+
+        final File pgmFile =
+                new File("src/test/resources/perf-test/mipmaps/pgm/col0060_row0140_cam0.tif_level_1_mipmap.pgm");
+        Assert.assertNull("pgm should not be decoded",
+                          ImageDecoderRegistry.DEFAULT_INSTANCE.decode(pgmFile.toURI().toString()));
+    }
+
+    @Test
+    public void testRegistrationOrder() throws Exception {
+
+        final ImageDecoderRegistry registry = new ImageDecoderRegistry();
+        final ImageDecoder pngDecoder = new PngImageDecoder();
+        final ImageDecoder overridingDecoder = new PngImageDecoder();
+
+        Assert.assertNull("decoder should not be found in empty registry", registry.getDecoder("test.png"));
+
+        registry.register(pngDecoder);
+        registry.register(new TiffImageDecoder());
+        registry.register(overridingDecoder);
+
+        Assert.assertSame("later registration should take precedence",
+                          overridingDecoder, registry.getDecoder("test.png"));
+        Assert.assertNull("decoder should not be found for unregistered extension",
+                          registry.getDecoder("test.jpg"));
+    }
+
+    private static void validateDecodedImage(final File file,
+                                             final Class<? extends ImageProcessor> expectedClass)
+            throws IOException {
+
+        final ImageProcessor decoded = ImageDecoderRegistry.DEFAULT_INSTANCE.decode(file.toURI().toString());
+
+        Assert.assertNotNull("null processor returned for " + file, decoded);
+        Assert.assertEquals("invalid processor class for " + file, expectedClass, decoded.getClass());
+
+        final ImageProcessor expected = Utils.openImagePlus(file.getAbsolutePath()).getProcessor();
+        validatePixels(file, expected, decoded);
+    }
+
+    private static void validateDecodedPixels(final File file,
+                                              final ImageProcessor expected)
+            throws IOException {
+        final ImageProcessor decoded = ImageDecoderRegistry.DEFAULT_INSTANCE.decode(file.toURI().toString());
+        Assert.assertNotNull("null processor returned for " + file, decoded);
+        Assert.assertEquals("invalid processor class for " + file, expected.getClass(), decoded.getClass());
+        validatePixels(file, expected, decoded);
+    }
+
+    private static void validatePixels(final File file,
+                                       final ImageProcessor expected,
+                                       final ImageProcessor actual) {
+        Assert.assertEquals("invalid width for " + file, expected.getWidth(), actual.getWidth());
+        Assert.assertEquals("invalid height for " + file, expected.getHeight(), actual.getHeight());
+        for (int i = 0; i < expected.getPixelCount(); i++) {
+            Assert.assertEquals("invalid pixel " + i + " for " + file,
+                                expected.getf(i), actual.getf(i), 0.0);
+        }
+    }
+
+    private static File createTempFile(final String suffix)
+            throws IOException {
+        final File file = File.createTempFile("decoder-test-", suffix);
+        file.deleteOnExit();
+        return file;
+    }
+
+}
@@ -0,0 +1,152 @@
+package org.janelia.alignment.loader;
+
+import ij.process.ByteProcessor;
+import ij.process.ColorProcessor;
+import ij.process.FloatProcessor;
+import ij.process.ImageProcessor;
+import ij.process.ShortProcessor;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the {@link RawImageFormat} and {@link RawImageDecoder} classes.
+ *
+ * @author Eric Trautman
+ */
+public class RawImageFormatTest {
+
+    private static final int WIDTH = 29;
+    private static final int HEIGHT = 17;
+
+    @Test
+    public void testRoundTrip() throws Exception {
+
+        final Random random = new Random(WIDTH * HEIGHT);
+        final ByteProcessor mask = new ByteProcessor(WIDTH, HEIGHT);
+        final ImageProcessor[] images = {
+                new ByteProcessor(WIDTH, HEIGHT),
+                new ShortProcessor(WIDTH, HEIGHT),
+                new ColorProcessor(WIDTH, HEIGHT),
+                new FloatProcessor(WIDTH, HEIGHT)
+        };
+
+        for (int i = 0; i < WIDTH * HEIGHT; i++) {
+            mask.set(i, random.nextInt(256));
+            images[0].set(i, random.nextInt(256));
+            images[1].set(i, random.nextInt(65536));
+            images[2].set(i, random.nextInt(0x1000000));
+            images[3].setf(i, random.nextFloat() * 1000.0f - 500.0f);
+        }
+
+        for (final ImageProcessor image : images) {
+            validateRoundTrip(image, null);
+            validateRoundTrip(image, mask);
+        }
+    }
+
+    @Test
+    public void testMappedFileDecode() throws Exception {
+
+        final ShortProcessor image = new ShortProcessor(WIDTH, HEIGHT);
+        for (int i = 0; i < WIDTH * HEIGHT; i++) {
+            image.set(i, i * 97);
+        }
+
+        final File file = File.createTempFile("raw-format-test-", "." + RawImageFormat.EXTENSION);
+        file.deleteOnExit();
+        try (final FileOutputStream outputStream = new FileOutputStream(file)) {
+            RawImageFormat.write(image, new ByteProcessor(WIDTH, HEIGHT), outputStream);
+        }
+
+        final ImageProcessor decoded = ImageDecoderRegistry.DEFAULT_INSTANCE.decode(file.toURI().toString());
+        validateImage("mapped", image, decoded);
+
+        final ImageProcessor decodedMask = RawImageFormat.readMask(RawImageFormat.map(file));
+        Assert.assertNotNull("mask missing from mapped file", decodedMask);
+    }
+
+    @Test
+    public void testInvalidImages() throws Exception {
+
+        final byte[] bytes = write(new ByteProcessor(WIDTH, HEIGHT), null);
+
+        final byte[] truncatedBytes = Arrays.copyOf(bytes, bytes.length - 1);
+        validateReadFailure("truncated", truncatedBytes);
+
+        final byte[] badMagicBytes = Arrays.copyOf(bytes, bytes.length);
+        badMagicBytes[0] = 'X';
+        validateReadFailure("bad magic number", badMagicBytes);
+
+        final byte[] badBitDepthBytes = Arrays.copyOf(bytes, bytes.length);
+        badBitDepthBytes[16] = 12;
+        validateReadFailure("bad bit depth", badBitDepthBytes);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMaskSizeMismatch() throws Exception {
+        write(new ByteProcessor(WIDTH, HEIGHT), new ByteProcessor(WIDTH + 1, HEIGHT));
+    }
+
+    private static void validateRoundTrip(final ImageProcessor image,
+                                          final ByteProcessor mask)
+            throws IOException {
+
+        final String context = image.getClass().getSimpleName() + (mask == null ? " without mask" : " with mask");
+        final byte[] bytes = write(image, mask);
+
+        final RawImageFormat.Header header = RawImageFormat.readHeader(ByteBuffer.wrap(bytes));
+        Assert.assertEquals("invalid length for " + context, header.getTotalLength(), bytes.length);
+        Assert.assertEquals("invalid bit depth for " + context, image.getBitDepth(), header.getBitDepth());
+
+        validateImage(context, image, RawImageFormat.readImage(ByteBuffer.wrap(bytes)));
+        validateImage(context + " stream", image, new RawImageDecoder().decode(new ByteArrayInputStream(bytes)));
+
+        final ByteProcessor decodedMask = RawImageFormat.readMask(ByteBuffer.wrap(bytes));
+        if (mask == null) {
+            Assert.assertNull("mask should not exist for " + context, decodedMask);
+        } else {
+            validateImage(context + " mask", mask, decodedMask);
+        }
+    }
+
+    private static void validateImage(final String context,
+                                      final ImageProcessor expected,
+                                      final ImageProcessor actual) {
+        Assert.assertNotNull("null processor returned for " + context, actual);
+        Assert.assertEquals("invalid class for " + context, expected.getClass(), actual.getClass());
+        Assert.assertEquals("invalid width for " + context, expected.getWidth(), actual.getWidth());
+        Assert.assertEquals("invalid height for " + context, expected.getHeight(), actual.getHeight());
+        for (int i = 0; i < expected.getPixelCount(); i++) {
+            Assert.assertEquals("invalid pixel " + i + " for " + context, expected.get(i), actual.get(i));
+        }
+    }
+
+    private static void validateReadFailure(final String context,
+                                            final byte[] bytes) {
+        try {
+            RawImageFormat.readImage(ByteBuffer.wrap(bytes));
+            Assert.fail("exception should have been thrown for " + context + " image");
+        } catch (final IOException e) {
+            Assert.assertTrue(true); // test passed
+        }
+    }
+
+    private static byte[] write(final ImageProcessor image,
+                                final ByteProcessor mask)
+            throws IOException {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        RawImageFormat.write(image, mask, outputStream);
+        return outputStream.toByteArray();
+    }
+
+}
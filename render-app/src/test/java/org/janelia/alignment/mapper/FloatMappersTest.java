@@ -0,0 +1,165 @@
+package org.janelia.alignment.mapper;
+
+import ij.process.ByteProcessor;
+import ij.process.FloatProcessor;
+
+import java.util.Random;
+
+import mpicbg.trakem2.transform.TransformMeshMappingWithMasks.ImageProcessorWithMasks;
+
+import org.janelia.alignment.ChannelMap;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Verifies that the primitive float mappers produce the same results as the generic mappers.
+ *
+ * @author Eric Trautman
+ */
+public class FloatMappersTest {
+
+    private static final int SOURCE_SIZE = 20;
+    private static final int TARGET_SIZE = 16;
+
+    @Test
+    public void testSingleChannelMappers() throws Exception {
+
+        for (final boolean interpolated : new boolean[] { false, true }) {
+
+            ImageProcessorWithMasks expectedTarget = buildTarget(3);
+            ImageProcessorWithMasks actualTarget = buildTarget(3);
+            mapAll(new SingleChannelMapper(buildSource(1), expectedTarget, interpolated),
+                   new FloatSingleChannelMapper(buildSource(1), actualTarget, interpolated));
+            assertSame("single", expectedTarget, actualTarget);
+
+            expectedTarget = buildTarget(3);
+            actualTarget = buildTarget(3);
+            mapAll(new SingleChannelWithAlphaMapper(buildSource(1), expectedTarget, interpolated),
+                   new FloatSingleChannelWithAlphaMapper(buildSource(1), actualTarget, interpolated));
+            assertSame("single alpha", expectedTarget, actualTarget);
+
+            expectedTarget = buildTarget(3);
+            actualTarget = buildTarget(3);
+            mapAll(new SingleChannelWithBinaryMaskMapper(buildSource(1), expectedTarget, interpolated),
+                   new FloatSingleChannelWithBinaryMaskMapper(buildSource(1), actualTarget, interpolated));
+            assertSame("single binary", expectedTarget, actualTarget);
+        }
+    }
+
+    @Test
+    public void testMultiChannelMappers() throws Exception {
+
+        for (final boolean interpolated : new boolean[] { false, true }) {
+
+            ChannelMap expectedTargets = buildTargetChannels();
+            ChannelMap actualTargets = buildTargetChannels();
+            mapAll(new MultiChannelMapper(buildSourceChannels(), expectedTargets, interpolated),
+                   new FloatMultiChannelMapper(buildSourceChannels(), actualTargets, interpolated));
+            assertSame("multi", expectedTargets, actualTargets);
+
+            expectedTargets = buildTargetChannels();
+            actualTargets = buildTargetChannels();
+            mapAll(new MultiChannelWithAlphaMapper(buildSourceChannels(), expectedTargets, interpolated),
+                   new FloatMultiChannelWithAlphaMapper(buildSourceChannels(), actualTargets, interpolated));
+            assertSame("multi alpha", expectedTargets, actualTargets);
+
+            expectedTargets = buildTargetChannels();
+            actualTargets = buildTargetChannels();
+            mapAll(new MultiChannelWithBinaryMaskMapper(buildSourceChannels(), expectedTargets, interpolated),
+                   new FloatMultiChannelWithBinaryMaskMapper(buildSourceChannels(), actualTargets, interpolated));
+            assertSame("multi binary", expectedTargets, actualTargets);
+        }
+    }
+
+    private static ImageProcessorWithMasks buildSource(final long seed) {
+        final Random random = new Random(seed);
+        final FloatProcessor ip = new FloatProcessor(SOURCE_SIZE, SOURCE_SIZE);
+        final ByteProcessor mask = new ByteProcessor(SOURCE_SIZE, SOURCE_SIZE);
+        for (int i = 0; i < SOURCE_SIZE * SOURCE_SIZE; i++) {
+            ip.setf(i, random.nextFloat() * 255);
+            mask.set(i, (i % 7 == 0) ? 0 : random.nextInt(256));
+        }
+        return new ImageProcessorWithMasks(ip, mask, null);
+    }
+
+    private static ImageProcessorWithMasks buildTarget(final long seed) {
+        final Random random = new Random(seed);
+        final FloatProcessor ip = new FloatProcessor(TARGET_SIZE, TARGET_SIZE);
+        final ByteProcessor mask = new ByteProcessor(TARGET_SIZE, TARGET_SIZE);
+        for (int i = 0; i < TARGET_SIZE * TARGET_SIZE; i++) {
+            // leave some target pixels empty to exercise both blending paths
+            if (i % 3 != 0) {
+                ip.setf(i, random.nextFloat() * 255);
+                mask.set(i, random.nextInt(256));
+            }
+        }
+        return new ImageProcessorWithMasks(ip, mask, null);
+    }
+
+    private static ChannelMap buildSourceChannels() {
+        final ChannelMap channels = new ChannelMap();
+        channels.put("a", buildSource(1));
+        channels.put("b", buildSource(2));
+        return channels;
+    }
+
+    private static ChannelMap buildTargetChannels() {
+        final ChannelMap channels = new ChannelMap();
+        channels.put("a", buildTarget(3));
+        channels.put("b", buildTarget(4));
+        return channels;
+    }
+
+    /**
+     * Maps every target pixel with a rotated source location, using individual pixel calls for the
+     * expected mapper and span calls for the actual mapper.
+     */
+    private static void mapAll(final PixelMapper expectedMapper,
+                               final PixelMapper actualMapper) {
+
+        // scale and rotate slightly, keeping all source locations within the source bounds
+        final double cos = 0.9 * Math.cos(0.3);
+        final double sin = 0.9 * Math.sin(0.3);
+
+        for (int y = 0; y < TARGET_SIZE; y++) {
+            final double sourceX = 5.0 - y * sin;
+            final double sourceY = 1.0 + y * cos;
+            double x = sourceX;
+            double yy = sourceY;
+            for (int targetX = 0; targetX < TARGET_SIZE; targetX++) {
+                if (expectedMapper.isMappingInterpolated()) {
+                    expectedMapper.mapInterpolated(x, yy, targetX, y);
+                } else {
+                    expectedMapper.map(x, yy, targetX, y);
+                }
+                x += cos;
+                yy += sin;
+            }
+            if (actualMapper.isMappingInterpolated()) {
+                actualMapper.mapInterpolatedSpan(sourceX, sourceY, cos, sin, 0, TARGET_SIZE - 1, y);
+            } else {
+                actualMapper.mapSpan(sourceX, sourceY, cos, sin, 0, TARGET_SIZE - 1, y);
+            }
+        }
+    }
+
+    private static void assertSame(final String context,
+                                   final ChannelMap expected,
+                                   final ChannelMap actual) {
+        for (final String channelName : expected.names()) {
+            assertSame(context + " channel " + channelName, expected.get(channelName), actual.get(channelName));
+        }
+    }
+
+    private static void assertSame(final String context,
+                                   final ImageProcessorWithMasks expected,
+                                   final ImageProcessorWithMasks actual) {
+        for (int i = 0; i < TARGET_SIZE * TARGET_SIZE; i++) {
+            Assert.assertEquals(context + " pixel " + i + " differs",
+                                expected.ip.getf(i), actual.ip.getf(i), 0.0f);
+            Assert.assertEquals(context + " mask pixel " + i + " differs",
+                                expected.mask.getf(i), actual.mask.getf(i), 0.0f);
+        }
+    }
+
+}
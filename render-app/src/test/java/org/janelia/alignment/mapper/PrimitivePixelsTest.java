@@ -0,0 +1,74 @@
+package org.janelia.alignment.mapper;
+
+import ij.process.ByteProcessor;
+import ij.process.FloatProcessor;
+import ij.process.ImageProcessor;
+import ij.process.ShortProcessor;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the {@link PrimitivePixels} class.
+ *
+ * @author Eric Trautman
+ */
+public class PrimitivePixelsTest {
+
+    @Test
+    public void testInterpolate() throws Exception {
+
+        final Random random = new Random(11);
+        final int width = 7;
+        final int height = 5;
+
+        final FloatProcessor floatProcessor = new FloatProcessor(width, height);
+        final ByteProcessor byteProcessor = new ByteProcessor(width, height);
+        final ShortProcessor shortProcessor = new ShortProcessor(width, height);
+        for (int i = 0; i < width * height; i++) {
+            floatProcessor.setf(i, (i % 9 == 0) ? Float.NaN : random.nextFloat() * 1000);
+            byteProcessor.set(i, random.nextInt(256));
+            shortProcessor.set(i, random.nextInt(65536));
+        }
+
+        for (final ImageProcessor ip : new ImageProcessor[] { floatProcessor, byteProcessor, shortProcessor }) {
+            ip.setInterpolationMethod(ImageProcessor.BILINEAR);
+        }
+
+        final float[] floatPixels = (float[]) floatProcessor.getPixels();
+        final byte[] bytePixels = (byte[]) byteProcessor.getPixels();
+        final short[] shortPixels = (short[]) shortProcessor.getPixels();
+
+        for (int i = 0; i < 5000; i++) {
+
+            final double x = random.nextDouble() * (width + 2) - 1;
+            final double y = random.nextDouble() * (height + 2) - 1;
+
+            Assert.assertEquals("float mismatch for (" + x + "," + y + ")",
+                                floatProcessor.getInterpolatedPixel(x, y),
+                                PrimitivePixels.interpolate(floatPixels, width, height, x, y),
+                                0.0);
+            Assert.assertEquals("byte mismatch for (" + x + "," + y + ")",
+                                byteProcessor.getInterpolatedPixel(x, y),
+                                PrimitivePixels.interpolate(bytePixels, width, height, x, y),
+                                0.0);
+            Assert.assertEquals("short mismatch for (" + x + "," + y + ")",
+                                shortProcessor.getInterpolatedPixel(x, y),
+                                PrimitivePixels.interpolate(shortPixels, width, height, x, y),
+                                0.0);
+        }
+    }
+
+    @Test
+    public void testToByte() throws Exception {
+        final ByteProcessor byteProcessor = new ByteProcessor(1, 1);
+        for (final float value : new float[] { 0.0f, 0.4f, 0.5f, 127.6f, 254.5f, 255.0f }) {
+            byteProcessor.setf(0, 0, value);
+            Assert.assertEquals("mismatch for " + value,
+                                ((byte[]) byteProcessor.getPixels())[0], PrimitivePixels.toByte(value));
+        }
+    }
+
+}
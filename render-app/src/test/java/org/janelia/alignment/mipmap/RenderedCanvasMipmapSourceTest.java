@@ -0,0 +1,262 @@
+package org.janelia.alignment.mipmap;
+
+import ij.process.FloatProcessor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import mpicbg.models.AffineModel2D;
+import mpicbg.models.CoordinateTransform;
+import mpicbg.models.CoordinateTransformList;
+import mpicbg.trakem2.transform.TransformMeshMappingWithMasks.ImageProcessorWithMasks;
+
+import org.janelia.alignment.ChannelMap;
+import org.janelia.alignment.RenderParameters;
+import org.janelia.alignment.TransformableCanvas;
+import org.janelia.alignment.util.ImageProcessorCache;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the {@link RenderedCanvasMipmapSource} class.
+ *
+ * @author Eric Trautman
+ */
+public class RenderedCanvasMipmapSourceTest {
+
+    @Test
+    public void testConcurrentTileMapping() throws Exception {
+
+        final String[] sequentialArgs = {
+                "--tile_spec_url", "src/test/resources/stitch-test/test_4_tiles_with_mixed_masks.json",
+                "--out", "not-applicable-but-required-file-name.png",
+                "--width", "4576",
+                "--height", "4173",
+                "--scale", "0.05"
+        };
+
+        final ChannelMap sequentialChannels = renderChannels(sequentialArgs, 1);
+        final ChannelMap concurrentChannels = renderChannels(sequentialArgs, 4);
+
+        Assert.assertEquals("invalid number of channels",
+                            sequentialChannels.size(), concurrentChannels.size());
+
+        for (final String channelName : sequentialChannels.names()) {
+
+            final ImageProcessorWithMasks expected = sequentialChannels.get(channelName);
+            final ImageProcessorWithMasks actual = concurrentChannels.get(channelName);
+
+            final float[] expectedPixels = (float[]) expected.ip.getPixels();
+            final float[] actualPixels = (float[]) actual.ip.getPixels();
+            final byte[] expectedMaskPixels = (byte[]) expected.mask.getPixels();
+            final byte[] actualMaskPixels = (byte[]) actual.mask.getPixels();
+
+            Assert.assertEquals("invalid number of pixels for channel " + channelName,
+                                expectedPixels.length, actualPixels.length);
+
+            for (int i = 0; i < expectedPixels.length; i++) {
+                Assert.assertEquals("pixel " + i + " differs for channel " + channelName,
+                                    expectedPixels[i], actualPixels[i], 0.0f);
+                Assert.assertEquals("mask pixel " + i + " differs for channel " + channelName,
+                                    expectedMaskPixels[i], actualMaskPixels[i]);
+            }
+
+            Assert.assertEquals("min differs for channel " + channelName,
+                                expected.ip.getMin(), actual.ip.getMin(), 0.0);
+            Assert.assertEquals("max differs for channel " + channelName,
+                                expected.ip.getMax(), actual.ip.getMax(), 0.0);
+        }
+    }
+
+    @Test
+    public void testCulling() throws Exception {
+
+        for (final int numberOfTileThreads : new int[] {1, 3}) {
+
+            final List<ConstantSource> sources = new ArrayList<>();
+            final List<TransformableCanvas> canvasList = new ArrayList<>();
+
+            addCanvas(100, 10, 10, 1.0f, sources, canvasList);   // obscured by next canvas
+            addCanvas(150, 0, 0, 2.0f, sources, canvasList);
+            addCanvas(100, 500, 500, 3.0f, sources, canvasList); // outside target
+            addCanvas(100, 120, 120, 4.0f, sources, canvasList); // partially covers previous visible canvas
+
+            final RenderedCanvasMipmapSource canvas =
+                    new RenderedCanvasMipmapSource("test",
+                                                   Collections.singleton(CHANNEL_NAME),
+                                                   canvasList,
+                                                   0,
+                                                   0,
+                                                   200,
+                                                   200,
+                                                   64,
+                                                   1.0,
+                                                   1,
+                                                   numberOfTileThreads,
+                                                   true,
+                                                   false,
+                                                   false);
+
+            final ImageProcessorWithMasks target = canvas.getChannels(0).get(CHANNEL_NAME);
+
+            final String context = " with " + numberOfTileThreads + " tile threads";
+
+            Assert.assertEquals("obscured canvas should not be loaded" + context,
+                                0, sources.get(0).getLoadCount());
+            Assert.assertEquals("visible canvas should be loaded" + context,
+                                1, sources.get(1).getLoadCount());
+            Assert.assertEquals("outside canvas should not be loaded" + context,
+                                0, sources.get(2).getLoadCount());
+            Assert.assertEquals("partially visible canvas should be loaded" + context,
+                                1, sources.get(3).getLoadCount());
+
+            Assert.assertEquals("invalid obscured pixel" + context, 2.0f, target.ip.getf(50, 50), 0.0f);
+            Assert.assertEquals("invalid top pixel" + context, 4.0f, target.ip.getf(170, 170), 0.0f);
+            Assert.assertEquals("invalid empty pixel" + context, 0.0f, target.ip.getf(190, 5), 0.0f);
+        }
+    }
+
+    @Test
+    public void testFailureStopsConcurrentLoading() throws Exception {
+
+        final int numberOfTileThreads = 2;
+        final List<ConstantSource> sources = new ArrayList<>();
+        final List<TransformableCanvas> canvasList = new ArrayList<>();
+
+        // first canvas fails to load, all others are disjoint and visible
+        final ConstantSource failingSource = new ConstantSource(10, 1.0f) {
+            @Override
+            public ChannelMap getChannels(final int mipmapLevel)
+                    throws IllegalArgumentException {
+                super.getChannels(mipmapLevel);
+                throw new IllegalArgumentException("test load failure");
+            }
+        };
+        addCanvas(failingSource, 0, 0, sources, canvasList);
+        for (int i = 1; i < 40; i++) {
+            addCanvas(new ConstantSource(10, 2.0f), (i % 20) * 20, (i / 20) * 20, sources, canvasList);
+        }
+
+        final RenderedCanvasMipmapSource canvas =
+                new RenderedCanvasMipmapSource("test",
+                                               Collections.singleton(CHANNEL_NAME),
+                                               canvasList,
+                                               0,
+                                               0,
+                                               400,
+                                               400,
+                                               64,
+                                               1.0,
+                                               1,
+                                               numberOfTileThreads,
+                                               true,
+                                               false,
+                                               false);
+
+        try {
+            canvas.getChannels(0);
+            Assert.fail("load failure should cause exception");
+        } catch (final IllegalArgumentException e) {
+            Assert.assertEquals("invalid exception message", "test load failure", e.getMessage());
+        }
+
+        int numberOfLoads = 0;
+        for (final ConstantSource source : sources) {
+            numberOfLoads += source.getLoadCount();
+        }
+
+        // canvases are only mapped after the failed first canvas, so no more than the initially permitted
+        // (two per thread) canvases should ever be loaded
+        Assert.assertTrue("too many canvases loaded (" + numberOfLoads + ") after failure",
+                          numberOfLoads <= numberOfTileThreads * 2);
+    }
+
+    private static void addCanvas(final int size,
+                                  final double x,
+                                  final double y,
+                                  final float value,
+                                  final List<ConstantSource> sources,
+                                  final List<TransformableCanvas> canvasList) {
+        addCanvas(new ConstantSource(size, value), x, y, sources, canvasList);
+    }
+
+    private static void addCanvas(final ConstantSource source,
+                                  final double x,
+                                  final double y,
+                                  final List<ConstantSource> sources,
+                                  final List<TransformableCanvas> canvasList) {
+
+        final AffineModel2D translation = new AffineModel2D();
+        translation.set(1, 0, 0, 1, x, y);
+        final CoordinateTransformList<CoordinateTransform> transformList = new CoordinateTransformList<>();
+        transformList.add(translation);
+
+        sources.add(source);
+        canvasList.add(new TransformableCanvas(source, transformList));
+    }
+
+    private static final String CHANNEL_NAME = "test-channel";
+
+    /**
+     * Square source with constant intensity that counts how many times its pixels are loaded.
+     */
+    private static class ConstantSource implements MipmapSource {
+
+        private final int size;
+        private final float value;
+        private final AtomicInteger loadCount;
+
+        ConstantSource(final int size,
+                       final float value) {
+            this.size = size;
+            this.value = value;
+            this.loadCount = new AtomicInteger(0);
+        }
+
+        int getLoadCount() {
+            return loadCount.get();
+        }
+
+        @Override
+        public String getSourceName() {
+            return "constant " + value;
+        }
+
+        @Override
+        public int getFullScaleWidth() {
+            return size;
+        }
+
+        @Override
+        public int getFullScaleHeight() {
+            return size;
+        }
+
+        @Override
+        public ChannelMap getChannels(final int mipmapLevel)
+                throws IllegalArgumentException {
+            loadCount.incrementAndGet();
+            final FloatProcessor fp = new FloatProcessor(size, size);
+            fp.setValue(value);
+            fp.fill();
+            fp.setMinAndMax(0, 255);
+            return new ChannelMap(CHANNEL_NAME, new ImageProcessorWithMasks(fp, null, null));
+        }
+    }
+
+    private ChannelMap renderChannels(final String[] args,
+                                      final int numberOfTileThreads)
+            throws Exception {
+
+        final RenderParameters renderParameters = RenderParameters.parseCommandLineArgs(args);
+        renderParameters.setNumberOfTileThreads(numberOfTileThreads);
+
+        final RenderedCanvasMipmapSource renderedCanvasMipmapSource =
+                new RenderedCanvasMipmapSource(renderParameters, ImageProcessorCache.DISABLED_CACHE);
+
+        return renderedCanvasMipmapSource.getChannels(0);
+    }
+
+}
@@ -0,0 +1,250 @@
+package org.janelia.alignment.protocol.s3;
+
+import com.amazonaws.auth.AWSStaticCredentialsProvider;
+import com.amazonaws.auth.AnonymousAWSCredentials;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import ij.ImagePlus;
+import ij.process.ImageProcessor;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+
+import org.janelia.alignment.Utils;
+import org.janelia.alignment.loader.ImageDecoderRegistry;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the {@link S3Opener}, {@link S3URLConnection}, and {@link SharedS3Client} classes
+ * against a local S3 stand-in server.
+ *
+ * @author Eric Trautman
+ */
+public class S3OpenerTest {
+
+    private static final String BUCKET = "test-bucket";
+    private static final String TIF_KEY = "tiles/level_3.tif";
+    private static final String PNG_KEY = "tiles/level_3.png";
+    private static final String RGB_PNG_KEY = "tiles/rgb.png";
+
+    private final Map<String, byte[]> pathToBytes = new ConcurrentHashMap<>();
+    private final Map<String, String> pathToContentType = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> pathToGetCount = new ConcurrentHashMap<>();
+
+    private HttpServer server;
+    private File tifFile;
+    private File pngFile;
+
+    @Before
+    public void setup() throws Exception {
+
+        final String mipmapPath = "src/test/resources/perf-test/mipmaps/";
+        tifFile = new File(mipmapPath + "tif/col0060_row0140_cam0.tif_level_3_mipmap.tif");
+        pngFile = new File(mipmapPath + "png/col0060_row0140_cam0.tif_level_3_mipmap.png");
+
+        putObject(TIF_KEY, tifFile, "image/tiff");
+        putObject(PNG_KEY, pngFile, "image/png");
+
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", this::handleRequest);
+        server.start();
+
+        final String endpoint = "http://localhost:" + server.getAddress().getPort();
+        SharedS3Client.setClient(
+                SharedS3Client.buildClient(4,
+                                           endpoint,
+                                           SharedS3Client.DEFAULT_REGION,
+                                           new AWSStaticCredentialsProvider(new AnonymousAWSCredentials())));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        SharedS3Client.setClient(null);
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testOpenWithSingleRequest() throws Exception {
+
+        for (final String key : new String[] { TIF_KEY, PNG_KEY }) {
+
+            final ImagePlus imagePlus = new S3Opener().openURL("s3://" + BUCKET + "/" + key);
+            Assert.assertNotNull("failed to open " + key, imagePlus);
+
+            final File localFile = TIF_KEY.equals(key) ? tifFile : pngFile;
+            validatePixels(key, Utils.openImagePlus(localFile.getAbsolutePath()).getProcessor(),
+                           imagePlus.getProcessor());
+
+            Assert.assertEquals("invalid number of GET requests for " + key, 1, getGetCount(key));
+        }
+    }
+
+    @Test
+    public void testDecodeWithSingleRequest() throws Exception {
+
+        final ImageProcessor decoded = ImageDecoderRegistry.DEFAULT_INSTANCE.decode("s3://" + BUCKET + "/" + PNG_KEY);
+        Assert.assertNotNull("failed to decode " + PNG_KEY, decoded);
+
+        validatePixels(PNG_KEY, Utils.openImagePlus(pngFile.getAbsolutePath()).getProcessor(), decoded);
+
+        Assert.assertEquals("invalid number of GET requests for " + PNG_KEY, 1, getGetCount(PNG_KEY));
+    }
+
+    @Test
+    public void testFallbackWithSingleRequest() throws Exception {
+
+        final BufferedImage rgbImage = new BufferedImage(20, 10, BufferedImage.TYPE_INT_RGB);
+        for (int x = 0; x < rgbImage.getWidth(); x++) {
+            rgbImage.setRGB(x, x % rgbImage.getHeight(), 0x102030 * (x + 1));
+        }
+        final File rgbPngFile = File.createTempFile("rgb_", ".png");
+        rgbPngFile.deleteOnExit();
+        ImageIO.write(rgbImage, "png", rgbPngFile);
+        putObject(RGB_PNG_KEY, rgbPngFile, "image/png");
+
+        final ImageProcessor loaded = ImageDecoderRegistry.DEFAULT_INSTANCE.decode(
+                "s3://" + BUCKET + "/" + RGB_PNG_KEY,
+                (url, encodedBytes) -> {
+                    Assert.assertNotNull("encoded bytes should be passed to fallback loader", encodedBytes);
+                    return new S3Opener().openBytes(url, encodedBytes).getProcessor();
+                });
+
+        Assert.assertNotNull("failed to load " + RGB_PNG_KEY, loaded);
+        validatePixels(RGB_PNG_KEY, Utils.openImagePlus(rgbPngFile.getAbsolutePath()).getProcessor(), loaded);
+
+        Assert.assertEquals("invalid number of GET requests for " + RGB_PNG_KEY, 1, getGetCount(RGB_PNG_KEY));
+    }
+
+    @Test
+    public void testRangedRequest() throws Exception {
+
+        final S3URLConnection connection = (S3URLConnection)
+                SharedS3Client.getUrl("s3://" + BUCKET + "/" + TIF_KEY).openConnection();
+        connection.setRange(8, 23);
+
+        final byte[] expectedBytes = Arrays.copyOfRange(pathToBytes.get(getPath(TIF_KEY)), 8, 24);
+        final byte[] actualBytes = new byte[expectedBytes.length + 1];
+        int count = 0;
+        try (final InputStream in = connection.getInputStream()) {
+            for (int n = in.read(actualBytes, count, actualBytes.length - count);
+                 n != -1;
+                 n = in.read(actualBytes, count, actualBytes.length - count)) {
+                count += n;
+            }
+        }
+
+        Assert.assertEquals("invalid number of bytes returned", expectedBytes.length, count);
+        Assert.assertTrue("invalid bytes returned",
+                          Arrays.equals(expectedBytes, Arrays.copyOf(actualBytes, count)));
+        Assert.assertEquals("invalid content type", "image/tiff", connection.getContentType());
+        Assert.assertEquals("invalid number of GET requests", 1, getGetCount(TIF_KEY));
+    }
+
+    @Test
+    public void testInvalidRange() throws Exception {
+
+        final S3URLConnection connection = (S3URLConnection)
+                SharedS3Client.getUrl("s3://" + BUCKET + "/" + TIF_KEY).openConnection();
+        try {
+            connection.setRange(23, 8);
+            Assert.fail("range with end before start should cause exception");
+        } catch (final IllegalArgumentException e) {
+            Assert.assertTrue("invalid exception message: " + e.getMessage(),
+                              e.getMessage().startsWith("invalid range"));
+        }
+
+        Assert.assertEquals("invalid number of GET requests", 0, getGetCount(TIF_KEY));
+    }
+
+    @Test
+    public void testSharedHandler() throws Exception {
+        Assert.assertSame("handler should be shared", SharedS3Client.getHandler(), SharedS3Client.getHandler());
+    }
+
+    private void putObject(final String key,
+                           final File file,
+                           final String contentType)
+            throws IOException {
+        final String path = getPath(key);
+        pathToBytes.put(path, Files.readAllBytes(file.toPath()));
+        pathToContentType.put(path, contentType);
+        pathToGetCount.put(path, new AtomicInteger(0));
+    }
+
+    private int getGetCount(final String key) {
+        return pathToGetCount.get(getPath(key)).get();
+    }
+
+    private static String getPath(final String key) {
+        return "/" + BUCKET + "/" + key;
+    }
+
+    /**
+     * Minimal S3 stand-in that serves path style GET requests (with optional byte ranges) for stored objects.
+     */
+    private void handleRequest(final HttpExchange exchange)
+            throws IOException {
+
+        final String path = exchange.getRequestURI().getPath();
+        final byte[] bytes = pathToBytes.get(path);
+
+        if (bytes == null) {
+            exchange.sendResponseHeaders(404, -1);
+        } else {
+
+            if ("GET".equals(exchange.getRequestMethod())) {
+                pathToGetCount.get(path).incrementAndGet();
+            }
+
+            int start = 0;
+            int end = bytes.length - 1;
+            int status = 200;
+
+            final String range = exchange.getRequestHeaders().getFirst("Range");
+            if (range != null) {
+                final String[] values = range.substring("bytes=".length()).split("-");
+                start = Integer.parseInt(values[0]);
+                end = Math.min(end, Integer.parseInt(values[1]));
+                status = 206;
+                exchange.getResponseHeaders().add("Content-Range", "bytes " + start + "-" + end + "/" + bytes.length);
+            }
+
+            final int length = end - start + 1;
+            exchange.getResponseHeaders().add("Content-Type", pathToContentType.get(path));
+            exchange.sendResponseHeaders(status, length);
+            try (final OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes, start, length);
+            }
+        }
+
+        exchange.close();
+    }
+
+    private static void validatePixels(final String context,
+                                       final ImageProcessor expected,
+                                       final ImageProcessor actual) {
+        Assert.assertEquals("invalid width for " + context, expected.getWidth(), actual.getWidth());
+        Assert.assertEquals("invalid height for " + context, expected.getHeight(), actual.getHeight());
+        for (int i = 0; i < expected.getPixelCount(); i++) {
+            Assert.assertEquals("invalid pixel " + i + " for " + context, expected.getf(i), actual.getf(i), 0.0);
+        }
+    }
+
+}
@@ -18,9 +18,12 @@ package org.janelia.alignment.spec;
 
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.Collections;
 import java.util.Map;
 import java.util.TreeMap;
 
+import mpicbg.models.CoordinateTransform;
+
 import org.janelia.alignment.ImageAndMask;
 import org.junit.Assert;
 import org.junit.Test;
@@ -143,6 +146,43 @@ public class TileSpecTest {
         Assert.assertEquals("incorrect first channel name with 3 channels", firstName, tileSpec.getFirstChannelName());
     }
 
+    @Test
+    public void testGetTransformKey() throws Exception {
+        final byte[] jsonBytes = Files.readAllBytes(Paths.get("src/test/resources/tile-test/tile_with_only_affine_transforms.json"));
+        final String json = new String(jsonBytes);
+
+        // separately parsed specs have distinct data string instances
+        final TileSpec tileSpec = TileSpec.fromJson(json);
+        final TileSpec sameTileSpec = TileSpec.fromJson(json);
+
+        Assert.assertEquals("keys for identical transforms should be equal",
+                            tileSpec.getTransformKey(), sameTileSpec.getTransformKey());
+        Assert.assertEquals("keys for identical transforms should have same hash",
+                            tileSpec.getTransformKey().hashCode(), sameTileSpec.getTransformKey().hashCode());
+
+        sameTileSpec.getTransforms().addSpec(new LeafTransformSpec("mpicbg.trakem2.transform.AffineModel2D",
+                                                                   "1 0 0 1 10 20"));
+        Assert.assertFalse("keys for different transforms should differ",
+                           tileSpec.getTransformKey().equals(sameTileSpec.getTransformKey()));
+    }
+
+    @Test
+    public void testTransformListInstances() throws Exception {
+        final TileSpec tileSpec = new TileSpec();
+        tileSpec.addTransformSpecs(Collections.singletonList(
+                new LeafTransformSpec("mpicbg.trakem2.transform.AffineModel2D", "1 0 0 1 10 20")));
+
+        final CoordinateTransform sharedTransform = tileSpec.getSharedTransformList().get(0);
+        Assert.assertSame("shared lists should share leaf transforms",
+                          sharedTransform, tileSpec.getSharedTransformList().get(0));
+
+        final CoordinateTransform copiedTransform = tileSpec.getTransformList().get(0);
+        Assert.assertNotSame("copied lists should not share leaf transforms",
+                             copiedTransform, tileSpec.getTransformList().get(0));
+        Assert.assertNotSame("copied lists should not share leaf transforms with shared lists",
+                             copiedTransform, sharedTransform);
+    }
+
     @Test
     public void testDeriveBoundingBox() throws Exception {
         final byte[] jsonBytes = Files.readAllBytes(Paths.get("src/test/resources/tile-test/tile_with_only_affine_transforms.json"));
@@ -0,0 +1,146 @@
+package org.janelia.alignment.transform;
+
+import java.util.List;
+
+import mpicbg.models.AffineModel2D;
+import mpicbg.models.CoordinateTransform;
+import mpicbg.models.CoordinateTransformList;
+import mpicbg.models.RigidModel2D;
+import mpicbg.models.TranslationModel2D;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the {@link AffineConcatenation} class.
+ *
+ * @author Eric Trautman
+ */
+public class AffineConcatenationTest {
+
+    @Test
+    public void testConcatenateNestedAffineList() throws Exception {
+
+        final TranslationModel2D translation = new TranslationModel2D();
+        translation.set(100.0, -50.0);
+
+        final RigidModel2D rigid = new RigidModel2D();
+        rigid.set(Math.toRadians(5.0), 12.0, 7.0);
+
+        final AffineModel2D affine = new AffineModel2D();
+        affine.set(0.5, 0.01, -0.02, 0.5, -300.0, 42.0);
+
+        final CoordinateTransformList<CoordinateTransform> nestedList = new CoordinateTransformList<>();
+        nestedList.add(rigid);
+        nestedList.add(affine);
+
+        final CoordinateTransformList<CoordinateTransform> transformList = new CoordinateTransformList<>();
+        transformList.add(translation);
+        transformList.add(nestedList);
+
+        final AffineModel2D concatenated = AffineConcatenation.concatenate(transformList);
+
+        Assert.assertNotNull("affine list should be concatenated", concatenated);
+
+        for (final double[] point : new double[][] { {0, 0}, {2047, 0}, {1024, 512}, {0, 2047}, {2047, 2047} }) {
+            final double[] expected = transformList.apply(point);
+            final double[] actual = concatenated.apply(point);
+            Assert.assertEquals("invalid x for " + point[0] + "," + point[1], expected[0], actual[0], 0.0000001);
+            Assert.assertEquals("invalid y for " + point[0] + "," + point[1], expected[1], actual[1], 0.0000001);
+        }
+    }
+
+    @Test
+    public void testNonAffineListIsNotConcatenated() throws Exception {
+
+        final CoordinateTransform nonAffine = new CoordinateTransform() {
+            @Override
+            public double[] apply(final double[] location) {
+                final double[] result = location.clone();
+                applyInPlace(result);
+                return result;
+            }
+            @Override
+            public void applyInPlace(final double[] location) {
+                location[0] = location[0] * location[0];
+            }
+        };
+
+        final CoordinateTransformList<CoordinateTransform> transformList = new CoordinateTransformList<>();
+        transformList.add(new TranslationModel2D());
+        transformList.add(nonAffine);
+
+        Assert.assertNull("non-affine list should not be concatenated",
+                          AffineConcatenation.concatenate(transformList));
+    }
+
+    @Test
+    public void testConcatenateAdjacent() throws Exception {
+
+        final CoordinateTransform lensCorrection = buildNonAffine();
+
+        final TranslationModel2D montage = new TranslationModel2D();
+        montage.set(2000.0, 1000.0);
+
+        final RigidModel2D rough = new RigidModel2D();
+        rough.set(Math.toRadians(2.0), -40.0, 15.0);
+
+        final AffineModel2D fine = new AffineModel2D();
+        fine.set(1.01, 0.002, -0.003, 0.99, 3.5, -7.25);
+
+        final AffineModel2D lastAffine = new AffineModel2D();
+        lastAffine.set(0.5, 0.0, 0.0, 0.5, 10.0, 20.0);
+
+        final CoordinateTransformList<CoordinateTransform> alignmentList = new CoordinateTransformList<>();
+        alignmentList.add(rough);
+        alignmentList.add(fine);
+
+        final CoordinateTransformList<CoordinateTransform> transformList = new CoordinateTransformList<>();
+        transformList.add(lensCorrection);
+        transformList.add(montage);
+        transformList.add(alignmentList);
+        transformList.add(lensCorrection);
+        transformList.add(lastAffine);
+
+        final CoordinateTransformList<CoordinateTransform> optimizedList =
+                AffineConcatenation.concatenateAdjacent(transformList);
+
+        final List<CoordinateTransform> optimizedTransforms = optimizedList.getList(null);
+        Assert.assertEquals("invalid number of optimized transforms", 4, optimizedTransforms.size());
+        Assert.assertSame("non-affine transform should be kept", lensCorrection, optimizedTransforms.get(0));
+        Assert.assertTrue("adjacent affines should be concatenated",
+                          optimizedTransforms.get(1) instanceof AffineModel2D);
+        Assert.assertSame("non-affine transform should be kept", lensCorrection, optimizedTransforms.get(2));
+        Assert.assertSame("single affine should be kept", lastAffine, optimizedTransforms.get(3));
+
+        for (final double[] point : new double[][] { {0, 0}, {2047, 0}, {1024, 512}, {0, 2047}, {2047, 2047} }) {
+            final double[] expected = transformList.apply(point);
+            final double[] actual = optimizedList.apply(point);
+            Assert.assertEquals("invalid x for " + point[0] + "," + point[1], expected[0], actual[0], 0.0000001);
+            Assert.assertEquals("invalid y for " + point[0] + "," + point[1], expected[1], actual[1], 0.0000001);
+        }
+    }
+
+    @Test
+    public void testConcatenateAdjacentForEmptyList() throws Exception {
+        final CoordinateTransformList<CoordinateTransform> optimizedList =
+                AffineConcatenation.concatenateAdjacent(new CoordinateTransformList<>());
+        Assert.assertEquals("empty list should remain empty", 0, optimizedList.getList(null).size());
+    }
+
+    private static CoordinateTransform buildNonAffine() {
+        return new CoordinateTransform() {
+            @Override
+            public double[] apply(final double[] location) {
+                final double[] result = location.clone();
+                applyInPlace(result);
+                return result;
+            }
+            @Override
+            public void applyInPlace(final double[] location) {
+                location[0] = location[0] + (0.00001 * location[0] * location[0]);
+            }
+        };
+    }
+
+}
@@ -0,0 +1,175 @@
+package org.janelia.alignment.transform;
+
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import net.imglib2.RandomAccessible;
+import net.imglib2.RealRandomAccess;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.interpolation.InterpolatorFactory;
+import net.imglib2.interpolation.randomaccess.FloorInterpolatorFactory;
+import net.imglib2.interpolation.randomaccess.NLinearInterpolatorFactory;
+import net.imglib2.interpolation.randomaccess.NearestNeighborInterpolatorFactory;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.view.Views;
+import net.imglib2.view.composite.RealComposite;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the {@link AffineWarpFieldInterpolator} class.
+ *
+ * @author Eric Trautman
+ */
+public class AffineWarpFieldInterpolatorTest {
+
+    private static final double WIDTH = 1000.0;
+    private static final double HEIGHT = 800.0;
+    private static final int ROW_COUNT = 4;
+    private static final int COLUMN_COUNT = 5;
+
+    @Test
+    public void testNLinearMatchesImgLib2() throws Exception {
+        validateAgainstImgLib2(new NLinearInterpolatorFactory<>());
+    }
+
+    @Test
+    public void testNearestNeighborMatchesImgLib2() throws Exception {
+        validateAgainstImgLib2(new NearestNeighborInterpolatorFactory<>());
+    }
+
+    @Test
+    public void testFloorMatchesImgLib2() throws Exception {
+        validateAgainstImgLib2(new FloorInterpolatorFactory<>());
+    }
+
+    @Test
+    public void testCellCenters() throws Exception {
+
+        final AffineWarpField affineWarpField = buildField(AffineWarpField.getDefaultInterpolatorFactory());
+        final AffineWarpFieldInterpolator interpolator = AffineWarpFieldInterpolator.build(affineWarpField);
+
+        final double xScale = affineWarpField.getXScale();
+        final double yScale = affineWarpField.getYScale();
+
+        for (int row = 0; row < ROW_COUNT; row++) {
+            for (int column = 0; column < COLUMN_COUNT; column++) {
+
+                final double[] location = { (column + 0.5) * xScale, (row + 0.5) * yScale };
+                final double[] expected = location.clone();
+                applyAffine(expected, affineWarpField.get(row, column));
+
+                interpolator.applyInPlace(location);
+
+                final String context = "row " + row + ", column " + column;
+                Assert.assertEquals("invalid x for " + context, expected[0], location[0], 0.0000001);
+                Assert.assertEquals("invalid y for " + context, expected[1], location[1], 0.0000001);
+            }
+        }
+    }
+
+    @Test
+    public void testConcurrentUse() throws Exception {
+
+        final AffineWarpField affineWarpField = buildField(AffineWarpField.getDefaultInterpolatorFactory());
+        final AffineWarpFieldTransform transform =
+                new AffineWarpFieldTransform(new double[] { 100.0, 200.0 }, affineWarpField);
+
+        final double[][] locations = buildTestLocations(2000);
+        final double[][] expected = new double[locations.length][];
+        for (int i = 0; i < locations.length; i++) {
+            expected[i] = transform.apply(locations[i]);
+        }
+
+        final double[][] actual = new double[locations.length][];
+        IntStream.range(0, locations.length).parallel().forEach(i -> actual[i] = transform.apply(locations[i]));
+
+        for (int i = 0; i < locations.length; i++) {
+            Assert.assertEquals("invalid x for location " + i, expected[i][0], actual[i][0], 0.0);
+            Assert.assertEquals("invalid y for location " + i, expected[i][1], actual[i][1], 0.0);
+        }
+    }
+
+    private void validateAgainstImgLib2(final InterpolatorFactory<RealComposite<DoubleType>, RandomAccessible<RealComposite<DoubleType>>> factory) {
+
+        final AffineWarpField affineWarpField = buildField(factory);
+        final AffineWarpFieldInterpolator interpolator = AffineWarpFieldInterpolator.build(affineWarpField);
+
+        // interpolate grid (instead of pixel) locations with ImgLib2 to verify interpolation and border handling
+        final RealRandomAccess<RealComposite<DoubleType>> gridAccessor =
+                Views.interpolate(
+                        Views.extendBorder(
+                                Views.collapseReal(
+                                        ArrayImgs.doubles(affineWarpField.getValues(),
+                                                          COLUMN_COUNT, ROW_COUNT, 6))),
+                        factory).realRandomAccess();
+
+        final double xScale = affineWarpField.getXScale();
+        final double yScale = affineWarpField.getYScale();
+        final double inverseXScale = 1.0 / xScale;
+        final double inverseYScale = 1.0 / yScale;
+
+        for (final double[] location : buildTestLocations(500)) {
+
+            gridAccessor.setPosition(new double[] {
+                    location[0] * inverseXScale + (-(0.5 * xScale) * inverseXScale),
+                    location[1] * inverseYScale + (-(0.5 * yScale) * inverseYScale)
+            });
+            final RealComposite<DoubleType> coefficients = gridAccessor.get();
+            final double[] affine = new double[6];
+            for (int i = 0; i < affine.length; i++) {
+                affine[i] = coefficients.get(i).getRealDouble();
+            }
+
+            final double[] expected = location.clone();
+            applyAffine(expected, affine);
+
+            final double[] actual = location.clone();
+            interpolator.applyInPlace(actual);
+
+            final String context = factory.getClass().getSimpleName() +
+                                   " location (" + location[0] + ", " + location[1] + ")";
+            Assert.assertEquals("invalid x for " + context, expected[0], actual[0], 0.0);
+            Assert.assertEquals("invalid y for " + context, expected[1], actual[1], 0.0);
+        }
+    }
+
+    private static AffineWarpField buildField(final InterpolatorFactory<RealComposite<DoubleType>, RandomAccessible<RealComposite<DoubleType>>> factory) {
+        final AffineWarpField affineWarpField = new AffineWarpField(WIDTH, HEIGHT, ROW_COUNT, COLUMN_COUNT, factory);
+        final Random random = new Random(29);
+        for (int row = 0; row < ROW_COUNT; row++) {
+            for (int column = 0; column < COLUMN_COUNT; column++) {
+                final double angle = (random.nextDouble() - 0.5) * 0.1;
+                final double scale = 0.95 + (random.nextDouble() * 0.1);
+                affineWarpField.set(row, column, new double[] {
+                        scale * Math.cos(angle), scale * Math.sin(angle),
+                        -scale * Math.sin(angle), scale * Math.cos(angle),
+                        (random.nextDouble() - 0.5) * 40.0, (random.nextDouble() - 0.5) * 40.0
+                });
+            }
+        }
+        return affineWarpField;
+    }
+
+    private static double[][] buildTestLocations(final int count) {
+        // include locations outside of the field to exercise border extension
+        final Random random = new Random(count);
+        final double[][] locations = new double[count][];
+        for (int i = 0; i < count; i++) {
+            locations[i] = new double[] {
+                    (random.nextDouble() * WIDTH * 1.4) - (WIDTH * 0.2),
+                    (random.nextDouble() * HEIGHT * 1.4) - (HEIGHT * 0.2)
+            };
+        }
+        return locations;
+    }
+
+    private static void applyAffine(final double[] location,
+                                    final double[] affine) {
+        final double l0 = location[0];
+        location[0] = l0 * affine[0] + location[1] * affine[2] + affine[4];
+        location[1] = l0 * affine[1] + location[1] * affine[3] + affine[5];
+    }
+
+}
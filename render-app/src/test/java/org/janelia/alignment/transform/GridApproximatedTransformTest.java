@@ -0,0 +1,200 @@
+package org.janelia.alignment.transform;
+
+import java.util.Collections;
+
+import mpicbg.models.CoordinateTransform;
+
+import org.janelia.alignment.RenderTransformMesh;
+import org.janelia.alignment.util.TransformKey;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the {@link GridApproximatedTransform} class.
+ *
+ * @author Eric Trautman
+ */
+public class GridApproximatedTransformTest {
+
+    private static final double WIDTH = 2000.0;
+    private static final double HEIGHT = 1500.0;
+
+    @Test
+    public void testSmoothTransformApproximation() throws Exception {
+
+        final CountingTransform exactTransform = new CountingTransform(new SmoothWarp());
+
+        final GridApproximatedTransform approximation =
+                new GridApproximatedTransform(exactTransform, WIDTH, HEIGHT, 200.0);
+
+        Assert.assertEquals("invalid column count", 10, approximation.getColumnCount());
+        Assert.assertEquals("invalid row count", 8, approximation.getRowCount());
+
+        final int expectedBuildCount = (11 * 9) + (10 * 8); // grid nodes + cell centers
+        Assert.assertEquals("invalid number of exact evaluations during build",
+                            expectedBuildCount, exactTransform.count);
+
+        final double maxError = approximation.getMaxError();
+        Assert.assertTrue("max error " + maxError + " should be small", maxError < 0.25);
+
+        for (double x = 0; x <= WIDTH; x += 37.5) {
+            for (double y = 0; y <= HEIGHT; y += 41.25) {
+                final double[] expected = exactTransform.apply(new double[] { x, y });
+                final double[] actual = approximation.apply(new double[] { x, y });
+                final String context = "location (" + x + ", " + y + ")";
+                // measured error is only an estimate, so allow a little slack
+                Assert.assertEquals("invalid x for " + context, expected[0], actual[0], maxError * 1.5);
+                Assert.assertEquals("invalid y for " + context, expected[1], actual[1], maxError * 1.5);
+            }
+        }
+
+        final int countBeforeApply = exactTransform.count;
+        approximation.apply(new double[] { 100.0, 100.0 });
+        Assert.assertEquals("exact transform should not be used inside source area",
+                            countBeforeApply, exactTransform.count);
+
+        final double[] outside = { -50.0, HEIGHT + 10.0 };
+        final double[] expectedOutside = new SmoothWarp().apply(outside);
+        final double[] actualOutside = approximation.apply(outside);
+        Assert.assertEquals("exact transform should be used outside source area",
+                            countBeforeApply + 1, exactTransform.count);
+        Assert.assertEquals("invalid x outside source area", expectedOutside[0], actualOutside[0], 0.0);
+        Assert.assertEquals("invalid y outside source area", expectedOutside[1], actualOutside[1], 0.0);
+
+        final CoordinateTransform selected =
+                GridApproximatedTransform.approximate(exactTransform, WIDTH, HEIGHT, 200.0, 0.25);
+        Assert.assertTrue("approximation should be selected for smooth transform",
+                          selected instanceof GridApproximatedTransform);
+    }
+
+    @Test
+    public void testFallbackToExactTransform() throws Exception {
+
+        final CoordinateTransform exactTransform = new RippleWarp();
+
+        final GridApproximatedTransform approximation =
+                new GridApproximatedTransform(exactTransform, WIDTH, HEIGHT, 200.0);
+
+        Assert.assertTrue("max error " + approximation.getMaxError() + " should be large",
+                          approximation.getMaxError() > 1.0);
+
+        final CoordinateTransform selected =
+                GridApproximatedTransform.approximate(exactTransform, WIDTH, HEIGHT, 200.0, 0.25);
+        Assert.assertSame("exact transform should be selected when error bound is exceeded",
+                          exactTransform, selected);
+    }
+
+    @Test
+    public void testCachedApproximationIsCheaperForMeshes() throws Exception {
+
+        final TransformKey transformKey =
+                new TransformKey(Collections.singletonList("testCachedApproximationIsCheaperForMeshes"));
+        final int numberOfTrianglesX = (int) (WIDTH / 16.0 + 0.5);
+
+        // exact meshes evaluate the exact transform for every vertex of every mesh
+        final CountingTransform exactTransform = new CountingTransform(new SmoothWarp());
+        new RenderTransformMesh(exactTransform, numberOfTrianglesX, WIDTH, HEIGHT);
+        final int exactMeshCount = exactTransform.count;
+
+        // approximated meshes only evaluate the exact transform while the (cached) grid is built
+        final CountingTransform firstExactTransform = new CountingTransform(new SmoothWarp());
+        final CoordinateTransform firstApproximation =
+                GridApproximatedTransform.approximate(transformKey, firstExactTransform, WIDTH, HEIGHT, 200.0, 0.25);
+        Assert.assertTrue("approximation should be selected for smooth transform",
+                          firstApproximation instanceof GridApproximatedTransform);
+        new RenderTransformMesh(firstApproximation, numberOfTrianglesX, WIDTH, HEIGHT);
+        final int expectedBuildCount = (11 * 9) + (10 * 8); // grid nodes + cell centers
+        Assert.assertEquals("invalid number of exact evaluations for first approximated mesh",
+                            expectedBuildCount, firstExactTransform.count);
+
+        final CountingTransform secondExactTransform = new CountingTransform(new SmoothWarp());
+        final CoordinateTransform secondApproximation =
+                GridApproximatedTransform.approximate(transformKey, secondExactTransform, WIDTH, HEIGHT, 200.0, 0.25);
+        new RenderTransformMesh(secondApproximation, numberOfTrianglesX, WIDTH, HEIGHT);
+        Assert.assertEquals("cached grid should be reused for second approximated mesh",
+                            0, secondExactTransform.count);
+
+        Assert.assertTrue("first approximated mesh (" + firstExactTransform.count +
+                          " exact evaluations) should be cheaper than exact mesh (" + exactMeshCount +
+                          " exact evaluations)",
+                          firstExactTransform.count * 10 < exactMeshCount);
+
+        // locations outside of the source area use the caller's own exact transform
+        secondApproximation.apply(new double[] { -50.0, -50.0 });
+        Assert.assertEquals("caller's exact transform should be used outside source area",
+                            1, secondExactTransform.count);
+        Assert.assertEquals("other caller's exact transform should not be used",
+                            expectedBuildCount, firstExactTransform.count);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidGridSpacing() throws Exception {
+        new GridApproximatedTransform(new SmoothWarp(), WIDTH, HEIGHT, 0.0);
+    }
+
+    /** Gentle quadratic warp (like a well behaved thin plate spline). */
+    private static class SmoothWarp
+            implements CoordinateTransform {
+
+        @Override
+        public double[] apply(final double[] location) {
+            final double[] out = location.clone();
+            applyInPlace(out);
+            return out;
+        }
+
+        @Override
+        public void applyInPlace(final double[] location) {
+            final double x = location[0];
+            final double y = location[1];
+            location[0] = 10.0 + (1.01 * x) + (0.02 * y) + (2.0e-6 * x * y);
+            location[1] = -5.0 + (0.99 * y) - (0.01 * x) + (1.0e-6 * x * x);
+        }
+    }
+
+    /** High frequency warp that cannot be approximated by a coarse grid. */
+    private static class RippleWarp
+            implements CoordinateTransform {
+
+        @Override
+        public double[] apply(final double[] location) {
+            final double[] out = location.clone();
+            applyInPlace(out);
+            return out;
+        }
+
+        @Override
+        public void applyInPlace(final double[] location) {
+            final double x = location[0];
+            final double y = location[1];
+            location[0] = x + (5.0 * Math.sin(x / 30.0));
+            location[1] = y + (5.0 * Math.cos(y / 30.0));
+        }
+    }
+
+    private static class CountingTransform
+            implements CoordinateTransform {
+
+        private final CoordinateTransform transform;
+        private int count;
+
+        CountingTransform(final CoordinateTransform transform) {
+            this.transform = transform;
+            this.count = 0;
+        }
+
+        @Override
+        public double[] apply(final double[] location) {
+            final double[] out = location.clone();
+            applyInPlace(out);
+            return out;
+        }
+
+        @Override
+        public void applyInPlace(final double[] location) {
+            count++;
+            transform.applyInPlace(location);
+        }
+    }
+
+}
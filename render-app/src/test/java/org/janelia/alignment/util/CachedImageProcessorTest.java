@@ -0,0 +1,118 @@
+package org.janelia.alignment.util;
+
+import ij.process.ByteProcessor;
+import ij.process.ColorProcessor;
+import ij.process.FloatProcessor;
+import ij.process.ImageProcessor;
+import ij.process.ShortProcessor;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the {@link CachedImageProcessor} class.
+ *
+ * @author Eric Trautman
+ */
+public class CachedImageProcessorTest {
+
+    private static final int WIDTH = 211;
+    private static final int HEIGHT = 97;
+
+    @Test
+    public void testMask() throws Exception {
+
+        final ByteProcessor mask = new ByteProcessor(WIDTH, HEIGHT);
+        mask.setValue(255);
+        mask.fill();
+        mask.setValue(0);
+        mask.setRoi(0, 0, 7, HEIGHT);
+        mask.fill();
+        mask.setRoi(WIDTH - 9, 0, 9, HEIGHT);
+        mask.fill();
+        mask.resetRoi();
+
+        final CachedImageProcessor cached = validateRoundTrip("mask", mask, true);
+        Assert.assertTrue("mask should be compressed to a few bytes per row, size is " + cached.getNumberOfBytes(),
+                          cached.getNumberOfBytes() < (HEIGHT * 10));
+    }
+
+    @Test
+    public void testByteAndShortImages() throws Exception {
+
+        final ByteProcessor byteProcessor = new ByteProcessor(WIDTH, HEIGHT);
+        final ShortProcessor shortProcessor = new ShortProcessor(WIDTH, HEIGHT);
+
+        // constant border around a gradient with a few noisy rows
+        final Random random = new Random(11);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                final boolean isBorder = (x < 20) || (y < 10);
+                final int noise = (y % 8 == 0) ? random.nextInt(3) : 0;
+                final int value = isBorder ? 0 : 60 + (x / 4) + noise;
+                byteProcessor.set(x, y, value);
+                shortProcessor.set(x, y, isBorder ? 0 : 3000 + (value * 40));
+            }
+        }
+        shortProcessor.setMinAndMax(3000, 15000);
+
+        validateRoundTrip("8-bit", byteProcessor, false);
+        validateRoundTrip("16-bit", shortProcessor, false);
+    }
+
+    @Test
+    public void testUncompressed() throws Exception {
+
+        final Random random = new Random(3);
+        final ByteProcessor noise = new ByteProcessor(WIDTH, HEIGHT);
+        random.nextBytes((byte[]) noise.getPixels());
+
+        final ImageProcessor[] processors = {
+                noise,
+                new FloatProcessor(WIDTH, HEIGHT),
+                new ColorProcessor(WIDTH, HEIGHT)
+        };
+
+        for (final ImageProcessor ip : processors) {
+            final CachedImageProcessor cached = CachedImageProcessor.build(ip, true, false);
+            final String context = ip.getClass().getSimpleName();
+            Assert.assertFalse(context + " should not be compressed", cached.isCompressed());
+            Assert.assertSame(context + " should be referenced", ip, cached.getProcessor());
+            Assert.assertEquals("invalid size for " + context,
+                                ip.getPixelCount() * ip.getBitDepth() / 8, cached.getNumberOfBytes());
+        }
+
+        Assert.assertFalse("image should not be compressed when compression is disabled",
+                           CachedImageProcessor.build(new ByteProcessor(WIDTH, HEIGHT), false, false).isCompressed());
+    }
+
+    private static CachedImageProcessor validateRoundTrip(final String context,
+                                                          final ImageProcessor expected,
+                                                          final boolean isMask) {
+
+        final CachedImageProcessor cached = CachedImageProcessor.build(expected, true, isMask);
+
+        final int rawSize = expected.getPixelCount() * expected.getBitDepth() / 8;
+        Assert.assertTrue(context + " should be compressed", cached.isCompressed());
+        Assert.assertTrue(context + " compressed size " + cached.getNumberOfBytes() + " is too large",
+                          cached.getNumberOfBytes() <= (rawSize * CachedImageProcessor.MAX_COMPRESSED_FRACTION));
+
+        // decompress twice to make sure pooled buffers are reused safely
+        for (int i = 0; i < 2; i++) {
+            final ImageProcessor actual = cached.getProcessor();
+            Assert.assertEquals("invalid class for " + context, expected.getClass(), actual.getClass());
+            Assert.assertEquals("invalid width for " + context, WIDTH, actual.getWidth());
+            Assert.assertEquals("invalid height for " + context, HEIGHT, actual.getHeight());
+            Assert.assertEquals("invalid min for " + context, expected.getMin(), actual.getMin(), 0.0);
+            Assert.assertEquals("invalid max for " + context, expected.getMax(), actual.getMax(), 0.0);
+            for (int p = 0; p < expected.getPixelCount(); p++) {
+                Assert.assertEquals("invalid pixel " + p + " for " + context, expected.get(p), actual.get(p));
+            }
+        }
+
+        return cached;
+    }
+
+}
@@ -0,0 +1,133 @@
+package org.janelia.alignment.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import mpicbg.models.CoordinateTransform;
+import mpicbg.models.CoordinateTransformList;
+import mpicbg.trakem2.transform.AffineModel2D;
+import mpicbg.trakem2.transform.PolynomialTransform2D;
+
+import org.janelia.alignment.spec.LeafTransformSpec;
+import org.janelia.alignment.spec.ListTransformSpec;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the {@link CoordinateTransformCache} class.
+ *
+ * @author Eric Trautman
+ */
+public class CoordinateTransformCacheTest {
+
+    private static final String AFFINE_CLASS_NAME = AffineModel2D.class.getName();
+    private static final String AFFINE_DATA = "1 0 0 1 10 20";
+    private static final String POLYNOMIAL_CLASS_NAME = PolynomialTransform2D.class.getName();
+    private static final String POLYNOMIAL_DATA = "2 0 1 0 0 0 1";
+
+    @Test
+    public void testThreadSafeInstancesAreShared() throws Exception {
+
+        final CoordinateTransformCache cache = new CoordinateTransformCache(1000, true);
+        final AtomicInteger buildCount = new AtomicInteger(0);
+
+        final CoordinateTransform first = cache.get(AFFINE_CLASS_NAME, AFFINE_DATA,
+                                                    () -> buildAffine(buildCount));
+        final CoordinateTransform second = cache.get(AFFINE_CLASS_NAME, new String(AFFINE_DATA),
+                                                     () -> buildAffine(buildCount));
+
+        Assert.assertSame("thread safe instance should be shared", first, second);
+        Assert.assertEquals("invalid number of builds", 1, buildCount.get());
+        Assert.assertEquals("invalid number of cache entries", 1, cache.size());
+        Assert.assertEquals("invalid number of cache hits", 1, cache.getStats().hitCount());
+        Assert.assertEquals("invalid number of cache loads", 1, cache.getStats().loadCount());
+
+        cache.get(AFFINE_CLASS_NAME, "1 0 0 1 0 0", () -> buildAffine(buildCount));
+
+        Assert.assertEquals("invalid number of cache entries after different data request", 2, cache.size());
+        Assert.assertEquals("invalid number of builds after different data request", 2, buildCount.get());
+    }
+
+    @Test
+    public void testOtherInstancesAreCopied() throws Exception {
+
+        final CoordinateTransformCache cache = new CoordinateTransformCache(1000, true);
+        final AtomicInteger buildCount = new AtomicInteger(0);
+
+        final CoordinateTransform first = cache.get(POLYNOMIAL_CLASS_NAME, POLYNOMIAL_DATA,
+                                                    () -> buildPolynomial(buildCount));
+        final CoordinateTransform second = cache.get(POLYNOMIAL_CLASS_NAME, POLYNOMIAL_DATA,
+                                                     () -> buildPolynomial(buildCount));
+
+        Assert.assertNotNull("null first instance returned", first);
+        Assert.assertNotNull("null second instance returned", second);
+        Assert.assertNotSame("non thread safe instance should not be shared", first, second);
+        Assert.assertEquals("invalid number of cache entries", 1, cache.size());
+        Assert.assertEquals("invalid number of cache hits", 1, cache.getStats().hitCount());
+    }
+
+    @Test
+    public void testDisabledCache() throws Exception {
+
+        final CoordinateTransformCache cache = new CoordinateTransformCache(0, true);
+        final AtomicInteger buildCount = new AtomicInteger(0);
+
+        final CoordinateTransform first = cache.get(AFFINE_CLASS_NAME, AFFINE_DATA,
+                                                    () -> buildAffine(buildCount));
+        final CoordinateTransform second = cache.get(AFFINE_CLASS_NAME, AFFINE_DATA,
+                                                     () -> buildAffine(buildCount));
+
+        Assert.assertNotSame("disabled cache should not share instances", first, second);
+        Assert.assertEquals("invalid number of builds", 2, buildCount.get());
+        Assert.assertEquals("invalid number of cache entries", 0, cache.size());
+    }
+
+    @Test
+    public void testBuildFailure() throws Exception {
+
+        final CoordinateTransformCache cache = new CoordinateTransformCache(1000, true);
+
+        try {
+            cache.get(AFFINE_CLASS_NAME, "bad data", () -> {
+                throw new IllegalArgumentException("bad data");
+            });
+            Assert.fail("build failure should cause exception");
+        } catch (final IllegalArgumentException e) {
+            Assert.assertEquals("invalid exception message", "bad data", e.getMessage());
+        }
+
+        Assert.assertEquals("failed build should not be cached", 0, cache.size());
+    }
+
+    @Test
+    public void testSharedSpecInstances() throws Exception {
+
+        final ListTransformSpec listSpec = new ListTransformSpec();
+        listSpec.addSpec(new LeafTransformSpec(AFFINE_CLASS_NAME, AFFINE_DATA));
+        listSpec.addSpec(new LeafTransformSpec(AFFINE_CLASS_NAME, AFFINE_DATA));
+
+        final CoordinateTransformList<CoordinateTransform> sharedList = listSpec.getSharedInstanceAsList();
+        final CoordinateTransformList<CoordinateTransform> otherSharedList = listSpec.getSharedInstanceAsList();
+        final CoordinateTransformList<CoordinateTransform> newList = listSpec.getNewInstanceAsList();
+
+        Assert.assertNotSame("shared lists should be distinct", sharedList, otherSharedList);
+        Assert.assertSame("shared list leaf transforms should be shared",
+                          sharedList.get(0), otherSharedList.get(1));
+        Assert.assertNotSame("new list leaf transforms should not be shared",
+                             sharedList.get(0), newList.get(0));
+    }
+
+    private static CoordinateTransform buildAffine(final AtomicInteger buildCount) {
+        buildCount.incrementAndGet();
+        final AffineModel2D model = new AffineModel2D();
+        model.init(AFFINE_DATA);
+        return model;
+    }
+
+    private static CoordinateTransform buildPolynomial(final AtomicInteger buildCount) {
+        buildCount.incrementAndGet();
+        final PolynomialTransform2D transform = new PolynomialTransform2D();
+        transform.init(POLYNOMIAL_DATA);
+        return transform;
+    }
+
+}
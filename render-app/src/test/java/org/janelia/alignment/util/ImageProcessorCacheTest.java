@@ -0,0 +1,299 @@
+package org.janelia.alignment.util;
+
+import ij.process.ByteProcessor;
+import ij.process.ImageProcessor;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the {@link ImageProcessorCache} class.
+ *
+ * @author Eric Trautman
+ */
+public class ImageProcessorCacheTest {
+
+    private File imageFile;
+    private String imageUrl;
+
+    @Before
+    public void setup() throws Exception {
+        final Random random = new Random(64);
+        final ByteProcessor bp = new ByteProcessor(64, 48);
+        final byte[] pixels = (byte[]) bp.getPixels();
+        random.nextBytes(pixels);
+
+        imageFile = File.createTempFile("image-processor-cache-test-", ".png");
+        ImageIO.write(bp.getBufferedImage(), "png", imageFile);
+        imageUrl = imageFile.toURI().toString();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (imageFile.exists()) {
+            Assert.assertTrue("failed to delete " + imageFile, imageFile.delete());
+        }
+    }
+
+    @Test
+    public void testDownSampleFromNearestCachedLevel() throws Exception {
+
+        final ImageProcessor expectedLevel3 = ImageProcessorCache.getNonCachedImage(imageUrl, 3, false, false);
+
+        final ImageProcessorCache cache = new ImageProcessorCache(1000000, true, false, true);
+
+        final ImageProcessor level2 = cache.get(imageUrl, 2, false, false);
+        Assert.assertEquals("invalid level 2 width", 16, level2.getWidth());
+        Assert.assertEquals("levels 1 and 2 should be cached (but not the original)", 2, cache.size());
+
+        // remove the source so that any further levels can only be derived from cached levels
+        Assert.assertTrue("failed to delete " + imageFile, imageFile.delete());
+
+        final ImageProcessor level3 = cache.get(imageUrl, 3, false, false);
+        Assert.assertEquals("level 3 should have been added to cache", 3, cache.size());
+        assertSamePixels(expectedLevel3, level3);
+
+        final ImageProcessor level1 = cache.get(imageUrl, 1, false, false);
+        Assert.assertEquals("invalid level 1 width", 32, level1.getWidth());
+    }
+
+    @Test
+    public void testMasksAreCachedSeparately() throws Exception {
+
+        final ImageProcessorCache cache = new ImageProcessorCache(1000000, true, false);
+        cache.get(imageUrl, 0, false, false);
+
+        Assert.assertTrue("failed to delete " + imageFile, imageFile.delete());
+
+        try {
+            cache.get(imageUrl, 0, true, false);
+            Assert.fail("mask request should not be satisfied by cached image");
+        } catch (final IllegalArgumentException e) {
+            Assert.assertTrue(true); // test passed
+        }
+    }
+
+    @Test
+    public void testSecondTier() throws Exception {
+
+        // evicted instances are spilled by a background thread, so wait for it to store the first one
+        final CountDownLatch spilled = new CountDownLatch(1);
+        final OffHeapImageProcessorStore secondTier = new OffHeapImageProcessorStore(1000000, null, true) {
+            @Override
+            public void put(final Object key,
+                            final ImageProcessor imageProcessor) {
+                super.put(key, imageProcessor);
+                spilled.countDown();
+            }
+        };
+
+        // first tier only has room for one level 0 image
+        final ImageProcessorCache cache = new ImageProcessorCache(64 * 48, true, false, false, secondTier);
+
+        final ImageProcessor level0 = cache.get(imageUrl, 0, false, false);
+        cache.get(imageUrl, 1, false, false);
+        cache.get(imageUrl, 2, false, false);
+
+        Assert.assertTrue("level 0 should have been spilled to second tier", spilled.await(5, TimeUnit.SECONDS));
+
+        // remove the source so that level 0 can only be restored from the second tier
+        Assert.assertTrue("failed to delete " + imageFile, imageFile.delete());
+
+        final ImageProcessor promotedLevel0 = cache.get(imageUrl, 0, false, false);
+        assertSamePixels(level0, promotedLevel0);
+
+        Assert.assertTrue("second tier hits should be recorded", cache.getSecondTierStats().hitCount() > 0);
+    }
+
+    @Test
+    public void testSpillIsNotOnRequestThread() throws Exception {
+
+        final Set<Thread> spillThreads = ConcurrentHashMap.newKeySet();
+        final CountDownLatch spilled = new CountDownLatch(1);
+        final OffHeapImageProcessorStore secondTier = new OffHeapImageProcessorStore(1000000, null, true) {
+            @Override
+            public void put(final Object key,
+                            final ImageProcessor imageProcessor) {
+                spillThreads.add(Thread.currentThread());
+                super.put(key, imageProcessor);
+                spilled.countDown();
+            }
+        };
+
+        final ImageProcessorCache cache = new ImageProcessorCache(64 * 48, true, false, false, secondTier);
+        cache.get(imageUrl, 0, false, false);
+        cache.get(imageUrl, 1, false, false);
+
+        Assert.assertTrue("level 0 should have been spilled", spilled.await(5, TimeUnit.SECONDS));
+        Assert.assertFalse("spill should not run on request thread", spillThreads.contains(Thread.currentThread()));
+    }
+
+    @Test
+    public void testPrefetch() throws Exception {
+
+        final ImageProcessorCache cache = new ImageProcessorCache(1000000, true, false);
+
+        // use full scale keys so that loads do not populate each other's entries
+        final List<ImageProcessorCache.CacheKey> keys = Arrays.asList(
+                new ImageProcessorCache.CacheKey(imageUrl, 0, false, false),
+                new ImageProcessorCache.CacheKey(imageUrl, 0, false, true),
+                new ImageProcessorCache.CacheKey(imageUrl, 0, true, false));
+
+        // duplicate keys should only be loaded once
+        final List<ImageProcessorCache.CacheKey> keysWithDuplicates = new ArrayList<>(keys);
+        keysWithDuplicates.addAll(keys);
+
+        final List<Future<?>> queuedLoads = cache.prefetch(keysWithDuplicates);
+        Assert.assertTrue("too many keys queued (" + queuedLoads.size() + ")", queuedLoads.size() <= keys.size());
+
+        // nothing else loads these keys, so each completed prefetch has stored its image
+        for (final Future<?> queuedLoad : queuedLoads) {
+            queuedLoad.get(5, TimeUnit.SECONDS);
+        }
+
+        Assert.assertEquals("invalid number of cached entries", keys.size(), cache.size());
+        Assert.assertEquals("each key should only be loaded once", keys.size(), cache.getStats().loadCount());
+
+        // remove the source so that gets can only be satisfied by prefetched images
+        Assert.assertTrue("failed to delete " + imageFile, imageFile.delete());
+
+        cache.get(imageUrl, 0, false, false);
+        cache.get(imageUrl, 0, false, true);
+        cache.get(imageUrl, 0, true, false);
+
+        Assert.assertEquals("prefetched keys should not be loaded again", keys.size(), cache.getStats().loadCount());
+        Assert.assertEquals("prefetched keys should be cache hits", keys.size(), cache.getStats().hitCount());
+
+        final long hitCountBeforePrefetch = cache.getStats().hitCount();
+        final long missCountBeforePrefetch = cache.getStats().missCount();
+        Assert.assertEquals("already cached keys should not be queued", 0, cache.prefetch(keys).size());
+        Assert.assertEquals("prefetch checks should not record hits",
+                            hitCountBeforePrefetch, cache.getStats().hitCount());
+        Assert.assertEquals("prefetch checks should not record misses",
+                            missCountBeforePrefetch, cache.getStats().missCount());
+        Assert.assertEquals("disabled cache should not queue keys",
+                            0, ImageProcessorCache.DISABLED_CACHE.prefetch(
+                                    Arrays.asList(new ImageProcessorCache.CacheKey(imageUrl, 3, false, false))).size());
+    }
+
+    @Test
+    public void testReadOnlyView() throws Exception {
+
+        final ImageProcessorCache cache = new ImageProcessorCache(1000000, true, false);
+
+        final ImageProcessor view = cache.getReadOnlyView(imageUrl, 1, false, true);
+        final ImageProcessor otherView = cache.getReadOnlyView(imageUrl, 1, false, true);
+        final ImageProcessor copy = cache.get(imageUrl, 1, false, true);
+
+        Assert.assertSame("views should share cached pixels", view.getPixels(), otherView.getPixels());
+        Assert.assertNotSame("get should return a copy of cached pixels", view.getPixels(), copy.getPixels());
+        assertSamePixels(copy, view);
+        Assert.assertEquals("only one entry should be cached", 1, cache.size());
+
+        final double originalMax = otherView.getMax();
+        view.setMinAndMax(3, originalMax + 99);
+        Assert.assertEquals("changing one view's display range should not change other views",
+                            originalMax, otherView.getMax(), 0.0);
+        Assert.assertEquals("changing a view's display range should not change the cached instance",
+                            originalMax, cache.getReadOnlyView(imageUrl, 1, false, true).getMax(), 0.0);
+    }
+
+    @Test
+    public void testCompressedCache() throws Exception {
+
+        final ByteProcessor mask = new ByteProcessor(64, 48);
+        mask.setValue(255);
+        mask.fill();
+
+        final File maskFile = File.createTempFile("image-processor-cache-test-mask-", ".png");
+        try {
+            ImageIO.write(mask.getBufferedImage(), "png", maskFile);
+            final String maskUrl = maskFile.toURI().toString();
+
+            final ImageProcessorCache cache = new ImageProcessorCache(1000000, true, false, false, null, true);
+
+            final ImageProcessor loadedMask = cache.get(maskUrl, 0, true, false);
+            assertSamePixels(mask, loadedMask);
+
+            final ImageProcessor loadedImage = cache.get(imageUrl, 0, false, false);
+            Assert.assertEquals("mask and image should both be cached", 2, cache.size());
+
+            // modifying a returned processor must not change the cached instance
+            loadedMask.invert();
+            assertSamePixels(mask, cache.get(maskUrl, 0, true, false));
+            assertSamePixels(loadedImage, cache.getReadOnlyView(imageUrl, 0, false, false));
+
+            // read-only views of compressed images share decompressed pixels until the entry is removed
+            final ImageProcessor maskView = cache.getReadOnlyView(maskUrl, 0, true, false);
+            Assert.assertSame("views should share decompressed pixels",
+                              maskView.getPixels(), cache.getReadOnlyView(maskUrl, 0, true, false).getPixels());
+            assertSamePixels(mask, maskView);
+
+            Assert.assertTrue("cached bytes should be counted", cache.getNumberOfCachedBytes() > 0);
+            cache.invalidateAll();
+            Assert.assertEquals("invalidated bytes should not be counted", 0, cache.getNumberOfCachedBytes());
+
+            Assert.assertNotSame("views should not share pixels after entry is removed",
+                                 maskView.getPixels(), cache.getReadOnlyView(maskUrl, 0, true, false).getPixels());
+
+        } finally {
+            Assert.assertTrue("failed to delete " + maskFile, maskFile.delete());
+        }
+    }
+
+    @Test
+    public void testPhaseTimesCacheCounts() throws Exception {
+
+        final ImageProcessorCache cache = new ImageProcessorCache(1000000, true, false);
+        final ImageProcessorCache unboundCache = new ImageProcessorCache(1000000, true, false);
+        final RenderPhaseTimes phaseTimes = new RenderPhaseTimes();
+
+        cache.get(imageUrl, 0, false, false); // unbound requests should not be counted
+        unboundCache.get(imageUrl, 0, false, false);
+
+        phaseTimes.bindToCurrentThread();
+        try {
+            requestThreeImages(cache);
+        } finally {
+            RenderPhaseTimes.unbindFromCurrentThread();
+        }
+        requestThreeImages(unboundCache);
+
+        Assert.assertNull("phase times should be unbound", RenderPhaseTimes.forCurrentThread());
+        Assert.assertEquals("invalid hit count", 2, phaseTimes.getSourceCacheHits());
+        Assert.assertEquals("invalid miss count", 1, phaseTimes.getSourceCacheMisses());
+        Assert.assertEquals("request counting should not change cache stats",
+                            unboundCache.getStats().hitCount(), cache.getStats().hitCount());
+    }
+
+    private void requestThreeImages(final ImageProcessorCache cache) {
+        cache.get(imageUrl, 0, false, false);
+        cache.getReadOnlyView(imageUrl, 1, false, false);
+        cache.getReadOnlyView(imageUrl, 1, false, false);
+    }
+
+    private static void assertSamePixels(final ImageProcessor expected,
+                                         final ImageProcessor actual) {
+        Assert.assertEquals("invalid width", expected.getWidth(), actual.getWidth());
+        Assert.assertEquals("invalid height", expected.getHeight(), actual.getHeight());
+        for (int i = 0; i < expected.getPixelCount(); i++) {
+            Assert.assertEquals("invalid value for pixel " + i, expected.getf(i), actual.getf(i), 0.0);
+        }
+    }
+
+}
@@ -0,0 +1,140 @@
+package org.janelia.alignment.util;
+
+import ij.process.ByteProcessor;
+import ij.process.ColorProcessor;
+import ij.process.FloatProcessor;
+import ij.process.ImageProcessor;
+import ij.process.ShortProcessor;
+
+import java.io.File;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the {@link OffHeapImageProcessorStore} class.
+ *
+ * @author Eric Trautman
+ */
+public class OffHeapImageProcessorStoreTest {
+
+    private static final int WIDTH = 17;
+    private static final int HEIGHT = 9;
+
+    private File directory;
+
+    @Before
+    public void setup() throws Exception {
+        directory = File.createTempFile("off-heap-store-test-", "");
+        Assert.assertTrue("failed to delete " + directory, directory.delete());
+        Assert.assertTrue("failed to create " + directory, directory.mkdir());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        final File[] files = directory.listFiles();
+        if (files != null) {
+            for (final File file : files) {
+                Assert.assertTrue("failed to delete " + file, file.delete());
+            }
+        }
+        Assert.assertTrue("failed to delete " + directory, directory.delete());
+    }
+
+    @Test
+    public void testDirectStore() throws Exception {
+        validateRoundTrip(new OffHeapImageProcessorStore(1000000, null, true));
+    }
+
+    @Test
+    public void testMappedFileStore() throws Exception {
+        final OffHeapImageProcessorStore store = new OffHeapImageProcessorStore(1000000, directory, true);
+        validateRoundTrip(store);
+        Assert.assertEquals("files should be removed with entries", 0, getNumberOfFiles());
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+
+        // room for two float processors
+        final int floatBytes = WIDTH * HEIGHT * 4;
+        final OffHeapImageProcessorStore store = new OffHeapImageProcessorStore(2 * floatBytes, directory, true);
+
+        for (int i = 0; i < 3; i++) {
+            store.put("key-" + i, buildProcessors(i)[2]);
+        }
+
+        Assert.assertEquals("invalid number of entries", 2, store.size());
+        Assert.assertEquals("invalid number of stored bytes", 2 * floatBytes, store.getNumberOfStoredBytes());
+        Assert.assertEquals("evicted entry file should be deleted", 2, getNumberOfFiles());
+        Assert.assertNull("oldest entry should have been evicted", store.remove("key-0"));
+        Assert.assertEquals("invalid eviction count", 1, store.getStats().evictionCount());
+
+        store.put("too-big", new FloatProcessor(WIDTH * 3, HEIGHT));
+        Assert.assertEquals("processor larger than store should be ignored", 2, store.size());
+    }
+
+    private void validateRoundTrip(final OffHeapImageProcessorStore store) {
+
+        final ImageProcessor[] processors = buildProcessors(1);
+        for (int i = 0; i < processors.length; i++) {
+            store.put(i, processors[i]);
+        }
+
+        Assert.assertEquals("invalid number of entries", processors.length, store.size());
+
+        for (int i = 0; i < processors.length; i++) {
+            final ImageProcessor expected = processors[i];
+            final ImageProcessor actual = store.remove(i);
+            final String context = expected.getClass().getSimpleName();
+
+            Assert.assertNotNull(context + " should be in store", actual);
+            Assert.assertEquals("invalid class", expected.getClass(), actual.getClass());
+            Assert.assertEquals("invalid width for " + context, WIDTH, actual.getWidth());
+            Assert.assertEquals("invalid height for " + context, HEIGHT, actual.getHeight());
+            if (! (expected instanceof ColorProcessor)) {
+                Assert.assertEquals("invalid min for " + context, expected.getMin(), actual.getMin(), 0.0);
+                Assert.assertEquals("invalid max for " + context, expected.getMax(), actual.getMax(), 0.0);
+                Assert.assertEquals("invalid LUT for " + context, expected.isInvertedLut(), actual.isInvertedLut());
+            }
+            for (int p = 0; p < expected.getPixelCount(); p++) {
+                Assert.assertEquals("invalid pixel " + p + " for " + context, expected.get(p), actual.get(p));
+            }
+
+            Assert.assertNull(context + " should have been removed from store", store.remove(i));
+        }
+
+        Assert.assertEquals("store should be empty", 0, store.size());
+        Assert.assertEquals("store should not have any bytes", 0, store.getNumberOfStoredBytes());
+        Assert.assertEquals("invalid hit count", processors.length, store.getStats().hitCount());
+    }
+
+    private static ImageProcessor[] buildProcessors(final long seed) {
+        final Random random = new Random(seed);
+        final ImageProcessor[] processors = {
+                new ByteProcessor(WIDTH, HEIGHT),
+                new ShortProcessor(WIDTH, HEIGHT),
+                new FloatProcessor(WIDTH, HEIGHT),
+                new ColorProcessor(WIDTH, HEIGHT)
+        };
+        for (final ImageProcessor ip : processors) {
+            for (int p = 0; p < ip.getPixelCount(); p++) {
+                ip.set(p, random.nextInt(Integer.MAX_VALUE));
+            }
+        }
+        processors[0].invertLut();
+        processors[0].setMinAndMax(10, 200);
+        processors[1].setMinAndMax(100, 2000);
+        processors[2].setMinAndMax(-5, 50000);
+        return processors;
+    }
+
+    private int getNumberOfFiles() {
+        final File[] files = directory.listFiles();
+        return files == null ? 0 : files.length;
+    }
+
+}
@@ -0,0 +1,161 @@
+package org.janelia.alignment.util;
+
+import java.util.Arrays;
+import java.util.List;
+
+import mpicbg.models.AffineModel2D;
+import mpicbg.models.CoordinateTransform;
+import mpicbg.models.CoordinateTransformList;
+import mpicbg.trakem2.util.Pair;
+
+import org.janelia.alignment.RenderTransformMesh;
+import org.janelia.alignment.mipmap.RenderedCanvasMipmapSource;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the {@link RenderTransformMeshCache} class.
+ *
+ * @author Eric Trautman
+ */
+public class RenderTransformMeshCacheTest {
+
+    private static final int TILE_WIDTH = 400;
+    private static final int TILE_HEIGHT = 300;
+    private static final double MESH_CELL_SIZE = 64.0;
+    private static final double SCALE = 0.5;
+
+    @Test
+    public void testTranslatedMeshMatchesOffsetMesh() throws Exception {
+
+        final RenderTransformMeshCache cache = new RenderTransformMeshCache();
+        final RenderTransformMeshCache.MeshKey key = buildKey("tile-a");
+
+        final double[][] offsets = { {100.0, 50.0}, {300.5, -20.25}, {100.0, 50.0} };
+
+        for (final double[] offset : offsets) {
+
+            final RenderTransformMesh expectedMesh = buildMesh(offset[0], offset[1]);
+
+            final RenderTransformMesh actualMesh =
+                    cache.getTranslatedMesh(key,
+                                            () -> buildMesh(0, 0),
+                                            -(offset[0] * SCALE),
+                                            -(offset[1] * SCALE));
+
+            assertSameMesh("offset (" + offset[0] + "," + offset[1] + ")", expectedMesh, actualMesh);
+        }
+
+        Assert.assertEquals("invalid number of cache entries", 1, cache.size());
+        Assert.assertEquals("invalid number of cache misses", 1, cache.getStats().missCount());
+        Assert.assertEquals("invalid number of cache hits", 2, cache.getStats().hitCount());
+
+        cache.getTranslatedMesh(buildKey("tile-b"), () -> buildMesh(0, 0), 0, 0);
+
+        Assert.assertEquals("invalid number of cache entries after different tile request", 2, cache.size());
+        Assert.assertEquals("invalid number of cache misses after different tile request",
+                            2, cache.getStats().missCount());
+    }
+
+    @Test
+    public void testCachedMeshIsNotModified() throws Exception {
+
+        final RenderTransformMeshCache cache = new RenderTransformMeshCache();
+        final RenderTransformMeshCache.MeshKey key = buildKey("tile-a");
+
+        final RenderTransformMesh firstMesh = cache.getTranslatedMesh(key, () -> buildMesh(0, 0), -10, -20);
+        final RenderTransformMesh secondMesh = cache.getTranslatedMesh(key, () -> buildMesh(0, 0), -10, -20);
+
+        Assert.assertNotSame("copies should be returned", firstMesh, secondMesh);
+        assertSameMesh("repeated request", firstMesh, secondMesh);
+    }
+
+    @Test
+    public void testKeyEquality() throws Exception {
+        Assert.assertEquals("identical keys should be equal", buildKey("a"), buildKey("a"));
+        Assert.assertEquals("identical keys should have same hash", buildKey("a").hashCode(), buildKey("a").hashCode());
+        Assert.assertFalse("keys with different transforms should differ", buildKey("a").equals(buildKey("b")));
+
+        final RenderTransformMeshCache.MeshKey halfScaleKey =
+                new RenderTransformMeshCache.MeshKey(buildTransformKey("a"), 0, SCALE, SCALE / 2,
+                                                     MESH_CELL_SIZE, TILE_WIDTH,
+                                                     TILE_WIDTH, TILE_HEIGHT);
+        Assert.assertFalse("keys with different scales should differ", buildKey("a").equals(halfScaleKey));
+    }
+
+    private static RenderTransformMeshCache.MeshKey buildKey(final String transformId) {
+        return new RenderTransformMeshCache.MeshKey(buildTransformKey(transformId), 0, SCALE, SCALE,
+                                                    MESH_CELL_SIZE, TILE_WIDTH,
+                                                    TILE_WIDTH, TILE_HEIGHT);
+    }
+
+    private static TransformKey buildTransformKey(final String transformData) {
+        // use a distinct string instance so that equality does not rely on identity
+        return new TransformKey(Arrays.asList(AffineModel2D.class.getName(), new String(transformData)));
+    }
+
+    private static RenderTransformMesh buildMesh(final double x,
+                                                 final double y) {
+
+        final AffineModel2D tileTransform = new AffineModel2D();
+        tileTransform.set(0.98, 0.05, -0.05, 0.98, 1234.5, 678.9);
+
+        final CoordinateTransformList<CoordinateTransform> transformList = new CoordinateTransformList<>();
+        transformList.add(tileTransform);
+
+        RenderedCanvasMipmapSource.addRenderScaleAndOffset(transformList, SCALE, SCALE, x, y);
+
+        return RenderedCanvasMipmapSource.createRenderMesh(0,
+                                                           transformList,
+                                                           TILE_WIDTH,
+                                                           MESH_CELL_SIZE,
+                                                           TILE_WIDTH,
+                                                           TILE_HEIGHT);
+    }
+
+    private static void assertSameMesh(final String context,
+                                       final RenderTransformMesh expectedMesh,
+                                       final RenderTransformMesh actualMesh) {
+
+        final List<Pair<AffineModel2D, double[][]>> expectedAV = expectedMesh.getAV();
+        final List<Pair<AffineModel2D, double[][]>> actualAV = actualMesh.getAV();
+
+        Assert.assertEquals("invalid number of triangles for " + context, expectedAV.size(), actualAV.size());
+
+        final double[] expectedAffine = new double[6];
+        final double[] actualAffine = new double[6];
+        final double delta = 0.000001;
+
+        for (int i = 0; i < expectedAV.size(); i++) {
+
+            final double[][] expectedPq = expectedAV.get(i).b;
+            final double[][] actualPq = actualAV.get(i).b;
+            for (int row = 0; row < 4; row++) {
+                for (int vertex = 0; vertex < 3; vertex++) {
+                    Assert.assertEquals("invalid pq[" + row + "][" + vertex + "] for triangle " + i + " with " +
+                                        context,
+                                        expectedPq[row][vertex], actualPq[row][vertex], delta);
+                }
+            }
+
+            expectedAV.get(i).a.toArray(expectedAffine);
+            actualAV.get(i).a.toArray(actualAffine);
+            for (int j = 0; j < expectedAffine.length; j++) {
+                Assert.assertEquals("invalid affine value " + j + " for triangle " + i + " with " + context,
+                                    expectedAffine[j], actualAffine[j], delta);
+            }
+        }
+
+        final double[] expectedMin = new double[2];
+        final double[] expectedMax = new double[2];
+        final double[] actualMin = new double[2];
+        final double[] actualMax = new double[2];
+        expectedMesh.bounds(expectedMin, expectedMax);
+        actualMesh.bounds(actualMin, actualMax);
+        for (int d = 0; d < 2; d++) {
+            Assert.assertEquals("invalid min bound for " + context, expectedMin[d], actualMin[d], delta);
+            Assert.assertEquals("invalid max bound for " + context, expectedMax[d], actualMax[d], delta);
+        }
+    }
+
+}
@@ -0,0 +1,85 @@
+package org.janelia.alignment.util;
+
+import ij.ImagePlus;
+import ij.io.Opener;
+import ij.process.ImageProcessor;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the {@link TiffStripWriter} class.
+ *
+ * @author Eric Trautman
+ */
+public class TiffStripWriterTest {
+
+    private static final int WIDTH = 13;
+    private static final int HEIGHT = 11;
+
+    @Test
+    public void testWriteGrayAndRgb() throws Exception {
+        for (final int samplesPerPixel : new int[] { 1, 3 }) {
+            for (final int rowsPerStrip : new int[] { 1, 4, HEIGHT, HEIGHT + 5 }) {
+                validateRoundTrip(samplesPerPixel, rowsPerStrip);
+            }
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testEndBeforeAllRowsWritten() throws Exception {
+        final TiffStripWriter writer = new TiffStripWriter(new ByteArrayOutputStream(), WIDTH, HEIGHT, 1, 4);
+        writer.writeRow(new byte[WIDTH], 0);
+        writer.end();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTooLarge() throws Exception {
+        new TiffStripWriter(new ByteArrayOutputStream(), 100000, 100000, 3, 1024);
+    }
+
+    private void validateRoundTrip(final int samplesPerPixel,
+                                   final int rowsPerStrip) throws Exception {
+
+        final String context = "samplesPerPixel=" + samplesPerPixel + ", rowsPerStrip=" + rowsPerStrip;
+
+        final Random random = new Random(rowsPerStrip);
+        final byte[] samples = new byte[WIDTH * HEIGHT * samplesPerPixel];
+        random.nextBytes(samples);
+
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        final TiffStripWriter writer =
+                new TiffStripWriter(outputStream, WIDTH, HEIGHT, samplesPerPixel, rowsPerStrip);
+        for (int row = 0; row < HEIGHT; row++) {
+            writer.writeRow(samples, row * writer.getBytesPerRow());
+        }
+        writer.end();
+
+        final ImagePlus imagePlus =
+                new Opener().openTiff(new ByteArrayInputStream(outputStream.toByteArray()), "test.tif");
+
+        Assert.assertNotNull("failed to open TIFF for " + context, imagePlus);
+        Assert.assertEquals("invalid width for " + context, WIDTH, imagePlus.getWidth());
+        Assert.assertEquals("invalid height for " + context, HEIGHT, imagePlus.getHeight());
+
+        final ImageProcessor ip = imagePlus.getProcessor();
+        int i = 0;
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                final int expected;
+                if (samplesPerPixel == 1) {
+                    expected = samples[i++] & 0xff;
+                } else {
+                    expected = ((samples[i++] & 0xff) << 16) | ((samples[i++] & 0xff) << 8) | (samples[i++] & 0xff);
+                }
+                Assert.assertEquals("invalid value for pixel (" + x + "," + y + ") with " + context,
+                                    expected, ip.get(x, y) & 0xffffff);
+            }
+        }
+    }
+
+}
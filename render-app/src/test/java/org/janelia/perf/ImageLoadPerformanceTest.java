@@ -1,12 +1,15 @@
 package org.janelia.perf;
 
 import ij.ImagePlus;
+import ij.process.ImageProcessor;
 import org.janelia.alignment.Utils;
+import org.janelia.alignment.loader.ImageDecoderRegistry;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.LinkedHashMap;
@@ -14,7 +17,7 @@ import java.util.List;
 import java.util.Map;
 
 /**
- * Tests the {@link ImagePlus} load times for different image formats and mipmap levels.
+ * Tests the {@link ImagePlus} and {@link ImageDecoderRegistry} load times for different image formats and mipmap levels.
  * Average times for each format and level, sorted by time and file size, are printed to standard out.
  *
  * <p>
@@ -58,7 +61,11 @@ public class ImageLoadPerformanceTest {
     private boolean enableTests;
     private int numberOfTimesToRepeatEachTest;
 
+    private static final String OPENER_LOADER = "opener";
+    private static final String DECODER_LOADER = "decoder";
+
     private String[] formats = { "jpg", "pgm", "png", "tif" };
+    private String[] loaders = { OPENER_LOADER, DECODER_LOADER };
 
     private PerformanceTestData.TestResults<TestData> testResults;
     private List<TestData> testDataList;
@@ -83,7 +90,9 @@ public class ImageLoadPerformanceTest {
         // the first usage of ImagePlus sometimes incurs a significant performance penalty,
         // so open a different file for each format here before starting the tests
         for (String format : formats) {
-            Utils.openImagePlus("src/test/resources/perf-test/image-plus-start/start." + format);
+            final File startFile = new File("src/test/resources/perf-test/image-plus-start/start." + format);
+            Utils.openImagePlus(startFile.getAbsolutePath());
+            ImageDecoderRegistry.DEFAULT_INSTANCE.decode(startFile.toURI().toString());
         }
     }
 
@@ -97,18 +106,25 @@ public class ImageLoadPerformanceTest {
         }
     }
 
-    private void runTest(TestData testData) {
+    private void runTest(TestData testData) throws IOException {
 
         // *** Start Clock ***
         testData.setStartTime();
 
-        final ImagePlus imagePlus = Utils.openImagePlus(testData.file.getAbsolutePath());
+        final ImageProcessor imageProcessor;
+        if (DECODER_LOADER.equals(testData.loader)) {
+            imageProcessor = ImageDecoderRegistry.DEFAULT_INSTANCE.decode(testData.file.toURI().toString());
+        } else {
+            final ImagePlus imagePlus = Utils.openImagePlus(testData.file.getAbsolutePath());
+            imageProcessor = imagePlus == null ? null : imagePlus.getProcessor();
+        }
 
         // *** Stop Clock ***
         testData.calculateElapsedTime();
 
-        // make sure image plus didn't quietly fail
-        Assert.assertNotNull("null imagePlus object returned for " + testData.file, imagePlus);
+        // make sure load didn't quietly fail
+        Assert.assertNotNull("null imageProcessor returned by " + testData.loader + " for " + testData.file,
+                             imageProcessor);
     }
 
     private void createAndOrderTests() {
@@ -123,7 +139,13 @@ public class ImageLoadPerformanceTest {
                 for (String format : formats) {
                     final String fileName = "/col0060_row0140_cam0.tif_level_" + level + "_mipmap." + format;
                     file = new File(baseImagePath + format + fileName);
-                    testDataList.add(new TestData(file, format, level, String.valueOf(testNumber)));
+                    for (String loader : loaders) {
+                        // no decoder is registered for pgm files
+                        if (DECODER_LOADER.equals(loader) && "pgm".equals(format)) {
+                            continue;
+                        }
+                        testDataList.add(new TestData(file, format, loader, level, String.valueOf(testNumber)));
+                    }
                 }
             }
         }
@@ -137,6 +159,7 @@ public class ImageLoadPerformanceTest {
 
                 TestData averageInstance = new TestData(groupInstance.file,
                                                         groupInstance.format,
+                                                        groupInstance.loader,
                                                         groupInstance.level,
                                                         "avg(" + numberOfTests + ")");
                 averageInstance.setElapsedTime(averageElapsedTime);
@@ -145,16 +168,19 @@ public class ImageLoadPerformanceTest {
 
             @Override
             public String getReportHeader(String reportName) {
-                final String headerFormat = "%5s  %6s  %11s  %-7s  %11s";
-                return String.format(headerFormat, "level", "format", "file length", "test   ", "elapsedTime") + "\n" +
-                       String.format(headerFormat, "-----", "------", "-----------", "-------", "-----------");
+                final String headerFormat = "%5s  %6s  %7s  %11s  %-7s  %11s";
+                return String.format(headerFormat,
+                                     "level", "format", "loader ", "file length", "test   ", "elapsedTime") + "\n" +
+                       String.format(headerFormat,
+                                     "-----", "------", "-------", "-----------", "-------", "-----------");
             }
 
             @Override
             public String formatTestResult(TestData result) {
-                return String.format("%5d  %6s  %11d  %-7s  %11d",
+                return String.format("%5d  %6s  %-7s  %11d  %-7s  %11d",
                                      result.level,
                                      result.format,
+                                     result.loader,
                                      result.file.length(),
                                      result.test,
                                      result.getElapsedTime());
@@ -181,7 +207,10 @@ public class ImageLoadPerformanceTest {
                                     if (result == 0) {
                                         result = o1.format.compareTo(o2.format);
                                         if (result == 0) {
-                                            result = o1.test.compareTo(o2.test);
+                                            result = o1.loader.compareTo(o2.loader);
+                                            if (result == 0) {
+                                                result = o1.test.compareTo(o2.test);
+                                            }
                                         }
                                     }
                                 }
@@ -196,11 +225,13 @@ public class ImageLoadPerformanceTest {
 
         private File file;
         private String format;
+        private String loader;
         private int level;
         private String test;
 
         public TestData(File file,
                         String format,
+                        String loader,
                         int level,
                         String test) {
             if (! file.exists()) {
@@ -208,13 +239,14 @@ public class ImageLoadPerformanceTest {
             }
             this.file = file;
             this.format = format;
+            this.loader = loader;
             this.level = level;
             this.test = test;
         }
 
         @Override
         public String getAverageGroup() {
-            return level + "::" + format;
+            return level + "::" + format + "::" + loader;
         }
 
         @Override
@@ -0,0 +1,170 @@
+package org.janelia.perf;
+
+import ij.process.FloatProcessor;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import mpicbg.models.AffineModel2D;
+import mpicbg.trakem2.transform.TransformMeshMappingWithMasks.ImageProcessorWithMasks;
+import mpicbg.trakem2.util.Pair;
+import mpicbg.util.Util;
+
+import org.janelia.alignment.RenderTransformMesh;
+import org.janelia.alignment.RenderTransformMeshMappingWithMasks;
+import org.janelia.alignment.mapper.PixelMapper;
+import org.janelia.alignment.mapper.SingleChannelMapper;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Compares scanline mesh mapping with the original approach of testing every pixel in each
+ * triangle's bounding box and applying the inverse affine to each pixel.
+ * Average times are printed to standard out.
+ *
+ * <p>
+ * Tests use a synthetic 2048x2048 source tile that is rotated and scaled slightly
+ * and meshed with a 64 pixel mesh cell size (the typical render configuration).
+ * </p>
+ *
+ * @author Eric Trautman
+ */
+public class MeshMappingPerformanceTest {
+
+    private static final int TILE_SIZE = 2048;
+    private static final double MESH_CELL_SIZE = 64.0;
+
+    private boolean enableTests;
+    private int numberOfTimesToRepeatEachTest;
+
+    public static void main(final String[] args) {
+        final MeshMappingPerformanceTest test = new MeshMappingPerformanceTest();
+        try {
+            test.setup();
+            test.enableTests = true;
+            test.runTests();
+        } catch (final Throwable t) {
+            t.printStackTrace();
+        }
+    }
+
+    @Before
+    public void setup() throws Exception {
+        enableTests = false; // set this to true to enable tests - normally, there is no need to run them
+        numberOfTimesToRepeatEachTest = 10;
+    }
+
+    @Test
+    public void runTests() throws Exception {
+        if (enableTests) {
+
+            final ImageProcessorWithMasks source = new ImageProcessorWithMasks(buildRandomTile(), null, null);
+
+            final AffineModel2D model = new AffineModel2D();
+            final double angle = Math.toRadians(3.0);
+            final double scale = 0.97;
+            model.set(scale * Math.cos(angle), scale * Math.sin(angle),
+                      -scale * Math.sin(angle), scale * Math.cos(angle),
+                      40.0, 25.0);
+
+            final RenderTransformMesh mesh = new RenderTransformMesh(model,
+                                                                     (int) (TILE_SIZE / MESH_CELL_SIZE + 0.5),
+                                                                     TILE_SIZE,
+                                                                     TILE_SIZE);
+            mesh.updateAffines();
+
+            for (final boolean interpolated : new boolean[] { false, true }) {
+
+                long boundingBoxTime = 0;
+                long scanlineTime = 0;
+
+                // run once before timing to warm up
+                mapWithBoundingBox(mesh, buildMapper(source, interpolated));
+                mapWithScanlines(mesh, buildMapper(source, interpolated));
+
+                for (int i = 0; i < numberOfTimesToRepeatEachTest; i++) {
+                    boundingBoxTime += mapWithBoundingBox(mesh, buildMapper(source, interpolated));
+                    scanlineTime += mapWithScanlines(mesh, buildMapper(source, interpolated));
+                }
+
+                System.out.println(String.format("%-12s  bounding box avg: %5d ms, scanline avg: %5d ms",
+                                                 interpolated ? "interpolated" : "nearest",
+                                                 boundingBoxTime / numberOfTimesToRepeatEachTest,
+                                                 scanlineTime / numberOfTimesToRepeatEachTest));
+            }
+        }
+    }
+
+    private static FloatProcessor buildRandomTile() {
+        final Random random = new Random(TILE_SIZE);
+        final float[] pixels = new float[TILE_SIZE * TILE_SIZE];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = random.nextFloat() * 255;
+        }
+        return new FloatProcessor(TILE_SIZE, TILE_SIZE, pixels);
+    }
+
+    private static PixelMapper buildMapper(final ImageProcessorWithMasks source,
+                                           final boolean interpolated) {
+        final ImageProcessorWithMasks target =
+                new ImageProcessorWithMasks(new FloatProcessor(TILE_SIZE + 100, TILE_SIZE + 100), null, null);
+        return new SingleChannelMapper(source, target, interpolated);
+    }
+
+    private static long mapWithScanlines(final RenderTransformMesh mesh,
+                                         final PixelMapper pixelMapper) {
+        final long start = System.currentTimeMillis();
+        new RenderTransformMeshMappingWithMasks(mesh).map(pixelMapper, 1);
+        return System.currentTimeMillis() - start;
+    }
+
+    /**
+     * Original mapping approach: visits every pixel in each triangle's target bounding box,
+     * tests whether it lies within the triangle, and applies the inverse affine to each contained pixel.
+     */
+    private static long mapWithBoundingBox(final RenderTransformMesh mesh,
+                                           final PixelMapper pixelMapper) {
+
+        final long start = System.currentTimeMillis();
+
+        final int w = pixelMapper.getTargetWidth() - 1;
+        final int h = pixelMapper.getTargetHeight() - 1;
+        final double[] min = new double[2];
+        final double[] max = new double[2];
+        final double[] source = new double[2];
+
+        final ArrayList<Pair<AffineModel2D, double[][]>> av = mesh.getAV();
+        for (final Pair<AffineModel2D, double[][]> ai : av) {
+
+            final double[][] pq = ai.b;
+            RenderTransformMesh.calculateTargetBoundingBox(pq, min, max);
+
+            final int minX = Math.max(0, Util.roundPos(min[0]));
+            final int minY = Math.max(0, Util.roundPos(min[1]));
+            final int maxX = Math.min(w, Util.roundPos(max[0]));
+            final int maxY = Math.min(h, Util.roundPos(max[1]));
+
+            for (int targetY = minY; targetY <= maxY; ++targetY) {
+                for (int targetX = minX; targetX <= maxX; ++targetX) {
+                    if (RenderTransformMesh.isInTargetTriangle(pq, targetX, targetY)) {
+                        source[0] = targetX;
+                        source[1] = targetY;
+                        try {
+                            ai.a.applyInverseInPlace(source);
+                        } catch (final Exception e) {
+                            continue;
+                        }
+                        if (pixelMapper.isMappingInterpolated()) {
+                            pixelMapper.mapInterpolated(source[0], source[1], targetX, targetY);
+                        } else {
+                            pixelMapper.map(source[0], source[1], targetX, targetY);
+                        }
+                    }
+                }
+            }
+        }
+
+        return System.currentTimeMillis() - start;
+    }
+
+}
@@ -0,0 +1,55 @@
+package org.janelia.render.benchmark;
+
+import ij.process.ImageProcessor;
+
+import java.util.concurrent.TimeUnit;
+
+import mpicbg.trakem2.util.Downsampler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link Downsampler} mipmap level derivation (as done for uncached mipmap levels).
+ *
+ * @author Eric Trautman
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DownsamplerBenchmark {
+
+    @Param({ "2048" })
+    public int tileSize;
+
+    @Param({ "8", "16", "32" })
+    public int bitDepth;
+
+    @Param({ "1", "2", "3" })
+    public int levels;
+
+    private ImageProcessor tile;
+
+    @Setup
+    public void setup() {
+        tile = SyntheticTiles.buildTile(bitDepth, tileSize, tileSize);
+    }
+
+    @Benchmark
+    public ImageProcessor downsample() {
+        return Downsampler.downsampleImageProcessor(tile, levels);
+    }
+
+}
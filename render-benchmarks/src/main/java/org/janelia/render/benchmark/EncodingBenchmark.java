@@ -0,0 +1,98 @@
+package org.janelia.render.benchmark;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+import mpicbg.trakem2.transform.TransformMeshMappingWithMasks.ImageProcessorWithMasks;
+
+import org.janelia.alignment.ArgbRenderer;
+import org.janelia.alignment.Utils;
+import org.janelia.render.service.util.BufferedImageStreamingOutput;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ar.com.hjg.pngj.FilterType;
+
+/**
+ * Measures encoding of rendered ARGB images with the encoders used by the render web services
+ * ({@link BufferedImageStreamingOutput}) and the render application ({@link Utils}).
+ *
+ * Encoded bytes are written to a reused in-memory buffer, so results only reflect encoding time.
+ *
+ * @author Eric Trautman
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EncodingBenchmark {
+
+    @Param({ "2048" })
+    public int targetSize;
+
+    private BufferedImage argbImage;
+    private ByteArrayOutputStream outputStream;
+
+    @Setup
+    public void setup() {
+        final ImageProcessorWithMasks renderedResult = SyntheticTiles.buildRenderedResult(targetSize, targetSize);
+        argbImage = ArgbRenderer.targetToARGBImage(renderedResult, false);
+        outputStream = new ByteArrayOutputStream(targetSize * targetSize * 4);
+    }
+
+    @Benchmark
+    public int pngStreaming() throws IOException {
+        outputStream.reset();
+        BufferedImageStreamingOutput.writePngImage(argbImage, 6, FilterType.FILTER_PAETH, outputStream);
+        return outputStream.size();
+    }
+
+    @Benchmark
+    public int pngImageIO() throws IOException {
+        return writeImage(Utils.PNG_FORMAT, false);
+    }
+
+    @Benchmark
+    public int jpeg() throws IOException {
+        return writeImage(Utils.JPEG_FORMAT, false);
+    }
+
+    @Benchmark
+    public int jpegGray() throws IOException {
+        return writeImage(Utils.JPEG_FORMAT, true);
+    }
+
+    @Benchmark
+    public int tiff() throws IOException {
+        outputStream.reset();
+        Utils.writeTiffImage(argbImage, outputStream);
+        return outputStream.size();
+    }
+
+    private int writeImage(final String format,
+                           final boolean convertToGray)
+            throws IOException {
+        outputStream.reset();
+        final ImageOutputStream imageOutputStream = new MemoryCacheImageOutputStream(outputStream);
+        Utils.writeImage(argbImage, format, convertToGray, 0.85f, imageOutputStream);
+        imageOutputStream.close();
+        return outputStream.size();
+    }
+
+}
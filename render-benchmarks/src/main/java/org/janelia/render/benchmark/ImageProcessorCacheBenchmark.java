@@ -0,0 +1,113 @@
+package org.janelia.render.benchmark;
+
+import ij.process.ImageProcessor;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import org.janelia.alignment.util.ImageProcessorCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link ImageProcessorCache} hit and miss paths.
+ *
+ * Hits are measured for the copying {@link ImageProcessorCache#get} and shared
+ * {@link ImageProcessorCache#getReadOnlyView} methods with and without compressed entries.
+ * Misses use a disabled cache, so they include reading and decoding a synthetic tile that is written
+ * to a temporary file during setup (file system caching keeps this from being an I/O benchmark).
+ *
+ * @author Eric Trautman
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ImageProcessorCacheBenchmark {
+
+    @Param({ "2048" })
+    public int tileSize;
+
+    @Param({ "png", "tif" })
+    public String format;
+
+    @Param({ "false", "true" })
+    public boolean compressCachedImages;
+
+    private File tileFile;
+    private String tileUrl;
+    private ImageProcessorCache cache;
+    private ImageProcessorCache missCache;
+
+    @Setup
+    public void setup() throws IOException {
+
+        tileFile = File.createTempFile("image-processor-cache-benchmark-", "." + format);
+        final boolean written = ImageIO.write(SyntheticTiles.buildByteTile(tileSize, tileSize).getBufferedImage(),
+                                              format,
+                                              tileFile);
+        if (! written) {
+            throw new IOException("no ImageIO writer available for " + format);
+        }
+        tileUrl = tileFile.toURI().toString();
+
+        cache = new ImageProcessorCache(ImageProcessorCache.DEFAULT_MAX_CACHED_PIXELS,
+                                        true,
+                                        false,
+                                        false,
+                                        null,
+                                        compressCachedImages);
+        cache.get(tileUrl, 0, false, false);
+        cache.get(tileUrl, 2, false, false);
+
+        missCache = new ImageProcessorCache(0, false, false);
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (! tileFile.delete()) {
+            System.err.println("failed to delete " + tileFile);
+        }
+    }
+
+    @Benchmark
+    public ImageProcessor hitCopy() {
+        return cache.get(tileUrl, 0, false, false);
+    }
+
+    @Benchmark
+    public ImageProcessor hitReadOnlyView() {
+        return cache.getReadOnlyView(tileUrl, 0, false, false);
+    }
+
+    @Benchmark
+    public ImageProcessor hitDownSampledReadOnlyView() {
+        return cache.getReadOnlyView(tileUrl, 2, false, false);
+    }
+
+    @Benchmark
+    public ImageProcessor miss() {
+        return missCache.get(tileUrl, 0, false, false);
+    }
+
+    @Benchmark
+    public ImageProcessor missDownSampled() {
+        return missCache.get(tileUrl, 2, false, false);
+    }
+
+}
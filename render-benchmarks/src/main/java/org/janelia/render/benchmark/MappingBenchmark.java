@@ -0,0 +1,140 @@
+package org.janelia.render.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import mpicbg.trakem2.transform.TransformMeshMappingWithMasks.ImageProcessorWithMasks;
+
+import org.janelia.alignment.ChannelMap;
+import org.janelia.alignment.RenderTransformMesh;
+import org.janelia.alignment.RenderTransformMeshMappingWithMasks;
+import org.janelia.alignment.mapper.FloatMultiChannelMapper;
+import org.janelia.alignment.mapper.FloatMultiChannelWithAlphaMapper;
+import org.janelia.alignment.mapper.FloatMultiChannelWithBinaryMaskMapper;
+import org.janelia.alignment.mapper.FloatSingleChannelMapper;
+import org.janelia.alignment.mapper.FloatSingleChannelWithAlphaMapper;
+import org.janelia.alignment.mapper.FloatSingleChannelWithBinaryMaskMapper;
+import org.janelia.alignment.mapper.MultiChannelMapper;
+import org.janelia.alignment.mapper.MultiChannelWithAlphaMapper;
+import org.janelia.alignment.mapper.MultiChannelWithBinaryMaskMapper;
+import org.janelia.alignment.mapper.PixelMapper;
+import org.janelia.alignment.mapper.SingleChannelMapper;
+import org.janelia.alignment.mapper.SingleChannelWithAlphaMapper;
+import org.janelia.alignment.mapper.SingleChannelWithBinaryMaskMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link RenderTransformMeshMappingWithMasks#map} for each {@link PixelMapper} type.
+ *
+ * Multi-channel mappers map two channels.  Each mapper is created once per trial and then repeatedly
+ * maps the same 8-bit masked source into the same float target (blended target values change between
+ * invocations, but the work done does not).
+ *
+ * @author Eric Trautman
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MappingBenchmark {
+
+    public enum MapperType {
+        SINGLE_CHANNEL,
+        SINGLE_CHANNEL_WITH_ALPHA,
+        SINGLE_CHANNEL_WITH_BINARY_MASK,
+        FLOAT_SINGLE_CHANNEL,
+        FLOAT_SINGLE_CHANNEL_WITH_ALPHA,
+        FLOAT_SINGLE_CHANNEL_WITH_BINARY_MASK,
+        MULTI_CHANNEL,
+        MULTI_CHANNEL_WITH_ALPHA,
+        MULTI_CHANNEL_WITH_BINARY_MASK,
+        FLOAT_MULTI_CHANNEL,
+        FLOAT_MULTI_CHANNEL_WITH_ALPHA,
+        FLOAT_MULTI_CHANNEL_WITH_BINARY_MASK
+    }
+
+    private static final int TARGET_MARGIN = 100;
+
+    @Param({ "1024" })
+    public int tileSize;
+
+    @Param
+    public MapperType mapperType;
+
+    @Param({ "false", "true" })
+    public boolean interpolated;
+
+    private RenderTransformMeshMappingWithMasks mapping;
+    private PixelMapper pixelMapper;
+
+    @Setup
+    public void setup() {
+
+        final RenderTransformMesh mesh = new RenderTransformMesh(SyntheticTiles.buildAffine(),
+                                                                 (int) (tileSize / 64.0 + 0.5),
+                                                                 tileSize,
+                                                                 tileSize);
+        mesh.updateAffines();
+        mapping = new RenderTransformMeshMappingWithMasks(mesh);
+
+        final int targetSize = tileSize + TARGET_MARGIN;
+        final ImageProcessorWithMasks source = SyntheticTiles.buildMaskedSource(tileSize, tileSize);
+        final ImageProcessorWithMasks target = SyntheticTiles.buildFloatTarget(targetSize, targetSize);
+
+        final ChannelMap sourceChannels = new ChannelMap();
+        final ChannelMap targetChannels = new ChannelMap();
+        for (final String channelName : new String[] { "a", "b" }) {
+            sourceChannels.put(channelName, SyntheticTiles.buildMaskedSource(tileSize, tileSize));
+            targetChannels.put(channelName, SyntheticTiles.buildFloatTarget(targetSize, targetSize));
+        }
+
+        switch (mapperType) {
+            case SINGLE_CHANNEL:
+                pixelMapper = new SingleChannelMapper(source, target, interpolated); break;
+            case SINGLE_CHANNEL_WITH_ALPHA:
+                pixelMapper = new SingleChannelWithAlphaMapper(source, target, interpolated); break;
+            case SINGLE_CHANNEL_WITH_BINARY_MASK:
+                pixelMapper = new SingleChannelWithBinaryMaskMapper(source, target, interpolated); break;
+            case FLOAT_SINGLE_CHANNEL:
+                pixelMapper = new FloatSingleChannelMapper(source, target, interpolated); break;
+            case FLOAT_SINGLE_CHANNEL_WITH_ALPHA:
+                pixelMapper = new FloatSingleChannelWithAlphaMapper(source, target, interpolated); break;
+            case FLOAT_SINGLE_CHANNEL_WITH_BINARY_MASK:
+                pixelMapper = new FloatSingleChannelWithBinaryMaskMapper(source, target, interpolated); break;
+            case MULTI_CHANNEL:
+                pixelMapper = new MultiChannelMapper(sourceChannels, targetChannels, interpolated); break;
+            case MULTI_CHANNEL_WITH_ALPHA:
+                pixelMapper = new MultiChannelWithAlphaMapper(sourceChannels, targetChannels, interpolated); break;
+            case MULTI_CHANNEL_WITH_BINARY_MASK:
+                pixelMapper = new MultiChannelWithBinaryMaskMapper(sourceChannels, targetChannels, interpolated);
+                break;
+            case FLOAT_MULTI_CHANNEL:
+                pixelMapper = new FloatMultiChannelMapper(sourceChannels, targetChannels, interpolated); break;
+            case FLOAT_MULTI_CHANNEL_WITH_ALPHA:
+                pixelMapper = new FloatMultiChannelWithAlphaMapper(sourceChannels, targetChannels, interpolated);
+                break;
+            case FLOAT_MULTI_CHANNEL_WITH_BINARY_MASK:
+                pixelMapper = new FloatMultiChannelWithBinaryMaskMapper(sourceChannels,
+                                                                        targetChannels,
+                                                                        interpolated);
+                break;
+        }
+    }
+
+    @Benchmark
+    public int map() {
+        return mapping.map(pixelMapper);
+    }
+
+}
@@ -0,0 +1,66 @@
+package org.janelia.render.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import mpicbg.models.AffineModel2D;
+
+import org.janelia.alignment.RenderTransformMesh;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link RenderTransformMesh} construction and {@link RenderTransformMesh#updateAffines}.
+ *
+ * @author Eric Trautman
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MeshBenchmark {
+
+    @Param({ "2048" })
+    public int tileSize;
+
+    /** Mesh cell size in pixels (64 is the default for render parameters). */
+    @Param({ "16", "64" })
+    public int meshCellSize;
+
+    private AffineModel2D model;
+    private int numberOfTrianglesX;
+    private RenderTransformMesh mesh;
+
+    @Setup
+    public void setup() {
+        model = SyntheticTiles.buildAffine();
+        numberOfTrianglesX = (int) ((double) tileSize / meshCellSize + 0.5);
+        mesh = buildMesh();
+    }
+
+    @Benchmark
+    public RenderTransformMesh construct() {
+        return buildMesh();
+    }
+
+    @Benchmark
+    public RenderTransformMesh updateAffines() {
+        mesh.updateAffines();
+        return mesh;
+    }
+
+    private RenderTransformMesh buildMesh() {
+        return new RenderTransformMesh(model, numberOfTrianglesX, tileSize, tileSize);
+    }
+
+}
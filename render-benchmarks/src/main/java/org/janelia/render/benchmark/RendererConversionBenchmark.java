@@ -0,0 +1,84 @@
+package org.janelia.render.benchmark;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import mpicbg.trakem2.transform.TransformMeshMappingWithMasks.ImageProcessorWithMasks;
+
+import org.janelia.alignment.ArgbRenderer;
+import org.janelia.alignment.ShortRenderer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures conversion of rendered float results into ARGB and 16-bit target images.
+ *
+ * The "convertAndDraw" benchmarks use the original two step approach (convert to an intermediate image and
+ * then draw it onto the target) while the "write" benchmarks write directly into the target's pixel array.
+ *
+ * @author Eric Trautman
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RendererConversionBenchmark {
+
+    @Param({ "2048" })
+    public int targetSize;
+
+    @Param({ "false", "true" })
+    public boolean binaryMask;
+
+    private ImageProcessorWithMasks renderedResult;
+    private BufferedImage argbTarget;
+    private BufferedImage shortTarget;
+
+    @Setup
+    public void setup() {
+        renderedResult = SyntheticTiles.buildRenderedResult(targetSize, targetSize);
+        argbTarget = new BufferedImage(targetSize, targetSize, BufferedImage.TYPE_INT_ARGB);
+        shortTarget = new BufferedImage(targetSize, targetSize, BufferedImage.TYPE_USHORT_GRAY);
+    }
+
+    @Benchmark
+    public BufferedImage argbConvertAndDraw() {
+        final BufferedImage image = ArgbRenderer.targetToARGBImage(renderedResult, binaryMask);
+        final Graphics2D targetGraphics = argbTarget.createGraphics();
+        targetGraphics.drawImage(image, 0, 0, null);
+        targetGraphics.dispose();
+        return argbTarget;
+    }
+
+    @Benchmark
+    public boolean argbWrite() {
+        return ArgbRenderer.writeToARGBImage(renderedResult, binaryMask, null, false, argbTarget);
+    }
+
+    @Benchmark
+    public BufferedImage shortConvertAndDraw() {
+        final BufferedImage image = ShortRenderer.targetToShortImage(renderedResult);
+        final Graphics2D targetGraphics = shortTarget.createGraphics();
+        targetGraphics.drawImage(image, 0, 0, null);
+        targetGraphics.dispose();
+        return shortTarget;
+    }
+
+    @Benchmark
+    public boolean shortWrite() {
+        return ShortRenderer.writeToShortImage(renderedResult, shortTarget);
+    }
+
+}
@@ -0,0 +1,133 @@
+package org.janelia.render.benchmark;
+
+import ij.process.ByteProcessor;
+import ij.process.FloatProcessor;
+import ij.process.ImageProcessor;
+import ij.process.ShortProcessor;
+
+import java.util.Random;
+
+import mpicbg.models.AffineModel2D;
+import mpicbg.trakem2.transform.TransformMeshMappingWithMasks.ImageProcessorWithMasks;
+
+/**
+ * Builds the synthetic tiles, masks, and transforms used by all benchmarks.
+ *
+ * Tiles combine smooth gradients with a little noise so that they compress (and encode) roughly like
+ * real EM tiles instead of like pure noise or constant data.  All random data is seeded, so every run
+ * works on identical pixels.
+ *
+ * @author Eric Trautman
+ */
+public class SyntheticTiles {
+
+    /** Width of the soft edge ramp in generated alpha masks. */
+    private static final int MASK_RAMP_WIDTH = 32;
+
+    /**
+     * @return an 8-bit tile with the specified dimensions.
+     */
+    public static ByteProcessor buildByteTile(final int width,
+                                              final int height) {
+        final ByteProcessor tile = new ByteProcessor(width, height);
+        final byte[] pixels = (byte[]) tile.getPixels();
+        final Random random = new Random(width * 31 + height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                final int value = 40 + ((x + y) * 160 / (width + height)) + random.nextInt(16);
+                pixels[(y * width) + x] = (byte) value;
+            }
+        }
+        return tile;
+    }
+
+    /**
+     * @return a 16-bit tile with the specified dimensions.
+     */
+    public static ShortProcessor buildShortTile(final int width,
+                                                final int height) {
+        final ShortProcessor tile = buildByteTile(width, height).convertToShortProcessor(false);
+        tile.multiply(64.0);
+        tile.resetMinAndMax();
+        return tile;
+    }
+
+    /**
+     * @return a 32-bit tile with the specified dimensions.
+     */
+    public static FloatProcessor buildFloatTile(final int width,
+                                                final int height) {
+        return buildByteTile(width, height).convertToFloatProcessor();
+    }
+
+    /**
+     * @return a tile of the specified bit depth (8, 16, or 32).
+     */
+    public static ImageProcessor buildTile(final int bitDepth,
+                                           final int width,
+                                           final int height) {
+        final ImageProcessor tile;
+        switch (bitDepth) {
+            case 8:  tile = buildByteTile(width, height); break;
+            case 16: tile = buildShortTile(width, height); break;
+            case 32: tile = buildFloatTile(width, height); break;
+            default: throw new IllegalArgumentException("unsupported bit depth " + bitDepth);
+        }
+        return tile;
+    }
+
+    /**
+     * @return an 8-bit alpha mask that is opaque except for a soft ramp along its edges.
+     */
+    public static ByteProcessor buildMask(final int width,
+                                          final int height) {
+        final ByteProcessor mask = new ByteProcessor(width, height);
+        final byte[] pixels = (byte[]) mask.getPixels();
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                final int edgeDistance = Math.min(Math.min(x, y), Math.min(width - 1 - x, height - 1 - y));
+                final int value = Math.min(255, edgeDistance * 255 / MASK_RAMP_WIDTH);
+                pixels[(y * width) + x] = (byte) value;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * @return an 8-bit source tile with an alpha mask.
+     */
+    public static ImageProcessorWithMasks buildMaskedSource(final int width,
+                                                            final int height) {
+        return new ImageProcessorWithMasks(buildByteTile(width, height), buildMask(width, height), null);
+    }
+
+    /**
+     * @return an empty float render target with a mask (like the targets used by the renderers).
+     */
+    public static ImageProcessorWithMasks buildFloatTarget(final int width,
+                                                           final int height) {
+        return new ImageProcessorWithMasks(new FloatProcessor(width, height), new ByteProcessor(width, height), null);
+    }
+
+    /**
+     * @return a rendered float result with a mask (like the results converted by the renderers).
+     */
+    public static ImageProcessorWithMasks buildRenderedResult(final int width,
+                                                              final int height) {
+        return new ImageProcessorWithMasks(buildFloatTile(width, height), buildMask(width, height), null);
+    }
+
+    /**
+     * @return a slightly rotated, scaled, and translated affine (typical of aligned tiles).
+     */
+    public static AffineModel2D buildAffine() {
+        final AffineModel2D model = new AffineModel2D();
+        final double angle = Math.toRadians(3.0);
+        final double scale = 0.97;
+        model.set(scale * Math.cos(angle), scale * Math.sin(angle),
+                  -scale * Math.sin(angle), scale * Math.cos(angle),
+                  40.0, 25.0);
+        return model;
+    }
+
+}
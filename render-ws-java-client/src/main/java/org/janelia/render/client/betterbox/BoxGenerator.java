@@ -19,6 +19,7 @@ import mpicbg.trakem2.transform.AffineModel2D;
 import org.janelia.alignment.ArgbRenderer;
 import org.janelia.alignment.ImageAndMask;
 import org.janelia.alignment.RenderParameters;
+import org.janelia.alignment.TriangleMappingPool;
 import org.janelia.alignment.Utils;
 import org.janelia.alignment.betterbox.BoxData;
 import org.janelia.alignment.betterbox.RenderedBox;
@@ -504,9 +505,9 @@ public class BoxGenerator
                     cacheStats = String.valueOf(imageProcessorCache.getStats());
                 }
 
-                LOG.info("renderBoxesForLevel: {} of {} layer {} level {} boxes rendered ({}%){}, {}",
+                LOG.info("renderBoxesForLevel: {} of {} layer {} level {} boxes rendered ({}%){}, {}, mapping pool stats: {}",
                          renderedLevelBoxCount, numberOfLevelBoxes, z, level,
-                         percentComplete, etaString, cacheStats);
+                         percentComplete, etaString, cacheStats, TriangleMappingPool.getSharedInstance().getStats());
             }
         }
 
@@ -42,7 +42,7 @@ public class MipmapParameters implements Serializable {
 
     @Parameter(
             names = "--format",
-            description = "Format for mipmaps (tiff, jpg, png)",
+            description = "Format for mipmaps (tiff, jpg, png, raw)",
             required = false)
     public String format = Utils.TIFF_FORMAT;
 
@@ -15,9 +15,12 @@ import javax.ws.rs.core.Response;
 
 import org.janelia.alignment.filter.FilterFactory;
 import org.janelia.alignment.util.ImageProcessorCache;
+import org.janelia.alignment.util.RenderTransformMeshCache;
+import org.janelia.render.service.util.RenderServerMetrics;
 import org.janelia.render.service.util.RenderServerProperties;
 import org.janelia.render.service.util.RenderServiceUtil;
 import org.janelia.render.service.util.SharedImageProcessorCache;
+import org.janelia.render.service.util.SharedRenderTransformMeshCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -100,6 +103,19 @@ public class DeploymentConfigurationService {
         return versionInfo;
     }
 
+    @Path("v1/serverMetrics")
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    @ApiOperation(
+            tags = "Service Configuration APIs",
+            value = "Cache, render latency, and database command metrics for this render server instance",
+            notes = "Metrics are cumulative since server start.  The same metrics are also available through JMX as " +
+                    RenderServerMetrics.OBJECT_NAME + ".",
+            produces = MediaType.APPLICATION_JSON)
+    public Map<String, Object> getServerMetrics() {
+        return RenderServerMetrics.getInstance().getMetrics();
+    }
+
     @Path("v1/imageProcessorCache/allEntries")
     @DELETE
     @Produces(MediaType.APPLICATION_JSON)
@@ -111,7 +127,8 @@ public class DeploymentConfigurationService {
         Response response = null;
         try {
             final ImageProcessorCache sharedCache = SharedImageProcessorCache.getInstance();
-            LOG.info("invalidateImageProcessorCache: entry, current shared cache stats are: {}", sharedCache.getStats());
+            LOG.info("invalidateImageProcessorCache: entry, current shared cache stats are: {}, second tier stats are: {}",
+                     sharedCache.getStats(), sharedCache.getSecondTierStats());
             sharedCache.invalidateAll();
 
             response = Response.ok().build();
@@ -122,6 +139,30 @@ public class DeploymentConfigurationService {
         return response;
     }
 
+    @Path("v1/renderMeshCache/allEntries")
+    @DELETE
+    @Produces(MediaType.APPLICATION_JSON)
+    @ApiOperation(
+            tags = "Service Configuration APIs",
+            value = "Discards all cached render meshes",
+            produces = MediaType.APPLICATION_JSON)
+    public Response invalidateRenderMeshCache() {
+        Response response = null;
+        try {
+            final RenderTransformMeshCache sharedCache = SharedRenderTransformMeshCache.getInstance();
+            if (sharedCache != null) {
+                LOG.info("invalidateRenderMeshCache: entry, current shared cache stats are: {}", sharedCache.getStats());
+                sharedCache.invalidateAll();
+            }
+
+            response = Response.ok().build();
+        } catch (final Throwable t) {
+            RenderServiceUtil.throwServiceException(t);
+        }
+
+        return response;
+    }
+
     private FilterFactory getFilterFactory() {
         if (this.filterFactory == null) {
             // lazy-load factory configuration from JSON file
@@ -60,7 +60,8 @@ public class RenderImageService {
     @Produces(RenderServiceUtil.IMAGE_JPEG_MIME_TYPE)
     @ApiOperation(
             tags = "Spec Image APIs",
-            value = "Render JPEG image from a provided spec")
+            value = "Render JPEG image from a provided spec",
+            notes = RenderServiceUtil.RENDERED_IMAGE_TIMING_NOTES)
     public Response renderJpegImageFromProvidedParameters(@PathParam("owner") final String owner,
                                                           final RenderParameters renderParameters) {
         return RenderServiceUtil.renderImageStream(renderParameters,
@@ -77,7 +78,8 @@ public class RenderImageService {
     @Produces(RenderServiceUtil.IMAGE_PNG_MIME_TYPE)
     @ApiOperation(
             tags = "Spec Image APIs",
-            value = "Render PNG image from a provided spec")
+            value = "Render PNG image from a provided spec",
+            notes = RenderServiceUtil.RENDERED_IMAGE_TIMING_NOTES)
     public Response renderPngImageFromProvidedParameters(@PathParam("owner") final String owner,
                                                          final RenderParameters renderParameters) {
         return RenderServiceUtil.renderImageStream(renderParameters,
@@ -94,7 +96,8 @@ public class RenderImageService {
     @Produces(RenderServiceUtil.IMAGE_TIFF_MIME_TYPE)
     @ApiOperation(
             tags = "Spec Image APIs",
-            value = "Render TIFF image from a provided spec")
+            value = "Render TIFF image from a provided spec",
+            notes = RenderServiceUtil.RENDERED_IMAGE_TIMING_NOTES)
     public Response renderTiffImageFromProvidedParameters(@PathParam("owner") final String owner,
                                                           final RenderParameters renderParameters) {
         return RenderServiceUtil.renderImageStream(renderParameters,
@@ -109,7 +112,8 @@ public class RenderImageService {
     @Produces(RenderServiceUtil.IMAGE_JPEG_MIME_TYPE)
     @ApiOperation(
             tags = "Section Image APIs",
-            value = "Render JPEG image for a section")
+            value = "Render JPEG image for a section",
+            notes = RenderServiceUtil.BANDED_IMAGE_TIMING_NOTES)
     public Response renderJpegImageForZ(@PathParam("owner") final String owner,
                                         @PathParam("project") final String project,
                                         @PathParam("stack") final String stack,
@@ -127,7 +131,11 @@ public class RenderImageService {
         if (responseHelper.isModified()) {
             final RenderParameters renderParameters =
                     renderDataService.getRenderParametersForZ(owner, project, stack, z, renderQueryParameters);
-            return RenderServiceUtil.renderJpegImage(renderParameters, maxTileSpecsToRender, responseHelper);
+            return RenderServiceUtil.renderBandedImageStream(renderParameters,
+                                                             Utils.JPEG_FORMAT,
+                                                             RenderServiceUtil.IMAGE_JPEG_MIME_TYPE,
+                                                             maxTileSpecsToRender,
+                                                             responseHelper);
         } else {
             return responseHelper.getNotModifiedResponse();
         }
@@ -138,7 +146,8 @@ public class RenderImageService {
     @Produces(RenderServiceUtil.IMAGE_PNG_MIME_TYPE)
     @ApiOperation(
             tags = "Section Image APIs",
-            value = "Render PNG image for a section")
+            value = "Render PNG image for a section",
+            notes = RenderServiceUtil.BANDED_IMAGE_TIMING_NOTES)
     public Response renderPngImageForZ(@PathParam("owner") final String owner,
                                        @PathParam("project") final String project,
                                        @PathParam("stack") final String stack,
@@ -156,7 +165,11 @@ public class RenderImageService {
         if (responseHelper.isModified()) {
             final RenderParameters renderParameters =
                     renderDataService.getRenderParametersForZ(owner, project, stack, z, renderQueryParameters);
-            return RenderServiceUtil.renderPngImage(renderParameters, maxTileSpecsToRender, responseHelper);
+            return RenderServiceUtil.renderBandedImageStream(renderParameters,
+                                                             Utils.PNG_FORMAT,
+                                                             RenderServiceUtil.IMAGE_PNG_MIME_TYPE,
+                                                             maxTileSpecsToRender,
+                                                             responseHelper);
         } else {
             return responseHelper.getNotModifiedResponse();
         }
@@ -167,7 +180,8 @@ public class RenderImageService {
     @Produces(RenderServiceUtil.IMAGE_TIFF_MIME_TYPE)
     @ApiOperation(
             tags = "Section Image APIs",
-            value = "Render TIFF image for a section")
+            value = "Render TIFF image for a section",
+            notes = RenderServiceUtil.BANDED_IMAGE_TIMING_NOTES)
     public Response renderTiffImageForZ(@PathParam("owner") final String owner,
                                         @PathParam("project") final String project,
                                         @PathParam("stack") final String stack,
@@ -185,7 +199,11 @@ public class RenderImageService {
         if (responseHelper.isModified()) {
             final RenderParameters renderParameters =
                     renderDataService.getRenderParametersForZ(owner, project, stack, z, renderQueryParameters);
-            return RenderServiceUtil.renderTiffImage(renderParameters, maxTileSpecsToRender, responseHelper);
+            return RenderServiceUtil.renderBandedImageStream(renderParameters,
+                                                             Utils.TIFF_FORMAT,
+                                                             RenderServiceUtil.IMAGE_TIFF_MIME_TYPE,
+                                                             maxTileSpecsToRender,
+                                                             responseHelper);
         } else {
             return responseHelper.getNotModifiedResponse();
         }
@@ -196,7 +214,8 @@ public class RenderImageService {
     @Produces(RenderServiceUtil.IMAGE_JPEG_MIME_TYPE)
     @ApiOperation(
             tags = "Bounding Box Image APIs",
-            value = "Render JPEG image for the specified bounding box")
+            value = "Render JPEG image for the specified bounding box",
+            notes = RenderServiceUtil.RENDERED_IMAGE_TIMING_NOTES)
     public Response renderJpegImageForBox(@PathParam("owner") final String owner,
                                           @PathParam("project") final String project,
                                           @PathParam("stack") final String stack,
@@ -229,7 +248,8 @@ public class RenderImageService {
     @Produces(RenderServiceUtil.IMAGE_JPEG_MIME_TYPE)
     @ApiOperation(
             tags = {"Bounding Box Image APIs", "DVID Style APIs"},
-            value = "DVID style API to render JPEG image for the specified bounding box")
+            value = "DVID style API to render JPEG image for the specified bounding box",
+            notes = RenderServiceUtil.RENDERED_IMAGE_TIMING_NOTES)
     public Response renderJpegImageForDvidBox(@PathParam("owner") final String owner,
                                               @PathParam("project") final String project,
                                               @PathParam("stack") final String stack,
@@ -250,7 +270,8 @@ public class RenderImageService {
     @Produces(RenderServiceUtil.IMAGE_PNG_MIME_TYPE)
     @ApiOperation(
             tags = "Bounding Box Image APIs",
-            value = "Render PNG image for the specified bounding box")
+            value = "Render PNG image for the specified bounding box",
+            notes = RenderServiceUtil.RENDERED_IMAGE_TIMING_NOTES)
     public Response renderPngImageForBox(@PathParam("owner") final String owner,
                                          @PathParam("project") final String project,
                                          @PathParam("stack") final String stack,
@@ -283,7 +304,8 @@ public class RenderImageService {
     @Produces(RenderServiceUtil.IMAGE_PNG_MIME_TYPE)
     @ApiOperation(
             tags = {"Bounding Box Image APIs", "DVID Style APIs"},
-            value = "DVID style API to render PNG image for the specified bounding box")
+            value = "DVID style API to render PNG image for the specified bounding box",
+            notes = RenderServiceUtil.RENDERED_IMAGE_TIMING_NOTES)
     public Response renderPngImageForDvidBox(@PathParam("owner") final String owner,
                                              @PathParam("project") final String project,
                                              @PathParam("stack") final String stack,
@@ -304,7 +326,8 @@ public class RenderImageService {
     @Produces(RenderServiceUtil.IMAGE_TIFF_MIME_TYPE)
     @ApiOperation(
             tags = "Bounding Box Image APIs",
-            value = "Render TIFF image for the specified bounding box")
+            value = "Render TIFF image for the specified bounding box",
+            notes = RenderServiceUtil.RENDERED_IMAGE_TIMING_NOTES)
     public Response renderTiffImageForBox(@PathParam("owner") final String owner,
                                           @PathParam("project") final String project,
                                           @PathParam("stack") final String stack,
@@ -337,7 +360,8 @@ public class RenderImageService {
     @Produces(RenderServiceUtil.IMAGE_TIFF_MIME_TYPE)
     @ApiOperation(
             tags = "Bounding Box Image APIs",
-            value = "Render TIFF image for the specified bounding box")
+            value = "Render TIFF image for the specified bounding box",
+            notes = RenderServiceUtil.RENDERED_IMAGE_TIMING_NOTES)
     public Response renderTiff16ImageForBox(@PathParam("owner") final String owner,
                                             @PathParam("project") final String project,
                                             @PathParam("stack") final String stack,
@@ -369,7 +393,8 @@ public class RenderImageService {
     @Produces(RenderServiceUtil.IMAGE_TIFF_MIME_TYPE)
     @ApiOperation(
             tags = {"Bounding Box Image APIs", "DVID Style APIs"},
-            value = "DVID style API to render TIFF image for the specified bounding box")
+            value = "DVID style API to render TIFF image for the specified bounding box",
+            notes = RenderServiceUtil.RENDERED_IMAGE_TIMING_NOTES)
     public Response renderTiffImageForDvidBox(@PathParam("owner") final String owner,
                                               @PathParam("project") final String project,
                                               @PathParam("stack") final String stack,
@@ -390,7 +415,8 @@ public class RenderImageService {
     @Produces(RenderServiceUtil.IMAGE_JPEG_MIME_TYPE)
     @ApiOperation(
             tags = "Bounding Box Image APIs",
-            value = "Render JPEG image for the specified bounding box and groupId")
+            value = "Render JPEG image for the specified bounding box and groupId",
+            notes = RenderServiceUtil.RENDERED_IMAGE_TIMING_NOTES)
     public Response renderJpegImageForGroupBox(@PathParam("owner") final String owner,
                                                @PathParam("project") final String project,
                                                @PathParam("stack") final String stack,
@@ -424,7 +450,8 @@ public class RenderImageService {
     @Produces(RenderServiceUtil.IMAGE_JPEG_MIME_TYPE)
     @ApiOperation(
             tags = {"Bounding Box Image APIs", "DVID Style APIs"},
-            value = "DVID style API to render JPEG image for the specified bounding box and groupId")
+            value = "DVID style API to render JPEG image for the specified bounding box and groupId",
+            notes = RenderServiceUtil.RENDERED_IMAGE_TIMING_NOTES)
     public Response renderJpegImageForDvidGroupBox(@PathParam("owner") final String owner,
                                                    @PathParam("project") final String project,
                                                    @PathParam("stack") final String stack,
@@ -446,7 +473,8 @@ public class RenderImageService {
     @Produces(RenderServiceUtil.IMAGE_PNG_MIME_TYPE)
     @ApiOperation(
             tags = "Bounding Box Image APIs",
-            value = "Render PNG image for the specified bounding box and groupId")
+            value = "Render PNG image for the specified bounding box and groupId",
+            notes = RenderServiceUtil.RENDERED_IMAGE_TIMING_NOTES)
     public Response renderPngImageForGroupBox(@PathParam("owner") final String owner,
                                               @PathParam("project") final String project,
                                               @PathParam("stack") final String stack,
@@ -480,7 +508,8 @@ public class RenderImageService {
     @Produces(RenderServiceUtil.IMAGE_PNG_MIME_TYPE)
     @ApiOperation(
             tags = {"Bounding Box Image APIs", "DVID Style APIs"},
-            value = "DVID style API to render PNG image for the specified bounding box and groupId")
+            value = "DVID style API to render PNG image for the specified bounding box and groupId",
+            notes = RenderServiceUtil.RENDERED_IMAGE_TIMING_NOTES)
     public Response renderPngImageForDvidGroupBox(@PathParam("owner") final String owner,
                                                   @PathParam("project") final String project,
                                                   @PathParam("stack") final String stack,
@@ -502,7 +531,8 @@ public class RenderImageService {
     @Produces(RenderServiceUtil.IMAGE_TIFF_MIME_TYPE)
     @ApiOperation(
             tags = "Bounding Box Image APIs",
-            value = "Render TIFF image for the specified bounding box and groupId")
+            value = "Render TIFF image for the specified bounding box and groupId",
+            notes = RenderServiceUtil.RENDERED_IMAGE_TIMING_NOTES)
     public Response renderTiffImageForGroupBox(@PathParam("owner") final String owner,
                                                @PathParam("project") final String project,
                                                @PathParam("stack") final String stack,
@@ -536,7 +566,8 @@ public class RenderImageService {
     @Produces(RenderServiceUtil.IMAGE_TIFF_MIME_TYPE)
     @ApiOperation(
             tags = {"Bounding Box Image APIs", "DVID Style APIs"},
-            value = "DVID style API to render TIFF image for the specified bounding box and groupId")
+            value = "DVID style API to render TIFF image for the specified bounding box and groupId",
+            notes = RenderServiceUtil.RENDERED_IMAGE_TIMING_NOTES)
     public Response renderTiffImageForDvidGroupBox(@PathParam("owner") final String owner,
                                                    @PathParam("project") final String project,
                                                    @PathParam("stack") final String stack,
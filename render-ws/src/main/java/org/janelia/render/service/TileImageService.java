@@ -55,7 +55,9 @@ public class TileImageService {
     @Path("v1/owner/{owner}/project/{project}/stack/{stack}/tile/{tileId}/jpeg-image")
     @GET
     @Produces(RenderServiceUtil.IMAGE_JPEG_MIME_TYPE)
-    @ApiOperation(value = "Render JPEG image for a tile")
+    @ApiOperation(
+            value = "Render JPEG image for a tile",
+            notes = RenderServiceUtil.RENDERED_IMAGE_TIMING_NOTES)
     @ApiResponses(value = {
             @ApiResponse(code = 404, message = "Tile not found")
     })
@@ -91,7 +93,9 @@ public class TileImageService {
     @Path("v1/owner/{owner}/project/{project}/stack/{stack}/tile/{tileId}/png-image")
     @GET
     @Produces(RenderServiceUtil.IMAGE_PNG_MIME_TYPE)
-    @ApiOperation(value = "Render PNG image for a tile")
+    @ApiOperation(
+            value = "Render PNG image for a tile",
+            notes = RenderServiceUtil.RENDERED_IMAGE_TIMING_NOTES)
     @ApiResponses(value = {
             @ApiResponse(code = 404, message = "Tile not found")
     })
@@ -127,7 +131,9 @@ public class TileImageService {
     @Path("v1/owner/{owner}/project/{project}/stack/{stack}/tile/{tileId}/tiff-image")
     @GET
     @Produces(RenderServiceUtil.IMAGE_TIFF_MIME_TYPE)
-    @ApiOperation(value = "Render TIFF image for a tile")
+    @ApiOperation(
+            value = "Render TIFF image for a tile",
+            notes = RenderServiceUtil.RENDERED_IMAGE_TIMING_NOTES)
     @ApiResponses(value = {
             @ApiResponse(code = 404, message = "Tile not found")
     })
@@ -163,7 +169,9 @@ public class TileImageService {
     @Path("v1/owner/{owner}/project/{project}/stack/{stack}/tile/{tileId}/source/jpeg-image")
     @GET
     @Produces(RenderServiceUtil.IMAGE_JPEG_MIME_TYPE)
-    @ApiOperation(value = "Render tile's source image without transformations in JPEG format")
+    @ApiOperation(
+            value = "Render tile's source image without transformations in JPEG format",
+            notes = RenderServiceUtil.RENDERED_IMAGE_TIMING_NOTES)
     @ApiResponses(value = {
             @ApiResponse(code = 404, message = "Tile not found")
     })
@@ -191,7 +199,9 @@ public class TileImageService {
     @Path("v1/owner/{owner}/project/{project}/stack/{stack}/tile/{tileId}/source/png-image")
     @GET
     @Produces(RenderServiceUtil.IMAGE_PNG_MIME_TYPE)
-    @ApiOperation(value = "Render tile's source image without transformations in PNG format")
+    @ApiOperation(
+            value = "Render tile's source image without transformations in PNG format",
+            notes = RenderServiceUtil.RENDERED_IMAGE_TIMING_NOTES)
     @ApiResponses(value = {
             @ApiResponse(code = 404, message = "Tile not found")
     })
@@ -219,7 +229,9 @@ public class TileImageService {
     @Path("v1/owner/{owner}/project/{project}/stack/{stack}/tile/{tileId}/source/tiff-image")
     @GET
     @Produces(RenderServiceUtil.IMAGE_TIFF_MIME_TYPE)
-    @ApiOperation(value = "Render tile's source image without transformations in TIFF format")
+    @ApiOperation(
+            value = "Render tile's source image without transformations in TIFF format",
+            notes = RenderServiceUtil.RENDERED_IMAGE_TIMING_NOTES)
     @ApiResponses(value = {
             @ApiResponse(code = 404, message = "Tile not found")
     })
@@ -247,7 +259,9 @@ public class TileImageService {
     @Path("v1/owner/{owner}/project/{project}/stack/{stack}/tile/{tileId}/mask/jpeg-image")
     @GET
     @Produces(RenderServiceUtil.IMAGE_JPEG_MIME_TYPE)
-    @ApiOperation(value = "Render tile's mask image without transformations in JPEG format")
+    @ApiOperation(
+            value = "Render tile's mask image without transformations in JPEG format",
+            notes = RenderServiceUtil.RENDERED_IMAGE_TIMING_NOTES)
     @ApiResponses(value = {
             @ApiResponse(code = 404, message = "Tile not found")
     })
@@ -275,7 +289,9 @@ public class TileImageService {
     @Path("v1/owner/{owner}/project/{project}/stack/{stack}/tile/{tileId}/mask/png-image")
     @GET
     @Produces(RenderServiceUtil.IMAGE_PNG_MIME_TYPE)
-    @ApiOperation(value = "Render tile's mask image without transformations in PNG format")
+    @ApiOperation(
+            value = "Render tile's mask image without transformations in PNG format",
+            notes = RenderServiceUtil.RENDERED_IMAGE_TIMING_NOTES)
     @ApiResponses(value = {
             @ApiResponse(code = 404, message = "Tile not found")
     })
@@ -303,7 +319,9 @@ public class TileImageService {
     @Path("v1/owner/{owner}/project/{project}/stack/{stack}/tile/{tileId}/mask/tiff-image")
     @GET
     @Produces(RenderServiceUtil.IMAGE_TIFF_MIME_TYPE)
-    @ApiOperation(value = "Render tile's mask image without transformations in TIFF format")
+    @ApiOperation(
+            value = "Render tile's mask image without transformations in TIFF format",
+            notes = RenderServiceUtil.RENDERED_IMAGE_TIMING_NOTES)
     @ApiResponses(value = {
             @ApiResponse(code = 404, message = "Tile not found")
     })
@@ -331,7 +349,9 @@ public class TileImageService {
     @Path("v1/owner/{owner}/project/{project}/stack/{stack}/tile/{tileId}/withNeighbors/jpeg-image")
     @GET
     @Produces(RenderServiceUtil.IMAGE_JPEG_MIME_TYPE)
-    @ApiOperation(value = "Render tile with its neighbors in JPEG format")
+    @ApiOperation(
+            value = "Render tile with its neighbors in JPEG format",
+            notes = RenderServiceUtil.RENDERED_IMAGE_TIMING_NOTES)
     @ApiResponses(value = {
             @ApiResponse(code = 404, message = "Tile not found")
     })
@@ -0,0 +1,69 @@
+package org.janelia.render.service.dao;
+
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.janelia.render.service.util.RenderServerMetrics;
+
+/**
+ * Records the elapsed time of every database command in the shared {@link RenderServerMetrics}.
+ *
+ * Commands are named by the DAO that owns their database and the command name
+ * (e.g. RenderDao.find or MatchDao.aggregate).
+ *
+ * @author Eric Trautman
+ */
+public class DatabaseCommandTimer
+        implements CommandListener {
+
+    private final Map<Integer, String> requestIdToName;
+
+    public DatabaseCommandTimer() {
+        this.requestIdToName = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public void commandStarted(final CommandStartedEvent event) {
+        requestIdToName.put(event.getRequestId(),
+                            getDaoName(event.getDatabaseName()) + "." + event.getCommandName());
+    }
+
+    @Override
+    public void commandSucceeded(final CommandSucceededEvent event) {
+        record(event.getRequestId(), event.getCommandName(), event.getElapsedTime(TimeUnit.NANOSECONDS));
+    }
+
+    @Override
+    public void commandFailed(final CommandFailedEvent event) {
+        record(event.getRequestId(), event.getCommandName(), event.getElapsedTime(TimeUnit.NANOSECONDS));
+    }
+
+    private void record(final int requestId,
+                        final String commandName,
+                        final long elapsedNanos) {
+        String name = requestIdToName.remove(requestId);
+        if (name == null) {
+            name = "unknown." + commandName;
+        }
+        RenderServerMetrics.getInstance().recordDatabaseCommand(name, elapsedNanos);
+    }
+
+    private static String getDaoName(final String databaseName) {
+        final String daoName;
+        if (RenderDao.RENDER_DB_NAME.equals(databaseName)) {
+            daoName = RenderDao.class.getSimpleName();
+        } else if (MatchDao.MATCH_DB_NAME.equals(databaseName)) {
+            daoName = MatchDao.class.getSimpleName();
+        } else {
+            daoName = databaseName;
+        }
+        return daoName;
+    }
+
+}
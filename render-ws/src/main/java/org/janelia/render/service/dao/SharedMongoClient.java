@@ -53,7 +53,9 @@ public class SharedMongoClient {
 
             // use connectionString for everything (see https://docs.mongodb.com/manual/reference/connection-string )
 
-            final MongoClientURI mongoClientURI = new MongoClientURI(dbConfig.getConnectionString());
+            final MongoClientOptions.Builder optionsBuilder =
+                    new MongoClientOptions.Builder().addCommandListener(new DatabaseCommandTimer());
+            final MongoClientURI mongoClientURI = new MongoClientURI(dbConfig.getConnectionString(), optionsBuilder);
             client = new MongoClient(mongoClientURI);
 
         } else {
@@ -75,6 +77,7 @@ public class SharedMongoClient {
                     .connectionsPerHost(dbConfig.getMaxConnectionsPerHost())
                     .maxConnectionIdleTime(dbConfig.getMaxConnectionIdleTime())
                     .readPreference(dbConfig.getReadPreference())
+                    .addCommandListener(new DatabaseCommandTimer())
                     .build();
 
             client = new MongoClient(dbConfig.getServerAddressList(), credentialsList, options);
@@ -0,0 +1,251 @@
+package org.janelia.render.service.util;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.StreamingOutput;
+
+import org.janelia.alignment.ArgbRenderer;
+import org.janelia.alignment.RenderParameters;
+import org.janelia.alignment.Utils;
+import org.janelia.alignment.util.ImageProcessorCache;
+import org.janelia.alignment.util.RenderPhaseTimes;
+import org.janelia.alignment.util.RenderTransformMeshCache;
+import org.janelia.alignment.util.TiffStripWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ar.com.hjg.pngj.FilterType;
+import ar.com.hjg.pngj.ImageInfo;
+import ar.com.hjg.pngj.ImageLineHelper;
+import ar.com.hjg.pngj.ImageLineInt;
+import ar.com.hjg.pngj.PngWriter;
+
+import ij.process.ByteProcessor;
+
+/**
+ * Renders a (typically very large) target in horizontal bands and streams the encoded result
+ * as the response for a JAX-RS API request.
+ *
+ * Each band is rendered from only the tiles that intersect it, so peak memory for PNG and TIFF
+ * targets is proportional to the band height rather than the full target size.
+ * PNG rows are encoded with the PNGJ library and TIFF rows are written as uncompressed strips.
+ * The JPEG encoder needs the complete image, so JPEG bands are drawn into a single RGB (or gray) image
+ * before encoding - this still avoids holding full size float, mask, and ARGB render buffers.
+ *
+ * @author Eric Trautman
+ */
+public class BandedImageStreamingOutput implements StreamingOutput {
+
+    /** Default number of target rows rendered in each band. */
+    public static final int DEFAULT_BAND_HEIGHT = 1024;
+
+    private final RenderParameters renderParameters;
+    private final String format;
+    private final int bandHeight;
+    private final ImageProcessorCache imageProcessorCache;
+    private final RenderTransformMeshCache meshCache;
+    private final RenderServerMetrics.RenderRequest renderRequest;
+    private long renderNanos;
+
+    /**
+     * @param  renderParameters     initialized and validated parameters for the full target.
+     * @param  format               target image format.
+     * @param  bandHeight           number of target rows to render in each band.
+     * @param  imageProcessorCache  cache of source tile data.
+     * @param  meshCache            cache of source tile meshes (or null if meshes should not be cached).
+     */
+    public BandedImageStreamingOutput(final RenderParameters renderParameters,
+                                      final String format,
+                                      final int bandHeight,
+                                      final ImageProcessorCache imageProcessorCache,
+                                      final RenderTransformMeshCache meshCache) {
+        this(renderParameters, format, bandHeight, imageProcessorCache, meshCache, null);
+    }
+
+    /**
+     * @param  renderParameters     initialized and validated parameters for the full target.
+     * @param  format               target image format.
+     * @param  bandHeight           number of target rows to render in each band.
+     * @param  imageProcessorCache  cache of source tile data.
+     * @param  meshCache            cache of source tile meshes (or null if meshes should not be cached).
+     * @param  renderRequest        metrics context for the request (or null if metrics are not being collected).
+     *                              The request is finished once the target has been written.
+     */
+    public BandedImageStreamingOutput(final RenderParameters renderParameters,
+                                      final String format,
+                                      final int bandHeight,
+                                      final ImageProcessorCache imageProcessorCache,
+                                      final RenderTransformMeshCache meshCache,
+                                      final RenderServerMetrics.RenderRequest renderRequest) {
+        this.renderParameters = renderParameters;
+        this.format = format;
+        this.bandHeight = bandHeight;
+        this.imageProcessorCache = imageProcessorCache;
+        this.meshCache = meshCache;
+        this.renderRequest = renderRequest;
+        this.renderNanos = 0;
+    }
+
+    @Override
+    public void write(final OutputStream outputStream)
+            throws IOException, WebApplicationException {
+
+        final int targetWidth = (int) (renderParameters.getScale() * renderParameters.getWidth());
+        final int targetHeight = renderParameters.getTargetHeight();
+
+        LOG.info("write: entry, format={}, target is {}x{}, bandHeight={}",
+                 format, targetWidth, targetHeight, bandHeight);
+
+        // band rendering and encoding are interleaved, so encode time is whatever time is not spent rendering
+        final long startNanos = System.nanoTime();
+        renderNanos = 0;
+        boolean failed = true;
+        if (renderRequest != null) {
+            renderRequest.getPhaseTimes().bindToCurrentThread();
+        }
+        try {
+            if (Utils.PNG_FORMAT.equals(format)) {
+                writePngImage(targetWidth, targetHeight, outputStream);
+            } else if (Utils.TIFF_FORMAT.equals(format)) {
+                writeTiffImage(targetWidth, targetHeight, outputStream);
+            } else {
+                writeJpegImage(targetWidth, targetHeight, outputStream);
+            }
+            failed = false;
+        } finally {
+            if (renderRequest != null) {
+                RenderPhaseTimes.unbindFromCurrentThread();
+                renderRequest.getPhaseTimes().addEncodeNanos(System.nanoTime() - startNanos - renderNanos);
+                renderRequest.finish(failed);
+            }
+        }
+
+        LOG.info("write: exit");
+    }
+
+    private void writePngImage(final int targetWidth,
+                               final int targetHeight,
+                               final OutputStream outputStream) {
+
+        final ImageInfo imageInfo = new ImageInfo(targetWidth, targetHeight, 8, true);
+
+        final PngWriter pngWriter = new PngWriter(outputStream, imageInfo);
+        pngWriter.setCompLevel(6);
+        pngWriter.setFilterType(FilterType.FILTER_PAETH);
+
+        final ImageLineInt line = new ImageLineInt(imageInfo);
+
+        for (int firstRow = 0; firstRow < targetHeight; firstRow += bandHeight) {
+            final int numberOfRows = Math.min(bandHeight, targetHeight - firstRow);
+            final BufferedImage bandImage = renderBand(firstRow, numberOfRows);
+            final int[] data = ((DataBufferInt) bandImage.getRaster().getDataBuffer()).getData();
+            final SinglePixelPackedSampleModel sampleModel = (SinglePixelPackedSampleModel) bandImage.getSampleModel();
+            for (int row = 0; row < numberOfRows; row++) {
+                int elem = sampleModel.getOffset(0, row);
+                for (int col = 0; col < targetWidth; col++) {
+                    ImageLineHelper.setPixelRGBA8(line, col, data[elem++]);
+                }
+                pngWriter.writeRow(line, firstRow + row);
+            }
+        }
+
+        pngWriter.end();
+    }
+
+    private void writeTiffImage(final int targetWidth,
+                                final int targetHeight,
+                                final OutputStream outputStream)
+            throws IOException {
+
+        // match the RGB encoding used by ImageJ's TiffEncoder for ARGB images
+        final TiffStripWriter tiffWriter = new TiffStripWriter(outputStream, targetWidth, targetHeight, 3, bandHeight);
+        final byte[] rgb = new byte[tiffWriter.getBytesPerRow()];
+
+        for (int firstRow = 0; firstRow < targetHeight; firstRow += bandHeight) {
+            final int numberOfRows = Math.min(bandHeight, targetHeight - firstRow);
+            final BufferedImage bandImage = renderBand(firstRow, numberOfRows);
+            final int[] data = ((DataBufferInt) bandImage.getRaster().getDataBuffer()).getData();
+            final SinglePixelPackedSampleModel sampleModel = (SinglePixelPackedSampleModel) bandImage.getSampleModel();
+            for (int row = 0; row < numberOfRows; row++) {
+                int elem = sampleModel.getOffset(0, row);
+                for (int col = 0, i = 0; col < targetWidth; col++) {
+                    final int argb = data[elem++];
+                    rgb[i++] = (byte) (argb >> 16);
+                    rgb[i++] = (byte) (argb >> 8);
+                    rgb[i++] = (byte) argb;
+                }
+                tiffWriter.writeRow(rgb, 0);
+            }
+        }
+
+        tiffWriter.end();
+    }
+
+    private void writeJpegImage(final int targetWidth,
+                                final int targetHeight,
+                                final OutputStream outputStream)
+            throws IOException {
+
+        final boolean convertToGray = renderParameters.isConvertToGray();
+        final BufferedImage targetImage =
+                new BufferedImage(targetWidth,
+                                  targetHeight,
+                                  convertToGray ? BufferedImage.TYPE_BYTE_GRAY : BufferedImage.TYPE_INT_RGB);
+
+        final Graphics2D targetGraphics = targetImage.createGraphics();
+        for (int firstRow = 0; firstRow < targetHeight; firstRow += bandHeight) {
+            final int numberOfRows = Math.min(bandHeight, targetHeight - firstRow);
+            final BufferedImage bandImage = renderBand(firstRow, numberOfRows);
+            targetGraphics.drawImage(bandImage.getSubimage(0, 0, targetWidth, numberOfRows), 0, firstRow, null);
+        }
+        targetGraphics.dispose();
+
+        final ImageOutputStream imageOutputStream = new MemoryCacheImageOutputStream(outputStream);
+        Utils.writeImage(targetImage, format, convertToGray, renderParameters.getQuality(), imageOutputStream);
+        imageOutputStream.flush();
+    }
+
+    private BufferedImage renderBand(final int firstRow,
+                                     final int numberOfRows) {
+
+        final long startNanos = System.nanoTime();
+        final RenderParameters bandParameters = renderParameters.getBandParameters(firstRow, numberOfRows);
+        final BufferedImage bandImage = bandParameters.openTargetImage();
+
+        LOG.debug("renderBand: rendering {} rows starting at row {} with {} tiles",
+                  numberOfRows, firstRow, bandParameters.numberOfTileSpecs());
+
+        if (bandParameters.hasTileSpecs()) {
+            ArgbRenderer.render(bandParameters, bandImage, imageProcessorCache, meshCache);
+        } else if (renderParameters.hasTileSpecs()) {
+            // keep empty bands consistent with the background of a single full target render
+            final Graphics2D bandGraphics = bandImage.createGraphics();
+            final Integer backgroundRGBColor = renderParameters.getBackgroundRGBColor();
+            if (backgroundRGBColor != null) {
+                bandGraphics.setBackground(new Color(backgroundRGBColor));
+                bandGraphics.clearRect(0, 0, bandImage.getWidth(), bandImage.getHeight());
+            } else if (renderParameters.isFillWithNoise()) {
+                final ByteProcessor ip = new ByteProcessor(bandImage.getWidth(), bandImage.getHeight());
+                mpicbg.ij.util.Util.fillWithNoise(ip);
+                bandGraphics.drawImage(ip.createImage(), 0, 0, null);
+            }
+            bandGraphics.dispose();
+        }
+
+        renderNanos += System.nanoTime() - startNanos;
+
+        return bandImage;
+    }
+
+    private static final Logger LOG = LoggerFactory.getLogger(BandedImageStreamingOutput.class);
+
+}
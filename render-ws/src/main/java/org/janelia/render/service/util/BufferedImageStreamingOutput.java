@@ -34,15 +34,30 @@ public class BufferedImageStreamingOutput implements StreamingOutput {
     private final String format;
     private final boolean convertToGray;
     private final float quality;
+    private final RenderServerMetrics.RenderRequest renderRequest;
 
     public BufferedImageStreamingOutput(final BufferedImage targetImage,
                                         final String format,
                                         final boolean convertToGray,
                                         final float quality) {
+        this(targetImage, format, convertToGray, quality, null);
+    }
+
+    /**
+     * @param  renderRequest  metrics context for the request that rendered the target image
+     *                        (or null if metrics are not being collected).
+     *                        The request is finished once the image has been written.
+     */
+    public BufferedImageStreamingOutput(final BufferedImage targetImage,
+                                        final String format,
+                                        final boolean convertToGray,
+                                        final float quality,
+                                        final RenderServerMetrics.RenderRequest renderRequest) {
         this.targetImage = targetImage;
         this.format = format;
         this.convertToGray = convertToGray;
         this.quality = quality;
+        this.renderRequest = renderRequest;
     }
 
     @Override
@@ -51,13 +66,23 @@ public class BufferedImageStreamingOutput implements StreamingOutput {
 
         LOG.info("write: entry");
 
-        if (Utils.PNG_FORMAT.equals(format)) {
-            writePngImage(targetImage, 6, FilterType.FILTER_PAETH, outputStream);
-        } else if (Utils.TIFF_FORMAT.equals(format)) {
-            Utils.writeTiffImage(targetImage, outputStream);
-        } else {
-            final ImageOutputStream imageOutputStream = new MemoryCacheImageOutputStream(outputStream);
-            Utils.writeImage(targetImage, format, convertToGray, quality, imageOutputStream);
+        final long startNanos = System.nanoTime();
+        boolean failed = true;
+        try {
+            if (Utils.PNG_FORMAT.equals(format)) {
+                writePngImage(targetImage, 6, FilterType.FILTER_PAETH, outputStream);
+            } else if (Utils.TIFF_FORMAT.equals(format)) {
+                Utils.writeTiffImage(targetImage, outputStream);
+            } else {
+                final ImageOutputStream imageOutputStream = new MemoryCacheImageOutputStream(outputStream);
+                Utils.writeImage(targetImage, format, convertToGray, quality, imageOutputStream);
+            }
+            failed = false;
+        } finally {
+            if (renderRequest != null) {
+                renderRequest.getPhaseTimes().addEncodeNanos(System.nanoTime() - startNanos);
+                renderRequest.finish(failed);
+            }
         }
 
         LOG.info("write: exit");
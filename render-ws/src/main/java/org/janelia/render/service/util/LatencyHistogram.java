@@ -0,0 +1,106 @@
+package org.janelia.render.service.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread safe latency histogram with fixed (roughly logarithmic) millisecond buckets.
+ *
+ * Recording a value only requires a few atomic increments, so instances can be updated
+ * on every request without any noticeable overhead.  Percentiles are approximated by
+ * the upper bound of the bucket that contains them.
+ *
+ * @author Eric Trautman
+ */
+public class LatencyHistogram {
+
+    /** Upper bound (inclusive) of each bucket in milliseconds.  Larger values are counted in an overflow bucket. */
+    private static final long[] BUCKET_MAX_MILLIS = {
+            1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 30000, 60000
+    };
+
+    private final AtomicLongArray bucketCounts;
+    private final AtomicLong count;
+    private final AtomicLong totalNanos;
+    private final AtomicLong maxNanos;
+
+    public LatencyHistogram() {
+        this.bucketCounts = new AtomicLongArray(BUCKET_MAX_MILLIS.length + 1);
+        this.count = new AtomicLong(0);
+        this.totalNanos = new AtomicLong(0);
+        this.maxNanos = new AtomicLong(0);
+    }
+
+    /**
+     * @param  nanos  elapsed time to record.
+     */
+    public void record(final long nanos) {
+        final double millis = nanos / 1_000_000.0;
+        int bucket = 0;
+        while ((bucket < BUCKET_MAX_MILLIS.length) && (millis > BUCKET_MAX_MILLIS[bucket])) {
+            bucket++;
+        }
+        bucketCounts.incrementAndGet(bucket);
+        count.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public double getMeanMillis() {
+        final long numberOfValues = count.get();
+        return numberOfValues == 0 ? 0.0 : (totalNanos.get() / 1_000_000.0) / numberOfValues;
+    }
+
+    public double getMaxMillis() {
+        return maxNanos.get() / 1_000_000.0;
+    }
+
+    /**
+     * @param  percentile  percentile (between 0 and 100) to derive.
+     *
+     * @return upper bound in milliseconds of the bucket containing the specified percentile
+     *         (or the max recorded value if the percentile is in the overflow bucket).
+     */
+    public double getPercentileMillis(final double percentile) {
+        final long numberOfValues = count.get();
+        final long rank = (long) Math.ceil(numberOfValues * percentile / 100.0);
+        long cumulativeCount = 0;
+        for (int bucket = 0; bucket < BUCKET_MAX_MILLIS.length; bucket++) {
+            cumulativeCount += bucketCounts.get(bucket);
+            if ((cumulativeCount > 0) && (cumulativeCount >= rank)) {
+                return Math.min(BUCKET_MAX_MILLIS[bucket], getMaxMillis());
+            }
+        }
+        return getMaxMillis();
+    }
+
+    /**
+     * @return summary and bucket counts for this histogram (suitable for JSON serialization).
+     */
+    public Map<String, Object> toMap() {
+
+        final Map<String, Object> map = new LinkedHashMap<>();
+        map.put("count", getCount());
+        map.put("meanMillis", getMeanMillis());
+        map.put("p50Millis", getPercentileMillis(50));
+        map.put("p90Millis", getPercentileMillis(90));
+        map.put("p99Millis", getPercentileMillis(99));
+        map.put("maxMillis", getMaxMillis());
+
+        final Map<String, Long> buckets = new LinkedHashMap<>();
+        for (int bucket = 0; bucket < BUCKET_MAX_MILLIS.length; bucket++) {
+            buckets.put("<=" + BUCKET_MAX_MILLIS[bucket], bucketCounts.get(bucket));
+        }
+        buckets.put(">" + BUCKET_MAX_MILLIS[BUCKET_MAX_MILLIS.length - 1], bucketCounts.get(BUCKET_MAX_MILLIS.length));
+        map.put("millisecondBuckets", buckets);
+
+        return map;
+    }
+
+}
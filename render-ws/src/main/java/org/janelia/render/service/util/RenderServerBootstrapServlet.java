@@ -0,0 +1,88 @@
+package org.janelia.render.service.util;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+
+import org.janelia.alignment.TriangleMappingPool;
+import org.janelia.alignment.transform.GridApproximatedTransform;
+import org.janelia.alignment.util.CoordinateTransformCache;
+import org.janelia.alignment.util.ImageProcessorCache;
+import org.janelia.alignment.util.InverseTransformMeshCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Servlet that applies render server properties to shared (process-wide) render resources
+ * when the service starts, so that they are configured before the first request is rendered.
+ *
+ * Properties that are not specified leave the corresponding render system property (or default) in effect.
+ *
+ * @author Eric Trautman
+ */
+public class RenderServerBootstrapServlet
+        extends HttpServlet {
+
+    @Override
+    public void init(final ServletConfig config) throws ServletException {
+        super.init(config);
+
+        final RenderServerProperties properties = RenderServerProperties.getProperties();
+
+        SharedTileRenderPool.configure(properties);
+
+        final Integer triangleMappingThreads = properties.getInteger("webService.triangleMappingThreads");
+        if (triangleMappingThreads != null) {
+            apply("webService.triangleMappingThreads",
+                  () -> TriangleMappingPool.setSharedParallelism(triangleMappingThreads));
+        }
+
+        final Integer imagePrefetchThreads = properties.getInteger("webService.imagePrefetchThreads");
+        if (imagePrefetchThreads != null) {
+            apply("webService.imagePrefetchThreads",
+                  () -> ImageProcessorCache.setPrefetchParallelism(imagePrefetchThreads));
+        }
+
+        final Long transformCacheMaxDataLength = properties.getLong("webService.transformCacheMaxDataLength");
+        if (transformCacheMaxDataLength != null) {
+            apply("webService.transformCacheMaxDataLength",
+                  () -> CoordinateTransformCache.setSharedMaximumDataLength(transformCacheMaxDataLength));
+        }
+
+        final Long inverseMeshCacheMaxTriangles = properties.getLong("webService.inverseMeshCacheMaxTriangles");
+        if (inverseMeshCacheMaxTriangles != null) {
+            apply("webService.inverseMeshCacheMaxTriangles",
+                  () -> InverseTransformMeshCache.setSharedMaximumNumberOfCachedTriangles(
+                          inverseMeshCacheMaxTriangles));
+        }
+
+        final Long transformGridCacheMaxNodes = properties.getLong("webService.transformGridCacheMaxNodes");
+        if (transformGridCacheMaxNodes != null) {
+            apply("webService.transformGridCacheMaxNodes",
+                  () -> GridApproximatedTransform.setMaxCachedNodes(transformGridCacheMaxNodes));
+        }
+
+        final Double transformGridSpacing = properties.getDouble("webService.transformGridSpacing");
+        if (transformGridSpacing != null) {
+            final Double maxErrorValue = properties.getDouble("webService.transformGridMaxError");
+            final double maxError =
+                    maxErrorValue == null ? GridApproximatedTransform.DEFAULT_MAX_ERROR : maxErrorValue;
+            GridApproximatedTransform.setApproximationParameters(transformGridSpacing, maxError);
+            LOG.info("init: approximating transforms with grid spacing {} and max error {}",
+                     transformGridSpacing, maxError);
+        }
+
+        LOG.info("init: exit");
+    }
+
+    private static void apply(final String key,
+                              final Runnable setter) {
+        try {
+            setter.run();
+        } catch (final IllegalArgumentException | IllegalStateException e) {
+            LOG.warn("init: ignoring " + key + " value", e);
+        }
+    }
+
+    private static final Logger LOG = LoggerFactory.getLogger(RenderServerBootstrapServlet.class);
+}
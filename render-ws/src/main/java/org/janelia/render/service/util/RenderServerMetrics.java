@@ -0,0 +1,374 @@
+package org.janelia.render.service.util;
+
+import com.google.common.cache.CacheStats;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToDoubleFunction;
+
+import javax.management.ObjectName;
+
+import org.janelia.alignment.transform.GridApproximatedTransform;
+import org.janelia.alignment.util.CoordinateTransformCache;
+import org.janelia.alignment.util.ImageProcessorCache;
+import org.janelia.alignment.util.InverseTransformMeshCache;
+import org.janelia.alignment.util.OffHeapImageProcessorStore;
+import org.janelia.alignment.util.RenderPhaseTimes;
+import org.janelia.alignment.util.RenderTransformMeshCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Metrics for all render web service requests handled by this server.
+ *
+ * Includes shared cache statistics, render request counts and (per phase) latency histograms,
+ * and database command latency histograms.  Metrics are available as JSON through the
+ * v1/serverMetrics API and through JMX (see {@link RenderServerMetricsMXBean}).
+ *
+ * @author Eric Trautman
+ */
+public class RenderServerMetrics
+        implements RenderServerMetricsMXBean {
+
+    public static final String OBJECT_NAME = "org.janelia.render:type=RenderServerMetrics";
+
+    public static final String TOTAL_PHASE = "total";
+    public static final String LOAD_PHASE = "load";
+    public static final String MESH_PHASE = "mesh";
+    public static final String MAP_PHASE = "map";
+    public static final String ENCODE_PHASE = "encode";
+
+    private static RenderServerMetrics sharedMetrics;
+
+    public static RenderServerMetrics getInstance() {
+        if (sharedMetrics == null) {
+            setSharedMetrics();
+        }
+        return sharedMetrics;
+    }
+
+    private static synchronized void setSharedMetrics() {
+        if (sharedMetrics == null) {
+            final RenderServerMetrics metrics = new RenderServerMetrics();
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, new ObjectName(OBJECT_NAME));
+            } catch (final Throwable t) {
+                LOG.warn("setSharedMetrics: failed to register " + OBJECT_NAME + ", metrics will only be available via API", t);
+            }
+            sharedMetrics = metrics;
+        }
+    }
+
+    private final AtomicInteger inFlightRenders;
+    private final AtomicInteger maxInFlightRenders;
+    private final AtomicLong completedRenders;
+    private final AtomicLong failedRenders;
+    private final Map<String, LatencyHistogram> renderPhaseHistograms;
+    private final Map<String, LatencyHistogram> databaseCommandHistograms;
+
+    public RenderServerMetrics() {
+        this.inFlightRenders = new AtomicInteger(0);
+        this.maxInFlightRenders = new AtomicInteger(0);
+        this.completedRenders = new AtomicLong(0);
+        this.failedRenders = new AtomicLong(0);
+        this.renderPhaseHistograms = new LinkedHashMap<>();
+        for (final String phase : new String[] { TOTAL_PHASE, LOAD_PHASE, MESH_PHASE, MAP_PHASE, ENCODE_PHASE }) {
+            this.renderPhaseHistograms.put(phase, new LatencyHistogram());
+        }
+        this.databaseCommandHistograms = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Counts a new in-flight render request.
+     * Callers must {@link RenderRequest#finish finish} the returned request once its response has been written.
+     *
+     * @return timing context for the request.
+     */
+    public RenderRequest startRender() {
+        final int inFlightCount = inFlightRenders.incrementAndGet();
+        maxInFlightRenders.accumulateAndGet(inFlightCount, Math::max);
+        return new RenderRequest();
+    }
+
+    /**
+     * @param  name   DAO and command name (e.g. RenderDao.find).
+     * @param  nanos  elapsed command time.
+     */
+    public void recordDatabaseCommand(final String name,
+                                      final long nanos) {
+        databaseCommandHistograms.computeIfAbsent(name, k -> new LatencyHistogram()).record(nanos);
+        CURRENT_THREAD_DATABASE_NANOS.get()[0] += nanos;
+    }
+
+    /**
+     * @return total time spent executing database commands on the current thread
+     *         since the last {@link #resetCurrentThreadDatabaseNanos reset}.
+     */
+    public static long getCurrentThreadDatabaseNanos() {
+        return CURRENT_THREAD_DATABASE_NANOS.get()[0];
+    }
+
+    /**
+     * Resets the database command time for the current thread
+     * (request threads are pooled, so this should be called when each request starts).
+     */
+    public static void resetCurrentThreadDatabaseNanos() {
+        CURRENT_THREAD_DATABASE_NANOS.get()[0] = 0;
+    }
+
+    /**
+     * @return snapshot of all current metrics (suitable for JSON serialization).
+     */
+    public Map<String, Object> getMetrics() {
+
+        final Map<String, Object> metrics = new LinkedHashMap<>();
+
+        final ImageProcessorCache imageProcessorCache = SharedImageProcessorCache.getInstance();
+        final Map<String, Object> imageProcessorCacheMetrics = new LinkedHashMap<>();
+        imageProcessorCacheMetrics.put("entryCount", imageProcessorCache.size());
+        imageProcessorCacheMetrics.put("bytes", imageProcessorCache.getNumberOfCachedBytes());
+        imageProcessorCacheMetrics.put("maxWeight", imageProcessorCache.getMaximumNumberOfCachedPixels());
+        imageProcessorCacheMetrics.put("stats", toMap(imageProcessorCache.getStats()));
+        metrics.put("imageProcessorCache", imageProcessorCacheMetrics);
+
+        final OffHeapImageProcessorStore secondTier = imageProcessorCache.getSecondTier();
+        if (secondTier != null) {
+            final Map<String, Object> secondTierMetrics = new LinkedHashMap<>();
+            secondTierMetrics.put("entryCount", secondTier.size());
+            secondTierMetrics.put("bytes", secondTier.getNumberOfStoredBytes());
+            secondTierMetrics.put("storeCount", secondTier.getStoreCount());
+            secondTierMetrics.put("stats", toMap(secondTier.getStats()));
+            metrics.put("imageProcessorSecondTier", secondTierMetrics);
+        }
+
+        final RenderTransformMeshCache meshCache = SharedRenderTransformMeshCache.getInstance();
+        if (meshCache != null) {
+            final Map<String, Object> meshCacheMetrics = new LinkedHashMap<>();
+            meshCacheMetrics.put("entryCount", meshCache.size());
+            meshCacheMetrics.put("stats", toMap(meshCache.getStats()));
+            metrics.put("renderMeshCache", meshCacheMetrics);
+        }
+
+        final CoordinateTransformCache transformCache = CoordinateTransformCache.getSharedInstance();
+        final Map<String, Object> transformCacheMetrics = new LinkedHashMap<>();
+        transformCacheMetrics.put("entryCount", transformCache.size());
+        transformCacheMetrics.put("stats", toMap(transformCache.getStats()));
+        metrics.put("transformCache", transformCacheMetrics);
+
+        final Map<String, Object> transformGridCacheMetrics = new LinkedHashMap<>();
+        transformGridCacheMetrics.put("entryCount", GridApproximatedTransform.getCacheSize());
+        transformGridCacheMetrics.put("stats", toMap(GridApproximatedTransform.getCacheStats()));
+        metrics.put("transformGridCache", transformGridCacheMetrics);
+
+        final InverseTransformMeshCache inverseMeshCache = InverseTransformMeshCache.getSharedInstance();
+        final Map<String, Object> inverseMeshCacheMetrics = new LinkedHashMap<>();
+        inverseMeshCacheMetrics.put("entryCount", inverseMeshCache.size());
+        inverseMeshCacheMetrics.put("stats", toMap(inverseMeshCache.getStats()));
+        metrics.put("inverseMeshCache", inverseMeshCacheMetrics);
+
+        final Map<String, Object> renderMetrics = new LinkedHashMap<>();
+        renderMetrics.put("inFlight", getInFlightRenders());
+        renderMetrics.put("maxInFlight", getMaxInFlightRenders());
+        renderMetrics.put("completed", getCompletedRenders());
+        renderMetrics.put("failed", getFailedRenders());
+        final Map<String, Object> phaseMetrics = new LinkedHashMap<>();
+        for (final Map.Entry<String, LatencyHistogram> entry : renderPhaseHistograms.entrySet()) {
+            phaseMetrics.put(entry.getKey(), entry.getValue().toMap());
+        }
+        renderMetrics.put("phases", phaseMetrics);
+        metrics.put("renders", renderMetrics);
+
+        final Map<String, Object> databaseMetrics = new TreeMap<>();
+        for (final Map.Entry<String, LatencyHistogram> entry : databaseCommandHistograms.entrySet()) {
+            databaseMetrics.put(entry.getKey(), entry.getValue().toMap());
+        }
+        metrics.put("databaseCommands", databaseMetrics);
+
+        return metrics;
+    }
+
+    @Override
+    public long getImageProcessorCacheEntryCount() {
+        return SharedImageProcessorCache.getInstance().size();
+    }
+
+    @Override
+    public long getImageProcessorCacheBytes() {
+        return SharedImageProcessorCache.getInstance().getNumberOfCachedBytes();
+    }
+
+    @Override
+    public double getImageProcessorCacheHitRate() {
+        return SharedImageProcessorCache.getInstance().getStats().hitRate();
+    }
+
+    @Override
+    public double getImageProcessorCacheAverageLoadMillis() {
+        return SharedImageProcessorCache.getInstance().getStats().averageLoadPenalty() / 1_000_000.0;
+    }
+
+    @Override
+    public long getImageProcessorCacheEvictionCount() {
+        return SharedImageProcessorCache.getInstance().getStats().evictionCount();
+    }
+
+    @Override
+    public long getImageProcessorSecondTierEntryCount() {
+        final OffHeapImageProcessorStore secondTier = SharedImageProcessorCache.getInstance().getSecondTier();
+        return secondTier == null ? 0 : secondTier.size();
+    }
+
+    @Override
+    public long getImageProcessorSecondTierBytes() {
+        final OffHeapImageProcessorStore secondTier = SharedImageProcessorCache.getInstance().getSecondTier();
+        return secondTier == null ? 0 : secondTier.getNumberOfStoredBytes();
+    }
+
+    @Override
+    public double getImageProcessorSecondTierHitRate() {
+        return SharedImageProcessorCache.getInstance().getSecondTierStats().hitRate();
+    }
+
+    @Override
+    public long getRenderMeshCacheEntryCount() {
+        final RenderTransformMeshCache meshCache = SharedRenderTransformMeshCache.getInstance();
+        return meshCache == null ? 0 : meshCache.size();
+    }
+
+    @Override
+    public double getRenderMeshCacheHitRate() {
+        final RenderTransformMeshCache meshCache = SharedRenderTransformMeshCache.getInstance();
+        return meshCache == null ? 0 : meshCache.getStats().hitRate();
+    }
+
+    @Override
+    public int getInFlightRenders() {
+        return inFlightRenders.get();
+    }
+
+    @Override
+    public int getMaxInFlightRenders() {
+        return maxInFlightRenders.get();
+    }
+
+    @Override
+    public long getCompletedRenders() {
+        return completedRenders.get();
+    }
+
+    @Override
+    public long getFailedRenders() {
+        return failedRenders.get();
+    }
+
+    @Override
+    public Map<String, Double> getRenderPhaseMeanMillis() {
+        return summarize(renderPhaseHistograms, LatencyHistogram::getMeanMillis);
+    }
+
+    @Override
+    public Map<String, Double> getRenderPhaseP90Millis() {
+        return summarize(renderPhaseHistograms, histogram -> histogram.getPercentileMillis(90));
+    }
+
+    @Override
+    public Map<String, Long> getDatabaseCommandCounts() {
+        final Map<String, Long> counts = new TreeMap<>();
+        for (final Map.Entry<String, LatencyHistogram> entry : databaseCommandHistograms.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().getCount());
+        }
+        return counts;
+    }
+
+    @Override
+    public Map<String, Double> getDatabaseCommandMeanMillis() {
+        return summarize(new TreeMap<>(databaseCommandHistograms), LatencyHistogram::getMeanMillis);
+    }
+
+    private void finishRender(final RenderRequest renderRequest,
+                              final boolean failed) {
+
+        inFlightRenders.decrementAndGet();
+
+        if (failed) {
+            failedRenders.incrementAndGet();
+        } else {
+            completedRenders.incrementAndGet();
+            final RenderPhaseTimes phaseTimes = renderRequest.getPhaseTimes();
+            renderPhaseHistograms.get(TOTAL_PHASE).record(renderRequest.getElapsedNanos());
+            renderPhaseHistograms.get(LOAD_PHASE).record(phaseTimes.getLoadNanos());
+            renderPhaseHistograms.get(MESH_PHASE).record(phaseTimes.getMeshNanos());
+            renderPhaseHistograms.get(MAP_PHASE).record(phaseTimes.getMapNanos());
+            renderPhaseHistograms.get(ENCODE_PHASE).record(phaseTimes.getEncodeNanos());
+        }
+    }
+
+    private static Map<String, Double> summarize(final Map<String, LatencyHistogram> histograms,
+                                                 final ToDoubleFunction<LatencyHistogram> function) {
+        final Map<String, Double> summary = new LinkedHashMap<>();
+        for (final Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+            summary.put(entry.getKey(), function.applyAsDouble(entry.getValue()));
+        }
+        return summary;
+    }
+
+    private static Map<String, Object> toMap(final CacheStats stats) {
+        final Map<String, Object> map = new LinkedHashMap<>();
+        map.put("hitCount", stats.hitCount());
+        map.put("missCount", stats.missCount());
+        map.put("hitRate", stats.hitRate());
+        map.put("loadSuccessCount", stats.loadSuccessCount());
+        map.put("loadExceptionCount", stats.loadExceptionCount());
+        map.put("averageLoadMillis", stats.averageLoadPenalty() / 1_000_000.0);
+        map.put("evictionCount", stats.evictionCount());
+        return map;
+    }
+
+    /**
+     * Timing context for a single render request.
+     */
+    public class RenderRequest {
+
+        private final long startNanos;
+        private final RenderPhaseTimes phaseTimes;
+        private final AtomicBoolean isFinished;
+
+        private RenderRequest() {
+            this.startNanos = System.nanoTime();
+            this.phaseTimes = new RenderPhaseTimes();
+            this.isFinished = new AtomicBoolean(false);
+        }
+
+        /**
+         * @return phase times for this request (bind these to rendering threads to collect them).
+         */
+        public RenderPhaseTimes getPhaseTimes() {
+            return phaseTimes;
+        }
+
+        public long getElapsedNanos() {
+            return System.nanoTime() - startNanos;
+        }
+
+        /**
+         * Records this request's metrics.  Only the first call for a request has any effect.
+         *
+         * @param  failed  indicates whether the request failed.
+         */
+        public void finish(final boolean failed) {
+            if (isFinished.compareAndSet(false, true)) {
+                finishRender(this, failed);
+            }
+        }
+    }
+
+    private static final ThreadLocal<long[]> CURRENT_THREAD_DATABASE_NANOS = ThreadLocal.withInitial(() -> new long[1]);
+
+    private static final Logger LOG = LoggerFactory.getLogger(RenderServerMetrics.class);
+}
@@ -0,0 +1,61 @@
+package org.janelia.render.service.util;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link RenderServerMetrics}
+ * (registered as {@value RenderServerMetrics#OBJECT_NAME} with the platform MBean server).
+ *
+ * @author Eric Trautman
+ */
+public interface RenderServerMetricsMXBean {
+
+    long getImageProcessorCacheEntryCount();
+
+    long getImageProcessorCacheBytes();
+
+    double getImageProcessorCacheHitRate();
+
+    double getImageProcessorCacheAverageLoadMillis();
+
+    long getImageProcessorCacheEvictionCount();
+
+    long getImageProcessorSecondTierEntryCount();
+
+    long getImageProcessorSecondTierBytes();
+
+    double getImageProcessorSecondTierHitRate();
+
+    long getRenderMeshCacheEntryCount();
+
+    double getRenderMeshCacheHitRate();
+
+    int getInFlightRenders();
+
+    int getMaxInFlightRenders();
+
+    long getCompletedRenders();
+
+    long getFailedRenders();
+
+    /**
+     * @return mean milliseconds for each render phase (total, load, mesh, map, and encode).
+     */
+    Map<String, Double> getRenderPhaseMeanMillis();
+
+    /**
+     * @return approximate 90th percentile milliseconds for each render phase (total, load, mesh, map, and encode).
+     */
+    Map<String, Double> getRenderPhaseP90Millis();
+
+    /**
+     * @return number of database commands executed for each DAO and command name (e.g. RenderDao.find).
+     */
+    Map<String, Long> getDatabaseCommandCounts();
+
+    /**
+     * @return mean database command milliseconds for each DAO and command name (e.g. RenderDao.find).
+     */
+    Map<String, Double> getDatabaseCommandMeanMillis();
+
+}
@@ -64,6 +64,32 @@ public class RenderServerProperties {
         return value;
     }
 
+    public Long getLong(final String key) {
+        final String valueString = get(key);
+        Long value = null;
+        if ((valueString != null) && (valueString.trim().length() > 0)) {
+            try {
+                value = Long.parseLong(valueString);
+            } catch (final Throwable t) {
+                LOG.warn("failed to parse " + key + " value in " + filePath, t);
+            }
+        }
+        return value;
+    }
+
+    public Double getDouble(final String key) {
+        final String valueString = get(key);
+        Double value = null;
+        if ((valueString != null) && (valueString.trim().length() > 0)) {
+            try {
+                value = Double.parseDouble(valueString);
+            } catch (final Throwable t) {
+                LOG.warn("failed to parse " + key + " value in " + filePath, t);
+            }
+        }
+        return value;
+    }
+
     public static RenderServerProperties getProperties() {
         if (serverProperties == null) {
             buildProperties();
@@ -11,6 +11,7 @@ import org.janelia.alignment.BoundingBoxRenderer;
 import org.janelia.alignment.RenderParameters;
 import org.janelia.alignment.ShortRenderer;
 import org.janelia.alignment.Utils;
+import org.janelia.alignment.util.RenderPhaseTimes;
 import org.janelia.render.service.model.IllegalServiceArgumentException;
 import org.janelia.render.service.model.ServiceException;
 import org.slf4j.Logger;
@@ -27,6 +28,24 @@ public class RenderServiceUtil {
     public static final String IMAGE_PNG_MIME_TYPE = "image/png";
     public static final String IMAGE_TIFF_MIME_TYPE = "image/tiff";
 
+    /** API notes describing the Server-Timing header for images rendered in one piece. */
+    public static final String RENDERED_IMAGE_TIMING_NOTES =
+            "The Server-Timing response header reports query, load, mesh, and map times along with " +
+            "the tile count and source image cache hits and misses.  Images are encoded while the response " +
+            "body is written (after headers are sent), so encoding time is not included in the header " +
+            "(it is only recorded in the server's render metrics).";
+
+    /** API notes describing the Server-Timing header for images that may be rendered in bands. */
+    public static final String BANDED_IMAGE_TIMING_NOTES =
+            "Images taller than the server's band height are rendered and encoded in bands while the response " +
+            "body is written (after headers are sent), so their Server-Timing response header only reports " +
+            "query time and tile count.  Load, mesh, map, and encoding times and source image cache hits and " +
+            "misses for those images are only recorded in the server's render metrics.  " +
+            "Shorter images are reported with all phases except encoding.";
+
+    private static final String QUERY_TIMING = "query";
+    private static final String TILES_TIMING = "tiles";
+
     public static void throwServiceException(final Throwable t)
             throws ServiceException {
 
@@ -46,6 +65,9 @@ public class RenderServiceUtil {
 
         LOG.info("renderJpegBoundingBoxes: entry");
 
+        final long databaseNanos = RenderServerMetrics.getCurrentThreadDatabaseNanos();
+        final RenderServerMetrics.RenderRequest renderRequest = RenderServerMetrics.getInstance().startRender();
+
         Response response = null;
         try {
 
@@ -55,9 +77,16 @@ public class RenderServiceUtil {
                     new BufferedImageStreamingOutput(targetImage,
                                                      Utils.JPEG_FORMAT,
                                                      renderParameters.isConvertToGray(),
-                                                     renderParameters.getQuality());
-            response = responseHelper.getImageByteResponse(out, IMAGE_JPEG_MIME_TYPE);
+                                                     renderParameters.getQuality(),
+                                                     renderRequest);
+            response = getTimedImageResponse(out,
+                                             IMAGE_JPEG_MIME_TYPE,
+                                             responseHelper,
+                                             databaseNanos,
+                                             renderParameters.numberOfTileSpecs(),
+                                             renderRequest);
         } catch (final Throwable t) {
+            renderRequest.finish(true);
             RenderServiceUtil.throwServiceException(t);
         }
 
@@ -120,6 +149,10 @@ return renderTiffImage(renderParameters, maxTileSpecsToRender, responseHelper, f
 
         LOG.info("renderImageStream: entry, format={}, mimeType={}", format, mimeType);
 
+        final long databaseNanos = RenderServerMetrics.getCurrentThreadDatabaseNanos();
+        final RenderServerMetrics.RenderRequest renderRequest = RenderServerMetrics.getInstance().startRender();
+        renderRequest.getPhaseTimes().bindToCurrentThread();
+
         Response response = null;
         try {
 
@@ -141,10 +174,19 @@ return renderTiffImage(renderParameters, maxTileSpecsToRender, responseHelper, f
                     new BufferedImageStreamingOutput(targetImage,
                                                      format,
                                                      renderParameters.isConvertToGray(),
-                                                     renderParameters.getQuality());
-            response = responseHelper.getImageByteResponse(out, mimeType);
+                                                     renderParameters.getQuality(),
+                                                     renderRequest);
+            response = getTimedImageResponse(out,
+                                             mimeType,
+                                             responseHelper,
+                                             databaseNanos,
+                                             renderParameters.numberOfTileSpecs(),
+                                             renderRequest);
         } catch (final Throwable t) {
+            renderRequest.finish(true);
             RenderServiceUtil.throwServiceException(t);
+        } finally {
+            RenderPhaseTimes.unbindFromCurrentThread();
         }
 
         LOG.info("renderImageStream: exit");
@@ -152,6 +194,91 @@ return renderTiffImage(renderParameters, maxTileSpecsToRender, responseHelper, f
         return response;
     }
 
+    /**
+     * Renders large targets in horizontal bands that are encoded and streamed as they are rendered
+     * (see {@link BandedImageStreamingOutput}).  Targets that fit within a single band, targets that are
+     * rendered onto an input image, and targets with too many tiles to render (where only tile bounding
+     * boxes are drawn) are rendered in one piece by {@link #renderImageStream}.
+     *
+     * The band height can be configured with the webService.renderBandHeight property.
+     * Setting the property to zero disables banded rendering.
+     */
+    public static Response renderBandedImageStream(final RenderParameters renderParameters,
+                                                   final String format,
+                                                   final String mimeType,
+                                                   final Integer maxTileSpecsToRender,
+                                                   final ResponseHelper responseHelper) {
+
+        LOG.info("renderBandedImageStream: entry, format={}, mimeType={}", format, mimeType);
+
+        Response response = null;
+        RenderServerMetrics.RenderRequest renderRequest = null;
+        try {
+
+            Integer maxTilesToRender = maxTileSpecsToRender;
+            if (maxTileSpecsToRender == null) {
+                maxTilesToRender = RenderServerProperties.getProperties().getInteger("webService.maxTileSpecsToRender");
+            }
+
+            final boolean renderBoundingBoxesOnly = (maxTilesToRender != null) &&
+                                                    (renderParameters.numberOfTileSpecs() > maxTilesToRender);
+
+            int bandHeight = BandedImageStreamingOutput.DEFAULT_BAND_HEIGHT;
+            final Integer configuredBandHeight =
+                    RenderServerProperties.getProperties().getInteger("webService.renderBandHeight");
+            if (configuredBandHeight != null) {
+                bandHeight = configuredBandHeight;
+            }
+
+            if (renderBoundingBoxesOnly || (bandHeight < 1) || (renderParameters.in != null)) {
+
+                response = renderImageStream(renderParameters, format, mimeType, maxTileSpecsToRender, responseHelper);
+
+            } else {
+
+                LOG.info("renderBandedImageStream: renderParameters={}", renderParameters);
+
+                renderParameters.initializeDerivedValues();
+                renderParameters.validate();
+                // each tile is mapped by one thread, tiles are only rendered concurrently (by the shared
+                // tile render pool) when a request asks for tile threads
+                renderParameters.setNumberOfThreads(1);
+                SharedTileRenderPool.applyTileThreads(renderParameters);
+
+                if (renderParameters.getTargetHeight() <= bandHeight) {
+                    response = renderImageStream(renderParameters, format, mimeType, maxTileSpecsToRender,
+                                                 responseHelper);
+                } else {
+                    renderRequest = RenderServerMetrics.getInstance().startRender();
+                    final BandedImageStreamingOutput out =
+                            new BandedImageStreamingOutput(renderParameters,
+                                                           format,
+                                                           bandHeight,
+                                                           SharedImageProcessorCache.getInstance(),
+                                                           SharedRenderTransformMeshCache.getInstance(),
+                                                           renderRequest);
+
+                    // bands are rendered and encoded while the response body is written (after headers are sent),
+                    // so only the query time and tile count are known when the headers are built
+                    final ServerTiming serverTiming = new ServerTiming()
+                            .addDuration(QUERY_TIMING, RenderServerMetrics.getCurrentThreadDatabaseNanos())
+                            .addCount(TILES_TIMING, renderParameters.numberOfTileSpecs());
+                    response = responseHelper.getImageByteResponse(out, mimeType, serverTiming);
+                }
+            }
+
+        } catch (final Throwable t) {
+            if (renderRequest != null) {
+                renderRequest.finish(true);
+            }
+            RenderServiceUtil.throwServiceException(t);
+        }
+
+        LOG.info("renderBandedImageStream: exit");
+
+        return response;
+    }
+
     public static Response streamImageFile(final File imageFile,
                                            final String mimeType,
                                            final ResponseHelper responseHelper) {
@@ -171,6 +298,33 @@ return renderTiffImage(renderParameters, maxTileSpecsToRender, responseHelper, f
 
         return response;
     }
+
+    /**
+     * Builds a streaming response for a rendered image with a Server-Timing header that includes
+     * the request's query, load, mesh, and map times (all of which are known once the image is rendered).
+     * The image is encoded while the response body is written (after headers are sent), so encoding time
+     * is only included in the server's render metrics and not in the header.
+     */
+    private static Response getTimedImageResponse(final BufferedImageStreamingOutput out,
+                                                  final String mimeType,
+                                                  final ResponseHelper responseHelper,
+                                                  final long databaseNanos,
+                                                  final int numberOfTiles,
+                                                  final RenderServerMetrics.RenderRequest renderRequest) {
+
+        final RenderPhaseTimes phaseTimes = renderRequest.getPhaseTimes();
+        final ServerTiming serverTiming = new ServerTiming()
+                .addDuration(QUERY_TIMING, databaseNanos)
+                .addDuration("load", phaseTimes.getLoadNanos())
+                .addDuration("mesh", phaseTimes.getMeshNanos())
+                .addDuration("map", phaseTimes.getMapNanos())
+                .addCount(TILES_TIMING, numberOfTiles)
+                .addCount("cacheHits", phaseTimes.getSourceCacheHits())
+                .addCount("cacheMisses", phaseTimes.getSourceCacheMisses());
+
+        return responseHelper.getImageByteResponse(out, mimeType, serverTiming);
+    }
+
     private static BufferedImage validateParametersAndRenderImage(final RenderParameters renderParameters,
                                                                   final boolean renderBoundingBoxesOnly){
         return validateParametersAndRenderImage(renderParameters, renderBoundingBoxesOnly,false);
@@ -184,7 +338,10 @@ return renderTiffImage(renderParameters, maxTileSpecsToRender, responseHelper, f
 
         renderParameters.initializeDerivedValues();
         renderParameters.validate();
-        renderParameters.setNumberOfThreads(1); // service requests should always be single threaded
+        // each tile is mapped by one thread, tiles are only rendered concurrently (by the shared
+        // tile render pool) when a request asks for tile threads
+        renderParameters.setNumberOfThreads(1);
+        SharedTileRenderPool.applyTileThreads(renderParameters);
 
         final BufferedImage targetImage;
 
@@ -200,13 +357,15 @@ return renderTiffImage(renderParameters, maxTileSpecsToRender, responseHelper, f
                 targetImage = renderParameters.openTargetImage(BufferedImage.TYPE_USHORT_GRAY);
                 ShortRenderer.render(renderParameters,
                                      targetImage,
-                                     SharedImageProcessorCache.getInstance());
+                                     SharedImageProcessorCache.getInstance(),
+                                     SharedRenderTransformMeshCache.getInstance());
             }
             else{
                 targetImage = renderParameters.openTargetImage();
                 ArgbRenderer.render(renderParameters,
                                     targetImage,
-                                    SharedImageProcessorCache.getInstance());
+                                    SharedImageProcessorCache.getInstance(),
+                                    SharedRenderTransformMeshCache.getInstance());
             }
             
 
@@ -0,0 +1,24 @@
+package org.janelia.render.service.util;
+
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * Resets per-thread request timing state when each request starts.
+ * Request threads are pooled, so without this, database time for a request
+ * (see {@link RenderServerMetrics#getCurrentThreadDatabaseNanos}) would include time
+ * from earlier requests handled by the same thread.
+ *
+ * @author Eric Trautman
+ */
+@Provider
+public class RequestTimingFilter
+        implements ContainerRequestFilter {
+
+    @Override
+    public void filter(final ContainerRequestContext requestContext) {
+        RenderServerMetrics.resetCurrentThreadDatabaseNanos();
+    }
+
+}
@@ -58,7 +58,21 @@ public class ResponseHelper {
 
     public Response getImageByteResponse(final StreamingOutput imageByteStream,
                                          final String mimeType) {
+        return getImageByteResponse(imageByteStream, mimeType, null);
+    }
+
+    /**
+     * @param  serverTiming  timing information to include in the response (or null to omit it).
+     */
+    public Response getImageByteResponse(final StreamingOutput imageByteStream,
+                                         final String mimeType,
+                                         final ServerTiming serverTiming) {
         Response.ResponseBuilder responseBuilder = Response.ok(imageByteStream, mimeType);
+        if ((serverTiming != null) && (! serverTiming.isEmpty())) {
+            responseBuilder = responseBuilder
+                    .header(ServerTiming.HEADER_NAME, serverTiming.toString())
+                    .header(ServerTiming.TIMING_ALLOW_ORIGIN_HEADER_NAME, "*");
+        }
         if (stackMetaData != null) {
             final EntityTag eTag = getStackTag();
             responseBuilder = responseBuilder.tag(eTag);
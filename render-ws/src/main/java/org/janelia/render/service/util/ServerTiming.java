@@ -0,0 +1,72 @@
+package org.janelia.render.service.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds <a href="https://www.w3.org/TR/server-timing/">Server-Timing</a> response header values
+ * so that clients (e.g. browser developer tools, CATMAID, or load tests) can attribute request latency
+ * without access to server logs.
+ *
+ * Durations are reported in milliseconds (dur parameter) and counts are reported as descriptions
+ * (e.g. <code>query;dur=12.3, load;dur=45.6, tiles;desc="9"</code>).
+ *
+ * @author Eric Trautman
+ */
+public class ServerTiming {
+
+    public static final String HEADER_NAME = "Server-Timing";
+
+    /** Allows cross origin (browser) clients to see the Server-Timing header values. */
+    public static final String TIMING_ALLOW_ORIGIN_HEADER_NAME = "Timing-Allow-Origin";
+
+    private final StringBuilder value;
+
+    public ServerTiming() {
+        this.value = new StringBuilder();
+    }
+
+    /**
+     * @param  name   metric name.
+     * @param  nanos  metric duration.
+     *
+     * @return this instance for chaining.
+     */
+    public ServerTiming addDuration(final String name,
+                                    final long nanos) {
+        // round to tenths of a millisecond without depending upon the default locale
+        final double millis = Math.round(nanos / (TimeUnit.MILLISECONDS.toNanos(1) / 10.0)) / 10.0;
+        startMetric(name);
+        value.append(";dur=").append(millis);
+        return this;
+    }
+
+    /**
+     * @param  name   metric name.
+     * @param  count  metric count.
+     *
+     * @return this instance for chaining.
+     */
+    public ServerTiming addCount(final String name,
+                                 final long count) {
+        startMetric(name);
+        value.append(";desc=\"").append(count).append('"');
+        return this;
+    }
+
+    public boolean isEmpty() {
+        return value.length() == 0;
+    }
+
+    @Override
+    public String toString() {
+        return value.toString();
+    }
+
+    private void startMetric(final String name) {
+        if (value.length() > 0) {
+            value.append(", ");
+        }
+        value.append(name);
+    }
+
+}
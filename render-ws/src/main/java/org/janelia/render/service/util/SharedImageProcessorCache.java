@@ -1,12 +1,23 @@
 package org.janelia.render.service.util;
 
+import java.io.File;
+
 import org.janelia.alignment.util.ImageProcessorCache;
+import org.janelia.alignment.util.OffHeapImageProcessorStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * The image processor cache to be shared across all render web service requests.
  *
+ * The first (heap) tier size can be configured with the webService.maxImageProcessorCacheGb property.
+ * A second tier for processors evicted from the first tier is enabled by setting the
+ * webService.maxImageProcessorSecondTierGb property.  Second tier pixels are stored in direct (off-heap)
+ * memory unless a local directory for memory-mapped files is specified with the
+ * webService.imageProcessorSecondTierDirectory property.
+ * First tier 8-bit and 16-bit images are held in compressed form when the
+ * webService.compressCachedImages property is true.
+ *
  * @author Eric Trautman
  */
 public class SharedImageProcessorCache {
@@ -33,10 +44,30 @@ public class SharedImageProcessorCache {
                     maxCachedPixels = maxMemory / 2;
                 }
             } else {
-                maxCachedPixels = maxGb * 1_000_000_000;
+                maxCachedPixels = maxGb * 1_000_000_000L;
+            }
+
+            OffHeapImageProcessorStore secondTier = null;
+
+            final RenderServerProperties properties = RenderServerProperties.getProperties();
+            final Integer maxSecondTierGb = properties.getInteger("webService.maxImageProcessorSecondTierGb");
+            if ((maxSecondTierGb != null) && (maxSecondTierGb > 0)) {
+                final String secondTierDirectory = properties.get("webService.imageProcessorSecondTierDirectory");
+                final File directory = ((secondTierDirectory == null) || (secondTierDirectory.trim().length() == 0)) ?
+                                       null : new File(secondTierDirectory.trim());
+                secondTier = new OffHeapImageProcessorStore(maxSecondTierGb * 1_000_000_000L, directory, true);
             }
 
-            sharedCache = new ImageProcessorCache(maxCachedPixels, true, false);
+            final String compressCachedImagesValue = properties.get("webService.compressCachedImages");
+            final boolean compressCachedImages =
+                    (compressCachedImagesValue != null) && Boolean.parseBoolean(compressCachedImagesValue.trim());
+
+            sharedCache = new ImageProcessorCache(maxCachedPixels,
+                                                  true,
+                                                  false,
+                                                  false,
+                                                  secondTier,
+                                                  compressCachedImages);
 
             LOG.info("setSharedCache: exit, created {}", sharedCache);
         }
@@ -0,0 +1,54 @@
+package org.janelia.render.service.util;
+
+import org.janelia.alignment.util.RenderTransformMeshCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The render mesh cache to be shared across all render web service requests.
+ *
+ * The cache size can be configured with the webService.maxRenderMeshCacheTriangles property.
+ * Setting the property to zero disables mesh caching.
+ *
+ * @author Eric Trautman
+ */
+public class SharedRenderTransformMeshCache {
+
+    /**
+     * @return the shared cache or null if mesh caching has been disabled.
+     */
+    public static RenderTransformMeshCache getInstance() {
+        return Holder.SHARED_CACHE;
+    }
+
+    /**
+     * Builds the shared cache when it is first requested (class initialization is thread safe).
+     */
+    private static class Holder {
+        private static final RenderTransformMeshCache SHARED_CACHE = buildSharedCache();
+    }
+
+    private static RenderTransformMeshCache buildSharedCache() {
+
+        long maxCachedTriangles = RenderTransformMeshCache.DEFAULT_MAX_CACHED_TRIANGLES;
+
+        final Integer maxTriangles =
+                RenderServerProperties.getProperties().getInteger("webService.maxRenderMeshCacheTriangles");
+
+        if (maxTriangles != null) {
+            maxCachedTriangles = maxTriangles;
+        }
+
+        RenderTransformMeshCache sharedCache = null;
+        if (maxCachedTriangles > 0) {
+            sharedCache = new RenderTransformMeshCache(maxCachedTriangles, true);
+            LOG.info("buildSharedCache: exit, created {}", sharedCache);
+        } else {
+            LOG.info("buildSharedCache: exit, mesh caching is disabled");
+        }
+
+        return sharedCache;
+    }
+
+    private static final Logger LOG = LoggerFactory.getLogger(SharedRenderTransformMeshCache.class);
+}
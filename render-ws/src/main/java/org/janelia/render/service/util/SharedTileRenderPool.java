@@ -0,0 +1,71 @@
+package org.janelia.render.service.util;
+
+import org.janelia.alignment.RenderParameters;
+import org.janelia.alignment.mipmap.RenderedCanvasMipmapSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Configures the tile render pool shared across all render web service requests
+ * (see {@link RenderedCanvasMipmapSource#getTileRenderParallelism}) and limits the number of tiles
+ * each request renders concurrently.
+ *
+ * The pool size can be configured with the webService.tileRenderPoolThreads property,
+ * which is applied when the service starts (see {@link RenderServerBootstrapServlet}).
+ * Box, tile, and layer renders load, mesh, and map tiles one at a time unless a request asks for more
+ * tile threads.  Requested tile threads are capped by the webService.maxRenderTileThreads property
+ * and are never more than the shared pool holds.
+ *
+ * @author Eric Trautman
+ */
+public class SharedTileRenderPool {
+
+    /** Default maximum number of tiles each request can render concurrently. */
+    public static final int DEFAULT_MAX_TILE_THREADS_PER_REQUEST = 4;
+
+    private static int maxTileThreadsPerRequest = DEFAULT_MAX_TILE_THREADS_PER_REQUEST;
+
+    /**
+     * Sizes the shared tile render pool and sets the maximum number of tile threads per request
+     * from the specified properties.  This should be called once when the service starts
+     * (before any requests are rendered).
+     *
+     * @param  properties  server properties.
+     */
+    public static synchronized void configure(final RenderServerProperties properties) {
+
+        final Integer poolThreads = properties.getInteger("webService.tileRenderPoolThreads");
+        if ((poolThreads != null) && (poolThreads > 0)) {
+            try {
+                RenderedCanvasMipmapSource.setTileRenderParallelism(poolThreads);
+            } catch (final IllegalStateException e) {
+                LOG.warn("configure: ignoring webService.tileRenderPoolThreads value", e);
+            }
+        }
+
+        final Integer maxThreads = properties.getInteger("webService.maxRenderTileThreads");
+        maxTileThreadsPerRequest = maxThreads == null ? DEFAULT_MAX_TILE_THREADS_PER_REQUEST : Math.max(1, maxThreads);
+
+        LOG.info("configure: exit, up to {} tile threads per request with pool of {} threads",
+                 maxTileThreadsPerRequest, RenderedCanvasMipmapSource.getTileRenderParallelism());
+    }
+
+    /**
+     * Caps the number of tile threads requested by the specified render parameters at the configured
+     * maximum number of tile threads per request and the shared pool size.
+     *
+     * @param  renderParameters  parameters for the render.
+     */
+    public static void applyTileThreads(final RenderParameters renderParameters) {
+        final int requestedThreads = Math.max(1, renderParameters.getNumberOfTileThreads());
+        final int maxThreads = Math.min(getMaxTileThreadsPerRequest(),
+                                        RenderedCanvasMipmapSource.getTileRenderParallelism());
+        renderParameters.setNumberOfTileThreads(Math.min(requestedThreads, maxThreads));
+    }
+
+    private static synchronized int getMaxTileThreadsPerRequest() {
+        return maxTileThreadsPerRequest;
+    }
+
+    private static final Logger LOG = LoggerFactory.getLogger(SharedTileRenderPool.class);
+}
@@ -157,4 +157,18 @@ sed -i """
   s@view.renderStackProject=.*@view.renderStackProject=${VIEW_RENDER_STACK_PROJECT}@
   s@webService.maxTileSpecsToRender=.*@webService.maxTileSpecsToRender=${WEB_SERVICE_MAX_TILE_SPECS_TO_RENDER}@
   s@webService.maxImageProcessorCacheGb=.*@webService.maxImageProcessorCacheGb=${WEB_SERVICE_MAX_IMAGE_PROCESSOR_GB}@
+  s@webService.maxImageProcessorSecondTierGb=.*@webService.maxImageProcessorSecondTierGb=${WEB_SERVICE_MAX_IMAGE_PROCESSOR_SECOND_TIER_GB}@
+  s@webService.imageProcessorSecondTierDirectory=.*@webService.imageProcessorSecondTierDirectory=${WEB_SERVICE_IMAGE_PROCESSOR_SECOND_TIER_DIRECTORY}@
+  s@webService.compressCachedImages=.*@webService.compressCachedImages=${WEB_SERVICE_COMPRESS_CACHED_IMAGES}@
+  s@webService.maxRenderMeshCacheTriangles=.*@webService.maxRenderMeshCacheTriangles=${WEB_SERVICE_MAX_RENDER_MESH_CACHE_TRIANGLES}@
+  s@webService.renderBandHeight=.*@webService.renderBandHeight=${WEB_SERVICE_RENDER_BAND_HEIGHT}@
+  s@webService.tileRenderPoolThreads=.*@webService.tileRenderPoolThreads=${WEB_SERVICE_TILE_RENDER_POOL_THREADS}@
+  s@webService.maxRenderTileThreads=.*@webService.maxRenderTileThreads=${WEB_SERVICE_MAX_RENDER_TILE_THREADS}@
+  s@webService.triangleMappingThreads=.*@webService.triangleMappingThreads=${WEB_SERVICE_TRIANGLE_MAPPING_THREADS}@
+  s@webService.imagePrefetchThreads=.*@webService.imagePrefetchThreads=${WEB_SERVICE_IMAGE_PREFETCH_THREADS}@
+  s@webService.transformCacheMaxDataLength=.*@webService.transformCacheMaxDataLength=${WEB_SERVICE_TRANSFORM_CACHE_MAX_DATA_LENGTH}@
+  s@webService.inverseMeshCacheMaxTriangles=.*@webService.inverseMeshCacheMaxTriangles=${WEB_SERVICE_INVERSE_MESH_CACHE_MAX_TRIANGLES}@
+  s@webService.transformGridSpacing=.*@webService.transformGridSpacing=${WEB_SERVICE_TRANSFORM_GRID_SPACING}@
+  s@webService.transformGridMaxError=.*@webService.transformGridMaxError=${WEB_SERVICE_TRANSFORM_GRID_MAX_ERROR}@
+  s@webService.transformGridCacheMaxNodes=.*@webService.transformGridCacheMaxNodes=${WEB_SERVICE_TRANSFORM_GRID_CACHE_MAX_NODES}@
 """ "${JETTY_BASE}/resources/render-server.properties"
\ No newline at end of file
@@ -0,0 +1,79 @@
+package org.janelia.render.service.util;
+
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the {@link LatencyHistogram} class.
+ *
+ * @author Eric Trautman
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void testRecord() throws Exception {
+
+        final LatencyHistogram histogram = new LatencyHistogram();
+
+        Assert.assertEquals("invalid mean for empty histogram", 0.0, histogram.getMeanMillis(), 0.0);
+        Assert.assertEquals("invalid p50 for empty histogram", 0.0, histogram.getPercentileMillis(50), 0.0);
+
+        // 8 fast values, 1 medium value, and 1 very slow value
+        for (int i = 0; i < 8; i++) {
+            histogram.record(toNanos(3));
+        }
+        histogram.record(toNanos(150));
+        histogram.record(toNanos(90000));
+
+        Assert.assertEquals("invalid count", 10, histogram.getCount());
+        Assert.assertEquals("invalid mean", (8 * 3 + 150 + 90000) / 10.0, histogram.getMeanMillis(), 0.001);
+        Assert.assertEquals("invalid max", 90000.0, histogram.getMaxMillis(), 0.001);
+        Assert.assertEquals("invalid p50", 5.0, histogram.getPercentileMillis(50), 0.001);
+        Assert.assertEquals("invalid p90", 200.0, histogram.getPercentileMillis(90), 0.001);
+        Assert.assertEquals("invalid p99", 90000.0, histogram.getPercentileMillis(99), 0.001);
+
+        final Map<String, Object> map = histogram.toMap();
+        @SuppressWarnings("unchecked")
+        final Map<String, Long> buckets = (Map<String, Long>) map.get("millisecondBuckets");
+        Assert.assertEquals("invalid <=5 bucket count", Long.valueOf(8), buckets.get("<=5"));
+        Assert.assertEquals("invalid <=200 bucket count", Long.valueOf(1), buckets.get("<=200"));
+        Assert.assertEquals("invalid overflow bucket count", Long.valueOf(1), buckets.get(">60000"));
+    }
+
+    @Test
+    public void testRenderRequestMetrics() throws Exception {
+
+        final RenderServerMetrics metrics = new RenderServerMetrics();
+
+        final RenderServerMetrics.RenderRequest completedRequest = metrics.startRender();
+        final RenderServerMetrics.RenderRequest failedRequest = metrics.startRender();
+
+        Assert.assertEquals("invalid in flight count", 2, metrics.getInFlightRenders());
+
+        completedRequest.getPhaseTimes().addLoadNanos(toNanos(40));
+        completedRequest.finish(false);
+        completedRequest.finish(false); // extra finish calls should be ignored
+        failedRequest.finish(true);
+
+        Assert.assertEquals("invalid in flight count after finish", 0, metrics.getInFlightRenders());
+        Assert.assertEquals("invalid max in flight count", 2, metrics.getMaxInFlightRenders());
+        Assert.assertEquals("invalid completed count", 1, metrics.getCompletedRenders());
+        Assert.assertEquals("invalid failed count", 1, metrics.getFailedRenders());
+        Assert.assertEquals("invalid mean load time",
+                            40.0, metrics.getRenderPhaseMeanMillis().get(RenderServerMetrics.LOAD_PHASE), 0.001);
+
+        metrics.recordDatabaseCommand("RenderDao.find", toNanos(2));
+        metrics.recordDatabaseCommand("RenderDao.find", toNanos(4));
+        Assert.assertEquals("invalid database command count",
+                            Long.valueOf(2), metrics.getDatabaseCommandCounts().get("RenderDao.find"));
+        Assert.assertEquals("invalid database command mean",
+                            3.0, metrics.getDatabaseCommandMeanMillis().get("RenderDao.find"), 0.001);
+    }
+
+    private static long toNanos(final long millis) {
+        return millis * 1_000_000;
+    }
+
+}
@@ -0,0 +1,29 @@
+package org.janelia.render.service.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the {@link ServerTiming} class.
+ *
+ * @author Eric Trautman
+ */
+public class ServerTimingTest {
+
+    @Test
+    public void testToString() throws Exception {
+
+        final ServerTiming serverTiming = new ServerTiming();
+
+        Assert.assertTrue("new instance should be empty", serverTiming.isEmpty());
+
+        serverTiming.addDuration("query", 12_345_678)
+                .addDuration("load", 0)
+                .addCount("tiles", 9);
+
+        Assert.assertEquals("invalid header value",
+                            "query;dur=12.3, load;dur=0.0, tiles;desc=\"9\"",
+                            serverTiming.toString());
+    }
+
+}
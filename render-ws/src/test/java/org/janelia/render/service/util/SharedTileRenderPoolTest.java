@@ -0,0 +1,32 @@
+package org.janelia.render.service.util;
+
+import org.janelia.alignment.RenderParameters;
+import org.janelia.alignment.mipmap.RenderedCanvasMipmapSource;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the {@link SharedTileRenderPool} class.
+ *
+ * @author Eric Trautman
+ */
+public class SharedTileRenderPoolTest {
+
+    @Test
+    public void testApplyTileThreads() throws Exception {
+
+        final int poolSize = RenderedCanvasMipmapSource.getTileRenderParallelism();
+        final RenderParameters renderParameters = new RenderParameters();
+
+        SharedTileRenderPool.applyTileThreads(renderParameters);
+        Assert.assertEquals("default request should render tiles sequentially",
+                            1, renderParameters.getNumberOfTileThreads());
+
+        renderParameters.setNumberOfTileThreads(poolSize + 1000);
+        SharedTileRenderPool.applyTileThreads(renderParameters);
+        Assert.assertEquals("requested tile threads should be capped at configured maximum and pool size",
+                            Math.min(SharedTileRenderPool.DEFAULT_MAX_TILE_THREADS_PER_REQUEST, poolSize),
+                            renderParameters.getNumberOfTileThreads());
+    }
+
+}